@@ -0,0 +1,165 @@
+package per.meteor.aop.log.aspect;
+
+import eu.bitwalker.useragentutils.UserAgent;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.aspectj.runtime.reflect.Factory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import per.meteor.aop.log.benchmark.BenchmarkApplication;
+import per.meteor.aop.log.benchmark.BenchmarkPayloads;
+import per.meteor.aop.log.common.enums.CaptureMode;
+import per.meteor.aop.log.config.LogCaptureProperties;
+import per.meteor.aop.log.controller.TestController;
+import per.meteor.aop.log.domain.LogDomain;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SimpleLogAspect 各解析步骤单独测量，每次调用都打开并关闭一次采集上下文
+ * <p>
+ * userAgentUncached 为不经过 {@link UserAgentCache} 直接解析的耗时。
+ *
+ * @author meteor
+ * @date 2021-10-18 10:25
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseStepBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Application {
+        ConfigurableApplicationContext context;
+        SimpleLogAspect aspect;
+        LogCaptureProperties properties;
+        TestController controller;
+        MethodDescriptorCache descriptorCache;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            context = BenchmarkApplication.start();
+            aspect = context.getBean(SimpleLogAspect.class);
+            properties = context.getBean(LogCaptureProperties.class);
+            controller = new TestController();
+            descriptorCache = new MethodDescriptorCache(SimpleLogAspect.EXCEPTION_LOG_POINTCUT);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+
+        LogCaptureContext open(JoinPoint joinPoint, HttpServletRequest request) {
+            return LogCaptureContext.open(joinPoint, descriptorCache.get(joinPoint), ServletLogRequest.of(request),
+                    CaptureMode.EAGER, properties);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Query {
+        MockHttpServletRequest request;
+        JoinPoint joinPoint;
+
+        @Setup(Level.Trial)
+        public void setup(Application application) {
+            request = BenchmarkPayloads.queryRequest();
+            joinPoint = joinPoint(application.controller, "test01",
+                    new Class<?>[]{String.class, Integer.class, String.class, HttpServletRequest.class},
+                    new String[]{"name", "age", "sex", "request"},
+                    new Object[]{"meteor", 18, "male", request});
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Body {
+        @Param({"10", "1000"})
+        int bodyRows;
+
+        MockHttpServletRequest request;
+        JoinPoint joinPoint;
+
+        @Setup(Level.Trial)
+        public void setup(Application application) {
+            request = BenchmarkPayloads.request("POST", "/test02");
+            request.addParameter("name", "meteor");
+            joinPoint = joinPoint(application.controller, "test01",
+                    new Class<?>[]{Map.class, String.class, HttpServletRequest.class},
+                    new String[]{"page", "name", "request"},
+                    new Object[]{BenchmarkPayloads.body(bodyRows), "meteor", request});
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Trace {
+        @Param({"20", "200"})
+        int stackDepth;
+
+        StackTraceElement[] elements;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            elements = throwAt(stackDepth).getStackTrace();
+        }
+
+        private static RuntimeException throwAt(int depth) {
+            return depth <= 1 ? new IllegalStateException("下游服务不可用") : throwAt(depth - 1);
+        }
+    }
+
+    private static JoinPoint joinPoint(Object target, String name, Class<?>[] parameterTypes,
+                                       String[] parameterNames, Object[] args) {
+        Factory factory = new Factory(target.getClass().getSimpleName() + ".java", target.getClass());
+        MethodSignature signature = factory.makeMethodSig(Modifier.PUBLIC, name, target.getClass(), parameterTypes,
+                parameterNames, new Class<?>[0], void.class);
+        JoinPoint.StaticPart staticPart = factory.makeSJP(JoinPoint.METHOD_EXECUTION, signature, 0);
+        return Factory.makeJP(staticPart, target, target, args);
+    }
+
+    @Benchmark
+    public String header(Application application, Query query) {
+        try (LogCaptureContext context = application.open(query.joinPoint, query.request)) {
+            return application.aspect.parseHeader(context);
+        }
+    }
+
+    @Benchmark
+    public LogDomain userAgent(Application application, Query query) {
+        try (LogCaptureContext context = application.open(query.joinPoint, query.request)) {
+            return application.aspect.parseBrowserInfo(context, new LogDomain());
+        }
+    }
+
+    @Benchmark
+    public UserAgent userAgentUncached() {
+        return UserAgent.parseUserAgentString(BenchmarkPayloads.USER_AGENT);
+    }
+
+    @Benchmark
+    public String queryParameters(Application application, Query query) {
+        try (LogCaptureContext context = application.open(query.joinPoint, query.request)) {
+            return application.aspect.getRequestParameters(context, "GET");
+        }
+    }
+
+    @Benchmark
+    public String bodyParameters(Application application, Body body) {
+        try (LogCaptureContext context = application.open(body.joinPoint, body.request)) {
+            return application.aspect.getRequestParameters(context, "POST");
+        }
+    }
+
+    @Benchmark
+    public String stackTrace(Application application, Query query, Trace trace) {
+        try (LogCaptureContext context = application.open(query.joinPoint, query.request)) {
+            return application.aspect.stackTraceToString(context, IllegalStateException.class.getName(),
+                    "下游服务不可用", trace.elements);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package per.meteor.aop.log.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.aop.framework.Advised;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import per.meteor.aop.log.controller.TestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SimpleLogAspect 端到端开销：同一个 {@code @OperationLog} 方法经过代理调用与直接调用目标对象的对比
+ * <p>
+ * 日志管道照常运行但不配置输出，缓冲区满时丢弃最新日志，测量结果只包含请求线程上的采集开销。
+ * captureMode 对比请求线程序列化与消费线程延迟序列化：body 开头的方法请求体为 bodyRows 条明细，
+ * response 开头的方法返回 bodyRows 条记录的列表(含构造列表本身的耗时)，吞吐的倒数即请求线程上的平均耗时。
+ *
+ * @author meteor
+ * @date 2021-10-18 10:15
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AspectBenchmark {
+
+    @Param({"eager", "deferred"})
+    private String captureMode;
+
+    @Param({"10", "1000"})
+    private int bodyRows;
+
+    private ConfigurableApplicationContext context;
+    private TestController advised;
+    private TestController target;
+    private Map<String, Object> body;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        context = BenchmarkApplication.start("--meteor.log.capture.mode=" + captureMode);
+        advised = context.getBean(TestController.class);
+        target = (TestController) ((Advised) advised).getTargetSource().getTarget();
+        body = BenchmarkPayloads.body(bodyRows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Requests {
+        MockHttpServletRequest query;
+        ServletRequestAttributes queryAttributes;
+        MockHttpServletRequest post;
+        ServletRequestAttributes postAttributes;
+        ServletRequestAttributes exportAttributes;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            query = BenchmarkPayloads.queryRequest();
+            queryAttributes = new ServletRequestAttributes(query);
+            post = BenchmarkPayloads.request("POST", "/test02");
+            post.addParameter("name", "meteor");
+            postAttributes = new ServletRequestAttributes(post);
+            MockHttpServletRequest export = BenchmarkPayloads.request("GET", "/test04");
+            export.addParameter("size", "1000");
+            exportAttributes = new ServletRequestAttributes(export);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    @Benchmark
+    public void queryAdvised(Requests requests) {
+        RequestContextHolder.setRequestAttributes(requests.queryAttributes);
+        advised.test01("meteor", 18, "male", requests.query);
+    }
+
+    @Benchmark
+    public void queryUnadvised(Requests requests) {
+        RequestContextHolder.setRequestAttributes(requests.queryAttributes);
+        target.test01("meteor", 18, "male", requests.query);
+    }
+
+    @Benchmark
+    public void bodyAdvised(Requests requests) {
+        RequestContextHolder.setRequestAttributes(requests.postAttributes);
+        advised.test01(body, "meteor", requests.post);
+    }
+
+    @Benchmark
+    public void bodyUnadvised(Requests requests) {
+        RequestContextHolder.setRequestAttributes(requests.postAttributes);
+        target.test01(body, "meteor", requests.post);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> responseAdvised(Requests requests) {
+        RequestContextHolder.setRequestAttributes(requests.exportAttributes);
+        return advised.test04(bodyRows);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> responseUnadvised(Requests requests) {
+        RequestContextHolder.setRequestAttributes(requests.exportAttributes);
+        return target.test04(bodyRows);
+    }
+}
@@ -0,0 +1,55 @@
+package per.meteor.aop.log.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import per.meteor.aop.log.AopLogApplication;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 启动基准测试使用的应用上下文
+ * <p>
+ * 不启动 web 容器，请求对象由基准测试绑定到当前线程；关闭 info 级别的控制台输出及 slf4j 日志输出，
+ * 避免输出耗时掩盖采集本身的开销。
+ *
+ * @author meteor
+ * @date 2021-10-18 09:40
+ */
+public final class BenchmarkApplication {
+
+    private static final String[] DEFAULT_ARGS = {
+            "--spring.main.web-application-type=none",
+            "--spring.main.banner-mode=off",
+            "--logging.level.root=warn",
+            "--logging.level.per.meteor=warn",
+            "--meteor.log.sink.slf4j.enabled=false",
+            "--meteor.log.pipeline.overflow-policy=drop_newest"
+    };
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * @param args 额外的启动参数，与默认参数同名时覆盖默认值
+     * @return org.springframework.context.ConfigurableApplicationContext
+     */
+    public static ConfigurableApplicationContext start(String... args) {
+        // 同名的命令行参数会被合并为逗号分隔的值，这里按参数名去重
+        Map<String, String> merged = new LinkedHashMap<>();
+        for (String arg : DEFAULT_ARGS) {
+            merged.put(optionName(arg), arg);
+        }
+        for (String arg : args) {
+            merged.put(optionName(arg), arg);
+        }
+        return new SpringApplicationBuilder(AopLogApplication.class)
+                .logStartupInfo(false)
+                .run(merged.values().toArray(new String[0]));
+    }
+
+    private static String optionName(String arg) {
+        int index = arg.indexOf('=');
+        return index < 0 ? arg : arg.substring(0, index);
+    }
+}
@@ -0,0 +1,238 @@
+package per.meteor.aop.log.benchmark;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.HandlerMapping;
+import per.meteor.aop.log.common.enums.ModuleType;
+import per.meteor.aop.log.common.enums.OperationType;
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准测试使用的请求、请求体及日志数据，内容固定以保证结果可重复
+ *
+ * @author meteor
+ * @date 2021-10-18 09:52
+ */
+public final class BenchmarkPayloads {
+
+    public static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 "
+            + "(KHTML, like Gecko) Chrome/94.0.4606.81 Safari/537.36";
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2021, 10, 18, 9, 30, 15);
+
+    private BenchmarkPayloads() {
+    }
+
+    /**
+     * 与浏览器请求相近的请求头
+     *
+     * @param method 请求方式
+     * @param uri 请求地址
+     * @return org.springframework.mock.web.MockHttpServletRequest
+     */
+    public static MockHttpServletRequest request(String method, String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr("192.168.1.20");
+        request.addHeader("Host", "localhost:8080");
+        request.addHeader("Connection", "keep-alive");
+        request.addHeader("User-Agent", USER_AGENT);
+        request.addHeader("Accept", "application/json, text/plain, */*");
+        request.addHeader("Accept-Encoding", "gzip, deflate, br");
+        request.addHeader("Accept-Language", "zh-CN,zh;q=0.9,en;q=0.8");
+        request.addHeader("Cookie", "JSESSIONID=5F1C0A3E9B7D4C2A8E6F0B1D3C5A7E9F; theme=dark");
+        if ("POST".equals(method) || "PUT".equals(method)) {
+            request.setContentType("application/json;charset=UTF-8");
+        }
+        return request;
+    }
+
+    /**
+     * /test01/{sex}?name=&age= 对应的请求
+     *
+     * @return org.springframework.mock.web.MockHttpServletRequest
+     */
+    public static MockHttpServletRequest queryRequest() {
+        MockHttpServletRequest request = request("GET", "/test01/male");
+        request.addParameter("name", "meteor");
+        request.addParameter("age", "18");
+        Map<String, String> pathVariables = Collections.singletonMap("sex", "male");
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, pathVariables);
+        return request;
+    }
+
+    /**
+     * 请求体，rows 为明细条数
+     *
+     * @param rows 明细条数
+     * @return java.util.Map<java.lang.String,java.lang.Object>
+     */
+    public static Map<String, Object> body(int rows) {
+        Map<String, Object> body = new LinkedHashMap<>(8);
+        body.put("pageNum", 1);
+        body.put("pageSize", rows);
+        body.put("keyword", "订单");
+        body.put("rows", orderMaps(rows));
+        return body;
+    }
+
+    private static List<Map<String, Object>> orderMaps(int rows) {
+        List<Map<String, Object>> list = new ArrayList<>(rows);
+        for (Order order : orders(rows)) {
+            Map<String, Object> row = new LinkedHashMap<>(8);
+            row.put("id", order.getId());
+            row.put("name", order.getName());
+            row.put("amount", order.getAmount());
+            row.put("tags", order.getTags());
+            list.add(row);
+        }
+        return list;
+    }
+
+    public static OrderPage page(int rows) {
+        OrderPage page = new OrderPage();
+        page.setPageNum(1);
+        page.setPageSize(rows);
+        page.setKeyword("订单");
+        page.setRows(orders(rows));
+        return page;
+    }
+
+    private static List<Order> orders(int rows) {
+        List<Order> orders = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Order order = new Order();
+            order.setId(100000L + i);
+            order.setName("订单明细-" + i);
+            order.setAmount(BigDecimal.valueOf(1999 + i, 2));
+            order.setTags(Arrays.asList("normal", i % 2 == 0 ? "even" : "odd"));
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    /**
+     * 各字段都有值的操作日志
+     *
+     * @param fieldBytes 请求参数及响应数据的大致字节数
+     * @return per.meteor.aop.log.domain.LogDomain
+     */
+    public static LogDomain log(int fieldBytes) {
+        StringBuilder text = new StringBuilder(fieldBytes + 16);
+        while (text.length() < fieldBytes) {
+            text.append("{\"id\":").append(text.length()).append(",\"name\":\"row\"},");
+        }
+        LogDomain log = new LogDomain();
+        log.setLogId("0000071234567890123");
+        log.setLogSerialNumber("0020211018093015123000001");
+        log.setRequestParameter(text.toString());
+        log.setRequestUrl("/test02");
+        log.setRequestMethod("POST");
+        log.setRequestTime(TIME);
+        log.setResponseStatus("success");
+        log.setResponseCode(200);
+        log.setResponseBody(text.toString());
+        log.setResponseTime(TIME.plusNanos(12_000_000));
+        log.setRequestIp("192.168.1.20");
+        log.setRequestHeader("{\"host\":\"localhost:8080\",\"user-agent\":\"" + USER_AGENT + "\"}");
+        log.setRequestMethodPath("per.meteor.aop.log.controller.TestController.test01");
+        log.setRequestTimeConsuming("12ms");
+        log.setRequestDuration(12034L);
+        log.setUserAgent(USER_AGENT);
+        log.setBrowserType("WEB_BROWSER");
+        log.setBrowserName("Chrome 9");
+        log.setBrowserVersion("94.0.4606.81");
+        log.setOperatingSystem("Windows 10");
+        log.setOperationUser("admin");
+        log.setSystemVersion("1.0");
+        log.setOperationModule(ModuleType.OTHER);
+        log.setOperationType(OperationType.OTHER);
+        log.setOperationDesc("测试");
+        return log;
+    }
+
+    public static class OrderPage {
+        private int pageNum;
+        private int pageSize;
+        private String keyword;
+        private List<Order> rows;
+
+        public int getPageNum() {
+            return pageNum;
+        }
+
+        public void setPageNum(int pageNum) {
+            this.pageNum = pageNum;
+        }
+
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        public void setPageSize(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        public String getKeyword() {
+            return keyword;
+        }
+
+        public void setKeyword(String keyword) {
+            this.keyword = keyword;
+        }
+
+        public List<Order> getRows() {
+            return rows;
+        }
+
+        public void setRows(List<Order> rows) {
+            this.rows = rows;
+        }
+    }
+
+    public static class Order {
+        private long id;
+        private String name;
+        private BigDecimal amount;
+        private List<String> tags;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+    }
+}
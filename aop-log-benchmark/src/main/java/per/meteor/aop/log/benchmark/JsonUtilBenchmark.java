@@ -0,0 +1,124 @@
+package per.meteor.aop.log.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.*;
+import per.meteor.aop.log.benchmark.BenchmarkPayloads.OrderPage;
+import per.meteor.aop.log.common.utils.JsonUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonUtil 序列化、反序列化及对象转换
+ * <p>
+ * ViaString 结尾的方法为经过 JSON 字符串中转的旧转换方式，分别与 toJavaObject(Object)、toMap(Object)、
+ * toList(Object)、jsonCopy 的 TokenBuffer 转换对比，配合 -prof gc 比较每次调用的分配字节数(gc.alloc.rate.norm)。
+ * toJsonStringUncached、fromStringUncached 为直接调用 ObjectMapper 的旧方式，每次调用按类型查找序列化器，
+ * 与缓存的 ObjectWriter/ObjectReader 对比。
+ *
+ * @author meteor
+ * @date 2021-10-18 10:40
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonUtilBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int rows;
+
+    private OrderPage page;
+    private Map<String, Object> map;
+    private Object[] array;
+    private String json;
+    private byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        page = BenchmarkPayloads.page(rows);
+        map = BenchmarkPayloads.body(rows);
+        array = page.getRows().toArray();
+        json = JsonUtil.toJsonString(page);
+        bytes = json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String toJsonString() {
+        return JsonUtil.toJsonString(page);
+    }
+
+    @Benchmark
+    public String toJsonStringUncached() throws JsonProcessingException {
+        return JsonUtil.mapper.writeValueAsString(page);
+    }
+
+    @Benchmark
+    public byte[] toJsonBytes() {
+        return JsonUtil.toJsonBytes(page);
+    }
+
+    @Benchmark
+    public OrderPage fromString() {
+        return JsonUtil.toJavaObject(json, OrderPage.class);
+    }
+
+    @Benchmark
+    public OrderPage fromStringUncached() throws JsonProcessingException {
+        return JsonUtil.mapper.readValue(json, OrderPage.class);
+    }
+
+    @Benchmark
+    public OrderPage fromBytes() {
+        return JsonUtil.toJavaObject(bytes, OrderPage.class);
+    }
+
+    @Benchmark
+    public Map<String, Object> toMap() {
+        return JsonUtil.toMap(json);
+    }
+
+    @Benchmark
+    public Map<String, Object> toMapFromObject() {
+        return JsonUtil.toMap((Object) page);
+    }
+
+    @Benchmark
+    public Map<String, Object> toMapFromObjectViaString() {
+        return JsonUtil.toMap(JsonUtil.toJsonString(page));
+    }
+
+    @Benchmark
+    public List<Object> toList() {
+        return JsonUtil.toList((Object) array);
+    }
+
+    @Benchmark
+    public List<Object> toListViaString() {
+        return JsonUtil.toList(JsonUtil.toJsonString(array));
+    }
+
+    @Benchmark
+    public OrderPage convert() {
+        return JsonUtil.toJavaObject(map, OrderPage.class);
+    }
+
+    @Benchmark
+    public OrderPage convertViaString() {
+        return JsonUtil.toJavaObject(JsonUtil.toJsonString(map), OrderPage.class);
+    }
+
+    @Benchmark
+    public OrderPage jsonCopy() {
+        return JsonUtil.jsonCopy(page, OrderPage.class);
+    }
+
+    @Benchmark
+    public OrderPage jsonCopyViaString() {
+        return JsonUtil.toJavaObject(JsonUtil.toJsonString(page), OrderPage.class);
+    }
+}
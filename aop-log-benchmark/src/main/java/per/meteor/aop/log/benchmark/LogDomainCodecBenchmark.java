@@ -0,0 +1,71 @@
+package per.meteor.aop.log.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import per.meteor.aop.log.common.codec.BinaryWriter;
+import per.meteor.aop.log.common.codec.LogDomainCodec;
+import per.meteor.aop.log.common.utils.JsonUtil;
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LogDomain 二进制编码与 JSON 的编解码对比
+ * <p>
+ * LogDomain 的时间字段按 12 小时制格式化，JSON 无法还原为 LogDomain，decodeJson 解析为 Map。
+ *
+ * @author meteor
+ * @date 2021-10-18 11:05
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LogDomainCodecBenchmark {
+
+    @Param({"256", "8192"})
+    private int fieldBytes;
+
+    private LogDomain log;
+    private byte[] binary;
+    private byte[] json;
+    private BinaryWriter writer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        log = BenchmarkPayloads.log(fieldBytes);
+        binary = LogDomainCodec.encode(log);
+        json = JsonUtil.toJsonBytes(log);
+        writer = new BinaryWriter(binary.length);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return LogDomainCodec.encode(log);
+    }
+
+    @Benchmark
+    public int encodeBinaryReused() {
+        writer.reset();
+        LogDomainCodec.encode(log, writer);
+        return writer.size();
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return JsonUtil.toJsonBytes(log);
+    }
+
+    @Benchmark
+    public LogDomain decodeBinary() {
+        return LogDomainCodec.decode(binary);
+    }
+
+    @Benchmark
+    public Map<String, Object> decodeJson() throws IOException {
+        return JsonUtil.reader(Map.class).readValue(json);
+    }
+}
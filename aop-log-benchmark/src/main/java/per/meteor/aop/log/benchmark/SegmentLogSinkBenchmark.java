@@ -0,0 +1,118 @@
+package per.meteor.aop.log.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import per.meteor.aop.log.common.codec.LogDomainCodec;
+import per.meteor.aop.log.config.SegmentSinkProperties;
+import per.meteor.aop.log.domain.LogDomain;
+import per.meteor.aop.log.sink.segment.MappedSegmentWriter;
+import per.meteor.aop.log.sink.segment.SegmentLogSink;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 分段文件输出的写入吞吐
+ * <p>
+ * 主结果为 条/秒(每次调用写入一批 {@link #BATCH_SIZE} 条)，辅助计数 bytes 为 字节/秒，除以 1048576 即 MB/s。
+ * sinkWrite 包含编码，append 只写入预先编码的记录，force 结尾的方法每批刷盘一次。
+ * 每轮迭代写入新的临时目录并在结束后删除，磁盘占用约为一轮的写入量。
+ *
+ * @author meteor
+ * @date 2021-10-25 15:00
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SegmentLogSinkBenchmark {
+
+    private static final int BATCH_SIZE = 64;
+
+    @Param({"256", "8192"})
+    private int fieldBytes;
+
+    private List<LogDomain> batch;
+    private byte[] record;
+    private Path directory;
+    private SegmentLogSink sink;
+    private MappedSegmentWriter writer;
+
+    /**
+     * 写入字节数，按 OPERATIONS 类型以速率输出
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Written {
+
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setupPayload() {
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(BenchmarkPayloads.log(fieldBytes));
+        }
+        record = LogDomainCodec.encode(batch.get(0));
+    }
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("segment-benchmark");
+        SegmentSinkProperties properties = new SegmentSinkProperties();
+        properties.setDirectory(directory.resolve("sink").toString());
+        // 只在切换分段时刷盘，需要刷盘的方法自行调用
+        properties.setForceInterval(0);
+        sink = new SegmentLogSink(properties);
+        writer = new MappedSegmentWriter(directory.resolve("writer"), properties.getSegmentSize());
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        sink.close();
+        writer.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void sinkWrite(Written written) throws IOException {
+        long before = sink.getStats().getBytes();
+        sink.write(batch);
+        written.bytes += sink.getStats().getBytes() - before;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void sinkWriteForce(Written written) throws IOException {
+        long before = sink.getStats().getBytes();
+        sink.write(batch);
+        sink.flush();
+        written.bytes += sink.getStats().getBytes() - before;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void append(Written written) throws IOException {
+        long before = writer.getBytesWritten();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            writer.append(record);
+        }
+        written.bytes += writer.getBytesWritten() - before;
+    }
+}
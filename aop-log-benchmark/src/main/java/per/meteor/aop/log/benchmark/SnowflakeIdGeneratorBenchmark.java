@@ -0,0 +1,47 @@
+package per.meteor.aop.log.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import per.meteor.aop.log.common.id.SnowflakeIdGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志 ID 生成吞吐量，单线程及多线程竞争同一个生成器
+ *
+ * @author meteor
+ * @date 2021-10-18 11:20
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnowflakeIdGeneratorBenchmark {
+
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+
+    @Benchmark
+    @Threads(1)
+    public long nextId() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long nextIdContended() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String nextLogId() {
+        return SnowflakeIdGenerator.toString(generator.nextId());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String nextSerialNumber() {
+        return generator.toSerialNumber(generator.nextId(), "00");
+    }
+}
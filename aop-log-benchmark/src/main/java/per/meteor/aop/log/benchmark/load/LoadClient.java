@@ -0,0 +1,117 @@
+package per.meteor.aop.log.benchmark.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个压测客户端：交替发送 GET 及 POST 请求，收到响应后立即发送下一个请求
+ * <p>
+ * 开始时间早于统计开始时间的请求只用于预热，不计入结果。
+ *
+ * @author meteor
+ * @date 2021-10-18 14:20
+ */
+public class LoadClient implements Runnable {
+
+    /** 可记录的最大延迟(微秒) **/
+    static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.SECONDS.toMicros(60);
+
+    private final URL queryUrl;
+    private final URL bodyUrl;
+    private final byte[] body;
+    private final long measureStartNanos;
+    private final long endNanos;
+    private final byte[] drainBuffer = new byte[4096];
+
+    private final Histogram queryLatency = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram bodyLatency = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private long errors;
+
+    public LoadClient(URL queryUrl, URL bodyUrl, byte[] body, long measureStartNanos, long endNanos) {
+        this.queryUrl = queryUrl;
+        this.bodyUrl = bodyUrl;
+        this.body = body;
+        this.measureStartNanos = measureStartNanos;
+        this.endNanos = endNanos;
+    }
+
+    @Override
+    public void run() {
+        long sequence = 0;
+        for (;;) {
+            long start = System.nanoTime();
+            if (start >= endNanos) {
+                return;
+            }
+            boolean post = (sequence++ & 1) == 1;
+            boolean success = post ? post() : get();
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            if (start >= measureStartNanos) {
+                (post ? bodyLatency : queryLatency).recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+                if (!success) {
+                    errors++;
+                }
+            }
+        }
+    }
+
+    private boolean get() {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) queryUrl.openConnection();
+            return complete(connection);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean post() {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) bodyUrl.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json;charset=UTF-8");
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            return complete(connection);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 读完响应体，连接才能回到 keep-alive 缓存中复用
+     */
+    private boolean complete(HttpURLConnection connection) throws IOException {
+        int code = connection.getResponseCode();
+        InputStream in = code < HttpURLConnection.HTTP_BAD_REQUEST ? connection.getInputStream()
+                : connection.getErrorStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                while (stream.read(drainBuffer) >= 0) {
+                    // pass
+                }
+            }
+        }
+        return code < HttpURLConnection.HTTP_MULT_CHOICE;
+    }
+
+    public Histogram getQueryLatency() {
+        return queryLatency;
+    }
+
+    public Histogram getBodyLatency() {
+        return bodyLatency;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,109 @@
+package per.meteor.aop.log.benchmark.load;
+
+import per.meteor.aop.log.common.utils.JsonUtil;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本机回环压测：每个场景在独立进程中启动应用并压测，汇总输出吞吐量、延迟分位数及 GC 统计
+ * <p>
+ * 用法: mvn -B -Pload verify -Dload.args="--clients=32 --duration=30"，
+ * 参数见 {@link LoadOptions}，结果同时写入 target/load-result.json。
+ *
+ * @author meteor
+ * @date 2021-10-18 15:00
+ */
+public class LoadHarness {
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        List<Map<String, Object>> results = new ArrayList<>(options.getScenarios().size());
+        for (String name : options.getScenarios()) {
+            LoadScenario scenario = LoadScenario.of(name);
+            System.out.printf("# 场景 %s: %d 个客户端, 预热 %ds, 统计 %ds%n", scenario.getName(),
+                    options.getClients(), options.getWarmup(), options.getDuration());
+            results.add(fork(scenario, options));
+        }
+        print(results);
+        Path output = Paths.get(options.getOutput());
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        Files.write(output, JsonUtil.toFormatJsonString(results).getBytes(StandardCharsets.UTF_8));
+        System.out.println("结果已保存到 " + output.toAbsolutePath());
+    }
+
+    private static Map<String, Object> fork(LoadScenario scenario, LoadOptions options)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-Dfile.encoding=UTF-8");
+        command.addAll(Arrays.asList(options.getJvmArgs().trim().split("\\s+")));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(LoadRun.class.getName());
+        command.addAll(options.toRunArgs());
+        command.add("--scenario=" + scenario.getName());
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        Map<String, Object> result = null;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(LoadRun.RESULT_PREFIX)) {
+                    result = JsonUtil.toMap(line.substring(LoadRun.RESULT_PREFIX.length()));
+                } else {
+                    System.out.println("  " + line);
+                }
+            }
+        }
+        int exitCode = process.waitFor();
+        if (result == null) {
+            throw new IllegalStateException("场景 " + scenario.getName() + " 未输出结果, 退出码 " + exitCode);
+        }
+        return result;
+    }
+
+    private static void print(List<Map<String, Object>> results) {
+        double baseline = 0;
+        for (Map<String, Object> result : results) {
+            if (LoadScenario.DISABLED.getName().equals(result.get("scenario"))) {
+                baseline = number(result, "throughput");
+            }
+        }
+        System.out.println();
+        System.out.printf("%-10s %10s %8s %7s | %8s %8s %8s | %8s %8s %8s | %5s %7s %9s%n",
+                "scenario", "req/s", "vs off", "errors", "get p50", "p99", "p99.9", "post p50", "p99", "p99.9",
+                "gc", "gc ms", "alloc MB/s");
+        for (Map<String, Object> result : results) {
+            double throughput = number(result, "throughput");
+            String relative = baseline > 0 ? String.format("%+.1f%%", (throughput / baseline - 1) * 100) : "-";
+            Map<String, Object> query = JsonUtil.toMap(result.get("query"));
+            Map<String, Object> body = JsonUtil.toMap(result.get("body"));
+            System.out.printf("%-10s %10.0f %8s %7d | %8.3f %8.3f %8.3f | %8.3f %8.3f %8.3f | %5d %7d %9.1f%n",
+                    result.get("scenario"), throughput, relative, (long) number(result, "errors"),
+                    number(query, "p50"), number(query, "p99"), number(query, "p999"),
+                    number(body, "p50"), number(body, "p99"), number(body, "p999"),
+                    (long) number(result, "gcCount"), (long) number(result, "gcTimeMs"),
+                    number(result, "allocatedMbPerSecond"));
+        }
+        System.out.println("延迟单位为毫秒, vs off 为相对关闭日志切面时的吞吐量变化");
+    }
+
+    private static double number(Map<String, Object> map, String key) {
+        Object value = map.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+}
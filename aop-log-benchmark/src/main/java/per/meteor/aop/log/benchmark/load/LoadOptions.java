@@ -0,0 +1,116 @@
+package per.meteor.aop.log.benchmark.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测参数，格式为 --name=value，未指定时使用默认值
+ *
+ * @author meteor
+ * @date 2021-10-18 14:10
+ */
+public class LoadOptions {
+
+    /** 并发客户端数 **/
+    private int clients = 32;
+    /** 预热时长(秒)，期间的请求不计入结果 **/
+    private int warmup = 10;
+    /** 统计时长(秒) **/
+    private int duration = 30;
+    /** POST 请求体的明细条数 **/
+    private int bodyRows = 10;
+    /** 依次运行的场景 **/
+    private List<String> scenarios = Arrays.asList(LoadScenario.names());
+    /** 每个场景独立进程的 JVM 参数 **/
+    private String jvmArgs = "-Xms512m -Xmx512m";
+    /** 结果文件 **/
+    private String output = "target/load-result.json";
+
+    public static LoadOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("参数格式应为 --name=value: " + arg);
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        LoadOptions options = new LoadOptions();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String value = entry.getValue();
+            switch (entry.getKey()) {
+                case "clients":
+                    options.clients = Integer.parseInt(value);
+                    break;
+                case "warmup":
+                    options.warmup = Integer.parseInt(value);
+                    break;
+                case "duration":
+                    options.duration = Integer.parseInt(value);
+                    break;
+                case "body-rows":
+                    options.bodyRows = Integer.parseInt(value);
+                    break;
+                case "scenarios":
+                    options.scenarios = Arrays.asList(value.split(","));
+                    break;
+                case "jvm-args":
+                    options.jvmArgs = value;
+                    break;
+                case "output":
+                    options.output = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + entry.getKey());
+            }
+        }
+        for (String scenario : options.scenarios) {
+            LoadScenario.of(scenario);
+        }
+        return options;
+    }
+
+    /**
+     * 传给场景进程的参数，不包含场景列表及 JVM 参数
+     *
+     * @return java.util.List<java.lang.String>
+     */
+    public List<String> toRunArgs() {
+        List<String> args = new ArrayList<>(4);
+        args.add("--clients=" + clients);
+        args.add("--warmup=" + warmup);
+        args.add("--duration=" + duration);
+        args.add("--body-rows=" + bodyRows);
+        return args;
+    }
+
+    public int getClients() {
+        return clients;
+    }
+
+    public int getWarmup() {
+        return warmup;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public int getBodyRows() {
+        return bodyRows;
+    }
+
+    public List<String> getScenarios() {
+        return scenarios;
+    }
+
+    public String getJvmArgs() {
+        return jvmArgs;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+}
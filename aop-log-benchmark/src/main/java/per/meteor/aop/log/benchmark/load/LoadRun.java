@@ -0,0 +1,170 @@
+package per.meteor.aop.log.benchmark.load;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import per.meteor.aop.log.benchmark.BenchmarkApplication;
+import per.meteor.aop.log.benchmark.BenchmarkPayloads;
+import per.meteor.aop.log.common.utils.JsonUtil;
+import per.meteor.aop.log.pipeline.LogPipeline;
+import per.meteor.aop.log.service.LogServiceAsync;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个压测场景，运行在独立进程中：以随机端口启动应用，在本机回环地址上压测，结果以一行 JSON 输出
+ * <p>
+ * 客户端与服务端在同一进程中，GC 及内存分配统计同时包含两者，场景之间的差值即为日志采集的开销。
+ *
+ * @author meteor
+ * @date 2021-10-18 14:35
+ */
+public class LoadRun {
+
+    static final String RESULT_PREFIX = "RESULT ";
+
+    public static void main(String[] args) throws Exception {
+        List<String> optionArgs = new ArrayList<>(args.length);
+        LoadScenario scenario = null;
+        for (String arg : args) {
+            if (arg.startsWith("--scenario=")) {
+                scenario = LoadScenario.of(arg.substring("--scenario=".length()));
+            } else {
+                optionArgs.add(arg);
+            }
+        }
+        if (scenario == null) {
+            throw new IllegalArgumentException("缺少参数 --scenario");
+        }
+        LoadOptions options = LoadOptions.parse(optionArgs.toArray(new String[0]));
+        // HttpURLConnection 默认每个地址只缓存 5 个 keep-alive 连接
+        System.setProperty("http.maxConnections", String.valueOf(options.getClients()));
+
+        ConfigurableApplicationContext context = BenchmarkApplication.start(
+                "--spring.main.web-application-type=servlet",
+                "--server.port=0",
+                "--server.tomcat.threads.max=" + Math.max(200, options.getClients() * 2),
+                scenario.getApplicationArg());
+        try {
+            Map<String, Object> result = run(context, scenario, options);
+            System.out.println(RESULT_PREFIX + JsonUtil.toJsonString(result));
+        } finally {
+            context.close();
+        }
+        System.exit(0);
+    }
+
+    private static Map<String, Object> run(ConfigurableApplicationContext context, LoadScenario scenario,
+                                           LoadOptions options) throws Exception {
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        URL queryUrl = new URL("http://127.0.0.1:" + port + "/test01/male?name=meteor&age=18");
+        URL bodyUrl = new URL("http://127.0.0.1:" + port + "/test02?name=meteor");
+        byte[] body = JsonUtil.toJsonBytes(BenchmarkPayloads.body(options.getBodyRows()));
+
+        long now = System.nanoTime();
+        long measureStart = now + TimeUnit.SECONDS.toNanos(options.getWarmup());
+        long end = measureStart + TimeUnit.SECONDS.toNanos(options.getDuration());
+        List<LoadClient> clients = new ArrayList<>(options.getClients());
+        List<Thread> threads = new ArrayList<>(options.getClients());
+        for (int i = 0; i < options.getClients(); i++) {
+            LoadClient client = new LoadClient(queryUrl, bodyUrl, body, measureStart, end);
+            Thread thread = new Thread(client, "load-client-" + i);
+            clients.add(client);
+            threads.add(thread);
+            thread.start();
+        }
+
+        LogPipeline pipeline = context.getBean(LogServiceAsync.class).getPipeline();
+        TimeUnit.NANOSECONDS.sleep(measureStart - System.nanoTime());
+        JvmSnapshot before = JvmSnapshot.take();
+        long publishedBefore = pipeline.getPublishedCount();
+        long droppedBefore = pipeline.getDroppedCount();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        JvmSnapshot after = JvmSnapshot.take();
+        double seconds = (after.nanos - before.nanos) / 1e9;
+
+        Histogram query = new Histogram(LoadClient.HIGHEST_TRACKABLE_MICROS, 3);
+        Histogram posted = new Histogram(LoadClient.HIGHEST_TRACKABLE_MICROS, 3);
+        long errors = 0;
+        for (LoadClient client : clients) {
+            query.add(client.getQueryLatency());
+            posted.add(client.getBodyLatency());
+            errors += client.getErrors();
+        }
+        long requests = query.getTotalCount() + posted.getTotalCount();
+
+        Map<String, Object> result = new LinkedHashMap<>(16);
+        result.put("scenario", scenario.getName());
+        result.put("clients", options.getClients());
+        result.put("bodyRows", options.getBodyRows());
+        result.put("seconds", seconds);
+        result.put("requests", requests);
+        result.put("errors", errors);
+        result.put("throughput", requests / seconds);
+        result.put("query", latency(query));
+        result.put("body", latency(posted));
+        result.put("gcCount", after.gcCount - before.gcCount);
+        result.put("gcTimeMs", after.gcTimeMillis - before.gcTimeMillis);
+        result.put("allocatedMbPerSecond", (after.allocatedBytes - before.allocatedBytes) / seconds / (1 << 20));
+        result.put("heapUsedMb", after.heapUsedBytes / (double) (1 << 20));
+        result.put("logsPublished", pipeline.getPublishedCount() - publishedBefore);
+        result.put("logsDropped", pipeline.getDroppedCount() - droppedBefore);
+        return result;
+    }
+
+    private static Map<String, Object> latency(Histogram histogram) {
+        Map<String, Object> latency = new LinkedHashMap<>(8);
+        latency.put("count", histogram.getTotalCount());
+        latency.put("p50", millis(histogram.getValueAtPercentile(50)));
+        latency.put("p90", millis(histogram.getValueAtPercentile(90)));
+        latency.put("p99", millis(histogram.getValueAtPercentile(99)));
+        latency.put("p999", millis(histogram.getValueAtPercentile(99.9)));
+        latency.put("max", millis(histogram.getMaxValue()));
+        latency.put("mean", histogram.getMean() / 1000);
+        return latency;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    /**
+     * 进程级的 GC 次数、耗时及所有存活线程的累计分配字节数
+     */
+    private static final class JvmSnapshot {
+        long nanos;
+        long gcCount;
+        long gcTimeMillis;
+        long allocatedBytes;
+        long heapUsedBytes;
+
+        static JvmSnapshot take() {
+            JvmSnapshot snapshot = new JvmSnapshot();
+            snapshot.nanos = System.nanoTime();
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                snapshot.gcCount += Math.max(0, gc.getCollectionCount());
+                snapshot.gcTimeMillis += Math.max(0, gc.getCollectionTime());
+            }
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                long[] allocated = ((com.sun.management.ThreadMXBean) threads)
+                        .getThreadAllocatedBytes(threads.getAllThreadIds());
+                for (long bytes : allocated) {
+                    snapshot.allocatedBytes += Math.max(0, bytes);
+                }
+            }
+            snapshot.heapUsedBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package per.meteor.aop.log.benchmark.load;
+
+/**
+ * 压测场景：关闭日志切面作为基准，以及两种采集方式
+ *
+ * @author meteor
+ * @date 2021-10-18 14:05
+ */
+public enum LoadScenario {
+
+    /** 不创建日志切面 **/
+    DISABLED("--meteor.log.enabled=false"),
+    /** 请求线程序列化 **/
+    EAGER("--meteor.log.capture.mode=eager"),
+    /** 消费线程序列化 **/
+    DEFERRED("--meteor.log.capture.mode=deferred");
+
+    private final String applicationArg;
+
+    LoadScenario(String applicationArg) {
+        this.applicationArg = applicationArg;
+    }
+
+    public String getApplicationArg() {
+        return applicationArg;
+    }
+
+    public String getName() {
+        return name().toLowerCase();
+    }
+
+    public static LoadScenario of(String name) {
+        for (LoadScenario scenario : values()) {
+            if (scenario.getName().equalsIgnoreCase(name.trim())) {
+                return scenario;
+            }
+        }
+        throw new IllegalArgumentException("未知场景: " + name);
+    }
+
+    public static String[] names() {
+        LoadScenario[] values = values();
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].getName();
+        }
+        return names;
+    }
+}
@@ -0,0 +1,25 @@
+package per.meteor.aop.log.aspect;
+
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 异步分派时读取 Callable、WebAsyncTask、DeferredResult 的最终结果，
+ * 包括 WebAsyncTask 超时回调给出的结果及超时异常
+ *
+ * @author meteor
+ * @date 2021-10-23 10:10
+ */
+public class AsyncDispatchInterceptor implements HandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            AsyncLogSupport.completeFromDispatch(request);
+        }
+        return true;
+    }
+}
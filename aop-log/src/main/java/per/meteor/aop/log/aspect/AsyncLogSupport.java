@@ -0,0 +1,200 @@
+package per.meteor.aop.log.aspect;
+
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Spring MVC 异步返回值的日志采集
+ * <p>
+ * 方法返回 CompletionStage、ListenableFuture、DeferredResult、Callable 或 WebAsyncTask 时，
+ * 返回的只是占位对象，结果及异常在之后由其他线程产生。这里在结果产生时回调，回调只触发一次：
+ * <ul>
+ *     <li>CompletionStage、ListenableFuture 直接注册完成回调，CompletionException 取其 cause</li>
+ *     <li>DeferredResult、Callable、WebAsyncTask 只能作为控制器返回值，其回调方法(onCompletion 等)只保存一个，
+ *     注册会覆盖业务代码的回调。这类结果统一由 {@link AsyncDispatchInterceptor} 在异步分派时从 {@link WebAsyncManager} 读取，
+ *     即最终返回给客户端的结果：超时时任务被中断产生的结果与 WebAsyncTask 超时回调给出的结果相互竞争，
+ *     只有分派的结果是确定的。同时通过 WebAsyncManager 注册拦截器，识别没有分派就结束的请求。没有 Servlet 请求时不处理</li>
+ * </ul>
+ * 容器报告的错误(通常是客户端断开)及没有产生结果就结束的请求视为放弃，只记录耗时，不记录日志。
+ * <p>
+ * Servlet 请求在异步结果产生后可能已经被容器回收，请求相关的信息需要在调用时采集。
+ * Mono/Flux 由 {@link ReactiveLogSupport} 处理。
+ *
+ * @author meteor
+ * @date 2021-10-22 09:30
+ */
+final class AsyncLogSupport {
+
+    /** 请求属性中保存本次调用终止状态的键 **/
+    private static final String TERMINAL_ATTRIBUTE = AsyncLogSupport.class.getName() + ".TERMINAL";
+
+    /**
+     * 异步结果回调
+     */
+    @FunctionalInterface
+    interface Completion {
+
+        /**
+         * @param value 异步结果
+         * @param error 异常，正常结束时为 null
+         * @param abandoned 请求是否在产生结果前结束
+         */
+        void complete(Object value, Throwable error, boolean abandoned);
+    }
+
+    /**
+     * 是否为可以处理的异步返回值
+     *
+     * @param result 方法返回值
+     * @return boolean
+     */
+    boolean isAsync(Object result) {
+        if (result instanceof CompletionStage || result instanceof ListenableFuture) {
+            return true;
+        }
+        return (result instanceof DeferredResult || result instanceof Callable || result instanceof WebAsyncTask)
+                && currentRequest() != null;
+    }
+
+    /**
+     * 注册回调，返回值本身不变
+     *
+     * @param result 通过 {@link #isAsync(Object)} 判断的方法返回值
+     * @param completion 异步结果回调
+     */
+    void attach(Object result, Completion completion) {
+        Terminal terminal = new Terminal(completion);
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((value, e) -> terminal.complete(value, unwrap(e)));
+        } else if (result instanceof ListenableFuture) {
+            ((ListenableFuture<?>) result).addCallback(value -> terminal.complete(value, null),
+                    e -> terminal.complete(null, e));
+        } else {
+            HttpServletRequest request = currentRequest();
+            WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+            request.setAttribute(TERMINAL_ATTRIBUTE, terminal);
+            if (result instanceof DeferredResult) {
+                asyncManager.registerDeferredResultInterceptor(terminal, new DeferredResultInterceptor(terminal));
+            } else {
+                asyncManager.registerCallableInterceptor(terminal, new CallableInterceptor(terminal));
+            }
+        }
+    }
+
+    /**
+     * 异步分派时读取分派的结果，由 {@link AsyncDispatchInterceptor} 调用
+     *
+     * @param request 异步分派的请求
+     */
+    static void completeFromDispatch(HttpServletRequest request) {
+        Object terminal = request.getAttribute(TERMINAL_ATTRIBUTE);
+        if (terminal instanceof Terminal) {
+            WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+            if (asyncManager.hasConcurrentResult()) {
+                ((Terminal) terminal).completeWith(asyncManager.getConcurrentResult());
+            }
+        }
+    }
+
+    private static HttpServletRequest currentRequest() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        return requestAttributes instanceof ServletRequestAttributes
+                ? ((ServletRequestAttributes) requestAttributes).getRequest() : null;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * 单次调用的终止状态，放弃后仍可能收到结果，只回调第一次
+     */
+    private static final class Terminal {
+
+        private final Completion completion;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        Terminal(Completion completion) {
+            this.completion = completion;
+        }
+
+        void complete(Object value, Throwable error) {
+            if (done.compareAndSet(false, true)) {
+                completion.complete(value, error, false);
+            }
+        }
+
+        void abandon() {
+            if (done.compareAndSet(false, true)) {
+                completion.complete(null, null, true);
+            }
+        }
+
+        /**
+         * 分派的异步结果，setErrorResult、Callable 抛出的异常及超时异常同样以结果的形式传入
+         */
+        void completeWith(Object concurrentResult) {
+            if (concurrentResult instanceof Throwable) {
+                complete(null, (Throwable) concurrentResult);
+            } else {
+                complete(concurrentResult, null);
+            }
+        }
+    }
+
+    private static final class DeferredResultInterceptor implements DeferredResultProcessingInterceptor {
+
+        private final Terminal terminal;
+
+        DeferredResultInterceptor(Terminal terminal) {
+            this.terminal = terminal;
+        }
+
+        @Override
+        public <T> boolean handleError(NativeWebRequest request, DeferredResult<T> deferredResult, Throwable t) {
+            // 容器报告的错误随后会作为错误结果分派，这里先标记为放弃
+            terminal.abandon();
+            return true;
+        }
+
+        @Override
+        public <T> void afterCompletion(NativeWebRequest request, DeferredResult<T> deferredResult) {
+            terminal.abandon();
+        }
+    }
+
+    private static final class CallableInterceptor implements CallableProcessingInterceptor {
+
+        private final Terminal terminal;
+
+        CallableInterceptor(Terminal terminal) {
+            this.terminal = terminal;
+        }
+
+        @Override
+        public <T> Object handleError(NativeWebRequest request, Callable<T> task, Throwable t) {
+            terminal.abandon();
+            return RESULT_NONE;
+        }
+
+        @Override
+        public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+            terminal.abandon();
+        }
+    }
+}
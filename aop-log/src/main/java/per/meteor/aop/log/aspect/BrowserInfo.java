@@ -0,0 +1,58 @@
+package per.meteor.aop.log.aspect;
+
+import eu.bitwalker.useragentutils.Browser;
+import eu.bitwalker.useragentutils.UserAgent;
+
+/**
+ * User-Agent 解析结果
+ *
+ * @author meteor
+ * @date 2021-10-10 09:50
+ */
+public final class BrowserInfo {
+
+    private final String userAgent;
+    private final String browserType;
+    private final String browserName;
+    private final String browserVersion;
+    private final String operatingSystem;
+
+    private BrowserInfo(UserAgent userAgent) {
+        this.userAgent = userAgent.toString();
+        this.browserVersion = userAgent.getBrowserVersion() == null ? null : userAgent.getBrowserVersion().getVersion();
+        this.operatingSystem = userAgent.getOperatingSystem().getName();
+        Browser browser = userAgent.getBrowser();
+        this.browserName = browser == null ? null : browser.getName();
+        this.browserType = browser == null ? null : browser.getBrowserType().getName();
+    }
+
+    /**
+     * 解析 User-Agent 请求头
+     *
+     * @param header User-Agent 请求头
+     * @return per.meteor.aop.log.aspect.BrowserInfo
+     */
+    public static BrowserInfo parse(String header) {
+        return new BrowserInfo(UserAgent.parseUserAgentString(header));
+    }
+
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    public String getBrowserType() {
+        return browserType;
+    }
+
+    public String getBrowserName() {
+        return browserName;
+    }
+
+    public String getBrowserVersion() {
+        return browserVersion;
+    }
+
+    public String getOperatingSystem() {
+        return operatingSystem;
+    }
+}
@@ -0,0 +1,89 @@
+package per.meteor.aop.log.aspect;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WebFlux 请求，只读取 {@link ServerWebExchange} 中已解析的数据，不会阻塞事件循环线程
+ *
+ * @author meteor
+ * @date 2021-10-21 10:05
+ */
+public final class ExchangeLogRequest implements LogRequest {
+
+    private final ServerWebExchange exchange;
+    private final ServerHttpRequest request;
+
+    private ExchangeLogRequest(ServerWebExchange exchange) {
+        this.exchange = exchange;
+        this.request = exchange.getRequest();
+    }
+
+    /**
+     * @param exchange WebFlux 请求
+     * @return per.meteor.aop.log.aspect.LogRequest exchange 为 null 时返回 null
+     */
+    public static LogRequest of(ServerWebExchange exchange) {
+        return exchange == null ? null : new ExchangeLogRequest(exchange);
+    }
+
+    @Override
+    public String getMethod() {
+        return request.getMethodValue();
+    }
+
+    @Override
+    public String getPath() {
+        return request.getPath().value();
+    }
+
+    @Override
+    public String getRemoteAddr() {
+        InetSocketAddress address = request.getRemoteAddress();
+        if (address == null) {
+            return null;
+        }
+        return address.getAddress() == null ? address.getHostString() : address.getAddress().getHostAddress();
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return request.getHeaders().getFirst(name);
+    }
+
+    @Override
+    public void writeHeaders(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        for (Map.Entry<String, List<String>> header : request.getHeaders().entrySet()) {
+            if (!header.getValue().isEmpty()) {
+                generator.writeStringField(header.getKey(), header.getValue().get(0));
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void writeParameters(JsonGenerator generator) throws IOException {
+        Map<String, Object> pathParams = exchange.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        generator.writeStartObject();
+        for (Map.Entry<String, List<String>> param : request.getQueryParams().entrySet()) {
+            if (!param.getValue().isEmpty() && (pathParams == null || !pathParams.containsKey(param.getKey()))) {
+                generator.writeStringField(param.getKey(), param.getValue().get(0));
+            }
+        }
+        if (pathParams != null) {
+            for (Map.Entry<String, Object> entry : pathParams.entrySet()) {
+                generator.writeFieldName(entry.getKey());
+                generator.writeObject(entry.getValue());
+            }
+        }
+        generator.writeEndObject();
+    }
+}
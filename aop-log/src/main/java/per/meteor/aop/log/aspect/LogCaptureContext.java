@@ -0,0 +1,153 @@
+package per.meteor.aop.log.aspect;
+
+import org.aspectj.lang.JoinPoint;
+import per.meteor.aop.log.common.enums.CaptureMode;
+import per.meteor.aop.log.common.utils.CappedJsonSerializer;
+import per.meteor.aop.log.common.utils.CappedJsonSerializer.JsonWriteAction;
+import per.meteor.aop.log.config.LogCaptureProperties;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * 单次切面调用的采集上下文
+ * <p>
+ * 每次调用只创建一次，沿 LogDomain 的构建链传递：请求对象、方法元数据只获取一次，
+ * 请求头、请求参数直接流式写为 JSON，不再创建中间 HashMap，写出的字节数受 {@link CappedJsonSerializer} 限制。
+ * 上下文及其中的缓冲区按线程复用，嵌套调用时临时创建新的实例。
+ *
+ * @author meteor
+ * @date 2021-10-11 09:30
+ */
+public final class LogCaptureContext implements AutoCloseable {
+
+    private static final ThreadLocal<LogCaptureContext> LOCAL = ThreadLocal.withInitial(LogCaptureContext::new);
+    /** 超过该大小的缓冲区不再保留，避免个别大请求长期占用线程内存 **/
+    private static final int MAX_RETAINED_CHARS = 64 * 1024;
+    private static final int INITIAL_CHARS = 1024;
+
+    private final CappedJsonSerializer serializer = new CappedJsonSerializer(0, 0);
+    private StringBuilder textBuffer = new StringBuilder(INITIAL_CHARS);
+
+    private boolean inUse;
+    private JoinPoint joinPoint;
+    private MethodDescriptor descriptor;
+    private LogRequest request;
+    private LocalDateTime requestTime;
+    private long durationNanos;
+    private CaptureMode captureMode;
+
+    private LogCaptureContext() {
+    }
+
+    /**
+     * 获取当前线程的采集上下文，使用完毕后需要调用 {@link #close()}
+     *
+     * @param joinPoint 切点
+     * @param descriptor 方法元数据
+     * @param request 当前请求，无法获取时为 null
+     * @param captureMode 请求参数、响应结果的采集方式
+     * @param properties 采集配置
+     * @return per.meteor.aop.log.aspect.LogCaptureContext
+     */
+    public static LogCaptureContext open(JoinPoint joinPoint, MethodDescriptor descriptor, LogRequest request,
+                                         CaptureMode captureMode, LogCaptureProperties properties) {
+        LogCaptureContext context = LOCAL.get();
+        if (context.inUse) {
+            context = new LogCaptureContext();
+        }
+        context.inUse = true;
+        context.joinPoint = joinPoint;
+        context.descriptor = descriptor;
+        context.request = request;
+        context.captureMode = captureMode;
+        context.serializer.limit(properties.getMaxFieldBytes(), properties.getSizeEstimateCeiling());
+        return context;
+    }
+
+    @Override
+    public void close() {
+        joinPoint = null;
+        descriptor = null;
+        request = null;
+        requestTime = null;
+        durationNanos = 0;
+        captureMode = null;
+        if (textBuffer.capacity() > MAX_RETAINED_CHARS) {
+            textBuffer = new StringBuilder(INITIAL_CHARS);
+        }
+        textBuffer.setLength(0);
+        inUse = false;
+    }
+
+    /**
+     * 使用复用的缓冲区写出 JSON 字符串，超出单个字段的大小限制时截断
+     *
+     * @param action 写出操作
+     * @return java.lang.String
+     * @throws IOException 写出失败
+     */
+    public String writeJson(JsonWriteAction action) throws IOException {
+        return serializer.write(action);
+    }
+
+    /**
+     * 序列化对象，超出单个字段的大小限制时截断，失败时返回空字符串
+     *
+     * @param value 对象
+     * @return java.lang.String
+     */
+    public String writeValue(Object value) {
+        return serializer.writeValue(value);
+    }
+
+    /**
+     * 复用的文本缓冲区，每次获取时清空
+     * @return java.lang.StringBuilder
+     */
+    public StringBuilder textBuffer() {
+        textBuffer.setLength(0);
+        return textBuffer;
+    }
+
+    public JoinPoint getJoinPoint() {
+        return joinPoint;
+    }
+
+    public MethodDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    public LogRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * 设置方法调用的开始时间及耗时
+     *
+     * @param requestTime 开始时间
+     * @param durationNanos 耗时(纳秒)
+     * @return per.meteor.aop.log.aspect.LogCaptureContext
+     */
+    public LogCaptureContext timing(LocalDateTime requestTime, long durationNanos) {
+        this.requestTime = requestTime;
+        this.durationNanos = durationNanos;
+        return this;
+    }
+
+    public LocalDateTime getRequestTime() {
+        return requestTime;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * 是否由日志消费线程延迟序列化请求参数和响应结果
+     * @return boolean
+     */
+    public boolean isDeferred() {
+        return captureMode == CaptureMode.DEFERRED;
+    }
+}
@@ -0,0 +1,172 @@
+package per.meteor.aop.log.aspect;
+
+import org.reactivestreams.Subscription;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoOperator;
+import reactor.util.context.Context;
+
+/**
+ * WebFlux 没有与请求线程绑定的 RequestContextHolder，这里以两种方式暴露当前请求：
+ * <ul>
+ *     <li>写入 Reactor Context，切面在订阅 Mono/Flux 返回值时读取</li>
+ *     <li>在可能调用控制器方法的同步区间内写入线程变量，供返回普通对象的方法读取</li>
+ * </ul>
+ * WebFlux 在两个位置同步调用控制器方法：不需要读取请求体时在订阅过滤器链的调用栈中，需要读取请求体时在请求体的
+ * onNext/onComplete 信号中。前者通过包装过滤器链的订阅，后者通过包装请求体的订阅者，在调用期间设置线程变量并在结束后恢复。
+ * 表单及 multipart 参数由 exchange 自行读取原始请求体，不在该区间内，此时同步返回的方法取不到请求信息。
+ *
+ * @author meteor
+ * @date 2021-10-21 10:30
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnProperty(prefix = "meteor.log", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class LogExchangeFilter implements WebFilter {
+
+    /** Reactor Context 中保存当前请求的键 **/
+    static final Class<ServerWebExchange> EXCHANGE_KEY = ServerWebExchange.class;
+
+    private static final ThreadLocal<ServerWebExchange> CURRENT = new ThreadLocal<>();
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ScopedRequest request = new ScopedRequest(exchange.getRequest());
+        ServerWebExchange scoped = exchange.mutate().request(request).build();
+        request.exchange = scoped;
+        return new ScopedMono(chain.filter(scoped).contextWrite(context -> context.put(EXCHANGE_KEY, scoped)), scoped);
+    }
+
+    /**
+     * 当前线程正在处理的请求，只在同步调用控制器方法期间有值
+     *
+     * @return org.springframework.web.server.ServerWebExchange 不在请求处理区间内时为 null
+     */
+    static ServerWebExchange currentExchange() {
+        return CURRENT.get();
+    }
+
+    private static ServerWebExchange enter(ServerWebExchange exchange) {
+        ServerWebExchange previous = CURRENT.get();
+        CURRENT.set(exchange);
+        return previous;
+    }
+
+    private static void exit(ServerWebExchange previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * 订阅过滤器链期间设置当前请求
+     */
+    private static final class ScopedMono extends MonoOperator<Void, Void> {
+
+        private final ServerWebExchange exchange;
+
+        ScopedMono(Mono<Void> source, ServerWebExchange exchange) {
+            super(source);
+            this.exchange = exchange;
+        }
+
+        @Override
+        public void subscribe(CoreSubscriber<? super Void> actual) {
+            ServerWebExchange previous = enter(exchange);
+            try {
+                source.subscribe(actual);
+            } finally {
+                exit(previous);
+            }
+        }
+    }
+
+    /**
+     * 请求体的各个信号传递期间设置当前请求
+     */
+    private static final class ScopedRequest extends ServerHttpRequestDecorator {
+
+        private ServerWebExchange exchange;
+
+        ScopedRequest(ServerHttpRequest delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Flux<DataBuffer> getBody() {
+            return new FluxOperator<DataBuffer, DataBuffer>(super.getBody()) {
+                @Override
+                public void subscribe(CoreSubscriber<? super DataBuffer> actual) {
+                    source.subscribe(new ScopedSubscriber<>(actual, exchange));
+                }
+            };
+        }
+    }
+
+    private static final class ScopedSubscriber<T> implements CoreSubscriber<T> {
+
+        private final CoreSubscriber<? super T> actual;
+        private final ServerWebExchange exchange;
+
+        ScopedSubscriber(CoreSubscriber<? super T> actual, ServerWebExchange exchange) {
+            this.actual = actual;
+            this.exchange = exchange;
+        }
+
+        @Override
+        public Context currentContext() {
+            return actual.currentContext();
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            actual.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(T value) {
+            ServerWebExchange previous = enter(exchange);
+            try {
+                actual.onNext(value);
+            } finally {
+                exit(previous);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            ServerWebExchange previous = enter(exchange);
+            try {
+                actual.onError(error);
+            } finally {
+                exit(previous);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            ServerWebExchange previous = enter(exchange);
+            try {
+                actual.onComplete();
+            } finally {
+                exit(previous);
+            }
+        }
+    }
+}
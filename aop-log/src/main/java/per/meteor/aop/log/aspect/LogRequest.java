@@ -0,0 +1,56 @@
+package per.meteor.aop.log.aspect;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * 切面采集所需的请求信息，屏蔽 Servlet 请求与 WebFlux 请求的差异
+ *
+ * @author meteor
+ * @date 2021-10-21 09:40
+ */
+public interface LogRequest {
+
+    /**
+     * 请求方式
+     * @return java.lang.String
+     */
+    String getMethod();
+
+    /**
+     * 请求路径，不含查询参数
+     * @return java.lang.String
+     */
+    String getPath();
+
+    /**
+     * 客户端地址
+     * @return java.lang.String
+     */
+    String getRemoteAddr();
+
+    /**
+     * 获取请求头，同名请求头有多个时取第一个
+     *
+     * @param name 请求头名称
+     * @return java.lang.String
+     */
+    String getHeader(String name);
+
+    /**
+     * 将全部请求头写为 JSON 对象
+     *
+     * @param generator JSON 输出
+     * @throws IOException 写出失败
+     */
+    void writeHeaders(JsonGenerator generator) throws IOException;
+
+    /**
+     * 将查询参数及路径参数写为 JSON 对象，同名时以路径参数为准
+     *
+     * @param generator JSON 输出
+     * @throws IOException 写出失败
+     */
+    void writeParameters(JsonGenerator generator) throws IOException;
+}
@@ -0,0 +1,303 @@
+package per.meteor.aop.log.aspect;
+
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.util.ClassUtils;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.multipart.MultipartFile;
+import per.meteor.aop.log.common.annotations.OperationLog;
+import per.meteor.aop.log.common.enums.CaptureMode;
+import per.meteor.aop.log.common.enums.ModuleType;
+import per.meteor.aop.log.common.enums.OperationType;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 切点方法的元数据，首次调用时解析一次，后续请求直接复用
+ *
+ * @author meteor
+ * @date 2021-10-09 10:15
+ */
+public final class MethodDescriptor {
+
+    /** 参数不需要过滤 **/
+    private static final byte KEEP = 0;
+    /** 参数声明类型即为需要过滤的类型 **/
+    private static final byte FILTER = 1;
+    /** 需要根据运行时的参数值判断 **/
+    private static final byte CHECK = 2;
+
+    /** WebFlux 请求对象及 Mono/Flux 参数(如 Mono 类型的请求体)，classpath 中存在时过滤 **/
+    private static final String[] REACTIVE_FILTER_TYPES = {
+            "org.springframework.web.server.ServerWebExchange",
+            "org.springframework.http.server.reactive.ServerHttpRequest",
+            "org.springframework.http.server.reactive.ServerHttpResponse",
+            "org.reactivestreams.Publisher"
+    };
+    private static final Class<?>[] FILTER_TYPES = filterTypes();
+
+    private final Method method;
+    private final Class<?> targetClass;
+    private final String methodPath;
+    private final String methodKey;
+    private final OperationLog operationLog;
+    private final String[] parameterNames;
+    private final byte[] parameterFilters;
+    private final CaptureMode captureMode;
+    private final Class<?>[] mutableTypes;
+    private final boolean sampled;
+    private final boolean exceptionLogged;
+
+    private MethodDescriptor(MethodSignature signature, Class<?> targetClass, boolean exceptionLogged) {
+        this.method = signature.getMethod();
+        this.targetClass = targetClass;
+        this.methodPath = targetClass.getName() + "." + method.getName();
+        this.methodKey = methodKey(methodPath, method);
+        this.exceptionLogged = exceptionLogged;
+        this.operationLog = method.getAnnotation(OperationLog.class);
+        this.captureMode = operationLog == null ? CaptureMode.DEFAULT : operationLog.captureMode();
+        this.mutableTypes = operationLog == null ? new Class<?>[0] : operationLog.mutableTypes();
+        this.sampled = operationLog != null && (operationLog.sampleRate() < 1 || operationLog.maxPerSecond() > 0);
+
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        String[] names = signature.getParameterNames();
+        this.parameterNames = new String[parameterTypes.length];
+        this.parameterFilters = new byte[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameterNames[i] = names != null && names.length == parameterTypes.length ? names[i] : "arg" + i;
+            parameterFilters[i] = classify(parameterTypes[i]);
+        }
+    }
+
+    /**
+     * 类名.方法名(参数类型)，重载的方法各自独立采样、统计耗时及汇总
+     */
+    private static String methodKey(String methodPath, Method method) {
+        StringBuilder key = new StringBuilder(methodPath.length() + 32).append(methodPath).append('(');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                key.append(',');
+            }
+            key.append(parameterTypes[i].getSimpleName());
+        }
+        return key.append(')').toString();
+    }
+
+    static MethodDescriptor of(MethodSignature signature, Class<?> targetClass, boolean exceptionLogged) {
+        return new MethodDescriptor(signature, targetClass, exceptionLogged);
+    }
+
+    /**
+     * 按参数下标组装参数名与参数值，过滤文件、请求响应及校验结果对象
+     *
+     * @param args 参数值
+     * @return java.util.Map<java.lang.String,java.lang.Object>
+     */
+    public Map<String, Object> argsToMap(Object[] args) {
+        Map<String, Object> argsMap = new LinkedHashMap<>(parameterNames.length << 1);
+        int count = Math.min(args.length, parameterNames.length);
+        for (int i = 0; i < count; i++) {
+            if (!isFiltered(i, args[i])) {
+                argsMap.put(parameterNames[i], args[i]);
+            }
+        }
+        return argsMap;
+    }
+
+    public int getParameterCount() {
+        return parameterNames.length;
+    }
+
+    public String getParameterName(int index) {
+        return parameterNames[index];
+    }
+
+    /**
+     * 判断下标为 index 的参数是否需要过滤
+     *
+     * @param index 参数下标
+     * @param arg 参数值
+     * @return boolean
+     */
+    public boolean isFiltered(int index, Object arg) {
+        byte filter = parameterFilters[index];
+        return filter == FILTER || (filter == CHECK && arg != null && isFilterObject(arg));
+    }
+
+    /**
+     * 根据参数声明类型预先判断是否需要过滤
+     *
+     * @param type 参数声明类型
+     * @return byte
+     */
+    private static byte classify(Class<?> type) {
+        if (type.isPrimitive()) {
+            return KEEP;
+        }
+        if (type.isArray() || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) {
+            return CHECK;
+        }
+        for (Class<?> filterType : FILTER_TYPES) {
+            if (filterType.isAssignableFrom(type)) {
+                return FILTER;
+            }
+            if (type.isAssignableFrom(filterType)) {
+                // Object、ServletRequest 等父类型，运行时才能确定
+                return CHECK;
+            }
+        }
+        return KEEP;
+    }
+
+    /**
+     * 判断是否需要过滤的对象。
+     *
+     * @param o 对象信息。
+     * @return 如果是需要过滤的对象，则返回true；否则返回false。
+     */
+    @SuppressWarnings("rawtypes")
+    static boolean isFilterObject(final Object o) {
+        Class<?> clazz = o.getClass();
+        if (clazz.isArray()) {
+            return clazz.getComponentType().isAssignableFrom(MultipartFile.class);
+        } else if (Collection.class.isAssignableFrom(clazz)) {
+            Collection collection = (Collection) o;
+            Iterator iterator = collection.iterator();
+            if (iterator.hasNext()) {
+                return iterator.next() instanceof MultipartFile;
+            }
+        } else if (Map.class.isAssignableFrom(clazz)) {
+            Map map = (Map) o;
+            Iterator iterator = map.entrySet().iterator();
+            if (iterator.hasNext()) {
+                Map.Entry entry = (Map.Entry) iterator.next();
+                return entry.getValue() instanceof MultipartFile;
+            }
+        }
+        for (Class<?> filterType : FILTER_TYPES) {
+            if (filterType.isInstance(o)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Class<?>[] filterTypes() {
+        List<Class<?>> types = new ArrayList<>(Arrays.asList(MultipartFile.class, HttpServletRequest.class,
+                HttpServletResponse.class, BindingResult.class));
+        ClassLoader classLoader = MethodDescriptor.class.getClassLoader();
+        for (String name : REACTIVE_FILTER_TYPES) {
+            if (ClassUtils.isPresent(name, classLoader)) {
+                types.add(ClassUtils.resolveClassName(name, classLoader));
+            }
+        }
+        return types.toArray(new Class<?>[0]);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public Class<?> getTargetClass() {
+        return targetClass;
+    }
+
+    /**
+     * 类名.方法名，写入日志的 requestMethodPath
+     * @return java.lang.String
+     */
+    public String getMethodPath() {
+        return methodPath;
+    }
+
+    /**
+     * 类名.方法名(参数简单类型)，区分重载方法，只用于采样器、耗时统计及分钟汇总的键，不写入日志
+     * @return java.lang.String
+     */
+    public String getMethodKey() {
+        return methodKey;
+    }
+
+    /**
+     * 方法上的 {@link OperationLog} 注解，未标注时为 null
+     * @return per.meteor.aop.log.common.annotations.OperationLog
+     */
+    public OperationLog getOperationLog() {
+        return operationLog;
+    }
+
+    public ModuleType getModule() {
+        return operationLog == null ? null : operationLog.module();
+    }
+
+    public OperationType getOperationType() {
+        return operationLog == null ? null : operationLog.operationType();
+    }
+
+    public String getDesc() {
+        return operationLog == null ? null : operationLog.desc();
+    }
+
+    /**
+     * 注解声明的采集方式，未声明时为 {@link CaptureMode#DEFAULT}
+     * @return per.meteor.aop.log.common.enums.CaptureMode
+     */
+    public CaptureMode getCaptureMode() {
+        return captureMode;
+    }
+
+    /**
+     * 方法上是否标注了 {@link OperationLog}，即正常返回时是否记录操作日志
+     * @return boolean
+     */
+    public boolean isOperationLogged() {
+        return operationLog != null;
+    }
+
+    /**
+     * 方法是否在异常日志切入点范围内，即抛出异常时是否记录异常日志
+     * @return boolean
+     */
+    public boolean isExceptionLogged() {
+        return exceptionLogged;
+    }
+
+    /**
+     * 注解是否声明了采样比例或每秒最大条数
+     * @return boolean
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * 判断对象是否属于注解声明的可变类型
+     *
+     * @param value 对象
+     * @return boolean
+     */
+    public boolean isMutable(Object value) {
+        if (value == null) {
+            return false;
+        }
+        for (Class<?> mutableType : mutableTypes) {
+            if (mutableType.isInstance(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String[] getParameterNames() {
+        return parameterNames.clone();
+    }
+}
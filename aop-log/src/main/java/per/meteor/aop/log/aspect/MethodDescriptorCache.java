@@ -0,0 +1,52 @@
+package per.meteor.aop.log.aspect;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.aspectj.AspectJExpressionPointcut;
+import org.springframework.core.MethodClassKey;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 以方法及目标类型({@link MethodClassKey})为键缓存 {@link MethodDescriptor}
+ * <p>
+ * 方法路径取自目标对象的实际类型，同一方法被不同子类继承时各自解析一份，已缓存的条目不会被替换。
+ * 是否在异常日志切入点范围内也在解析时判断一次。
+ *
+ * @author meteor
+ * @date 2021-10-09 10:40
+ */
+public class MethodDescriptorCache {
+
+    private final ConcurrentMap<MethodClassKey, MethodDescriptor> descriptors = new ConcurrentHashMap<>(64);
+    private final AspectJExpressionPointcut exceptionPointcut;
+
+    /**
+     * @param exceptionLogExpression 异常日志切入点表达式
+     */
+    public MethodDescriptorCache(String exceptionLogExpression) {
+        this.exceptionPointcut = new AspectJExpressionPointcut();
+        this.exceptionPointcut.setExpression(exceptionLogExpression);
+    }
+
+    public MethodDescriptor get(JoinPoint joinPoint) {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        Method method = signature.getMethod();
+        Class<?> targetClass = joinPoint.getTarget() != null
+                ? joinPoint.getTarget().getClass() : method.getDeclaringClass();
+        MethodClassKey key = new MethodClassKey(method, targetClass);
+        MethodDescriptor descriptor = descriptors.get(key);
+        if (descriptor != null) {
+            return descriptor;
+        }
+        // 先 get 再 computeIfAbsent，命中时不进入 JDK 8 computeIfAbsent 的加锁路径
+        return descriptors.computeIfAbsent(key, k -> MethodDescriptor.of(signature, targetClass,
+                exceptionPointcut.matches(method, targetClass)));
+    }
+
+    public int size() {
+        return descriptors.size();
+    }
+}
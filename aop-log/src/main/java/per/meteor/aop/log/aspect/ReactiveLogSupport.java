@@ -0,0 +1,137 @@
+package per.meteor.aop.log.aspect;
+
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mono/Flux 返回值的日志采集
+ * <p>
+ * 控制器方法返回时只完成了组装，此时记录日志既没有结果也没有真实耗时。这里包装返回值，
+ * 在每次订阅的终止信号中回调：Mono 取发出的值，Flux 保留前 maxItems 个元素，出错时取异常，
+ * 耗时从方法调用开始计算到终止信号为止。订阅被取消(客户端断开)时只记录耗时，不记录日志。
+ * <p>
+ * 回调运行在发出终止信号的线程上，通常是事件循环线程，采集过程只读取内存数据并发布到环形缓冲区，
+ * 管道溢出策略为 BLOCK 时除外。WebFlux 请求优先取方法参数中的 {@link ServerWebExchange}，
+ * 其次取 {@link LogExchangeFilter} 写入 Reactor Context 的请求；Spring MVC 中返回 Mono/Flux 时
+ * 使用调用时线程绑定的 Servlet 请求。WebFlux 中返回普通对象的方法通过 {@link #currentRequest()} 读取
+ * {@link LogExchangeFilter} 在调用期间设置的请求。
+ * <p>
+ * 只在 classpath 中存在 Reactor 时加载。
+ *
+ * @author meteor
+ * @date 2021-10-21 10:45
+ */
+final class ReactiveLogSupport {
+
+    /**
+     * 终止信号回调
+     */
+    @FunctionalInterface
+    interface Completion {
+
+        /**
+         * @param request 当前请求，无法获取时为 null
+         * @param value 返回值，Flux 为保留的元素列表
+         * @param error 异常，正常结束时为 null
+         * @param cancelled 订阅是否被取消
+         */
+        void complete(LogRequest request, Object value, Throwable error, boolean cancelled);
+    }
+
+    private final int maxItems;
+
+    ReactiveLogSupport(int maxItems) {
+        this.maxItems = maxItems;
+    }
+
+    /**
+     * WebFlux 同步调用控制器方法期间的当前请求
+     *
+     * @return per.meteor.aop.log.aspect.LogRequest 不在 WebFlux 请求处理区间内时为 null
+     */
+    LogRequest currentRequest() {
+        return ExchangeLogRequest.of(LogExchangeFilter.currentExchange());
+    }
+
+    boolean isReactive(Object result) {
+        return result instanceof Mono || result instanceof Flux;
+    }
+
+    /**
+     * 包装返回值，在终止时回调
+     *
+     * @param result 方法返回的 Mono 或 Flux
+     * @param args 方法参数
+     * @param servletRequest 调用线程绑定的请求，Reactor Context 中没有请求时使用
+     * @param completion 终止信号回调
+     * @return java.lang.Object 包装后的 Mono 或 Flux
+     */
+    Object decorate(Object result, Object[] args, LogRequest servletRequest, Completion completion) {
+        if (result instanceof Mono) {
+            return decorate((Mono<?>) result, args, servletRequest, completion);
+        }
+        return decorate((Flux<?>) result, args, servletRequest, completion);
+    }
+
+    private <T> Mono<T> decorate(Mono<T> mono, Object[] args, LogRequest servletRequest, Completion completion) {
+        return Mono.deferContextual(context -> {
+            Terminal terminal = new Terminal(resolve(args, context, servletRequest), completion);
+            return mono.doOnSuccess(value -> terminal.complete(value, null, false))
+                    .doOnError(e -> terminal.complete(null, e, false))
+                    .doOnCancel(() -> terminal.complete(null, null, true));
+        });
+    }
+
+    private <T> Flux<T> decorate(Flux<T> flux, Object[] args, LogRequest servletRequest, Completion completion) {
+        return Flux.deferContextual(context -> {
+            Terminal terminal = new Terminal(resolve(args, context, servletRequest), completion);
+            // onNext 信号按顺序到达，同一订阅内不需要同步
+            List<Object> items = new ArrayList<>(Math.min(maxItems, 16));
+            return flux.doOnNext(item -> {
+                        if (items.size() < maxItems) {
+                            items.add(item);
+                        }
+                    })
+                    .doOnComplete(() -> terminal.complete(items, null, false))
+                    .doOnError(e -> terminal.complete(null, e, false))
+                    .doOnCancel(() -> terminal.complete(null, null, true));
+        });
+    }
+
+    private static LogRequest resolve(Object[] args, ContextView context, LogRequest servletRequest) {
+        for (Object arg : args) {
+            if (arg instanceof ServerWebExchange) {
+                return ExchangeLogRequest.of((ServerWebExchange) arg);
+            }
+        }
+        ServerWebExchange exchange = context.getOrDefault(LogExchangeFilter.EXCHANGE_KEY, null);
+        return exchange != null ? ExchangeLogRequest.of(exchange) : servletRequest;
+    }
+
+    /**
+     * 单次订阅的终止状态，Mono 发出值后下游仍可能取消订阅，只回调第一个终止信号
+     */
+    private static final class Terminal {
+
+        private final LogRequest request;
+        private final Completion completion;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        Terminal(LogRequest request, Completion completion) {
+            this.request = request;
+            this.completion = completion;
+        }
+
+        void complete(Object value, Throwable error, boolean cancelled) {
+            if (done.compareAndSet(false, true)) {
+                completion.complete(request, value, error, cancelled);
+            }
+        }
+    }
+}
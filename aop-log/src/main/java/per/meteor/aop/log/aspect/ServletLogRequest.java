@@ -0,0 +1,84 @@
+package per.meteor.aop.log.aspect;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Map;
+
+/**
+ * Servlet 请求
+ *
+ * @author meteor
+ * @date 2021-10-21 09:50
+ */
+public final class ServletLogRequest implements LogRequest {
+
+    private final HttpServletRequest request;
+
+    private ServletLogRequest(HttpServletRequest request) {
+        this.request = request;
+    }
+
+    /**
+     * @param request Servlet 请求
+     * @return per.meteor.aop.log.aspect.LogRequest request 为 null 时返回 null
+     */
+    public static LogRequest of(HttpServletRequest request) {
+        return request == null ? null : new ServletLogRequest(request);
+    }
+
+    @Override
+    public String getMethod() {
+        return request.getMethod();
+    }
+
+    @Override
+    public String getPath() {
+        return request.getRequestURI();
+    }
+
+    @Override
+    public String getRemoteAddr() {
+        return request.getRemoteAddr();
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return request.getHeader(name);
+    }
+
+    @Override
+    public void writeHeaders(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        Enumeration<String> er = request.getHeaderNames();
+        while (er.hasMoreElements()) {
+            String name = er.nextElement();
+            generator.writeStringField(name, request.getHeader(name));
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void writeParameters(JsonGenerator generator) throws IOException {
+        Map<?, ?> pathParams = (Map<?, ?>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        generator.writeStartObject();
+        // 获取一般请求参数
+        Enumeration<String> parameterNames = request.getParameterNames();
+        while (parameterNames.hasMoreElements()) {
+            String paramName = parameterNames.nextElement();
+            if (pathParams == null || !pathParams.containsKey(paramName)) {
+                generator.writeStringField(paramName, request.getParameter(paramName));
+            }
+        }
+        if (pathParams != null) {
+            for (Map.Entry<?, ?> entry : pathParams.entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                generator.writeObject(entry.getValue());
+            }
+        }
+        generator.writeEndObject();
+    }
+}
@@ -1,51 +1,101 @@
 package per.meteor.aop.log.aspect;
 
-import eu.bitwalker.useragentutils.Browser;
-import eu.bitwalker.useragentutils.UserAgent;
 import org.aspectj.lang.JoinPoint;
-import org.aspectj.lang.annotation.AfterReturning;
-import org.aspectj.lang.annotation.AfterThrowing;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
-import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Component;
-import org.springframework.validation.BindingResult;
+import org.springframework.util.ClassUtils;
 import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
-import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.servlet.HandlerMapping;
-import per.meteor.aop.log.common.annotations.OperationLog;
+import per.meteor.aop.log.common.enums.CaptureMode;
+import per.meteor.aop.log.common.id.SnowflakeIdGenerator;
 import per.meteor.aop.log.common.utils.JsonUtil;
+import per.meteor.aop.log.config.LogCaptureProperties;
 import per.meteor.aop.log.domain.LogDomain;
+import per.meteor.aop.log.exception.ExceptionTraceStore;
+import per.meteor.aop.log.latency.LatencyRecorder;
+import per.meteor.aop.log.metrics.LogMetrics;
+import per.meteor.aop.log.sampling.LogSamplerRegistry;
 import per.meteor.aop.log.service.LogServiceAsync;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-import java.lang.reflect.Method;
-import java.time.Duration;
+import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.*;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * 操作日志及异常日志切面
+ * <p>
+ * 各解析步骤为包内可见，aop-log-benchmark 模块在同名包下单独测量。
+ * meteor.log.enabled 为 false 时不创建切面，被拦截的方法不再经过代理。
+ * 方法返回 Mono/Flux 时由 {@link ReactiveLogSupport} 在返回值终止时记录，返回 CompletableFuture、DeferredResult 等
+ * 异步结果时由 {@link AsyncLogSupport} 在结果产生时记录，请求信息统一通过 {@link LogRequest} 读取。
+ *
  * @author meteor
  * @date 2021-10-03 18:23
  */
 @Aspect
 @Component
+@ConditionalOnProperty(prefix = "meteor.log", name = "enabled", havingValue = "true", matchIfMissing = true)
 public class SimpleLogAspect {
 
     Logger logger = LoggerFactory.getLogger(SimpleLogAspect.class);
 
     private static final String SYSTEM_VERSION = "1.0";
     private static final String LOCAL_IP = "0:0:0:0:0:0:0:1";
+    private static final boolean REACTIVE_PRESENT = ClassUtils.isPresent("reactor.core.publisher.Mono",
+            SimpleLogAspect.class.getClassLoader()) && ClassUtils.isPresent(
+            "org.springframework.web.server.ServerWebExchange", SimpleLogAspect.class.getClassLoader());
 
     @Resource
     private LogServiceAsync logServiceAsync;
 
+    @Resource
+    private UserAgentCache userAgentCache;
+
+    @Resource
+    private LogCaptureProperties captureProperties;
+
+    @Resource
+    private LogSamplerRegistry samplerRegistry;
+
+    @Resource
+    private ExceptionTraceStore traceStore;
+
+    @Resource
+    private SnowflakeIdGenerator idGenerator;
+
+    @Resource
+    private LatencyRecorder latencyRecorder;
+
+    @Resource
+    private LogMetrics metrics;
+
+    /** 异常日志切入点，同时用于在方法元数据中判断方法是否需要记录异常日志。日志查询、统计等管理接口位于 web 包，不在切入点内 **/
+    static final String EXCEPTION_LOG_POINTCUT = "execution(* per.meteor.aop.log.controller..*.*(..))";
+
+    private final MethodDescriptorCache descriptorCache = new MethodDescriptorCache(EXCEPTION_LOG_POINTCUT);
+
+    private final AsyncLogSupport asyncSupport = new AsyncLogSupport();
+    /** classpath 中没有 Reactor 时为 null **/
+    private ReactiveLogSupport reactiveSupport;
+
+    @PostConstruct
+    public void init() {
+        if (REACTIVE_PRESENT) {
+            reactiveSupport = new ReactiveLogSupport(captureProperties.getReactiveMaxItems());
+        }
+    }
+
     /**
      * 设置操作日志切入点 记录操作日志 在注解的位置切入代码
       */
@@ -57,51 +107,254 @@ public class SimpleLogAspect {
     /**
     * 设置操作异常切入点记录异常日志 扫描所有controller包下操作
     */
-    @Pointcut("execution(* per.meteor.aop.log.controller..*.*(..))")
+    @Pointcut(EXCEPTION_LOG_POINTCUT)
     public void optExceptionLogPointCut() {
         // pass
     }
 
+    /**
+     * 统计方法耗时，正常返回时记录操作日志，抛出异常时记录异常日志。
+     * 返回 Mono/Flux 时替换为包装后的返回值，在其终止时统计耗时并记录
+     * @param joinPoint 切点
+     * @return java.lang.Object 方法返回值
+     * @throws Throwable 方法抛出的异常
+     */
+    @Around("optLogPointCut() || optExceptionLogPointCut()")
+    public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+        MethodDescriptor descriptor = descriptorCache.get(joinPoint);
+        LocalDateTime requestTime = LocalDateTime.now();
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            complete(joinPoint, descriptor, currentRequest(), requestTime, System.nanoTime() - start, null, e);
+            throw e;
+        }
+        if (reactiveSupport != null && reactiveSupport.isReactive(result)) {
+            return reactiveSupport.decorate(result, joinPoint.getArgs(), currentRequest(),
+                    (request, value, error, cancelled) -> {
+                        long durationNanos = System.nanoTime() - start;
+                        if (cancelled) {
+                            latencyRecorder.record(descriptor.getMethodKey(), durationNanos);
+                        } else {
+                            complete(joinPoint, descriptor, request, requestTime, durationNanos, value, error);
+                        }
+                    });
+        }
+        if (asyncSupport.isAsync(result)) {
+            asyncSupport.attach(result, prepareAsync(joinPoint, descriptor, requestTime, start));
+            return result;
+        }
+        complete(joinPoint, descriptor, currentRequest(), requestTime, System.nanoTime() - start, result, null);
+        return result;
+    }
+
+    /**
+     * 异步返回值在调用时采样并采集请求信息，结果产生时 Servlet 请求可能已被回收
+     *
+     * @param joinPoint 切点
+     * @param descriptor 切点方法元数据
+     * @param requestTime 调用开始时间
+     * @param start 调用开始时的 System.nanoTime
+     * @return per.meteor.aop.log.aspect.AsyncLogSupport.Completion 结果产生时记录耗时及日志
+     */
+    private AsyncLogSupport.Completion prepareAsync(JoinPoint joinPoint, MethodDescriptor descriptor,
+                                                    LocalDateTime requestTime, long start) {
+        boolean sampled = descriptor.isOperationLogged() && samplerRegistry.tryAcquire(descriptor);
+        LogDomain pending = null;
+        if (sampled || descriptor.isExceptionLogged()) {
+            long captureStart = System.nanoTime();
+            try (LogCaptureContext context = openContext(joinPoint, descriptor, currentRequest()).timing(requestTime, 0)) {
+                pending = captureRequest(context);
+            } catch (Exception e) {
+                logger.error("异步请求信息采集失败: {}", descriptor.getMethodPath(), e);
+            } finally {
+                metrics.recordCapture(System.nanoTime() - captureStart);
+            }
+        }
+        LogDomain captured = pending;
+        return (value, error, abandoned) -> {
+            long durationNanos = System.nanoTime() - start;
+            latencyRecorder.record(descriptor.getMethodKey(), durationNanos);
+            if (abandoned) {
+                return;
+            }
+            if (error == null && !sampled && descriptor.isOperationLogged()) {
+                // 调用时未采样，出错时仍会记录异常日志，所以只有正常结束才计入下一条日志
+                samplerRegistry.skip(descriptor);
+            } else if (captured != null && (error != null ? descriptor.isExceptionLogged() : sampled)) {
+                if (error == null) {
+                    captured.setRepresentedCount(samplerRegistry.representedCount(descriptor));
+                }
+                saveAsyncLog(joinPoint, descriptor, captured, requestTime, durationNanos, value, error);
+            }
+        };
+    }
+
+    /**
+     * 记录耗时分布，并按结果记录操作日志或异常日志
+     *
+     * @param joinPoint 切点
+     * @param descriptor 切点方法元数据
+     * @param request 当前请求，无法获取时为 null
+     * @param requestTime 调用开始时间
+     * @param durationNanos 调用耗时(纳秒)
+     * @param result 处理结果
+     * @param error 异常信息，正常返回时为 null
+     */
+    private void complete(JoinPoint joinPoint, MethodDescriptor descriptor, LogRequest request,
+                          LocalDateTime requestTime, long durationNanos, Object result, Throwable error) {
+        latencyRecorder.record(descriptor.getMethodKey(), durationNanos);
+        if (error != null) {
+            if (descriptor.isExceptionLogged()) {
+                saveExceptionLog(joinPoint, descriptor, request, error, requestTime, durationNanos);
+            }
+        } else if (descriptor.isOperationLogged()) {
+            saveOperationLog(joinPoint, descriptor, request, result, requestTime, durationNanos);
+        }
+    }
+
     /**
      * 处理正常请求日志
      * @author meteor
      * @date 2021-10-03 22:13
      * @param joinPoint 切点
+     * @param descriptor 切点方法元数据
+     * @param request 当前请求
      * @param result 处理结果
+     * @param requestTime 调用开始时间
+     * @param durationNanos 调用耗时(纳秒)
      */
-    @AfterReturning(value = "optLogPointCut()", returning = "result")
-    public void saveOperationLog(JoinPoint joinPoint, Object result) {
-        LogDomain logDomain = new LogDomain(joinPoint)
-                .request(this::parseRequestInfo)
-                .operation(this::parseOperationInfo)
-                .browser(this::parseBrowserInfo)
-                .success(result, this::parseResponseInfo);
-
-        // 根据自身操作对日志进行处理, 进行异步任务数据库存储，或存储到文件
-        logServiceAsync.saveOperationLogAsync(logDomain);
-        logger.info("日志保存");
+    private void saveOperationLog(JoinPoint joinPoint, MethodDescriptor descriptor, LogRequest request, Object result,
+                                  LocalDateTime requestTime, long durationNanos) {
+        if (!samplerRegistry.tryAcquire(descriptor)) {
+            samplerRegistry.skip(descriptor);
+            return;
+        }
+        long start = System.nanoTime();
+        try (LogCaptureContext context = openContext(joinPoint, descriptor, request).timing(requestTime, durationNanos)) {
+            LogDomain logDomain = succeed(context, captureRequest(context), result);
+            logDomain.setRepresentedCount(samplerRegistry.representedCount(descriptor));
+
+            // 根据自身操作对日志进行处理, 进行异步任务数据库存储，或存储到文件
+            logServiceAsync.saveOperationLogAsync(logDomain);
+        } catch (Exception e) {
+            logger.error("操作日志采集失败: {}", descriptor.getMethodPath(), e);
+        } finally {
+            metrics.recordCapture(System.nanoTime() - start);
+        }
     }
 
     /**
-     * 处理正常请求日志
+     * 处理异常请求日志
      * @author meteor
      * @date 2021-10-03 22:13
      * @param joinPoint 切点
+     * @param descriptor 切点方法元数据
+     * @param request 当前请求
      * @param e 异常信息
+     * @param requestTime 调用开始时间
+     * @param durationNanos 调用耗时(纳秒)
      */
-    @AfterThrowing(pointcut = "optExceptionLogPointCut()", throwing = "e")
-    public void saveExceptionLog(JoinPoint joinPoint, Throwable e) {
-        LogDomain logDomain = new LogDomain(joinPoint)
-                .request(this::parseRequestInfo)
-                .operation(this::parseOperationInfo)
-                .browser(this::parseBrowserInfo)
+    private void saveExceptionLog(JoinPoint joinPoint, MethodDescriptor descriptor, LogRequest request, Throwable e,
+                                  LocalDateTime requestTime, long durationNanos) {
+        long start = System.nanoTime();
+        try (LogCaptureContext context = openContext(joinPoint, descriptor, request).timing(requestTime, durationNanos)) {
+            LogDomain logDomain = fail(context, captureRequest(context), e);
+            // 根据自身操作对日志进行处理, 进行异步任务数据库存储，或存储到文件
+            logServiceAsync.saveExceptionLogAsync(logDomain);
+        } catch (Exception ex) {
+            logger.error("异常日志采集失败: {}", descriptor.getMethodPath(), ex);
+        } finally {
+            metrics.recordCapture(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 异步结果产生后补全调用时采集的日志，运行在产生结果的线程中
+     *
+     * @param joinPoint 切点
+     * @param descriptor 切点方法元数据
+     * @param pending 调用时采集的请求信息
+     * @param requestTime 调用开始时间
+     * @param durationNanos 调用开始到结果产生的耗时(纳秒)
+     * @param result 异步结果
+     * @param e 异常信息，正常结束时为 null
+     */
+    private void saveAsyncLog(JoinPoint joinPoint, MethodDescriptor descriptor, LogDomain pending,
+                              LocalDateTime requestTime, long durationNanos, Object result, Throwable e) {
+        long start = System.nanoTime();
+        try (LogCaptureContext context = openContext(joinPoint, descriptor, null).timing(requestTime, durationNanos)) {
+            if (e == null) {
+                logServiceAsync.saveOperationLogAsync(succeed(context, pending, result));
+            } else {
+                logServiceAsync.saveExceptionLogAsync(fail(context, pending, e));
+            }
+        } catch (Exception ex) {
+            logger.error("异步日志采集失败: {}", descriptor.getMethodPath(), ex);
+        } finally {
+            metrics.recordCapture(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 采集请求、操作及浏览器信息，这部分需要读取请求对象
+     *
+     * @param context 采集上下文
+     * @return per.meteor.aop.log.domain.LogDomain
+     */
+    private LogDomain captureRequest(LogCaptureContext context) {
+        return new LogDomain()
+                .request(log -> parseRequestInfo(context, log))
+                .operation(log -> parseOperationInfo(context, log))
+                .browser(log -> parseBrowserInfo(context, log));
+    }
+
+    /**
+     * 补全正常结束的日志
+     *
+     * @param context 采集上下文
+     * @param logDomain 已采集请求信息的日志
+     * @param result 处理结果
+     * @return per.meteor.aop.log.domain.LogDomain 可以发布
+     */
+    private LogDomain succeed(LogCaptureContext context, LogDomain logDomain, Object result) {
+        return logDomain
+                .success(result, (value, log) -> parseResponseInfo(context, value, log))
+                .system(this::parseSystemInfo);
+    }
+
+    /**
+     * 补全异常结束的日志
+     *
+     * @param context 采集上下文
+     * @param logDomain 已采集请求信息的日志
+     * @param e 异常信息
+     * @return per.meteor.aop.log.domain.LogDomain 可以发布
+     */
+    private LogDomain fail(LogCaptureContext context, LogDomain logDomain, Throwable e) {
+        return logDomain
                 .error(e, (error, log) -> {
-                    log.setExceptionName(e.getClass().getName());
-                    log.setExceptionMessage(stackTraceToString(e.getClass().getName(), e.getMessage(), e.getStackTrace()));
-                    return log;
-                });
-        // 根据自身操作对日志进行处理, 进行异步任务数据库存储，或存储到文件
-        logServiceAsync.saveExceptionLogAsync(logDomain);
+                    traceStore.record(log, e, ex -> stackTraceToString(context, ex.getClass().getName(),
+                            ex.getMessage(), ex.getStackTrace()));
+                    return parseDuration(context, log);
+                })
+                .system(this::parseSystemInfo);
+    }
+
+    /**
+     * 创建本次调用的采集上下文
+     *
+     * @param joinPoint 切点
+     * @param descriptor 切点方法元数据
+     * @param request 当前请求
+     * @return per.meteor.aop.log.aspect.LogCaptureContext
+     */
+    private LogCaptureContext openContext(JoinPoint joinPoint, MethodDescriptor descriptor, LogRequest request) {
+        CaptureMode captureMode = descriptor.getCaptureMode() == CaptureMode.DEFAULT
+                ? captureProperties.getMode() : descriptor.getCaptureMode();
+        return LogCaptureContext.open(joinPoint, descriptor, request, captureMode, captureProperties);
     }
 
     /**
@@ -109,38 +362,46 @@ public class SimpleLogAspect {
      *
      * @author meteor
      * @date 2021-10-03 22:12
-     * @param joinPoint 切点
+     * @param context 采集上下文
      * @param logDomain 日志信息
      * @return per.meteor.easy.code.common.domain.LogDomain
      */
-    private LogDomain parseRequestInfo(JoinPoint joinPoint, LogDomain logDomain) {
-        // 请求信息
-        LocalDateTime now = LocalDateTime.now();
-        // 获取HttpServletRequest
-        HttpServletRequest request = getRequest();
-        assert request != null;
-
-        // 封装基本请求信息WebConfig
-        logDomain.setRequestParameter(getRequestParameters(joinPoint));
-        logDomain.setRequestUrl(request.getRequestURI());
-        logDomain.setRequestMethod(request.getMethod());
-        logDomain.setRequestTime(now);
-
-        logger.info("请求路径: {}  {}", request.getMethod(), request.getRequestURI());
-        logger.info("请求参数:{}", getRequestParameters(joinPoint));
-
-        logDomain.setRequestHeader(JsonUtil.toJsonString(parseHeader()));
+    private LogDomain parseRequestInfo(LogCaptureContext context, LogDomain logDomain) {
+        long start = System.nanoTime();
+        logDomain.setRequestTime(context.getRequestTime());
+        logDomain.setRequestMethodPath(context.getDescriptor().getMethodPath());
+        logDomain.setMethodKey(context.getDescriptor().getMethodKey());
+        LogRequest request = context.getRequest();
+        if (request == null) {
+            return logDomain;
+        }
+
+        // 封装基本请求信息
+        String requestMethod = request.getMethod();
+        String requestUri = request.getPath();
+        logDomain.setRequestUrl(requestUri);
+        logDomain.setRequestMethod(requestMethod);
+
+        long parameterStart = System.nanoTime();
+        if (context.isDeferred() && isBodyMethod(requestMethod)) {
+            // 参数对象交由日志消费线程序列化
+            logDomain.setDeferredRequestParameter(deferredArgs(context));
+        } else {
+            logDomain.setRequestParameter(getRequestParameters(context, requestMethod));
+        }
+        long headerStart = System.nanoTime();
+        logDomain.setRequestHeader(parseHeader(context));
+        long headerEnd = System.nanoTime();
+        metrics.recordParameterPhase(headerStart - parameterStart);
+        metrics.recordHeaderPhase(headerEnd - headerStart);
+
         String clientIp = request.getRemoteAddr();
         if (LOCAL_IP.equals(clientIp)) {
             clientIp = "127.0.0.1";
         }
         logDomain.setRequestIp(clientIp);
-        // 从切面织入点处通过反射机制获取织入点处的方法
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        String className = joinPoint.getTarget().getClass().getName();
-        String methodPath = className + "." + signature.getMethod().getName();
-        logDomain.setRequestMethodPath(methodPath);
 
+        metrics.recordRequestPhase(System.nanoTime() - start - (headerEnd - parameterStart));
         return logDomain;
     }
 
@@ -148,66 +409,77 @@ public class SimpleLogAspect {
      *
      * @author meteor
      * @date 2021-10-03 21:54
+     * @param context 采集上下文
      * @param result 响应结果
      * @param logDomain 日志信息
      * @return per.meteor.easy.code.common.domain.LogDomain
      */
-    private LogDomain parseResponseInfo(Object result, LogDomain logDomain) {
+    private LogDomain parseResponseInfo(LogCaptureContext context, Object result, LogDomain logDomain) {
+        long start = System.nanoTime();
+        if (context.isDeferred() && result != null) {
+            logDomain.setDeferredResponseBody(snapshotIfMutable(context.getDescriptor(), result));
+        } else {
+            logDomain.setResponseBody(context.writeValue(result));
+        }
+        metrics.recordResponsePhase(System.nanoTime() - start);
+        return parseDuration(context, logDomain);
+    }
 
-        logDomain.setResponseBody(JsonUtil.toJsonString(result));
-        LocalDateTime requestTime = logDomain.getRequestTime();
-        long timeConsuming = requestTime == null ? 0 : Duration.between(requestTime, LocalDateTime.now()).toMillis();
-        logDomain.setRequestTimeConsuming(timeConsuming + "ms");
+    /**
+     * 调用耗时，requestDuration 单位为微秒
+     *
+     * @param context 采集上下文
+     * @param logDomain 日志信息
+     * @return per.meteor.easy.code.common.domain.LogDomain
+     */
+    private LogDomain parseDuration(LogCaptureContext context, LogDomain logDomain) {
+        long durationNanos = context.getDurationNanos();
+        logDomain.setRequestDuration(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+        logDomain.setRequestTimeConsuming(TimeUnit.NANOSECONDS.toMillis(durationNanos) + "ms");
         return logDomain;
     }
 
     /**
-     * 解析请求头信息
+     * 解析请求头信息，直接写为 JSON 字符串
      *
      * @author meteor
      * @date 2021-10-03 21:37
-     * @return java.util.HashMap<java.lang.String,java.lang.String>
+     * @param context 采集上下文
+     * @return java.lang.String
      */
-    private HashMap<String, String> parseHeader() {
-        HttpServletRequest request = getRequest();
-        assert request != null;
-        HashMap<String, String> hashMap = new HashMap<>(16);
-        Enumeration<String> er = request.getHeaderNames();
-        while(er.hasMoreElements()){
-            String name	= er.nextElement();
-            String value = request.getHeader(name);
-            hashMap.put(name, value);
+    String parseHeader(LogCaptureContext context) {
+        try {
+            return context.writeJson(context.getRequest()::writeHeaders);
+        } catch (IOException e) {
+            logger.error("请求头解析失败", e);
+            return "";
         }
-
-        return hashMap;
     }
 
     /**
      * 解析浏览器信息
      * @author meteor
      * @date 2021-10-03 21:28
+     * @param context 采集上下文
      * @param logDomain  请求对象
      * @return per.meteor.easy.code.common.domain.LogDomain
      */
-    private LogDomain parseBrowserInfo(LogDomain logDomain) {
+    LogDomain parseBrowserInfo(LogCaptureContext context, LogDomain logDomain) {
         // 浏览器信息
-        HttpServletRequest request = getRequest();
-        assert request != null;
-
-        String header = request.getHeader("User-Agent");
-        UserAgent userAgent = UserAgent.parseUserAgentString(header);
-        String browserVersion = userAgent.getBrowserVersion() == null ? null : userAgent.getBrowserVersion().getVersion();
-        String operatingSystem = userAgent.getOperatingSystem().getName();
-        logDomain.setUserAgent(userAgent.toString());
-        logDomain.setBrowserVersion(browserVersion);
-        logDomain.setOperatingSystem(operatingSystem);
-
-        Browser browser = userAgent.getBrowser();
-        if (null != browser) {
-            logDomain.setBrowserName(browser.getName());
-            logDomain.setBrowserType(browser.getBrowserType().getName());
+        LogRequest request = context.getRequest();
+        if (request == null) {
+            return logDomain;
         }
 
+        long start = System.nanoTime();
+        BrowserInfo browserInfo = userAgentCache.parse(request.getHeader("User-Agent"));
+        metrics.recordUserAgentPhase(System.nanoTime() - start);
+        logDomain.setUserAgent(browserInfo.getUserAgent());
+        logDomain.setBrowserVersion(browserInfo.getBrowserVersion());
+        logDomain.setOperatingSystem(browserInfo.getOperatingSystem());
+        logDomain.setBrowserName(browserInfo.getBrowserName());
+        logDomain.setBrowserType(browserInfo.getBrowserType());
+
         return logDomain;
     }
 
@@ -215,21 +487,16 @@ public class SimpleLogAspect {
      * 解析操作信息
      * @author meteor
      * @date 2021-10-03 21:28
-     * @param joinPoint 切入点
+     * @param context 采集上下文
      * @param logDomain 日志信息
      * @return per.meteor.easy.code.common.domain.LogDomain
      */
-    private LogDomain parseOperationInfo(JoinPoint joinPoint, LogDomain logDomain) {
-        // 从切面织入点处通过反射机制获取织入点处的方法
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        // 获取切入点所在的方法
-        Method method = signature.getMethod();
-
-        OperationLog annotation = method.getAnnotation(OperationLog.class);
-        if (null != annotation) {
-            logDomain.setOperationModule(annotation.module());
-            logDomain.setOperationType(annotation.operationType());
-            logDomain.setOperationDesc(annotation.desc());
+    private LogDomain parseOperationInfo(LogCaptureContext context, LogDomain logDomain) {
+        MethodDescriptor descriptor = context.getDescriptor();
+        if (null != descriptor.getOperationLog()) {
+            logDomain.setOperationModule(descriptor.getModule());
+            logDomain.setOperationType(descriptor.getOperationType());
+            logDomain.setOperationDesc(descriptor.getDesc());
             logDomain.setOperationUser("admin");
             logDomain.setSystemVersion(SYSTEM_VERSION);
         }
@@ -239,122 +506,105 @@ public class SimpleLogAspect {
 
 
     /**
-     * 获取请求对象
-     * @return javax.servlet.http.HttpServletRequest
+     * 生成日志 ID 及流水号
+     *
+     * @param logDomain 日志信息
+     * @return per.meteor.easy.code.common.domain.LogDomain
+     */
+    private LogDomain parseSystemInfo(LogDomain logDomain) {
+        long id = idGenerator.nextId();
+        logDomain.setLogId(SnowflakeIdGenerator.toString(id));
+        String prefix = logDomain.getOperationModule() == null || logDomain.getOperationType() == null ? ""
+                : "" + logDomain.getOperationModule().ordinal() + logDomain.getOperationType().ordinal();
+        logDomain.setLogSerialNumber(idGenerator.toSerialNumber(id, prefix));
+        return logDomain;
+    }
+
+    /**
+     * 获取当前线程绑定的 Servlet 请求，WebFlux 中为 {@link LogExchangeFilter} 在调用期间设置的请求
+     * @return per.meteor.aop.log.aspect.LogRequest 不在请求处理线程中时返回 null
      * @author meteor
      * @since 2020/12/5 18:30
      */
-    private HttpServletRequest getRequest() {
+    private LogRequest currentRequest() {
         // 获取RequestAttributes
         RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) {
+            return reactiveSupport != null ? reactiveSupport.currentRequest() : null;
+        }
         // 从获取RequestAttributes中获取HttpServletRequest的信息
-        assert requestAttributes != null;
-        return (HttpServletRequest) requestAttributes.resolveReference(RequestAttributes.REFERENCE_REQUEST);
+        return ServletLogRequest.of((HttpServletRequest) requestAttributes.resolveReference(RequestAttributes.REFERENCE_REQUEST));
     }
 
     /**
      * 获取请求的参数，放到log中
      *
-     * @param joinPoint 切点
+     * @param context 采集上下文
+     * @param requestMethod 请求方式
      */
-    private String getRequestParameters(JoinPoint joinPoint) {
-
-        HttpServletRequest request = getRequest();
-        assert request != null;
-        String requestMethod = request.getMethod();
-        String params;
-        if (HttpMethod.PUT.name().equals(requestMethod) || HttpMethod.POST.name().equals(requestMethod)) {
-            // 由于args为参数数组，不带参数名，所以封装参数名及参数类型的Map,进行后续参数封装处理
-            MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-            HashMap<String, Class<?>> keyTypeMap = new HashMap<>(16);
-            String[] names = signature.getParameterNames();
-            for (int i = 0; i < names.length; i++) {
-                keyTypeMap.put(names[i], signature.getParameterTypes()[i]);
-            }
-            params = JsonUtil.toJsonString(argsArrayToString(keyTypeMap, joinPoint.getArgs()));
-        } else {
-            // 获取一般请求参数
-            HashMap<String, Object> paramsMap = new HashMap<>(16);
-            Enumeration<String> parameterNames = request.getParameterNames();
-            while(parameterNames.hasMoreElements()) {
-                String paramName = parameterNames.nextElement();
-                paramsMap.put(paramName, request.getParameter(paramName));
+    String getRequestParameters(LogCaptureContext context, String requestMethod) {
+        try {
+            if (isBodyMethod(requestMethod)) {
+                // args 与参数名按下标一一对应，参数名及过滤标记已在方法元数据中预先解析
+                MethodDescriptor descriptor = context.getDescriptor();
+                Object[] args = context.getJoinPoint().getArgs();
+                return context.writeJson(generator -> {
+                    generator.writeStartObject();
+                    int count = Math.min(args.length, descriptor.getParameterCount());
+                    for (int i = 0; i < count; i++) {
+                        if (!descriptor.isFiltered(i, args[i])) {
+                            generator.writeFieldName(descriptor.getParameterName(i));
+                            generator.writeObject(args[i]);
+                        }
+                    }
+                    generator.writeEndObject();
+                });
             }
-            // 获取路径参数
-            HashMap<?, ?> pathParamsMap = (HashMap<?, ?>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
-            pathParamsMap.keySet().forEach(key -> paramsMap.put((String) key, pathParamsMap.get(key)));
-            params = JsonUtil.toJsonString(paramsMap);
+            // 查询参数及路径参数，同名时以路径参数为准
+            return context.writeJson(context.getRequest()::writeParameters);
+        } catch (IOException e) {
+            logger.error("请求参数解析失败", e);
+            return "";
         }
-
-
-        return params;
     }
 
     /**
-     * 参数拼装
-     * @author meteor
-     * @date 2021-10-03 23:47
-     * @param paramsArray  参数
-     * @return java.lang.String
+     * 延迟序列化时的请求参数：保留参数对象引用，声明为可变类型的参数保留快照
+     *
+     * @param context 采集上下文
+     * @return java.util.Map<java.lang.String,java.lang.Object>
      */
-    private HashMap<String, Object> argsArrayToString(HashMap<String, Class<?>> paramNameType, Object[] paramsArray) {
-        assert paramsArray != null;
-        HashMap<String, Object> argsMap = new HashMap<>(16);
-        for (Object o : paramsArray) {
-            if (!isFilterObject(o)) {
-                for (Map.Entry<String, Class<?>> entry : paramNameType.entrySet()) {
-                    if (o.getClass().equals(entry.getValue())) {
-                        argsMap.put(entry.getKey(), o);
-                        break;
-                    }
-                }
-            }
-        }
+    private Map<String, Object> deferredArgs(LogCaptureContext context) {
+        MethodDescriptor descriptor = context.getDescriptor();
+        Map<String, Object> argsMap = descriptor.argsToMap(context.getJoinPoint().getArgs());
+        argsMap.replaceAll((name, value) -> snapshotIfMutable(descriptor, value));
         return argsMap;
     }
 
-    /**
-     * 判断是否需要过滤的对象。
-     *
-     * @param o 对象信息。
-     * @return 如果是需要过滤的对象，则返回true；否则返回false。
-     */
-    @SuppressWarnings("rawtypes")
-    private boolean isFilterObject(final Object o) {
-        Class<?> clazz = o.getClass();
-        if (clazz.isArray()) {
-            return clazz.getComponentType().isAssignableFrom(MultipartFile.class);
-        } else if (Collection.class.isAssignableFrom(clazz)) {
-            Collection collection = (Collection) o;
-            Iterator iterator = collection.iterator();
-            if (iterator.hasNext()) {
-                return iterator.next() instanceof MultipartFile;
-            }
-        } else if (Map.class.isAssignableFrom(clazz)) {
-            Map map = (Map) o;
-            Iterator iterator = map.entrySet().iterator();
-            if (iterator.hasNext()) {
-                Map.Entry entry = (Map.Entry) iterator.next();
-                return entry.getValue() instanceof MultipartFile;
-            }
-        }
-        return o instanceof MultipartFile || o instanceof HttpServletRequest || o instanceof HttpServletResponse
-                || o instanceof BindingResult;
+    private Object snapshotIfMutable(MethodDescriptor descriptor, Object value) {
+        return descriptor.isMutable(value) ? JsonUtil.toTokenBuffer(value) : value;
+    }
+
+    private boolean isBodyMethod(String requestMethod) {
+        return HttpMethod.PUT.name().equals(requestMethod) || HttpMethod.POST.name().equals(requestMethod);
     }
 
     /**
      * 转换异常信息为字符串
      *
+     * @param context          采集上下文
      * @param exceptionName    异常名称
      * @param exceptionMessage 异常信息
      * @param elements         堆栈信息
      */
-    private String stackTraceToString(String exceptionName, String exceptionMessage, StackTraceElement[] elements) {
-        StringBuilder stringBuffer = new StringBuilder();
+    String stackTraceToString(LogCaptureContext context, String exceptionName, String exceptionMessage,
+                              StackTraceElement[] elements) {
+        StringBuilder stringBuffer = context.textBuffer();
+        stringBuffer.append(exceptionName).append(':').append(exceptionMessage).append('\n');
         for (StackTraceElement stet : elements) {
-            stringBuffer.append(stet).append("\n");
+            stringBuffer.append(stet).append('\n');
         }
-        return exceptionName + ":" + exceptionMessage + "\n" + stringBuffer;
+        return stringBuffer.toString();
     }
 
 }
@@ -0,0 +1,34 @@
+package per.meteor.aop.log.aspect;
+
+import org.springframework.stereotype.Component;
+import per.meteor.aop.log.common.cache.BoundedCache;
+import per.meteor.aop.log.config.LogCaptureProperties;
+
+/**
+ * User-Agent 解析缓存
+ * <p>
+ * UserAgentUtils 每次解析都要遍历浏览器和操作系统的枚举列表，而实际流量中不同的 User-Agent 通常只有几百种，
+ * 以原始请求头为键缓存解析结果。
+ *
+ * @author meteor
+ * @date 2021-10-10 10:05
+ */
+@Component
+public class UserAgentCache {
+
+    private static final String EMPTY = "";
+
+    private final BoundedCache<String, BrowserInfo> cache;
+
+    public UserAgentCache(LogCaptureProperties properties) {
+        this.cache = new BoundedCache<>(properties.getUserAgentCacheSize());
+    }
+
+    public BrowserInfo parse(String header) {
+        return cache.get(header == null ? EMPTY : header, BrowserInfo::parse);
+    }
+
+    public BoundedCache<String, BrowserInfo> getCache() {
+        return cache;
+    }
+}
@@ -1,6 +1,7 @@
 package per.meteor.aop.log.common.annotations;
 
 
+import per.meteor.aop.log.common.enums.CaptureMode;
 import per.meteor.aop.log.common.enums.ModuleType;
 import per.meteor.aop.log.common.enums.OperationType;
 
@@ -31,4 +32,28 @@ public @interface OperationLog {
      * @return ""
      */
     String desc() default "";
+
+    /**
+     * 请求参数、响应结果的采集方式
+     * @return CaptureMode.DEFAULT
+     */
+    CaptureMode captureMode() default CaptureMode.DEFAULT;
+
+    /**
+     * 延迟序列化时，请求返回后仍可能被修改的类型，这些类型的参数及结果在请求线程中保留快照
+     * @return {}
+     */
+    Class<?>[] mutableTypes() default {};
+
+    /**
+     * 成功请求的采样比例，取值 (0, 1]，异常日志不参与采样
+     * @return 1.0
+     */
+    double sampleRate() default 1.0;
+
+    /**
+     * 成功请求每秒最多记录的日志条数，小于等于 0 时不限制，异常日志不参与限流
+     * @return 0
+     */
+    int maxPerSecond() default 0;
 }
@@ -0,0 +1,178 @@
+package per.meteor.aop.log.common.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 容量有界的并发缓存
+ * <p>
+ * 基于 ConcurrentHashMap，淘汰采用 CLOCK(second chance) 近似 LRU：命中时只设置访问标记，
+ * 超出容量时按插入顺序扫描，带访问标记的条目清除标记后放回队尾，否则淘汰。读路径无锁且不修改队列。
+ * <p>
+ * 队列中保存的是节点而不是键，淘汰时只有节点仍是该键当前映射的值才会移除，
+ * 因此删除后重新写入的键不会被队列中残留的旧节点提前淘汰。
+ *
+ * @author meteor
+ * @date 2021-10-10 09:20
+ */
+public class BoundedCache<K, V> {
+
+    private final int maximumSize;
+    private final ConcurrentHashMap<K, Node<K, V>> entries;
+    private final ConcurrentLinkedQueue<Node<K, V>> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.entries = new ConcurrentHashMap<>(Math.min(maximumSize, 1 << 16) * 4 / 3 + 1);
+    }
+
+    /**
+     * 获取缓存，不存在时调用 loader 加载，loader 可能被并发调用多次，但只有一个结果会被缓存
+     *
+     * @param key 键，不能为 null
+     * @param loader 加载函数，返回值不能为 null
+     * @return V
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        return putIfAbsent(key, loader.apply(key));
+    }
+
+    /**
+     * 获取缓存，不存在时返回 null，会计入命中统计
+     *
+     * @param key 键
+     * @return V
+     */
+    public V getIfPresent(K key) {
+        Node<K, V> node = entries.get(key);
+        if (node != null) {
+            if (!node.referenced) {
+                node.referenced = true;
+            }
+            hits.increment();
+            return node.value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 写入缓存，已存在时返回已有的值
+     *
+     * @param key 键
+     * @param value 值
+     * @return V 缓存中的值
+     */
+    public V putIfAbsent(K key, V value) {
+        Node<K, V> created = new Node<>(key, value);
+        Node<K, V> existing = entries.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing.value;
+        }
+        clock.offer(created);
+        if (size.incrementAndGet() > maximumSize) {
+            evict();
+        }
+        return value;
+    }
+
+    /**
+     * 删除缓存，同时从淘汰队列中移除对应节点(线性扫描，只适合低频调用)
+     *
+     * @param key 键
+     * @return V 被删除的值，不存在时返回 null
+     */
+    public V remove(K key) {
+        Node<K, V> node = entries.remove(key);
+        if (node == null) {
+            return null;
+        }
+        size.decrementAndGet();
+        // 与 putIfAbsent 并发时节点可能尚未入队，残留的节点在淘汰时按身份校验跳过
+        clock.remove(node);
+        return node.value;
+    }
+
+    private void evict() {
+        while (size.get() > maximumSize) {
+            Node<K, V> node = clock.poll();
+            if (node == null) {
+                return;
+            }
+            // 已被删除或替换的旧节点
+            if (entries.get(node.key) != node) {
+                continue;
+            }
+            if (node.referenced) {
+                node.referenced = false;
+                clock.offer(node);
+            } else if (entries.remove(node.key, node)) {
+                size.decrementAndGet();
+                evictions.increment();
+            }
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedCache{" +
+                "size=" + size() +
+                ", maximumSize=" + maximumSize +
+                ", hits=" + getHitCount() +
+                ", misses=" + getMissCount() +
+                ", evictions=" + getEvictionCount() +
+                '}';
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        private volatile boolean referenced;
+
+        private Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package per.meteor.aop.log.common.codec;
+
+import per.meteor.aop.log.common.enums.ModuleType;
+import per.meteor.aop.log.common.enums.OperationType;
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * LogDomain 二进制编解码
+ * <p>
+ * 格式：版本(1 字节) + 字段存在位图(varlong) + 依次写入非空字段。
+ * 字符串为 varint 长度前缀的 UTF-8，枚举为序号 varint，时间为毫秒时间戳 zigzag varlong，
+ * 整数为 zigzag varint。枚举按序号编码，新增枚举值只能追加在末尾。
+ * <p>
+ * 时间字段为本地时间(LocalDateTime，不含时区)按 UTC 换算的毫秒数，即"墙上时间"本身，不是真实的时间点：
+ * 编解码与所在机器的时区无关，跨时区读取不会偏移，也不受夏令时重叠影响。
+ * 需要换算为真实时间点的读取方须按写入方的时区解释，例如东八区写入的值减去 8 小时才是 epoch 毫秒。
+ * <p>
+ * 新增字段只能追加序号，旧版本的记录中对应的存在位为 0，因此解码时兼容所有不高于当前版本的记录。
+ * 版本 2 新增 exceptionFingerprint、exceptionCount；版本 3 新增 requestDuration。
+ *
+ * @author meteor
+ * @date 2021-10-08 10:30
+ */
+public final class LogDomainCodec {
+
+    public static final int VERSION = 3;
+
+    private static final ModuleType[] MODULE_TYPES = ModuleType.values();
+    private static final OperationType[] OPERATION_TYPES = OperationType.values();
+
+    private static final int LOG_ID = 0;
+    private static final int LOG_SERIAL_NUMBER = 1;
+    private static final int REQUEST_PARAMETER = 2;
+    private static final int REQUEST_URL = 3;
+    private static final int REQUEST_METHOD = 4;
+    private static final int REQUEST_TIME = 5;
+    private static final int RESPONSE_STATUS = 6;
+    private static final int RESPONSE_CODE = 7;
+    private static final int RESPONSE_BODY = 8;
+    private static final int RESPONSE_TIME = 9;
+    private static final int EXCEPTION_NAME = 10;
+    private static final int EXCEPTION_MESSAGE = 11;
+    private static final int REQUEST_IP = 12;
+    private static final int REQUEST_HEADER = 13;
+    private static final int REQUEST_METHOD_PATH = 14;
+    private static final int REQUEST_TIME_CONSUMING = 15;
+    private static final int USER_AGENT = 16;
+    private static final int BROWSER_TYPE = 17;
+    private static final int BROWSER_NAME = 18;
+    private static final int BROWSER_VERSION = 19;
+    private static final int OPERATING_SYSTEM = 20;
+    private static final int OPERATION_USER = 21;
+    private static final int SYSTEM_VERSION = 22;
+    private static final int OPERATION_MODULE = 23;
+    private static final int OPERATION_TYPE = 24;
+    private static final int OPERATION_DESC = 25;
+    private static final int EXCEPTION_FINGERPRINT = 26;
+    private static final int EXCEPTION_COUNT = 27;
+    private static final int REQUEST_DURATION = 28;
+
+    private LogDomainCodec() {}
+
+    public static byte[] encode(LogDomain log) {
+        BinaryWriter writer = new BinaryWriter();
+        encode(log, writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * 编码追加到 writer，调用方可复用 writer 避免每条记录分配缓冲
+     *
+     * @param log 日志
+     * @param writer 写缓冲
+     */
+    public static void encode(LogDomain log, BinaryWriter writer) {
+        writer.writeByte(VERSION);
+        writer.writeVarLong(presence(log));
+        writeString(writer, log.getLogId());
+        writeString(writer, log.getLogSerialNumber());
+        writeString(writer, log.getRequestParameter());
+        writeString(writer, log.getRequestUrl());
+        writeString(writer, log.getRequestMethod());
+        writeTime(writer, log.getRequestTime());
+        writeString(writer, log.getResponseStatus());
+        if (log.getResponseCode() != null) {
+            writer.writeZigZagInt(log.getResponseCode());
+        }
+        writeString(writer, log.getResponseBody());
+        writeTime(writer, log.getResponseTime());
+        writeString(writer, log.getExceptionName());
+        writeString(writer, log.getExceptionMessage());
+        writeString(writer, log.getRequestIp());
+        writeString(writer, log.getRequestHeader());
+        writeString(writer, log.getRequestMethodPath());
+        writeString(writer, log.getRequestTimeConsuming());
+        writeString(writer, log.getUserAgent());
+        writeString(writer, log.getBrowserType());
+        writeString(writer, log.getBrowserName());
+        writeString(writer, log.getBrowserVersion());
+        writeString(writer, log.getOperatingSystem());
+        writeString(writer, log.getOperationUser());
+        writeString(writer, log.getSystemVersion());
+        if (log.getOperationModule() != null) {
+            writer.writeVarInt(log.getOperationModule().ordinal());
+        }
+        if (log.getOperationType() != null) {
+            writer.writeVarInt(log.getOperationType().ordinal());
+        }
+        writeString(writer, log.getOperationDesc());
+        writeString(writer, log.getExceptionFingerprint());
+        if (log.getExceptionCount() != null) {
+            writer.writeZigZagInt(log.getExceptionCount());
+        }
+        if (log.getRequestDuration() != null) {
+            writer.writeZigZagLong(log.getRequestDuration());
+        }
+    }
+
+    public static LogDomain decode(byte[] bytes) {
+        return decode(new BinaryReader(bytes));
+    }
+
+    public static LogDomain decode(byte[] bytes, int offset, int length) {
+        return decode(new BinaryReader(bytes, offset, length));
+    }
+
+    public static LogDomain decode(BinaryReader reader) {
+        int version = reader.readByte();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalStateException("unsupported LogDomain codec version: " + version);
+        }
+        long presence = reader.readVarLong();
+        LogDomain log = new LogDomain();
+        log.setLogId(readString(reader, presence, LOG_ID));
+        log.setLogSerialNumber(readString(reader, presence, LOG_SERIAL_NUMBER));
+        log.setRequestParameter(readString(reader, presence, REQUEST_PARAMETER));
+        log.setRequestUrl(readString(reader, presence, REQUEST_URL));
+        log.setRequestMethod(readString(reader, presence, REQUEST_METHOD));
+        log.setRequestTime(readTime(reader, presence, REQUEST_TIME));
+        log.setResponseStatus(readString(reader, presence, RESPONSE_STATUS));
+        log.setResponseCode(has(presence, RESPONSE_CODE) ? reader.readZigZagInt() : null);
+        log.setResponseBody(readString(reader, presence, RESPONSE_BODY));
+        log.setResponseTime(readTime(reader, presence, RESPONSE_TIME));
+        log.setExceptionName(readString(reader, presence, EXCEPTION_NAME));
+        log.setExceptionMessage(readString(reader, presence, EXCEPTION_MESSAGE));
+        log.setRequestIp(readString(reader, presence, REQUEST_IP));
+        log.setRequestHeader(readString(reader, presence, REQUEST_HEADER));
+        log.setRequestMethodPath(readString(reader, presence, REQUEST_METHOD_PATH));
+        log.setRequestTimeConsuming(readString(reader, presence, REQUEST_TIME_CONSUMING));
+        log.setUserAgent(readString(reader, presence, USER_AGENT));
+        log.setBrowserType(readString(reader, presence, BROWSER_TYPE));
+        log.setBrowserName(readString(reader, presence, BROWSER_NAME));
+        log.setBrowserVersion(readString(reader, presence, BROWSER_VERSION));
+        log.setOperatingSystem(readString(reader, presence, OPERATING_SYSTEM));
+        log.setOperationUser(readString(reader, presence, OPERATION_USER));
+        log.setSystemVersion(readString(reader, presence, SYSTEM_VERSION));
+        if (has(presence, OPERATION_MODULE)) {
+            log.setOperationModule(ordinal(MODULE_TYPES, reader.readVarInt()));
+        }
+        if (has(presence, OPERATION_TYPE)) {
+            log.setOperationType(ordinal(OPERATION_TYPES, reader.readVarInt()));
+        }
+        log.setOperationDesc(readString(reader, presence, OPERATION_DESC));
+        log.setExceptionFingerprint(readString(reader, presence, EXCEPTION_FINGERPRINT));
+        log.setExceptionCount(has(presence, EXCEPTION_COUNT) ? reader.readZigZagInt() : null);
+        log.setRequestDuration(has(presence, REQUEST_DURATION) ? reader.readZigZagLong() : null);
+        return log;
+    }
+
+    private static long presence(LogDomain log) {
+        long bits = 0;
+        bits |= bit(log.getLogId(), LOG_ID);
+        bits |= bit(log.getLogSerialNumber(), LOG_SERIAL_NUMBER);
+        bits |= bit(log.getRequestParameter(), REQUEST_PARAMETER);
+        bits |= bit(log.getRequestUrl(), REQUEST_URL);
+        bits |= bit(log.getRequestMethod(), REQUEST_METHOD);
+        bits |= bit(log.getRequestTime(), REQUEST_TIME);
+        bits |= bit(log.getResponseStatus(), RESPONSE_STATUS);
+        bits |= bit(log.getResponseCode(), RESPONSE_CODE);
+        bits |= bit(log.getResponseBody(), RESPONSE_BODY);
+        bits |= bit(log.getResponseTime(), RESPONSE_TIME);
+        bits |= bit(log.getExceptionName(), EXCEPTION_NAME);
+        bits |= bit(log.getExceptionMessage(), EXCEPTION_MESSAGE);
+        bits |= bit(log.getRequestIp(), REQUEST_IP);
+        bits |= bit(log.getRequestHeader(), REQUEST_HEADER);
+        bits |= bit(log.getRequestMethodPath(), REQUEST_METHOD_PATH);
+        bits |= bit(log.getRequestTimeConsuming(), REQUEST_TIME_CONSUMING);
+        bits |= bit(log.getUserAgent(), USER_AGENT);
+        bits |= bit(log.getBrowserType(), BROWSER_TYPE);
+        bits |= bit(log.getBrowserName(), BROWSER_NAME);
+        bits |= bit(log.getBrowserVersion(), BROWSER_VERSION);
+        bits |= bit(log.getOperatingSystem(), OPERATING_SYSTEM);
+        bits |= bit(log.getOperationUser(), OPERATION_USER);
+        bits |= bit(log.getSystemVersion(), SYSTEM_VERSION);
+        bits |= bit(log.getOperationModule(), OPERATION_MODULE);
+        bits |= bit(log.getOperationType(), OPERATION_TYPE);
+        bits |= bit(log.getOperationDesc(), OPERATION_DESC);
+        bits |= bit(log.getExceptionFingerprint(), EXCEPTION_FINGERPRINT);
+        bits |= bit(log.getExceptionCount(), EXCEPTION_COUNT);
+        bits |= bit(log.getRequestDuration(), REQUEST_DURATION);
+        return bits;
+    }
+
+    private static long bit(Object value, int field) {
+        return value == null ? 0 : 1L << field;
+    }
+
+    private static boolean has(long presence, int field) {
+        return (presence & (1L << field)) != 0;
+    }
+
+    private static void writeString(BinaryWriter writer, String value) {
+        if (value != null) {
+            writer.writeString(value);
+        }
+    }
+
+    /**
+     * 本地时间按 UTC 换算，见类注释中的时间字段说明
+     */
+    private static void writeTime(BinaryWriter writer, LocalDateTime time) {
+        if (time != null) {
+            writer.writeZigZagLong(time.toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+    }
+
+    private static String readString(BinaryReader reader, long presence, int field) {
+        return has(presence, field) ? reader.readString() : null;
+    }
+
+    private static LocalDateTime readTime(BinaryReader reader, long presence, int field) {
+        return has(presence, field)
+                ? LocalDateTime.ofInstant(Instant.ofEpochMilli(reader.readZigZagLong()), ZoneOffset.UTC) : null;
+    }
+
+    private static <E extends Enum<E>> E ordinal(E[] values, int ordinal) {
+        return ordinal < values.length ? values[ordinal] : null;
+    }
+}
@@ -0,0 +1,22 @@
+package per.meteor.aop.log.common.enums;
+
+/**
+ * 请求参数、响应结果的采集方式
+ *
+ * @author meteor
+ * @date 2021-10-12 09:10
+ */
+public enum CaptureMode {
+    /**
+     * 使用全局配置 meteor.log.capture.mode
+     */
+    DEFAULT,
+    /**
+     * 在请求线程中序列化为 JSON
+     */
+    EAGER,
+    /**
+     * 请求线程只保留对象引用(声明为可变的类型保留快照)，由日志消费线程序列化
+     */
+    DEFERRED
+}
@@ -0,0 +1,136 @@
+package per.meteor.aop.log.common.id;
+
+import per.meteor.aop.log.common.constant.DatePattern;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 64 位有序唯一 ID 生成器(Snowflake)
+ * <p>
+ * 结构：1 位符号位 + 41 位毫秒时间戳(相对 {@link #EPOCH}) + 10 位节点号 + 12 位毫秒内序号。
+ * 时间戳与序号合并保存在一个 AtomicLong 中，通过 CAS 推进，无锁。
+ * 同一毫秒序号用尽或系统时钟回拨时，逻辑时间戳继续向前借用，保证单调递增且不阻塞；
+ * 系统时钟追上后自动恢复。
+ *
+ * @author meteor
+ * @date 2021-10-15 09:30
+ */
+public final class SnowflakeIdGenerator {
+
+    /** 2021-10-01 00:00:00 UTC **/
+    public static final long EPOCH = 1633046400000L;
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final int NODE_BITS = 10;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    /** 19 位十进制即可容纳所有正的 long **/
+    private static final int ID_DIGITS = 19;
+    /** 节点号与序号合计 22 位，最大 4194303 **/
+    private static final int LOW_DIGITS = 7;
+
+    private static final DateTimeFormatter SERIAL_FORMATTER = DateTimeFormatter.ofPattern(DatePattern.PURE_DATETIME_MS_PATTERN);
+
+    private final long node;
+    private final ZoneId zone;
+    /** 系统时钟(毫秒) **/
+    private final LongSupplier clock;
+    /** 时间戳 << SEQUENCE_BITS | 序号 **/
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * @param nodeId 节点号 0 ~ 1023，同一时刻运行的实例之间不能重复
+     */
+    public SnowflakeIdGenerator(int nodeId) {
+        this(nodeId, ZoneId.systemDefault());
+    }
+
+    public SnowflakeIdGenerator(int nodeId, ZoneId zone) {
+        this(nodeId, zone, System::currentTimeMillis);
+    }
+
+    /**
+     * @param nodeId 节点号
+     * @param zone 流水号使用的时区
+     * @param clock 毫秒时钟，测试时钟回拨时替换
+     */
+    SnowflakeIdGenerator(int nodeId, ZoneId zone, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("nodeId must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.node = (long) nodeId << SEQUENCE_BITS;
+        this.zone = zone;
+        this.clock = clock;
+    }
+
+    public long nextId() {
+        for (;;) {
+            long now = clock.getAsLong() - EPOCH;
+            long last = state.get();
+            // 时间前进时序号归零，否则在上一个值的基础上加一，序号溢出时自然进位到下一毫秒
+            long next = now > (last >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : last + 1;
+            if (state.compareAndSet(last, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                return timestamp << (NODE_BITS + SEQUENCE_BITS) | node | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * ID 的字符串形式：左补零的 19 位十进制，字典序与数值顺序一致
+     *
+     * @param id ID
+     * @return java.lang.String
+     */
+    public static String toString(long id) {
+        char[] chars = new char[ID_DIGITS];
+        writeDigits(chars, 0, ID_DIGITS, id);
+        return new String(chars);
+    }
+
+    /**
+     * 流水号：模块序号 + 操作类型序号 + ID 时间(yyyyMMddHHmmssSSS) + 节点号及序号(7 位)
+     *
+     * @param id ID
+     * @param prefix 业务前缀，可为空
+     * @return java.lang.String
+     */
+    public String toSerialNumber(long id, String prefix) {
+        StringBuilder serial = new StringBuilder(prefix.length() + 17 + LOW_DIGITS);
+        serial.append(prefix);
+        SERIAL_FORMATTER.formatTo(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampOf(id)), zone), serial);
+        char[] low = new char[LOW_DIGITS];
+        writeDigits(low, 0, LOW_DIGITS, id & ((1L << (NODE_BITS + SEQUENCE_BITS)) - 1));
+        return serial.append(low).toString();
+    }
+
+    /**
+     * ID 中的毫秒时间戳
+     *
+     * @param id ID
+     * @return long
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID);
+    }
+
+    public int getNodeId() {
+        return (int) (node >>> SEQUENCE_BITS);
+    }
+
+    private static void writeDigits(char[] chars, int offset, int digits, long value) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package per.meteor.aop.log.common.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 限制输出大小的 JSON 序列化
+ * <p>
+ * 通过 {@link JsonGenerator} 直接写入复用的字节缓冲区，缓冲区最多保留 maxBytes 字节。
+ * 超出后只计数不保存，计数达到 sizeCeiling 时中止序列化，避免为一个超大的响应完整遍历对象。
+ * 截断的结果末尾追加标记及原始大小(估算)，截断后的内容不再是合法的 JSON。
+ * <p>
+ * 非线程安全，每个线程持有一个实例。
+ *
+ * @author meteor
+ * @date 2021-10-13 10:05
+ */
+public final class CappedJsonSerializer {
+
+    Logger logger = LoggerFactory.getLogger(CappedJsonSerializer.class);
+
+    /** 缓冲区超过该大小时不再保留 **/
+    private static final int MAX_RETAINED_BYTES = 64 * 1024;
+    private static final int INITIAL_BYTES = 1024;
+
+    private final BoundedBuffer buffer = new BoundedBuffer();
+    private int maxBytes;
+    private long sizeCeiling;
+
+    /**
+     * @param maxBytes 单个字段最多保留的字节数，小于等于 0 时不限制
+     * @param sizeCeiling 截断后继续统计原始大小的上限，达到该值后中止序列化
+     */
+    public CappedJsonSerializer(int maxBytes, long sizeCeiling) {
+        limit(maxBytes, sizeCeiling);
+    }
+
+    /**
+     * 修改大小限制
+     *
+     * @param maxBytes 单个字段最多保留的字节数，小于等于 0 时不限制
+     * @param sizeCeiling 截断后继续统计原始大小的上限，达到该值后中止序列化
+     */
+    public void limit(int maxBytes, long sizeCeiling) {
+        this.maxBytes = maxBytes > 0 ? maxBytes : Integer.MAX_VALUE;
+        this.sizeCeiling = Math.max(this.maxBytes, sizeCeiling);
+    }
+
+    /**
+     * 序列化对象，与 {@link JsonUtil#toJsonString(Object)} 规则相同：null 为空字符串，字符串及数字原样输出
+     *
+     * @param value 对象
+     * @return java.lang.String
+     */
+    public String writeValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Number) {
+            return value.toString();
+        }
+        try {
+            if (value instanceof String) {
+                return capString((String) value);
+            }
+            return write(generator -> generator.writeObject(value));
+        } catch (Exception e) {
+            logger.error("序列化失败: {}", value.getClass().getName(), e);
+            return "";
+        }
+    }
+
+    /**
+     * 写出 JSON，超出限制时截断
+     *
+     * @param action 写出操作
+     * @return java.lang.String
+     * @throws IOException 写出失败
+     */
+    public String write(JsonWriteAction action) throws IOException {
+        buffer.reset(maxBytes, sizeCeiling);
+        JsonGenerator generator = JsonUtil.mapper.getFactory().createGenerator(buffer);
+        try {
+            action.write(generator);
+            generator.close();
+        } catch (IOException e) {
+            if (!buffer.aborted) {
+                throw e;
+            }
+            // 达到统计上限时中止，缓冲区之后的写入均被忽略
+            generator.close();
+        }
+        return buffer.toResult();
+    }
+
+    private String capString(String value) throws IOException {
+        // UTF-8 每个字符最多 3 字节，长度足够短时无需编码
+        if ((long) value.length() * 3 <= maxBytes) {
+            return value;
+        }
+        buffer.reset(maxBytes, sizeCeiling);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= maxBytes) {
+            return value;
+        }
+        buffer.write(bytes, 0, bytes.length);
+        return buffer.toResult();
+    }
+
+    /**
+     * 只保留前 maxBytes 字节，其余只计数的输出流
+     */
+    private static final class BoundedBuffer extends OutputStream {
+
+        private byte[] bytes = new byte[INITIAL_BYTES];
+        private int count;
+        private long total;
+        private int maxBytes;
+        private long sizeCeiling;
+        private boolean aborted;
+
+        void reset(int maxBytes, long sizeCeiling) {
+            if (bytes.length > MAX_RETAINED_BYTES) {
+                bytes = new byte[INITIAL_BYTES];
+            }
+            this.count = 0;
+            this.total = 0;
+            this.maxBytes = maxBytes;
+            this.sizeCeiling = sizeCeiling;
+            this.aborted = false;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (aborted) {
+                return;
+            }
+            if (count < maxBytes) {
+                ensureCapacity(count + 1);
+                bytes[count++] = (byte) b;
+            }
+            count(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (aborted) {
+                return;
+            }
+            int retained = Math.min(len, maxBytes - count);
+            if (retained > 0) {
+                ensureCapacity(count + retained);
+                System.arraycopy(b, off, bytes, count, retained);
+                count += retained;
+            }
+            count(len);
+        }
+
+        private void count(int len) throws IOException {
+            total += len;
+            if (total > maxBytes && total >= sizeCeiling) {
+                aborted = true;
+                throw new IOException("serialized size exceeds " + sizeCeiling + " bytes");
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                int newLength = (int) Math.min(Math.max((long) bytes.length << 1, capacity), maxBytes);
+                byte[] newBytes = new byte[newLength];
+                System.arraycopy(bytes, 0, newBytes, 0, count);
+                bytes = newBytes;
+            }
+        }
+
+        String toResult() {
+            if (total <= count) {
+                return new String(bytes, 0, count, StandardCharsets.UTF_8);
+            }
+            int length = utf8Boundary();
+            StringBuilder result = new StringBuilder(length + 48);
+            result.append(new String(bytes, 0, length, StandardCharsets.UTF_8))
+                    .append("...[truncated, original size ")
+                    .append(aborted ? ">= " : "")
+                    .append(total)
+                    .append(" bytes]");
+            return result.toString();
+        }
+
+        /**
+         * 截断位置落在多字节字符中间时回退到字符起始位置
+         */
+        private int utf8Boundary() {
+            int start = count - 1;
+            while (start > 0 && count - start < 4 && (bytes[start] & 0xC0) == 0x80) {
+                start--;
+            }
+            if (start < 0) {
+                return 0;
+            }
+            int lead = bytes[start] & 0xFF;
+            int charLength = lead < 0x80 ? 1 : lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : 2;
+            return start + charLength <= count ? count : start;
+        }
+    }
+
+    /**
+     * JSON 写出操作
+     */
+    @FunctionalInterface
+    public interface JsonWriteAction {
+        /**
+         * 写出
+         * @param generator JSON 生成器
+         * @throws IOException 写出失败
+         */
+        void write(JsonGenerator generator) throws IOException;
+    }
+}
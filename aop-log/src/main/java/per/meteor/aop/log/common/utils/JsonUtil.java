@@ -1,19 +1,37 @@
 package per.meteor.aop.log.common.utils;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedOutputStream;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.ObjectUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @author meteor
@@ -26,6 +44,23 @@ public class JsonUtil {
      */
     public static final ObjectMapper mapper;
     public static final String NUMBER_REGEX = "\\d+";
+
+    public static final TypeReference<LinkedHashMap<String, Object>> MAP_TYPE =
+            new TypeReference<LinkedHashMap<String, Object>>() {};
+    public static final TypeReference<LinkedList<Object>> LIST_TYPE = new TypeReference<LinkedList<Object>>() {};
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    /**
+     *    ObjectReader、ObjectWriter 不可变且线程安全，按类型缓存，避免每次调用重新构造类型及查找反序列化器
+     */
+    private static final ObjectWriter WRITER;
+    private static final ObjectWriter PRETTY_WRITER;
+    private static final ObjectReader MAP_READER;
+    private static final ObjectReader LIST_READER;
+    private static final ConcurrentMap<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>(64);
+    private static final ConcurrentMap<Class<?>, ObjectReader> LIST_READERS = new ConcurrentHashMap<>(64);
+
     JsonUtil() {}
     /*
       设置一些通用的属性
@@ -44,6 +79,38 @@ public class JsonUtil {
         mapper.configure(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES, true);
         // 允许key有单引号
         mapper.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
+
+        WRITER = mapper.writer();
+        PRETTY_WRITER = mapper.writerWithDefaultPrettyPrinter();
+        MAP_READER = mapper.readerFor(MAP_TYPE);
+        LIST_READER = mapper.readerFor(LIST_TYPE);
+    }
+
+    /**
+     * 指定类型的 ObjectReader
+     *
+     * @param tClass 类型
+     * @return com.fasterxml.jackson.databind.ObjectReader
+     */
+    public static ObjectReader reader(Class<?> tClass) {
+        ObjectReader reader = READERS.get(tClass);
+        return reader != null ? reader : READERS.computeIfAbsent(tClass, mapper::readerFor);
+    }
+
+    /**
+     * 元素为指定类型的 List 的 ObjectReader
+     *
+     * @param tClass 元素类型
+     * @return com.fasterxml.jackson.databind.ObjectReader
+     */
+    public static ObjectReader listReader(Class<?> tClass) {
+        ObjectReader reader = LIST_READERS.get(tClass);
+        return reader != null ? reader : LIST_READERS.computeIfAbsent(tClass,
+                type -> mapper.readerFor(mapper.getTypeFactory().constructCollectionType(List.class, type)));
+    }
+
+    public static ObjectWriter writer(boolean format) {
+        return format ? PRETTY_WRITER : WRITER;
     }
 
     public static String toJsonString(Object obj) {
@@ -66,22 +133,114 @@ public class JsonUtil {
             if (obj instanceof Number) {
                 return obj.toString();
             }
-            if (format) {
-                return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj);
-            }
-            return mapper.writeValueAsString(obj);
+            return writer(format).writeValueAsString(obj);
         } catch (Exception e) {
             log.error(String.format("toJSONString %s", obj != null ? obj.toString() : "null"), e);
         }
         return defaultSupplier.get();
     }
 
+    /**
+     * 序列化为 UTF-8 字节，规则与 {@link #toJsonString(Object)} 相同，不经过中间的 String
+     *
+     * @param obj 对象
+     * @return byte[] 对象为 null 或失败时返回空数组
+     */
+    public static byte[] toJsonBytes(Object obj) {
+        try {
+            if (obj == null) {
+                return EMPTY_BYTES;
+            }
+            if (obj instanceof String || obj instanceof Number) {
+                return obj.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            return WRITER.writeValueAsBytes(obj);
+        } catch (Exception e) {
+            log.error(String.format("toJsonBytes %s", obj), e);
+        }
+        return EMPTY_BYTES;
+    }
+
+    /**
+     * 序列化并直接写入输出流，规则与 {@link #toJsonString(Object)} 相同，不关闭输出流
+     *
+     * @param out 输出流
+     * @param obj 对象
+     * @return boolean 是否写出成功
+     */
+    public static boolean writeJson(OutputStream out, Object obj) {
+        try {
+            if (obj == null) {
+                return true;
+            }
+            if (obj instanceof String || obj instanceof Number) {
+                out.write(obj.toString().getBytes(StandardCharsets.UTF_8));
+                return true;
+            }
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                WRITER.writeValue(generator, obj);
+            }
+            return true;
+        } catch (Exception e) {
+            log.error(String.format("writeJson %s", obj), e);
+        }
+        return false;
+    }
+
+    /**
+     * 序列化并直接写入 ByteBuffer 的当前位置，规则与 {@link #toJsonString(Object)} 相同
+     *
+     * @param buffer 缓冲区，剩余空间不足时写出失败，position 保持不变
+     * @param obj 对象
+     * @return int 写入的字节数，失败时返回 -1
+     */
+    public static int writeJson(ByteBuffer buffer, Object obj) {
+        int start = buffer.position();
+        if (writeJson(new ByteBufferBackedOutputStream(buffer), obj)) {
+            return buffer.position() - start;
+        }
+        buffer.position(start);
+        return -1;
+    }
+
+    /**
+     * 生成对象的 JSON 快照，快照与原对象不再关联，序列化快照与序列化原对象结果相同
+     *
+     * @param obj 对象
+     * @return com.fasterxml.jackson.databind.util.TokenBuffer 失败时返回 null
+     */
+    public static TokenBuffer toTokenBuffer(Object obj) {
+        if (obj == null) {
+            return null;
+        }
+        TokenBuffer buffer = new TokenBuffer(mapper, false);
+        try {
+            mapper.writeValue(buffer, obj);
+            return buffer;
+        } catch (Exception e) {
+            log.error(String.format("toTokenBuffer %s", obj), e);
+        }
+        return null;
+    }
+
     public static <T> T toJavaObject(String value, Class<T> tClass) {
         return !ObjectUtils.isEmpty(value) ? toJavaObject(value, tClass, () -> null) : null;
     }
 
     public static <T> T toJavaObject(Object obj, Class<T> tClass) {
-        return obj != null ? toJavaObject(toJsonString(obj), tClass, () -> null) : null;
+        if (obj == null) {
+            return null;
+        }
+        if (obj instanceof String) {
+            return toJavaObject((String) obj, tClass, () -> null);
+        }
+        try {
+            return convert(obj, reader(tClass));
+        } catch (Exception e) {
+            log.error("toJavaObject exception: \n {}\n {}", obj.getClass(), tClass, e);
+        }
+        return null;
     }
 
     public static <T> T toJavaObject(String value, Class<T> tClass, Supplier<T> defaultSupplier) {
@@ -89,19 +248,226 @@ public class JsonUtil {
             if (ObjectUtils.isEmpty(value)) {
                 return defaultSupplier.get();
             }
-            return mapper.readValue(value, tClass);
+            return reader(tClass).readValue(value);
         } catch (Exception e) {
             log.error("toJavaObject exception: \n {}\n {}", value, tClass, e);
         }
         return defaultSupplier.get();
     }
 
+    /**
+     * 从 UTF-8 字节反序列化
+     *
+     * @param bytes JSON 字节
+     * @param tClass 类型
+     * @return T 为空或失败时返回 null
+     */
+    public static <T> T toJavaObject(byte[] bytes, Class<T> tClass) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            return reader(tClass).readValue(bytes);
+        } catch (Exception e) {
+            log.error("toJavaObject exception: \n {}\n {}", new String(bytes, StandardCharsets.UTF_8), tClass, e);
+        }
+        return null;
+    }
+
+    /**
+     * 从输入流反序列化，不关闭输入流
+     *
+     * @param in 输入流
+     * @param tClass 类型
+     * @return T 失败时返回 null
+     */
+    public static <T> T toJavaObject(InputStream in, Class<T> tClass) {
+        if (in == null) {
+            return null;
+        }
+        try (JsonParser parser = mapper.getFactory().createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            return reader(tClass).readValue(parser);
+        } catch (Exception e) {
+            log.error("toJavaObject exception: {}", tClass, e);
+        }
+        return null;
+    }
+
+    /**
+     * 从 ByteBuffer 的剩余内容反序列化，成功后 position 移动到 limit
+     *
+     * @param buffer 缓冲区
+     * @param tClass 类型
+     * @return T 为空或失败时返回 null
+     */
+    public static <T> T toJavaObject(ByteBuffer buffer, Class<T> tClass) {
+        if (buffer == null || !buffer.hasRemaining()) {
+            return null;
+        }
+        try {
+            T value;
+            if (buffer.hasArray()) {
+                value = reader(tClass).readValue(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                buffer.position(buffer.limit());
+            } else {
+                value = reader(tClass).readValue(new ByteBufferBackedInputStream(buffer));
+            }
+            return value;
+        } catch (Exception e) {
+            log.error("toJavaObject exception: {}", tClass, e);
+        }
+        return null;
+    }
+
+    /**
+     * 逐个读取 JSON 数组(或以空白分隔的多个 JSON 值)中的元素，内存占用与数组长度无关。
+     * 读取完毕或不再需要时需要关闭迭代器，关闭时同时关闭输入流
+     *
+     * @param in 输入流
+     * @param tClass 元素类型
+     * @return com.fasterxml.jackson.databind.MappingIterator<T>
+     * @throws IOException 读取失败
+     */
+    public static <T> MappingIterator<T> readValues(InputStream in, Class<T> tClass) throws IOException {
+        return reader(tClass).readValues(in);
+    }
+
+    /**
+     * 逐个读取 ByteBuffer 剩余内容中的 JSON 数组元素，不修改 buffer 的 position
+     *
+     * @param buffer 缓冲区
+     * @param tClass 元素类型
+     * @return com.fasterxml.jackson.databind.MappingIterator<T>
+     * @throws IOException 读取失败
+     */
+    public static <T> MappingIterator<T> readValues(ByteBuffer buffer, Class<T> tClass) throws IOException {
+        if (buffer.hasArray()) {
+            return reader(tClass).readValues(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        return reader(tClass).readValues(new ByteBufferBackedInputStream(buffer.duplicate()));
+    }
+
+    /**
+     * 以 Stream 逐个读取 JSON 数组元素，使用完毕需要关闭 Stream，关闭时同时关闭输入流。
+     * 开头的内容无法解析时关闭输入流并抛出异常
+     *
+     * @param in 输入流
+     * @param tClass 元素类型
+     * @return java.util.stream.Stream<T>
+     * @throws IOException 读取失败
+     */
+    public static <T> Stream<T> stream(InputStream in, Class<T> tClass) throws IOException {
+        return stream(readValuesOrClose(in, tClass));
+    }
+
+    /**
+     * 以 Stream 逐个读取文件中的 JSON 数组元素，使用完毕需要关闭 Stream
+     *
+     * @param path 文件
+     * @param tClass 元素类型
+     * @return java.util.stream.Stream<T>
+     * @throws IOException 读取失败
+     */
+    public static <T> Stream<T> stream(Path path, Class<T> tClass) throws IOException {
+        return stream(Files.newInputStream(path), tClass);
+    }
+
+    public static <T> Stream<T> stream(ByteBuffer buffer, Class<T> tClass) throws IOException {
+        return stream(readValues(buffer, tClass));
+    }
+
+    /**
+     * 按固定大小分块读取 JSON 数组元素，同一时间只有当前块在内存中，
+     * 下游可以对每个块并行处理(chunk.parallelStream())而不必将整个数组读入内存。
+     * 输入流的关闭与 {@link #stream(InputStream, Class)} 相同
+     *
+     * @param in 输入流
+     * @param tClass 元素类型
+     * @param chunkSize 每块的元素个数
+     * @return java.util.stream.Stream<java.util.List<T>>
+     * @throws IOException 读取失败
+     */
+    public static <T> Stream<List<T>> streamChunks(InputStream in, Class<T> tClass, int chunkSize) throws IOException {
+        return streamChunks(readValuesOrClose(in, tClass), chunkSize);
+    }
+
+    public static <T> Stream<List<T>> streamChunks(Path path, Class<T> tClass, int chunkSize) throws IOException {
+        return streamChunks(Files.newInputStream(path), tClass, chunkSize);
+    }
+
+    public static <T> Stream<List<T>> streamChunks(ByteBuffer buffer, Class<T> tClass, int chunkSize) throws IOException {
+        return streamChunks(readValues(buffer, tClass), chunkSize);
+    }
+
+    private static <T> MappingIterator<T> readValuesOrClose(InputStream in, Class<T> tClass) throws IOException {
+        try {
+            return readValues(in, tClass);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static <T> Stream<T> stream(MappingIterator<T> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(() -> closeQuietly(iterator));
+    }
+
+    private static <T> Stream<List<T>> streamChunks(MappingIterator<T> iterator, int chunkSize) {
+        if (chunkSize <= 0) {
+            closeQuietly(iterator);
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        Spliterator<List<T>> chunks = new Spliterators.AbstractSpliterator<List<T>>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super List<T>> action) {
+                if (!iterator.hasNext()) {
+                    return false;
+                }
+                List<T> chunk = new ArrayList<>(chunkSize);
+                while (chunk.size() < chunkSize && iterator.hasNext()) {
+                    chunk.add(iterator.next());
+                }
+                action.accept(chunk);
+                return true;
+            }
+
+            @Override
+            public Spliterator<List<T>> trySplit() {
+                // 不拆分，保证同一时间只有一个块在内存中
+                return null;
+            }
+        };
+        return StreamSupport.stream(chunks, false).onClose(() -> closeQuietly(iterator));
+    }
+
+    private static void closeQuietly(MappingIterator<?> iterator) {
+        try {
+            iterator.close();
+        } catch (IOException e) {
+            log.warn("close MappingIterator exception", e);
+        }
+    }
+
     public static <T> List<T> toJavaObjectList(String value, Class<T> tClass) {
         return !ObjectUtils.isEmpty(value) ? toJavaObjectList(value, tClass, () -> null) : null;
     }
 
     public static <T> List<T> toJavaObjectList(Object obj, Class<T> tClass) {
-        return obj != null ? toJavaObjectList(toJsonString(obj), tClass, () -> null) : null;
+        if (obj == null) {
+            return null;
+        }
+        if (obj instanceof String) {
+            return toJavaObjectList((String) obj, tClass, () -> null);
+        }
+        try {
+            return convert(obj, listReader(tClass));
+        } catch (Exception e) {
+            log.error("toJavaObjectList exception: \n {}\n {}", obj.getClass(), tClass, e);
+        }
+        return null;
     }
 
     public static <T> List<T> toJavaObjectList(String value, Class<T> tClass, Supplier<List<T>> defaultSupplier) {
@@ -109,16 +475,22 @@ public class JsonUtil {
             if (ObjectUtils.isEmpty(value)) {
                 return defaultSupplier.get();
             }
-            JavaType javaType = mapper.getTypeFactory().constructParametricType(List.class, tClass);
-            return mapper.readValue(value, javaType);
+            return listReader(tClass).readValue(value);
         } catch (Exception e) {
             log.error("toJavaObjectList exception: \n {}\n {}", value, tClass, e);
         }
         return defaultSupplier.get();
     }
 
+    /**
+     * 深拷贝为指定类型，即使对象已是该类型也会返回新的实例
+     *
+     * @param obj 对象
+     * @param tClass 类型
+     * @return T
+     */
     public static <T> T jsonCopy(Object obj, Class<T> tClass) {
-        return obj != null ? toJavaObject(toJsonString(obj), tClass) : null;
+        return toJavaObject(obj, tClass);
     }
 
     public static Map<String, Object> toMap(String value) {
@@ -133,12 +505,15 @@ public class JsonUtil {
         if (value == null) {
             return defaultSupplier.get();
         }
+        if (value instanceof String) {
+            return toMap((String) value, defaultSupplier);
+        }
         try {
-            return mapper.readValue(toJsonString(value), new TypeReference<Map<String, Object>>() {});
+            return convert(value, MAP_READER);
         } catch (Exception e) {
-            log.info("fail to convert" + toJsonString(value), e);
+            log.error("toMap exception\n{}", value.getClass(), e);
         }
-        return toMap(toJsonString(value), defaultSupplier);
+        return defaultSupplier.get();
     }
 
     public static Map<String, Object> toMap(String value, Supplier<Map<String, Object>> defaultSupplier) {
@@ -146,7 +521,7 @@ public class JsonUtil {
             return defaultSupplier.get();
         }
         try {
-            return mapper.readValue(value, new TypeReference<LinkedHashMap<String, Object>>() {});
+            return MAP_READER.readValue(value);
         } catch (Exception e) {
             log.error("toMap exception\n{}", value, e);
         }
@@ -168,7 +543,7 @@ public class JsonUtil {
         }
         try {
 
-            return mapper.readValue(value, new TypeReference<LinkedList<Object>>() {});
+            return LIST_READER.readValue(value);
         } catch (Exception e) {
             log.error("toList exception\n" + value, e);
         }
@@ -182,7 +557,32 @@ public class JsonUtil {
         if (value instanceof List) {
             return new ArrayList<>(Collections.singleton(value));
         }
-        return toList(toJsonString(value), defaultSuppler);
+        if (value instanceof String) {
+            return toList((String) value, defaultSuppler);
+        }
+        try {
+            return convert(value, LIST_READER);
+        } catch (Exception e) {
+            log.error("toList exception\n" + value.getClass(), e);
+        }
+        return defaultSuppler.get();
+    }
+
+    /**
+     * 对象之间的转换：序列化为 {@link TokenBuffer} 后直接按目标类型读取，不生成中间的 JSON 字符串。
+     * 与 ObjectMapper.convertValue 不同，源对象已是目标类型时同样会复制
+     *
+     * @param value 源对象
+     * @param reader 目标类型
+     * @return T
+     * @throws IOException 转换失败
+     */
+    private static <T> T convert(Object value, ObjectReader reader) throws IOException {
+        TokenBuffer buffer = new TokenBuffer(mapper, false);
+        WRITER.writeValue(buffer, value);
+        try (JsonParser parser = buffer.asParser(mapper)) {
+            return reader.readValue(parser);
+        }
     }
 
     public static long getLong(Map<String, Object> map, String key) {
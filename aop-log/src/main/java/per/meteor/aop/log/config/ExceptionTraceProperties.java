@@ -0,0 +1,66 @@
+package per.meteor.aop.log.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 异常指纹及堆栈去重配置
+ *
+ * @author meteor
+ * @date 2021-10-14 10:30
+ */
+@Component
+@ConfigurationProperties(prefix = "meteor.log.exception")
+public class ExceptionTraceProperties {
+
+    /** 是否按异常指纹对堆栈去重，关闭时每条异常日志都保存完整堆栈 **/
+    private boolean deduplicate = true;
+    /** 计算指纹的栈顶帧数 **/
+    private int topFrames = 8;
+    /** 去重存储最多保存的堆栈条数 **/
+    private int storeSize = 1024;
+    /** 出现次数的统计窗口(毫秒) **/
+    private long window = 60000;
+    /** 非首次出现时日志中只记录异常消息，超出部分截断(字符) **/
+    private int messageLength = 512;
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    public int getTopFrames() {
+        return topFrames;
+    }
+
+    public void setTopFrames(int topFrames) {
+        this.topFrames = topFrames;
+    }
+
+    public int getStoreSize() {
+        return storeSize;
+    }
+
+    public void setStoreSize(int storeSize) {
+        this.storeSize = storeSize;
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    public void setWindow(long window) {
+        this.window = window;
+    }
+
+    public int getMessageLength() {
+        return messageLength;
+    }
+
+    public void setMessageLength(int messageLength) {
+        this.messageLength = messageLength;
+    }
+}
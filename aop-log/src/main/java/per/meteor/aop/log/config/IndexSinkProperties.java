@@ -0,0 +1,66 @@
+package per.meteor.aop.log.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 最近日志内存索引配置
+ *
+ * @author meteor
+ * @date 2021-10-18 10:10
+ */
+@Component
+@ConfigurationProperties(prefix = "meteor.log.sink.index")
+public class IndexSinkProperties {
+
+    /** 是否启用 **/
+    private boolean enabled = false;
+    /** 最多保留的日志条数，向上取整为 2 的幂 **/
+    private int capacity = 262144;
+    /** 保留时长(毫秒)，按请求时间淘汰，0 表示不按时间淘汰 **/
+    private long retention = 600000;
+    /** 保留日志估算占用的内存上限(字节)，0 表示不限制 **/
+    private long maxBytes = 256L * 1024 * 1024;
+    /** 单页最多返回的条数 **/
+    private int maxPageSize = 500;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public long getRetention() {
+        return retention;
+    }
+
+    public void setRetention(long retention) {
+        this.retention = retention;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+}
@@ -0,0 +1,76 @@
+package per.meteor.aop.log.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * JDBC 日志输出配置
+ *
+ * @author meteor
+ * @date 2021-10-06 10:05
+ */
+@Component
+@ConfigurationProperties(prefix = "meteor.log.sink.jdbc")
+public class JdbcSinkProperties {
+
+    /** 是否启用，启用时容器中需要存在 DataSource **/
+    private boolean enabled = false;
+    /** 表名 **/
+    private String tableName = "operation_log";
+    /** 单次 executeBatch 的最大行数 **/
+    private int batchSize = 500;
+    /** 缓冲未满时的最长刷新间隔(毫秒) **/
+    private long flushInterval = 1000;
+    /** 启动时是否执行 schema/operation_log.sql 建表 **/
+    private boolean initializeSchema = false;
+    /** TEXT 列(请求参数、响应数据、异常堆栈等)写入的最大字符数，超出部分截断；默认值按 utf8mb4 不超过 MySQL TEXT 的 65535 字节 **/
+    private int maxTextLength = 16383;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public boolean isInitializeSchema() {
+        return initializeSchema;
+    }
+
+    public void setInitializeSchema(boolean initializeSchema) {
+        this.initializeSchema = initializeSchema;
+    }
+
+    public int getMaxTextLength() {
+        return maxTextLength;
+    }
+
+    public void setMaxTextLength(int maxTextLength) {
+        this.maxTextLength = maxTextLength;
+    }
+}
@@ -0,0 +1,46 @@
+package per.meteor.aop.log.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 接口耗时分布统计配置
+ *
+ * @author meteor
+ * @date 2021-10-16 10:20
+ */
+@Component
+@ConfigurationProperties(prefix = "meteor.log.latency")
+public class LatencyProperties {
+
+    /** 统计周期(毫秒)，每个周期结束时重置 **/
+    private long interval = 60000;
+    /** 可统计的最大耗时(毫秒)，超出按最大值记录 **/
+    private long highestTrackable = 3600000;
+    /** 直方图精度(有效数字位数 0 ~ 5) **/
+    private int significantDigits = 3;
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    public long getHighestTrackable() {
+        return highestTrackable;
+    }
+
+    public void setHighestTrackable(long highestTrackable) {
+        this.highestTrackable = highestTrackable;
+    }
+
+    public int getSignificantDigits() {
+        return significantDigits;
+    }
+
+    public void setSignificantDigits(int significantDigits) {
+        this.significantDigits = significantDigits;
+    }
+}
@@ -0,0 +1,67 @@
+package per.meteor.aop.log.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import per.meteor.aop.log.common.enums.CaptureMode;
+
+/**
+ * 切面采集配置
+ *
+ * @author meteor
+ * @date 2021-10-10 09:10
+ */
+@Component
+@ConfigurationProperties(prefix = "meteor.log.capture")
+public class LogCaptureProperties {
+
+    /** User-Agent 解析缓存的最大条数 **/
+    private int userAgentCacheSize = 1024;
+    /** 请求参数、响应结果的默认采集方式，注解未指定时生效 **/
+    private CaptureMode mode = CaptureMode.EAGER;
+    /** 请求参数、请求头、响应结果单个字段最多保留的字节数，小于等于 0 时不限制 **/
+    private int maxFieldBytes = 32 * 1024;
+    /** 字段截断后继续统计原始大小的上限(字节)，达到后中止序列化 **/
+    private long sizeEstimateCeiling = 4 * 1024 * 1024;
+    /** 返回 Flux 时响应结果最多保留的元素个数，超出部分不记录 **/
+    private int reactiveMaxItems = 100;
+
+    public int getUserAgentCacheSize() {
+        return userAgentCacheSize;
+    }
+
+    public void setUserAgentCacheSize(int userAgentCacheSize) {
+        this.userAgentCacheSize = userAgentCacheSize;
+    }
+
+    public CaptureMode getMode() {
+        return mode;
+    }
+
+    public void setMode(CaptureMode mode) {
+        this.mode = mode;
+    }
+
+    public int getMaxFieldBytes() {
+        return maxFieldBytes;
+    }
+
+    public void setMaxFieldBytes(int maxFieldBytes) {
+        this.maxFieldBytes = maxFieldBytes;
+    }
+
+    public long getSizeEstimateCeiling() {
+        return sizeEstimateCeiling;
+    }
+
+    public void setSizeEstimateCeiling(long sizeEstimateCeiling) {
+        this.sizeEstimateCeiling = sizeEstimateCeiling;
+    }
+
+    public int getReactiveMaxItems() {
+        return reactiveMaxItems;
+    }
+
+    public void setReactiveMaxItems(int reactiveMaxItems) {
+        this.reactiveMaxItems = reactiveMaxItems;
+    }
+}
@@ -0,0 +1,20 @@
+package per.meteor.aop.log.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import per.meteor.aop.log.common.id.SnowflakeIdGenerator;
+
+/**
+ * 日志 ID 生成器配置
+ *
+ * @author meteor
+ * @date 2021-10-15 10:00
+ */
+@Configuration
+public class LogIdConfig {
+
+    @Bean
+    public SnowflakeIdGenerator logIdGenerator(LogIdProperties properties) {
+        return new SnowflakeIdGenerator(properties.getNodeId());
+    }
+}
@@ -0,0 +1,26 @@
+package per.meteor.aop.log.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 日志 ID 生成配置
+ *
+ * @author meteor
+ * @date 2021-10-15 09:50
+ */
+@Component
+@ConfigurationProperties(prefix = "meteor.log.id")
+public class LogIdProperties {
+
+    /** 节点号 0 ~ 1023，多实例部署时每个实例需要配置不同的值 **/
+    private int nodeId = 0;
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(int nodeId) {
+        this.nodeId = nodeId;
+    }
+}
@@ -0,0 +1,98 @@
+package per.meteor.aop.log.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import per.meteor.aop.log.pipeline.OverflowPolicy;
+import per.meteor.aop.log.sink.SinkExecution;
+
+/**
+ * 日志处理管道配置
+ *
+ * @author meteor
+ * @date 2021-10-05 10:48
+ */
+@Component
+@ConfigurationProperties(prefix = "meteor.log.pipeline")
+public class LogPipelineProperties {
+
+    /** 环形缓冲区容量，向上取整为 2 的幂 **/
+    private int capacity = 8192;
+    /** 消费线程单批次最多取出的日志条数 **/
+    private int batchSize = 256;
+    /** 缓冲区已满时的处理策略 **/
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_SUCCESS_KEEP_ERRORS;
+    /** 应用关闭时等待缓冲区处理完毕的最长时间(毫秒) **/
+    private long shutdownTimeout = 5000;
+    /** 日志输出的执行方式 **/
+    private SinkExecution sinkExecution = SinkExecution.INLINE;
+    /** 支持并发的输出同时执行的最大批次数，不支持并发的输出固定为 1 **/
+    private int sinkMaxInFlight = 4;
+    /** 有界线程池的线程数，小于等于 0 时取各输出并发上限之和 **/
+    private int sinkPoolSize = 0;
+    /** 消费线程空闲时的最长休眠时间(毫秒)，也是空闲回调 onIdle 的调用间隔，有新日志发布时立即唤醒 **/
+    private long idleInterval = 100;
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public long getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    public void setShutdownTimeout(long shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    public SinkExecution getSinkExecution() {
+        return sinkExecution;
+    }
+
+    public void setSinkExecution(SinkExecution sinkExecution) {
+        this.sinkExecution = sinkExecution;
+    }
+
+    public int getSinkMaxInFlight() {
+        return sinkMaxInFlight;
+    }
+
+    public void setSinkMaxInFlight(int sinkMaxInFlight) {
+        this.sinkMaxInFlight = sinkMaxInFlight;
+    }
+
+    public int getSinkPoolSize() {
+        return sinkPoolSize;
+    }
+
+    public void setSinkPoolSize(int sinkPoolSize) {
+        this.sinkPoolSize = sinkPoolSize;
+    }
+
+    public long getIdleInterval() {
+        return idleInterval;
+    }
+
+    public void setIdleInterval(long idleInterval) {
+        this.idleInterval = idleInterval;
+    }
+}
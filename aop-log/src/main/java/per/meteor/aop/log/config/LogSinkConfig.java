@@ -0,0 +1,93 @@
+package per.meteor.aop.log.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import per.meteor.aop.log.index.RecentLogIndex;
+import per.meteor.aop.log.sink.JdbcLogSink;
+import per.meteor.aop.log.sink.partition.PartitionedLogSink;
+import per.meteor.aop.log.sink.partition.PartitionedLogStore;
+import per.meteor.aop.log.sink.segment.SegmentLogSink;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+
+/**
+ * 日志输出配置
+ * <p>
+ * 输出都有公开的 close 方法，Spring 会推断为销毁方法，在消费线程仍在写入时关闭输出。
+ * 这里统一关闭推断，输出的关闭只由 LogServiceAsync 在管道停止后负责。
+ *
+ * @author meteor
+ * @date 2021-10-06 10:50
+ */
+@Configuration
+public class LogSinkConfig {
+
+    /**
+     * 数据库输出，需要容器中存在 DataSource
+     *
+     * @param dataSource 数据源
+     * @param properties 配置
+     * @return per.meteor.aop.log.sink.JdbcLogSink
+     */
+    @Bean(destroyMethod = "")
+    @ConditionalOnProperty(prefix = "meteor.log.sink.jdbc", name = "enabled", havingValue = "true")
+    public JdbcLogSink jdbcLogSink(DataSource dataSource, JdbcSinkProperties properties) {
+        JdbcLogSink sink = new JdbcLogSink(dataSource, properties);
+        if (properties.isInitializeSchema()) {
+            sink.initializeSchema();
+        }
+        return sink;
+    }
+
+    /**
+     * 本地内存映射分段文件输出
+     *
+     * @param properties 配置
+     * @return per.meteor.aop.log.sink.segment.SegmentLogSink
+     * @throws IOException 打开分段文件失败
+     */
+    @Bean(destroyMethod = "")
+    @ConditionalOnProperty(prefix = "meteor.log.sink.segment", name = "enabled", havingValue = "true")
+    public SegmentLogSink segmentLogSink(SegmentSinkProperties properties) throws IOException {
+        return new SegmentLogSink(properties);
+    }
+
+    /**
+     * 最近日志的内存索引，查询接口见 LogSearchController
+     *
+     * @param properties 配置
+     * @return per.meteor.aop.log.index.RecentLogIndex
+     */
+    @Bean(destroyMethod = "")
+    @ConditionalOnProperty(prefix = "meteor.log.sink.index", name = "enabled", havingValue = "true")
+    public RecentLogIndex recentLogIndex(IndexSinkProperties properties) {
+        return new RecentLogIndex(properties);
+    }
+
+    /**
+     * 按天、小时分区的本地存储
+     *
+     * @param properties 配置
+     * @return per.meteor.aop.log.sink.partition.PartitionedLogStore
+     * @throws IOException 创建存储目录失败
+     */
+    @Bean(destroyMethod = "")
+    @ConditionalOnProperty(prefix = "meteor.log.sink.partition", name = "enabled", havingValue = "true")
+    public PartitionedLogStore partitionedLogStore(PartitionSinkProperties properties) throws IOException {
+        return new PartitionedLogStore(properties);
+    }
+
+    /**
+     * 写入按时间分区的本地存储，封存的分区在后台压缩
+     *
+     * @param store 分区存储
+     * @return per.meteor.aop.log.sink.partition.PartitionedLogSink
+     */
+    @Bean(destroyMethod = "")
+    @ConditionalOnProperty(prefix = "meteor.log.sink.partition", name = "enabled", havingValue = "true")
+    public PartitionedLogSink partitionedLogSink(PartitionedLogStore store) {
+        return new PartitionedLogSink(store);
+    }
+}
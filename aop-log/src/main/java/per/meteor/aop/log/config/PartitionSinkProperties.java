@@ -0,0 +1,108 @@
+package per.meteor.aop.log.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import per.meteor.aop.log.sink.partition.PartitionCompression;
+import per.meteor.aop.log.sink.partition.PartitionGranularity;
+
+/**
+ * 按时间分区的本地日志存储配置
+ *
+ * @author meteor
+ * @date 2021-10-19 10:10
+ */
+@Component
+@ConfigurationProperties(prefix = "meteor.log.sink.partition")
+public class PartitionSinkProperties {
+
+    /** 是否启用 **/
+    private boolean enabled = false;
+    /** 存储目录，其下按天建立子目录 **/
+    private String directory = "/home/meteor-code/logs/partition";
+    /** 分区粒度 **/
+    private PartitionGranularity granularity = PartitionGranularity.HOUR;
+    /** 封存分区的压缩方式 **/
+    private PartitionCompression compression = PartitionCompression.GZIP;
+    /** 保留时长(毫秒)，默认与 logback 的 60 天一致，0 表示不删除 **/
+    private long retention = 60L * 24 * 60 * 60 * 1000;
+    /** 分区结束后等待迟到日志的时间(毫秒)，之后关闭文件并允许压缩 **/
+    private long sealDelay = 60000;
+    /** 写缓冲刷新间隔(毫秒) **/
+    private long flushInterval = 1000;
+    /** 后台压缩及过期清理的执行间隔(毫秒) **/
+    private long compactionInterval = 60000;
+    /** 每个分区文件的写缓冲大小(字节) **/
+    private int bufferSize = 64 * 1024;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public PartitionGranularity getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(PartitionGranularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public PartitionCompression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(PartitionCompression compression) {
+        this.compression = compression;
+    }
+
+    public long getRetention() {
+        return retention;
+    }
+
+    public void setRetention(long retention) {
+        this.retention = retention;
+    }
+
+    public long getSealDelay() {
+        return sealDelay;
+    }
+
+    public void setSealDelay(long sealDelay) {
+        this.sealDelay = sealDelay;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public long getCompactionInterval() {
+        return compactionInterval;
+    }
+
+    public void setCompactionInterval(long compactionInterval) {
+        this.compactionInterval = compactionInterval;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+}
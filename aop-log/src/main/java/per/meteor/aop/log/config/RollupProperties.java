@@ -0,0 +1,66 @@
+package per.meteor.aop.log.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按分钟汇总接口调用量、错误及耗时的配置
+ *
+ * @author meteor
+ * @date 2021-10-20 10:10
+ */
+@Component
+@ConfigurationProperties(prefix = "meteor.log.rollup")
+public class RollupProperties {
+
+    /** 是否启用 **/
+    private boolean enabled = false;
+    /** 封存后的分钟汇总保存目录，每天一个 jsonl 文件 **/
+    private String directory = "/home/meteor-code/logs/rollup";
+    /** 分钟结束后等待迟到日志的时间(毫秒)，之后封存并写入文件 **/
+    private long sealDelay = 10000;
+    /** 检查封存的间隔(毫秒) **/
+    private long sealInterval = 10000;
+    /** 汇总文件保留天数，0 表示不删除 **/
+    private int retentionDays = 90;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public long getSealDelay() {
+        return sealDelay;
+    }
+
+    public void setSealDelay(long sealDelay) {
+        this.sealDelay = sealDelay;
+    }
+
+    public long getSealInterval() {
+        return sealInterval;
+    }
+
+    public void setSealInterval(long sealInterval) {
+        this.sealInterval = sealInterval;
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    public void setRetentionDays(int retentionDays) {
+        this.retentionDays = retentionDays;
+    }
+}
@@ -0,0 +1,56 @@
+package per.meteor.aop.log.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 本地分段文件日志输出配置
+ *
+ * @author meteor
+ * @date 2021-10-07 13:50
+ */
+@Component
+@ConfigurationProperties(prefix = "meteor.log.sink.segment")
+public class SegmentSinkProperties {
+
+    /** 是否启用 **/
+    private boolean enabled = false;
+    /** 分段文件目录 **/
+    private String directory = "/home/meteor-code/logs/operation";
+    /** 单个分段文件大小(字节) **/
+    private int segmentSize = 64 * 1024 * 1024;
+    /** 刷盘间隔(毫秒)，0 表示只在切换分段及关闭时刷盘 **/
+    private long forceInterval = 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public long getForceInterval() {
+        return forceInterval;
+    }
+
+    public void setForceInterval(long forceInterval) {
+        this.forceInterval = forceInterval;
+    }
+}
@@ -9,7 +9,9 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import per.meteor.aop.log.aspect.AsyncDispatchInterceptor;
 import per.meteor.aop.log.common.constant.DatePattern;
 
 import java.text.SimpleDateFormat;
@@ -60,6 +62,16 @@ public class WebConfig implements WebMvcConfigurer {
         converters.add(new MappingJackson2HttpMessageConverter(jacksonObjectMapperCustomization()));
     }
 
+    /**
+     * 异步请求分派时补全操作日志的结果
+     *
+     * @param registry 拦截器注册
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new AsyncDispatchInterceptor());
+    }
+
     /**
      * 配置localDate转换器
      *
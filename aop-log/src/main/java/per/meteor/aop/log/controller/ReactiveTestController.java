@@ -0,0 +1,48 @@
+package per.meteor.aop.log.controller;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import per.meteor.aop.log.common.annotations.OperationLog;
+import per.meteor.aop.log.common.enums.ModuleType;
+import per.meteor.aop.log.common.enums.OperationType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 返回 Mono/Flux 的测试接口，classpath 中没有 Reactor 时不注册
+ *
+ * @author meteor
+ * @date 2021-10-21 10:40
+ */
+@RestController
+@ConditionalOnClass(name = "reactor.core.publisher.Mono")
+public class ReactiveTestController {
+
+    @OperationLog(module = ModuleType.OTHER, operationType = OperationType.SELECT, desc = "Mono 测试")
+    @GetMapping("/test06/{id}")
+    public Mono<Map<String, Object>> test06(@PathVariable long id, @RequestParam(defaultValue = "0") long delay) {
+        Map<String, Object> row = new LinkedHashMap<>(4);
+        row.put("id", id);
+        row.put("name", "异步数据-" + id);
+        return Mono.just(row).delayElement(Duration.ofMillis(delay));
+    }
+
+    @OperationLog(module = ModuleType.OTHER, operationType = OperationType.SELECT, desc = "Flux 测试")
+    @GetMapping("/test07")
+    public Flux<Long> test07(@RequestParam int size, @RequestParam(defaultValue = "0") long interval) {
+        return interval > 0 ? Flux.interval(Duration.ofMillis(interval)).take(size) : Flux.range(0, size).map(Long::valueOf);
+    }
+
+    @OperationLog(module = ModuleType.OTHER, operationType = OperationType.OTHER, desc = "Mono 异常测试")
+    @GetMapping("/test08")
+    public Mono<String> test08(@RequestParam String name) {
+        return Mono.delay(Duration.ofMillis(20)).then(Mono.error(new IllegalStateException("下游服务不可用: " + name)));
+    }
+}
@@ -1,12 +1,22 @@
 package per.meteor.aop.log.controller;
 
-import javafx.print.PageRange;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import per.meteor.aop.log.common.annotations.OperationLog;
 import per.meteor.aop.log.common.enums.ModuleType;
 import per.meteor.aop.log.common.enums.OperationType;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * @author meteor
@@ -23,7 +33,111 @@ public class TestController {
 
     @OperationLog(module = ModuleType.OTHER, operationType = OperationType.OTHER, desc = "测试")
     @PostMapping("/test02")
-    public void test01(@RequestBody PageRange page, @RequestParam String name, HttpServletRequest request) {
+    public void test01(@RequestBody Map<String, Object> page, @RequestParam String name, HttpServletRequest request) {
         // pass
     }
+
+    @OperationLog(module = ModuleType.OTHER, operationType = OperationType.SELECT, desc = "采样测试", sampleRate = 0.5, maxPerSecond = 100)
+    @GetMapping("/test03")
+    public String test03(@RequestParam String name, @RequestParam(defaultValue = "0") long sleep,
+                         @RequestParam(defaultValue = "false") boolean fail) throws InterruptedException {
+        Thread.sleep(sleep);
+        if (fail) {
+            throw new IllegalStateException("下游服务不可用: " + name);
+        }
+        return name;
+    }
+
+    @OperationLog(module = ModuleType.OTHER, operationType = OperationType.SELECT, desc = "大响应测试")
+    @GetMapping("/test04")
+    public List<Map<String, Object>> test04(@RequestParam int size) {
+        List<Map<String, Object>> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> row = new LinkedHashMap<>(4);
+            row.put("id", i);
+            row.put("name", "导出数据-" + i);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @OperationLog(module = ModuleType.OTHER, operationType = OperationType.OTHER, desc = "异常测试")
+    @GetMapping("/test05")
+    public String test05(@RequestParam String name) {
+        throw new IllegalStateException("下游服务不可用: " + name);
+    }
+
+    @OperationLog(module = ModuleType.OTHER, operationType = OperationType.SELECT, desc = "CompletableFuture 测试")
+    @GetMapping("/test09")
+    public CompletionStage<String> test09(@RequestParam String name, @RequestParam(defaultValue = "100") long delay,
+                                          @RequestParam(defaultValue = "false") boolean fail) {
+        return CompletableFuture.supplyAsync(() -> {
+            sleep(delay);
+            if (fail) {
+                throw new IllegalStateException("下游服务不可用: " + name);
+            }
+            return name;
+        });
+    }
+
+    @OperationLog(module = ModuleType.OTHER, operationType = OperationType.SELECT, desc = "DeferredResult 测试")
+    @GetMapping("/test10")
+    public DeferredResult<Map<String, Object>> test10(@RequestParam String name, @RequestParam(defaultValue = "100") long delay,
+                                                      @RequestParam(defaultValue = "5000") long timeout) {
+        DeferredResult<Map<String, Object>> result = new DeferredResult<>(timeout);
+        result.onTimeout(() -> result.setErrorResult(new IllegalStateException("处理超时: " + name)));
+        CompletableFuture.runAsync(() -> {
+            sleep(delay);
+            Map<String, Object> row = new LinkedHashMap<>(4);
+            row.put("name", name);
+            row.put("delay", delay);
+            result.setResult(row);
+        });
+        return result;
+    }
+
+    @OperationLog(module = ModuleType.OTHER, operationType = OperationType.SELECT, desc = "Callable 测试")
+    @GetMapping("/test11")
+    public Callable<String> test11(@RequestParam String name, @RequestParam(defaultValue = "100") long delay) {
+        return () -> {
+            sleep(delay);
+            return name;
+        };
+    }
+
+    @OperationLog(module = ModuleType.OTHER, operationType = OperationType.SELECT, desc = "WebAsyncTask 测试")
+    @GetMapping("/test12")
+    public WebAsyncTask<String> test12(@RequestParam String name, @RequestParam(defaultValue = "100") long delay,
+                                       @RequestParam(defaultValue = "5000") long timeout) {
+        WebAsyncTask<String> task = new WebAsyncTask<>(timeout, () -> {
+            // 模拟不响应中断的下游调用，超时后以超时回调的结果返回
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            while (System.nanoTime() < deadline) {
+                LockSupport.parkNanos(deadline - System.nanoTime());
+                Thread.interrupted();
+            }
+            return name;
+        });
+        task.onTimeout(() -> "超时默认值: " + name);
+        return task;
+    }
+
+    @OperationLog(module = ModuleType.OTHER, operationType = OperationType.SELECT, desc = "异步采样测试", sampleRate = 0.01)
+    @GetMapping("/test13")
+    public CompletionStage<String> test13(@RequestParam String name, @RequestParam(defaultValue = "false") boolean fail) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (fail) {
+                throw new IllegalStateException("下游服务不可用: " + name);
+            }
+            return name;
+        });
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -1,16 +1,14 @@
 package per.meteor.aop.log.domain;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
-import org.aspectj.lang.JoinPoint;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.aspectj.lang.annotation.Aspect;
-import per.meteor.aop.log.common.constant.DatePattern;
 import per.meteor.aop.log.common.enums.ModuleType;
 import per.meteor.aop.log.common.enums.OperationType;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Random;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.UnaryOperator;
 
 /**
@@ -48,8 +46,12 @@ public class LogDomain {
     /* 异常记录 */
     /** 异常名称 **/
     private String exceptionName;
-    /** 异常信息 **/
+    /** 异常信息，同一异常指纹在去重存储中首次出现时为完整堆栈，其余为异常消息 **/
     private String exceptionMessage;
+    /** 异常指纹: 异常类型及归一化后的栈顶帧的哈希 **/
+    private String exceptionFingerprint;
+    /** 当前统计窗口内该异常指纹出现的次数 **/
+    private Integer exceptionCount;
 
     /* 其他信息 **/
 
@@ -61,6 +63,8 @@ public class LogDomain {
     private String requestMethodPath;
     /** 请求耗时 **/
     private String requestTimeConsuming;
+    /** 请求耗时(微秒) **/
+    private Long requestDuration;
 
 
     /** 请求头 **/
@@ -88,19 +92,30 @@ public class LogDomain {
     /** 操作描述 **/
     private String operationDesc;
 
-    private final JoinPoint joinPoint;
-    public LogDomain(JoinPoint joinPoint) {
-        this.joinPoint = joinPoint;
+    /** 延迟序列化的请求参数，由日志消费线程序列化后写入 requestParameter **/
+    private transient Object deferredRequestParameter;
+    /** 延迟序列化的响应数据，由日志消费线程序列化后写入 responseBody **/
+    private transient Object deferredResponseBody;
+
+    /** 发布到日志管道的时间(System.nanoTime)，用于统计缓冲区中日志的等待时间 **/
+    private transient long publishedNanos;
+
+    /** 这条日志代表的调用数，采样或限流未记录的正常调用计入下一条记录的正常日志，用于分钟汇总 **/
+    private transient long representedCount = 1;
+
+    /** 区分重载方法的接口键(类名.方法名(参数类型))，用于分钟汇总，不持久化 **/
+    private transient String methodKey;
+
+    public LogDomain() {
     }
 
-    public LogDomain request(BiFunction<JoinPoint, LogDomain, LogDomain> function) {
-        return function.apply(joinPoint, this);
+    public LogDomain request(UnaryOperator<LogDomain> function) {
+        return function.apply(this);
     }
 
     public LogDomain success(Object result, BiFunction<Object, LogDomain, LogDomain> function) {
         this.setResponseCode(200);
         this.setResponseStatus("success");
-        this.setLogSerialNumber(createSerialNumber());
         this.setResponseTime(LocalDateTime.now());
         return function.apply(result, this);
     }
@@ -108,7 +123,6 @@ public class LogDomain {
     public LogDomain error(Throwable e, BiFunction<Object, LogDomain, LogDomain> function) {
         this.setResponseCode(500);
         this.setResponseStatus("failure");
-        this.setLogSerialNumber(createSerialNumber());
         this.setResponseTime(LocalDateTime.now());
         return function.apply(e, this);
     }
@@ -117,8 +131,8 @@ public class LogDomain {
         return function.apply(this);
     }
 
-    public LogDomain operation(BiFunction<JoinPoint, LogDomain, LogDomain> function) {
-        return function.apply(joinPoint, this);
+    public LogDomain operation(UnaryOperator<LogDomain> function) {
+        return function.apply(this);
     }
 
     public LogDomain system(UnaryOperator<LogDomain> function) {
@@ -126,30 +140,22 @@ public class LogDomain {
     }
 
     /**
-     * 流水
-     * @author meteor
-     * @date 2021-10-04 15:26
-     * @return java.lang.String
+     * 序列化延迟采集的请求参数和响应数据，在日志消费线程中调用
+     * @param serializer 消费线程持有的序列化方法
+     * @return per.meteor.aop.log.domain.LogDomain
      */
-    private String createSerialNumber() {
-        return "" + operationModule.ordinal() +
-                operationType.ordinal() +
-                requestTime.format(DateTimeFormatter.ofPattern(DatePattern.PURE_DATETIME_PATTERN)) +
-                createRandomNumber();
+    public LogDomain materialize(Function<Object, String> serializer) {
+        if (deferredRequestParameter != null) {
+            this.requestParameter = serializer.apply(deferredRequestParameter);
+            this.deferredRequestParameter = null;
+        }
+        if (deferredResponseBody != null) {
+            this.responseBody = serializer.apply(deferredResponseBody);
+            this.deferredResponseBody = null;
+        }
+        return this;
     }
 
-    /**
-     * 2位数随机数
-     * @author meteor
-     * @date 2021-10-04 16:25
-     * @return java.lang.String
-     */
-    private String createRandomNumber() {
-        int number = new Random().nextInt(99);
-        return number < 10 ? "0" + number : "" + number;
-    }
-
-
     /*----------------------------------getter及setter ---------------------------------------------*/
 
     public String getLogId() {
@@ -176,6 +182,42 @@ public class LogDomain {
         this.requestParameter = requestParameter;
     }
 
+    @JsonIgnore
+    public Object getDeferredRequestParameter() {
+        return deferredRequestParameter;
+    }
+
+    public void setDeferredRequestParameter(Object deferredRequestParameter) {
+        this.deferredRequestParameter = deferredRequestParameter;
+    }
+
+    @JsonIgnore
+    public long getPublishedNanos() {
+        return publishedNanos;
+    }
+
+    public void setPublishedNanos(long publishedNanos) {
+        this.publishedNanos = publishedNanos;
+    }
+
+    @JsonIgnore
+    public long getRepresentedCount() {
+        return representedCount;
+    }
+
+    public void setRepresentedCount(long representedCount) {
+        this.representedCount = representedCount;
+    }
+
+    @JsonIgnore
+    public String getMethodKey() {
+        return methodKey;
+    }
+
+    public void setMethodKey(String methodKey) {
+        this.methodKey = methodKey;
+    }
+
     public String getRequestUrl() {
         return requestUrl;
     }
@@ -224,6 +266,15 @@ public class LogDomain {
         this.responseBody = responseBody;
     }
 
+    @JsonIgnore
+    public Object getDeferredResponseBody() {
+        return deferredResponseBody;
+    }
+
+    public void setDeferredResponseBody(Object deferredResponseBody) {
+        this.deferredResponseBody = deferredResponseBody;
+    }
+
     public LocalDateTime getResponseTime() {
         return responseTime;
     }
@@ -248,6 +299,22 @@ public class LogDomain {
         this.exceptionMessage = exceptionMessage;
     }
 
+    public String getExceptionFingerprint() {
+        return exceptionFingerprint;
+    }
+
+    public void setExceptionFingerprint(String exceptionFingerprint) {
+        this.exceptionFingerprint = exceptionFingerprint;
+    }
+
+    public Integer getExceptionCount() {
+        return exceptionCount;
+    }
+
+    public void setExceptionCount(Integer exceptionCount) {
+        this.exceptionCount = exceptionCount;
+    }
+
     public String getRequestIp() {
         return requestIp;
     }
@@ -280,6 +347,14 @@ public class LogDomain {
         this.requestTimeConsuming = requestTimeConsuming;
     }
 
+    public Long getRequestDuration() {
+        return requestDuration;
+    }
+
+    public void setRequestDuration(Long requestDuration) {
+        this.requestDuration = requestDuration;
+    }
+
     public String getUserAgent() {
         return userAgent;
     }
@@ -375,10 +450,13 @@ public class LogDomain {
                 ", responseTime=" + responseTime +
                 ", exceptionName='" + exceptionName + '\'' +
                 ", exceptionMessage='" + exceptionMessage + '\'' +
+                ", exceptionFingerprint='" + exceptionFingerprint + '\'' +
+                ", exceptionCount=" + exceptionCount +
                 ", requestIp='" + requestIp + '\'' +
                 ", requestHeader='" + requestHeader + '\'' +
                 ", requestMethodPath='" + requestMethodPath + '\'' +
                 ", requestTimeConsuming='" + requestTimeConsuming + '\'' +
+                ", requestDuration=" + requestDuration +
                 ", userAgent='" + userAgent + '\'' +
                 ", browserType='" + browserType + '\'' +
                 ", browserName='" + browserName + '\'' +
@@ -389,7 +467,6 @@ public class LogDomain {
                 ", operationModule=" + operationModule +
                 ", operationType=" + operationType +
                 ", operationDesc='" + operationDesc + '\'' +
-                ", joinPoint=" + joinPoint +
                 '}';
     }
 }
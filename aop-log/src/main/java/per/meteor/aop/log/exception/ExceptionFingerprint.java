@@ -0,0 +1,73 @@
+package per.meteor.aop.log.exception;
+
+/**
+ * 异常指纹：异常类型 + 栈顶 N 帧(类名、方法名)的 64 位 FNV-1a 哈希
+ * <p>
+ * 归一化规则：不包含异常消息和行号，去掉 CGLIB 代理、Lambda、反射生成类名中随运行变化的后缀，
+ * 因此同一位置抛出的异常在不同实例、不同版本的小改动之间得到相同的指纹。
+ *
+ * @author meteor
+ * @date 2021-10-14 09:40
+ */
+public final class ExceptionFingerprint {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ExceptionFingerprint() {}
+
+    /**
+     * 计算异常指纹
+     *
+     * @param e 异常
+     * @param topFrames 参与计算的栈顶帧数
+     * @return java.lang.String 16 位十六进制字符串
+     */
+    public static String of(Throwable e, int topFrames) {
+        long hash = hash(FNV_OFFSET, e.getClass().getName());
+        StackTraceElement[] elements = e.getStackTrace();
+        int count = Math.min(elements.length, topFrames);
+        for (int i = 0; i < count; i++) {
+            hash = hashNormalized(hash, elements[i].getClassName());
+            hash = hash(hash, elements[i].getMethodName());
+        }
+        return toHex(hash);
+    }
+
+    /**
+     * 去掉类名中动态生成的部分，例如 Foo$$EnhancerBySpringCGLIB$$1a2b3c、Foo$$Lambda$12/0x0000、GeneratedMethodAccessor12
+     */
+    private static long hashNormalized(long hash, String className) {
+        int end = className.indexOf("$$");
+        if (end < 0) {
+            end = className.length();
+            // GeneratedMethodAccessor12、GeneratedConstructorAccessor3 等反射生成类去掉编号
+            if (className.startsWith("sun.reflect.Generated") || className.startsWith("jdk.internal.reflect.Generated")) {
+                while (end > 0 && Character.isDigit(className.charAt(end - 1))) {
+                    end--;
+                }
+            }
+        }
+        for (int i = 0; i < end; i++) {
+            hash = (hash ^ className.charAt(i)) * FNV_PRIME;
+        }
+        return (hash ^ '#') * FNV_PRIME;
+    }
+
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return (hash ^ '#') * FNV_PRIME;
+    }
+
+    private static String toHex(long value) {
+        char[] chars = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            chars[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,89 @@
+package per.meteor.aop.log.exception;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 去重存储中的一条异常堆栈，同一指纹只保存一份完整堆栈及出现次数
+ *
+ * @author meteor
+ * @date 2021-10-14 10:05
+ */
+public class ExceptionTrace {
+
+    private final String fingerprint;
+    private final String exceptionName;
+    private final String stackTrace;
+    private final long firstSeen;
+    private volatile long lastSeen;
+    private final LongAdder totalCount = new LongAdder();
+    /** 当前统计窗口的起始时间(毫秒)，窗口切换时允许少量计数误差 **/
+    private final AtomicLong windowStart;
+    private final AtomicLong windowCount = new AtomicLong();
+
+    public ExceptionTrace(String fingerprint, String exceptionName, String stackTrace, long now) {
+        this.fingerprint = fingerprint;
+        this.exceptionName = exceptionName;
+        this.stackTrace = stackTrace;
+        this.firstSeen = now;
+        this.lastSeen = now;
+        this.windowStart = new AtomicLong(now);
+    }
+
+    /**
+     * 记录一次出现
+     *
+     * @param now 当前时间(毫秒)
+     * @param windowMillis 统计窗口长度(毫秒)
+     * @return long 当前窗口内的出现次数(包含本次)
+     */
+    long occur(long now, long windowMillis) {
+        totalCount.increment();
+        lastSeen = now;
+        long start = windowStart.get();
+        if (now - start >= windowMillis && windowStart.compareAndSet(start, now)) {
+            windowCount.set(1);
+            return 1;
+        }
+        return windowCount.incrementAndGet();
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public String getExceptionName() {
+        return exceptionName;
+    }
+
+    public String getStackTrace() {
+        return stackTrace;
+    }
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    public LocalDateTime getFirstSeen() {
+        return toTime(firstSeen);
+    }
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    public LocalDateTime getLastSeen() {
+        return toTime(lastSeen);
+    }
+
+    public long getTotalCount() {
+        return totalCount.sum();
+    }
+
+    public long getWindowCount() {
+        return windowCount.get();
+    }
+
+    private static LocalDateTime toTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
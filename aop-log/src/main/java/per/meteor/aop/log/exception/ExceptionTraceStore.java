@@ -0,0 +1,94 @@
+package per.meteor.aop.log.exception;
+
+import org.springframework.stereotype.Component;
+import per.meteor.aop.log.common.cache.BoundedCache;
+import per.meteor.aop.log.config.ExceptionTraceProperties;
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 异常堆栈去重存储
+ * <p>
+ * 以异常指纹为键，每个不同的堆栈只保存一份。日志中只记录指纹及窗口内的出现次数，
+ * 完整堆栈只在指纹首次进入存储时写入日志，其余通过 {@link #get(String)} 查询。
+ * 存储有界，按 CLOCK 策略淘汰，被淘汰的指纹再次出现时重新记录完整堆栈。
+ *
+ * @author meteor
+ * @date 2021-10-14 10:40
+ */
+@Component
+public class ExceptionTraceStore {
+
+    private final ExceptionTraceProperties properties;
+    private final BoundedCache<String, ExceptionTrace> traces;
+
+    public ExceptionTraceStore(ExceptionTraceProperties properties) {
+        this.properties = properties;
+        this.traces = new BoundedCache<>(properties.getStoreSize());
+    }
+
+    /**
+     * 记录异常并填充日志中的异常信息
+     *
+     * @param log 日志信息
+     * @param e 异常
+     * @param stackTraceRenderer 生成完整堆栈，只在指纹首次出现时调用
+     */
+    public void record(LogDomain log, Throwable e, Function<Throwable, String> stackTraceRenderer) {
+        log.setExceptionName(e.getClass().getName());
+        if (!properties.isDeduplicate()) {
+            log.setExceptionMessage(stackTraceRenderer.apply(e));
+            return;
+        }
+        String fingerprint = ExceptionFingerprint.of(e, properties.getTopFrames());
+        long now = System.currentTimeMillis();
+        ExceptionTrace trace = traces.getIfPresent(fingerprint);
+        boolean first = false;
+        if (trace == null) {
+            ExceptionTrace created = new ExceptionTrace(fingerprint, e.getClass().getName(), stackTraceRenderer.apply(e), now);
+            trace = traces.putIfAbsent(fingerprint, created);
+            first = trace == created;
+        }
+        long count = trace.occur(now, properties.getWindow());
+        log.setExceptionFingerprint(fingerprint);
+        log.setExceptionCount((int) Math.min(count, Integer.MAX_VALUE));
+        log.setExceptionMessage(first ? trace.getStackTrace() : e.getClass().getName() + ":" + cap(e.getMessage()));
+    }
+
+    /**
+     * 截断异常消息，消息中可能拼接了请求参数或下游响应，长度不可控
+     */
+    private String cap(String message) {
+        int max = properties.getMessageLength();
+        if (message == null || message.length() <= max) {
+            return message;
+        }
+        int end = max;
+        if (end > 0 && Character.isHighSurrogate(message.charAt(end - 1))) {
+            end--;
+        }
+        return message.substring(0, end) + "...";
+    }
+
+    /**
+     * 按指纹查询完整堆栈
+     *
+     * @param fingerprint 异常指纹
+     * @return per.meteor.aop.log.exception.ExceptionTrace 不存在或已被淘汰时返回 null
+     */
+    public ExceptionTrace get(String fingerprint) {
+        return traces.getIfPresent(fingerprint);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(8);
+        stats.put("size", traces.size());
+        stats.put("maximumSize", traces.getMaximumSize());
+        stats.put("evictions", traces.getEvictionCount());
+        stats.put("hitRate", traces.getHitRate());
+        return stats;
+    }
+}
@@ -0,0 +1,75 @@
+package per.meteor.aop.log.index;
+
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.util.function.Function;
+
+/**
+ * 建立倒排索引的字段，按值精确匹配
+ *
+ * @author meteor
+ * @date 2021-10-18 10:20
+ */
+public enum IndexedField {
+    /**
+     * 请求路径
+     */
+    REQUEST_URL("requestUrl", LogDomain::getRequestUrl),
+    /**
+     * 操作人
+     */
+    OPERATION_USER("operationUser", LogDomain::getOperationUser),
+    /**
+     * 模块
+     */
+    OPERATION_MODULE("operationModule", log -> log.getOperationModule() == null ? null : log.getOperationModule().name()),
+    /**
+     * 操作类型
+     */
+    OPERATION_TYPE("operationType", log -> log.getOperationType() == null ? null : log.getOperationType().name()),
+    /**
+     * 响应状态: success、failure
+     */
+    RESPONSE_STATUS("responseStatus", LogDomain::getResponseStatus),
+    /**
+     * 客户端 IP
+     */
+    REQUEST_IP("requestIp", LogDomain::getRequestIp);
+
+    private final String fieldName;
+    private final Function<LogDomain, String> extractor;
+
+    IndexedField(String fieldName, Function<LogDomain, String> extractor) {
+        this.fieldName = fieldName;
+        this.extractor = extractor;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * 取日志中的字段值
+     *
+     * @param log 日志信息
+     * @return java.lang.String 字段为空时返回 null，不进入索引
+     */
+    public String valueOf(LogDomain log) {
+        return extractor.apply(log);
+    }
+
+    /**
+     * 按 LogDomain 中的属性名查找
+     *
+     * @param fieldName 属性名，如 requestUrl
+     * @return per.meteor.aop.log.index.IndexedField
+     */
+    public static IndexedField of(String fieldName) {
+        for (IndexedField field : values()) {
+            if (field.fieldName.equals(fieldName)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("不支持的过滤字段: " + fieldName);
+    }
+}
@@ -0,0 +1,76 @@
+package per.meteor.aop.log.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 查询条件，以下三种形式取其一，可以嵌套：
+ * <pre>
+ *     {"field": "operationUser", "values": ["alice", "bob"]}   字段等于任一值
+ *     {"and": [条件, ...]}                                     同时满足
+ *     {"or": [条件, ...]}                                      满足任一
+ * </pre>
+ * 可用字段见 {@link IndexedField}
+ *
+ * @author meteor
+ * @date 2021-10-18 10:50
+ */
+public class LogCondition {
+
+    private String field;
+    private List<String> values;
+    private List<LogCondition> and;
+    private List<LogCondition> or;
+
+    public static LogCondition term(String field, String... values) {
+        LogCondition condition = new LogCondition();
+        condition.setField(field);
+        condition.setValues(Arrays.asList(values));
+        return condition;
+    }
+
+    public static LogCondition and(List<LogCondition> conditions) {
+        LogCondition condition = new LogCondition();
+        condition.setAnd(new ArrayList<>(conditions));
+        return condition;
+    }
+
+    public static LogCondition or(List<LogCondition> conditions) {
+        LogCondition condition = new LogCondition();
+        condition.setOr(new ArrayList<>(conditions));
+        return condition;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public void setField(String field) {
+        this.field = field;
+    }
+
+    public List<String> getValues() {
+        return values;
+    }
+
+    public void setValues(List<String> values) {
+        this.values = values;
+    }
+
+    public List<LogCondition> getAnd() {
+        return and;
+    }
+
+    public void setAnd(List<LogCondition> and) {
+        this.and = and;
+    }
+
+    public List<LogCondition> getOr() {
+        return or;
+    }
+
+    public void setOr(List<LogCondition> or) {
+        this.or = or;
+    }
+}
@@ -0,0 +1,78 @@
+package per.meteor.aop.log.index;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import per.meteor.aop.log.common.constant.DatePattern;
+
+import java.time.LocalDateTime;
+
+/**
+ * 最近日志查询，结果按写入顺序从新到旧排列
+ *
+ * @author meteor
+ * @date 2021-10-18 11:00
+ */
+public class LogQuery {
+
+    /** 过滤条件，为空时匹配全部 **/
+    private LogCondition where;
+    /** 请求时间下限(含) **/
+    @JsonFormat(pattern = DatePattern.NORM_DATETIME_PATTERN)
+    private LocalDateTime from;
+    /** 请求时间上限(含) **/
+    @JsonFormat(pattern = DatePattern.NORM_DATETIME_PATTERN)
+    private LocalDateTime to;
+    /** 最近多长时间(毫秒)，与 from 同时存在时取较晚的一个 **/
+    private long within;
+    /** 页码，从 0 开始 **/
+    private int page = 0;
+    /** 每页条数 **/
+    private int size = 20;
+
+    public LogCondition getWhere() {
+        return where;
+    }
+
+    public void setWhere(LogCondition where) {
+        this.where = where;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+
+    public long getWithin() {
+        return within;
+    }
+
+    public void setWithin(long within) {
+        this.within = within;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+}
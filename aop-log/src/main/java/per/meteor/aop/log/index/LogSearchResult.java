@@ -0,0 +1,56 @@
+package per.meteor.aop.log.index;
+
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.util.List;
+
+/**
+ * 最近日志查询结果
+ *
+ * @author meteor
+ * @date 2021-10-18 11:05
+ */
+public class LogSearchResult {
+
+    /** 满足条件的总条数 **/
+    private final long total;
+    private final int page;
+    private final int size;
+    /** 逐条检查时间的日志条数 **/
+    private final long scanned;
+    private final long tookMicros;
+    private final List<LogDomain> items;
+
+    public LogSearchResult(long total, int page, int size, long scanned, long tookMicros, List<LogDomain> items) {
+        this.total = total;
+        this.page = page;
+        this.size = size;
+        this.scanned = scanned;
+        this.tookMicros = tookMicros;
+        this.items = items;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getScanned() {
+        return scanned;
+    }
+
+    public long getTookMicros() {
+        return tookMicros;
+    }
+
+    public List<LogDomain> getItems() {
+        return items;
+    }
+}
@@ -0,0 +1,77 @@
+package per.meteor.aop.log.index;
+
+import java.util.Arrays;
+
+/**
+ * 倒排表，按写入顺序保存日志序号，序号单调递增。
+ * 已淘汰的序号不会立即删除，查询时通过二分查找跳过，由 {@link #trim(long)} 批量清理
+ *
+ * @author meteor
+ * @date 2021-10-18 10:30
+ */
+final class Posting {
+
+    private long[] seqs = new long[4];
+    private int start;
+    private int end;
+
+    void add(long seq) {
+        if (end == seqs.length) {
+            int size = end - start;
+            if (start > 0 && size <= seqs.length / 2) {
+                System.arraycopy(seqs, start, seqs, 0, size);
+            } else {
+                long[] grown = new long[seqs.length << 1];
+                System.arraycopy(seqs, start, grown, 0, size);
+                seqs = grown;
+            }
+            start = 0;
+            end = size;
+        }
+        seqs[end++] = seq;
+    }
+
+    /**
+     * 第一个不小于 seq 的位置
+     */
+    int lowerBound(long seq) {
+        int index = Arrays.binarySearch(seqs, start, end, seq);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /**
+     * 删除小于 head 的序号，数组明显大于实际数据时收缩
+     *
+     * @param head 最早的有效序号
+     */
+    void trim(long head) {
+        start = lowerBound(head);
+        int size = end - start;
+        if (size == 0) {
+            start = end = 0;
+        }
+        if (seqs.length > 16 && size < seqs.length >> 2) {
+            seqs = Arrays.copyOfRange(seqs, start, start + Math.max(size << 1, 4));
+            start = 0;
+            end = size;
+        }
+    }
+
+    boolean isEmpty() {
+        return start == end;
+    }
+
+    int size() {
+        return end - start;
+    }
+
+    /**
+     * 不小于 head 的序号视图，只在持有读锁或写锁时使用
+     *
+     * @param head 最早的有效序号
+     * @return per.meteor.aop.log.index.SeqList
+     */
+    SeqList view(long head) {
+        return new SeqList(seqs, lowerBound(head), end);
+    }
+}
@@ -0,0 +1,347 @@
+package per.meteor.aop.log.index;
+
+import per.meteor.aop.log.config.IndexSinkProperties;
+import per.meteor.aop.log.domain.LogDomain;
+import per.meteor.aop.log.sink.LogSink;
+import per.meteor.aop.log.sink.SinkStats;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 最近日志的内存索引，作为 {@link LogSink} 接收日志
+ * <p>
+ * 日志按写入顺序分配递增序号，保存在定长环形数组中，超过容量、保留时长或估算内存上限时从最早的一条开始淘汰。
+ * {@link IndexedField} 中的字段各自维护 值 -> 序号倒排表，条件查询先合并倒排表再按请求时间过滤，
+ * 不需要扫描全部日志。无过滤条件时按 1024 条一块记录的最早、最晚请求时间跳过时间范围之外的块。
+ * <p>
+ * 写入由消费线程完成，查询来自请求线程，通过读写锁隔离。倒排表中已淘汰的序号在查询时二分跳过，
+ * 淘汰数量累积到容量的 1/4 后统一清理。
+ *
+ * @author meteor
+ * @date 2021-10-18 11:20
+ */
+public class RecentLogIndex implements LogSink {
+
+    static final int BLOCK_SHIFT = 10;
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    /** 估算单条日志内存时，除字符串外的对象开销 **/
+    private static final int BASE_BYTES = 512;
+    private static final IndexedField[] FIELDS = IndexedField.values();
+
+    private final IndexSinkProperties properties;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final int mask;
+    private final LogDomain[] events;
+    /** 请求时间(毫秒) **/
+    private final long[] times;
+    /** 估算占用内存(字节) **/
+    private final int[] sizes;
+    private final int blockMask;
+    private final long[] blockMin;
+    private final long[] blockMax;
+    private final Map<IndexedField, Map<String, Posting>> postings = new EnumMap<>(IndexedField.class);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SinkStats stats = new SinkStats();
+    /** 最早的有效序号 **/
+    private long head;
+    /** 下一条日志的序号 **/
+    private long tail;
+    /** 上次清理倒排表时的 head **/
+    private long trimmedHead;
+    private long bytes;
+    private long evictions;
+
+    public RecentLogIndex(IndexSinkProperties properties) {
+        this.properties = properties;
+        int capacity = Integer.highestOneBit(Math.max(BLOCK_SIZE, properties.getCapacity()) - 1) << 1;
+        this.mask = capacity - 1;
+        this.events = new LogDomain[capacity];
+        this.times = new long[capacity];
+        this.sizes = new int[capacity];
+        // 块数为容量的两倍，保证仍有有效日志的块不会被新块覆盖
+        int blocks = (capacity >> BLOCK_SHIFT) << 1;
+        this.blockMask = blocks - 1;
+        this.blockMin = new long[blocks];
+        this.blockMax = new long[blocks];
+        for (IndexedField field : FIELDS) {
+            postings.put(field, new HashMap<>(256));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "index";
+    }
+
+    @Override
+    public void write(List<LogDomain> batch) {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            for (LogDomain log : batch) {
+                append(log);
+            }
+            evict(System.currentTimeMillis());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        stats.recordBatch(batch.size(), System.nanoTime() - start);
+    }
+
+    @Override
+    public void onIdle() {
+        lock.writeLock().lock();
+        try {
+            evict(System.currentTimeMillis());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public SinkStats getStats() {
+        return stats;
+    }
+
+    /**
+     * 查询最近日志
+     *
+     * @param query 查询条件
+     * @return per.meteor.aop.log.index.LogSearchResult
+     * @throws IllegalArgumentException 条件中包含未建立索引的字段或格式错误
+     */
+    public LogSearchResult search(LogQuery query) {
+        long start = System.nanoTime();
+        int size = Math.max(1, Math.min(query.getSize(), properties.getMaxPageSize()));
+        int page = Math.max(0, query.getPage());
+        long offset = (long) page * size;
+        long fromTime = query.getFrom() == null ? Long.MIN_VALUE : toMillis(query.getFrom());
+        long toTime = query.getTo() == null ? Long.MAX_VALUE : toMillis(query.getTo());
+        if (query.getWithin() > 0) {
+            fromTime = Math.max(fromTime, System.currentTimeMillis() - query.getWithin());
+        }
+        boolean timeFiltered = fromTime != Long.MIN_VALUE || toTime != Long.MAX_VALUE;
+
+        List<LogDomain> items = new ArrayList<>(Math.min(size, 64));
+        long total = 0;
+        long scanned = 0;
+        lock.readLock().lock();
+        try {
+            SeqList candidates = query.getWhere() == null ? null : evaluate(query.getWhere());
+            if (candidates == null) {
+                long seq = tail - 1;
+                while (seq >= head) {
+                    if (timeFiltered && !blockOverlaps(seq, fromTime, toTime)) {
+                        seq = (seq & -BLOCK_SIZE) - 1;
+                        continue;
+                    }
+                    scanned++;
+                    int slot = (int) seq & mask;
+                    long time = times[slot];
+                    if (time >= fromTime && time <= toTime && total++ >= offset && items.size() < size) {
+                        items.add(events[slot]);
+                    }
+                    seq--;
+                }
+            } else {
+                for (int i = candidates.to - 1; i >= candidates.from; i--) {
+                    scanned++;
+                    int slot = (int) candidates.seqs[i] & mask;
+                    long time = times[slot];
+                    if (time >= fromTime && time <= toTime && total++ >= offset && items.size() < size) {
+                        items.add(events[slot]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new LogSearchResult(total, page, size, scanned, (System.nanoTime() - start) / 1000, items);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>(16);
+        lock.readLock().lock();
+        try {
+            snapshot.put("size", tail - head);
+            snapshot.put("capacity", events.length);
+            snapshot.put("estimatedBytes", bytes);
+            snapshot.put("maxBytes", properties.getMaxBytes());
+            snapshot.put("retention", properties.getRetention());
+            snapshot.put("evictions", evictions);
+            snapshot.put("oldest", head < tail ? LocalDateTime.ofInstant(Instant.ofEpochMilli(times[(int) head & mask]), zone) : null);
+            Map<String, Integer> terms = new LinkedHashMap<>(8);
+            for (IndexedField field : FIELDS) {
+                terms.put(field.getFieldName(), postings.get(field).size());
+            }
+            snapshot.put("terms", terms);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return snapshot;
+    }
+
+    /**
+     * 计算条件匹配的序号，持有读锁时调用
+     *
+     * @return per.meteor.aop.log.index.SeqList 匹配全部时返回 null
+     */
+    private SeqList evaluate(LogCondition condition) {
+        if (condition.getField() != null) {
+            if (condition.getValues() == null || condition.getValues().isEmpty()) {
+                throw new IllegalArgumentException("过滤字段缺少取值: " + condition.getField());
+            }
+            Map<String, Posting> index = postings.get(IndexedField.of(condition.getField()));
+            SeqList result = SeqList.EMPTY;
+            for (String value : condition.getValues()) {
+                Posting posting = index.get(value);
+                if (posting != null) {
+                    result = SeqList.union(result, posting.view(head));
+                }
+            }
+            return result;
+        }
+        if (condition.getAnd() != null) {
+            List<SeqList> lists = new ArrayList<>(condition.getAnd().size());
+            for (LogCondition child : condition.getAnd()) {
+                SeqList list = evaluate(child);
+                if (list != null) {
+                    lists.add(list);
+                }
+            }
+            if (lists.isEmpty()) {
+                return null;
+            }
+            lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+            SeqList result = lists.get(0);
+            for (int i = 1; i < lists.size() && result.size() > 0; i++) {
+                result = SeqList.intersect(result, lists.get(i));
+            }
+            return result;
+        }
+        if (condition.getOr() != null) {
+            if (condition.getOr().isEmpty()) {
+                return null;
+            }
+            SeqList result = SeqList.EMPTY;
+            for (LogCondition child : condition.getOr()) {
+                SeqList list = evaluate(child);
+                if (list == null) {
+                    return null;
+                }
+                result = SeqList.union(result, list);
+            }
+            return result;
+        }
+        throw new IllegalArgumentException("查询条件需要指定 field、and 或 or 之一");
+    }
+
+    private boolean blockOverlaps(long seq, long fromTime, long toTime) {
+        int block = (int) (seq >>> BLOCK_SHIFT) & blockMask;
+        return blockMax[block] >= fromTime && blockMin[block] <= toTime;
+    }
+
+    private void append(LogDomain log) {
+        if (tail - head == events.length) {
+            evictOldest();
+        }
+        long seq = tail++;
+        int slot = (int) seq & mask;
+        long time = timeOf(log);
+        int size = estimateSize(log);
+        events[slot] = log;
+        times[slot] = time;
+        sizes[slot] = size;
+        bytes += size;
+        int block = (int) (seq >>> BLOCK_SHIFT) & blockMask;
+        if ((seq & (BLOCK_SIZE - 1)) == 0) {
+            blockMin[block] = time;
+            blockMax[block] = time;
+        } else {
+            blockMin[block] = Math.min(blockMin[block], time);
+            blockMax[block] = Math.max(blockMax[block], time);
+        }
+        for (IndexedField field : FIELDS) {
+            String value = field.valueOf(log);
+            if (value != null) {
+                postings.get(field).computeIfAbsent(value, k -> new Posting()).add(seq);
+            }
+        }
+    }
+
+    /**
+     * 按内存上限及保留时长淘汰，日志基本按请求时间写入，遇到时间较新的日志即停止
+     */
+    private void evict(long now) {
+        if (properties.getMaxBytes() > 0) {
+            while (bytes > properties.getMaxBytes() && head < tail) {
+                evictOldest();
+            }
+        }
+        if (properties.getRetention() > 0) {
+            long cutoff = now - properties.getRetention();
+            while (head < tail && times[(int) head & mask] < cutoff) {
+                evictOldest();
+            }
+        }
+        if (head - trimmedHead >= events.length >> 2) {
+            trimPostings();
+        }
+    }
+
+    private void evictOldest() {
+        int slot = (int) head & mask;
+        bytes -= sizes[slot];
+        events[slot] = null;
+        head++;
+        evictions++;
+    }
+
+    private void trimPostings() {
+        for (Map<String, Posting> index : postings.values()) {
+            Iterator<Posting> iterator = index.values().iterator();
+            while (iterator.hasNext()) {
+                Posting posting = iterator.next();
+                posting.trim(head);
+                if (posting.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        }
+        trimmedHead = head;
+    }
+
+    private long timeOf(LogDomain log) {
+        LocalDateTime time = log.getRequestTime() != null ? log.getRequestTime() : log.getResponseTime();
+        return time == null ? System.currentTimeMillis() : toMillis(time);
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 按 UTF-16 估算日志占用的内存，引用的字符串可能与其他对象共享，结果偏大
+     */
+    private static int estimateSize(LogDomain log) {
+        long chars = length(log.getRequestParameter()) + length(log.getResponseBody())
+                + length(log.getRequestHeader()) + length(log.getExceptionMessage())
+                + length(log.getUserAgent()) + length(log.getRequestUrl())
+                + length(log.getRequestMethodPath()) + length(log.getOperationDesc());
+        return (int) Math.min(Integer.MAX_VALUE, BASE_BYTES + (chars << 1));
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -0,0 +1,95 @@
+package per.meteor.aop.log.index;
+
+import java.util.Arrays;
+
+/**
+ * 有序日志序号区间 seqs[from, to)，用于合并多个倒排表
+ *
+ * @author meteor
+ * @date 2021-10-18 10:40
+ */
+final class SeqList {
+
+    static final SeqList EMPTY = new SeqList(new long[0], 0, 0);
+
+    final long[] seqs;
+    final int from;
+    final int to;
+
+    SeqList(long[] seqs, int from, int to) {
+        this.seqs = seqs;
+        this.from = from;
+        this.to = to;
+    }
+
+    int size() {
+        return to - from;
+    }
+
+    /**
+     * 交集，遍历较短的一方，在较长的一方中从上次位置开始倍增查找
+     */
+    static SeqList intersect(SeqList a, SeqList b) {
+        if (a.size() > b.size()) {
+            SeqList t = a;
+            a = b;
+            b = t;
+        }
+        long[] out = new long[a.size()];
+        int n = 0;
+        int j = b.from;
+        for (int i = a.from; i < a.to && j < b.to; i++) {
+            long seq = a.seqs[i];
+            int bound = 1;
+            while (j + bound < b.to && b.seqs[j + bound] < seq) {
+                bound <<= 1;
+            }
+            int index = Arrays.binarySearch(b.seqs, j, Math.min(j + bound + 1, b.to), seq);
+            if (index >= 0) {
+                out[n++] = seq;
+                j = index + 1;
+            } else {
+                j = -index - 1;
+            }
+        }
+        return new SeqList(out, 0, n);
+    }
+
+    /**
+     * 并集，去重
+     */
+    static SeqList union(SeqList a, SeqList b) {
+        if (a.size() == 0) {
+            return b;
+        }
+        if (b.size() == 0) {
+            return a;
+        }
+        long[] out = new long[a.size() + b.size()];
+        int n = 0;
+        int i = a.from;
+        int j = b.from;
+        while (i < a.to && j < b.to) {
+            long x = a.seqs[i];
+            long y = b.seqs[j];
+            if (x < y) {
+                out[n++] = x;
+                i++;
+            } else if (y < x) {
+                out[n++] = y;
+                j++;
+            } else {
+                out[n++] = x;
+                i++;
+                j++;
+            }
+        }
+        while (i < a.to) {
+            out[n++] = a.seqs[i++];
+        }
+        while (j < b.to) {
+            out[n++] = b.seqs[j++];
+        }
+        return new SeqList(out, 0, n);
+    }
+}
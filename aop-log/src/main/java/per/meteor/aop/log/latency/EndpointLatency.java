@@ -0,0 +1,91 @@
+package per.meteor.aop.log.latency;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个接口的耗时分布
+ * <p>
+ * 请求线程通过 {@link Recorder} 无锁写入(单位: 微秒)，定时任务每个统计周期交换一次，
+ * 查询返回最近一个完整周期的分位值。
+ *
+ * @author meteor
+ * @date 2021-10-16 10:10
+ */
+public class EndpointLatency {
+
+    private final String methodPath;
+    private final long highestTrackableMicros;
+    private final Recorder recorder;
+    /** 交换出的周期直方图，下次交换时复用 **/
+    private Histogram recycled;
+    private volatile Snapshot lastInterval;
+
+    public EndpointLatency(String methodPath, long highestTrackableMicros, int significantDigits) {
+        this.methodPath = methodPath;
+        this.highestTrackableMicros = highestTrackableMicros;
+        this.recorder = new Recorder(1, highestTrackableMicros, significantDigits);
+        this.lastInterval = new Snapshot(methodPath, null, System.currentTimeMillis(), System.currentTimeMillis());
+    }
+
+    /**
+     * 记录一次调用耗时
+     *
+     * @param durationNanos 耗时(纳秒)
+     */
+    public void record(long durationNanos) {
+        long micros = Math.max(1, Math.min(durationNanos / 1000, highestTrackableMicros));
+        recorder.recordValue(micros);
+    }
+
+    /**
+     * 结束当前统计周期，只由定时任务单线程调用
+     */
+    synchronized void roll() {
+        Histogram interval = recorder.getIntervalHistogram(recycled);
+        lastInterval = new Snapshot(methodPath, interval, interval.getStartTimeStamp(), interval.getEndTimeStamp());
+        recycled = interval;
+    }
+
+    public Snapshot getLastInterval() {
+        return lastInterval;
+    }
+
+    /**
+     * 一个统计周期的分位值，单位: 毫秒
+     */
+    public static final class Snapshot {
+
+        private final Map<String, Object> values = new LinkedHashMap<>(16);
+
+        Snapshot(String methodPath, Histogram histogram, long start, long end) {
+            values.put("methodPath", methodPath);
+            values.put("intervalStart", start);
+            values.put("intervalEnd", end);
+            long count = histogram == null ? 0 : histogram.getTotalCount();
+            values.put("count", count);
+            values.put("p50", percentile(histogram, 50));
+            values.put("p90", percentile(histogram, 90));
+            values.put("p99", percentile(histogram, 99));
+            values.put("p999", percentile(histogram, 99.9));
+            values.put("max", count == 0 ? 0 : toMillis(histogram.getMaxValue()));
+            values.put("mean", count == 0 ? 0 : histogram.getMean() / 1000);
+        }
+
+        private static double percentile(Histogram histogram, double percentile) {
+            return histogram == null || histogram.getTotalCount() == 0
+                    ? 0 : toMillis(histogram.getValueAtPercentile(percentile));
+        }
+
+        private static double toMillis(long micros) {
+            return micros / 1000.0;
+        }
+
+        public Map<String, Object> toMap() {
+            return values;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package per.meteor.aop.log.latency;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import per.meteor.aop.log.config.LatencyProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按接口统计调用耗时分布(HdrHistogram)，每个统计周期重置一次
+ *
+ * @author meteor
+ * @date 2021-10-16 10:30
+ */
+@Component
+public class LatencyRecorder {
+
+    private final LatencyProperties properties;
+    private final long highestTrackableMicros;
+    private final ConcurrentMap<String, EndpointLatency> endpoints = new ConcurrentHashMap<>(64);
+
+    public LatencyRecorder(LatencyProperties properties) {
+        this.properties = properties;
+        this.highestTrackableMicros = TimeUnit.MILLISECONDS.toMicros(properties.getHighestTrackable());
+    }
+
+    /**
+     * 记录一次调用耗时
+     *
+     * @param methodKey 接口键，重载方法分别统计
+     * @param durationNanos 耗时(纳秒)
+     */
+    public void record(String methodKey, long durationNanos) {
+        EndpointLatency latency = endpoints.get(methodKey);
+        if (latency == null) {
+            latency = endpoints.computeIfAbsent(methodKey, path ->
+                    new EndpointLatency(path, highestTrackableMicros, properties.getSignificantDigits()));
+        }
+        latency.record(durationNanos);
+    }
+
+    /**
+     * 结束当前统计周期
+     */
+    @Scheduled(fixedRateString = "${meteor.log.latency.interval:60000}",
+            initialDelayString = "${meteor.log.latency.interval:60000}")
+    public void roll() {
+        for (EndpointLatency latency : endpoints.values()) {
+            latency.roll();
+        }
+    }
+
+    /**
+     * 各接口最近一个完整统计周期的分位值
+     *
+     * @return java.util.List<java.util.Map<java.lang.String,java.lang.Object>>
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> stats = new ArrayList<>(endpoints.size());
+        for (EndpointLatency latency : endpoints.values()) {
+            stats.add(latency.getLastInterval().toMap());
+        }
+        return stats;
+    }
+
+    public EndpointLatency get(String methodPath) {
+        return endpoints.get(methodPath);
+    }
+}
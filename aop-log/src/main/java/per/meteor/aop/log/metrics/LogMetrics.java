@@ -0,0 +1,267 @@
+package per.meteor.aop.log.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import per.meteor.aop.log.domain.LogDomain;
+import per.meteor.aop.log.pipeline.LogPipeline;
+import per.meteor.aop.log.sampling.LogSampler;
+import per.meteor.aop.log.sink.LogSink;
+import per.meteor.aop.log.sink.SinkDispatcher;
+import per.meteor.aop.log.sink.SinkStats;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志采集自身的监控指标
+ * <p>
+ * 切面各阶段耗时(request 不含 parameter、header 两个阶段)、管道积压及最早日志的等待时间、各输出的批次大小及耗时、丢弃及采样丢弃条数、各字段序列化后的字节数。
+ * 请求线程上只有预先创建好的 Timer 的 record 调用，字段字节数在消费线程中统计。
+ *
+ * @author meteor
+ * @date 2021-10-17 09:30
+ */
+@Component
+public class LogMetrics {
+
+    private static final String PREFIX = "meteor.log.";
+
+    private final MeterRegistry registry;
+
+    private final Timer requestPhase;
+    private final Timer headerPhase;
+    private final Timer userAgentPhase;
+    private final Timer parameterPhase;
+    private final Timer responsePhase;
+    private final Timer capturePhase;
+
+    private final DistributionSummary requestParameterBytes;
+    private final DistributionSummary requestHeaderBytes;
+    private final DistributionSummary responseBodyBytes;
+    private final DistributionSummary exceptionMessageBytes;
+
+    public LogMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.requestPhase = phase("request");
+        this.headerPhase = phase("header");
+        this.userAgentPhase = phase("user_agent");
+        this.parameterPhase = phase("parameter");
+        this.responsePhase = phase("response");
+        this.capturePhase = phase("total");
+        this.requestParameterBytes = fieldBytes("requestParameter");
+        this.requestHeaderBytes = fieldBytes("requestHeader");
+        this.responseBodyBytes = fieldBytes("responseBody");
+        this.exceptionMessageBytes = fieldBytes("exceptionMessage");
+    }
+
+    private Timer phase(String phase) {
+        return Timer.builder(PREFIX + "aspect.phase")
+                .description("切面各阶段耗时, total 为一次日志采集的总耗时")
+                .tag("phase", phase)
+                .register(registry);
+    }
+
+    private DistributionSummary fieldBytes(String field) {
+        return DistributionSummary.builder(PREFIX + "field.bytes")
+                .description("字段序列化后的 UTF-8 字节数")
+                .baseUnit("bytes")
+                .tag("field", field)
+                .register(registry);
+    }
+
+    /*----------------------------------切面 ---------------------------------------------*/
+
+    public void recordRequestPhase(long nanos) {
+        requestPhase.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordHeaderPhase(long nanos) {
+        headerPhase.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordUserAgentPhase(long nanos) {
+        userAgentPhase.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordParameterPhase(long nanos) {
+        parameterPhase.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordResponsePhase(long nanos) {
+        responsePhase.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCapture(long nanos) {
+        capturePhase.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 统计各字段序列化后的字节数，在消费线程中调用
+     *
+     * @param logDomain 日志信息
+     */
+    public void recordFields(LogDomain logDomain) {
+        recordBytes(requestParameterBytes, logDomain.getRequestParameter());
+        recordBytes(requestHeaderBytes, logDomain.getRequestHeader());
+        recordBytes(responseBodyBytes, logDomain.getResponseBody());
+        recordBytes(exceptionMessageBytes, logDomain.getExceptionMessage());
+    }
+
+    private static void recordBytes(DistributionSummary summary, String value) {
+        if (value != null) {
+            summary.record(utf8Length(value));
+        }
+    }
+
+    static long utf8Length(String value) {
+        long length = 0;
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /*----------------------------------管道 ---------------------------------------------*/
+
+    /**
+     * 注册管道的积压、最早日志等待时间及发布、丢弃条数
+     *
+     * @param pipeline 日志管道
+     */
+    public void bindPipeline(LogPipeline pipeline) {
+        Gauge.builder(PREFIX + "pipeline.queue.size", pipeline, LogPipeline::getQueueSize)
+                .description("缓冲区中等待处理的日志条数")
+                .register(registry);
+        Gauge.builder(PREFIX + "pipeline.queue.capacity", pipeline, LogPipeline::getCapacity)
+                .register(registry);
+        Gauge.builder(PREFIX + "pipeline.oldest.age", pipeline, p -> p.getOldestAgeNanos() / 1e9)
+                .description("缓冲区中最早的日志已等待的时间")
+                .baseUnit("seconds")
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "pipeline.published", pipeline, LogPipeline::getPublishedCount)
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "pipeline.drained", pipeline, LogPipeline::getDrainedCount)
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "pipeline.dropped", pipeline, LogPipeline::getDroppedCount)
+                .description("缓冲区已满被丢弃的日志条数")
+                .register(registry);
+    }
+
+    /**
+     * 输出的单次写入耗时
+     *
+     * @param sink 日志输出
+     * @return io.micrometer.core.instrument.Timer
+     */
+    public Timer sinkWriteTimer(LogSink sink) {
+        return Timer.builder(PREFIX + "sink.write")
+                .description("单个输出写入一个批次的耗时")
+                .tag("sink", sink.getName())
+                .register(registry);
+    }
+
+    /**
+     * 输出的批次大小，同时注册写入及失败条数
+     *
+     * @param sink 日志输出
+     * @return io.micrometer.core.instrument.DistributionSummary
+     */
+    public DistributionSummary sinkBatchSize(LogSink sink) {
+        SinkStats stats = sink.getStats();
+        FunctionCounter.builder(PREFIX + "sink.rows", stats, SinkStats::getRows)
+                .tag("sink", sink.getName())
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "sink.failed.rows", stats, SinkStats::getFailedRows)
+                .tag("sink", sink.getName())
+                .register(registry);
+        return DistributionSummary.builder(PREFIX + "sink.batch.size")
+                .description("单个输出每批次接收的日志条数")
+                .tag("sink", sink.getName())
+                .register(registry);
+    }
+
+    /**
+     * 消费线程等待输出并发许可的耗时
+     *
+     * @param sink 日志输出
+     * @return io.micrometer.core.instrument.Timer
+     */
+    public Timer sinkPermitWaitTimer(LogSink sink) {
+        return Timer.builder(PREFIX + "sink.permit.wait")
+                .description("输出达到并发上限时消费线程的等待耗时")
+                .tag("sink", sink.getName())
+                .register(registry);
+    }
+
+    /**
+     * 注册输出正在执行及等待执行的批次数
+     *
+     * @param dispatcher 输出分发
+     */
+    public void bindDispatcher(SinkDispatcher dispatcher) {
+        String name = dispatcher.getSink().getName();
+        Gauge.builder(PREFIX + "sink.inflight", dispatcher, SinkDispatcher::getInFlight)
+                .description("正在写入的批次数")
+                .tag("sink", name)
+                .register(registry);
+        Gauge.builder(PREFIX + "sink.waiting", dispatcher, SinkDispatcher::getWaiting)
+                .description("等待并发许可的批次数")
+                .tag("sink", name)
+                .register(registry);
+    }
+
+    /**
+     * 注册输出线程池的排队及活动任务数，虚拟线程执行器没有排队
+     *
+     * @param executor 执行器
+     */
+    public void bindExecutor(ExecutorService executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            Gauge.builder(PREFIX + "sink.executor.queued", pool, p -> p.getQueue().size())
+                    .description("输出线程池中排队的批次数")
+                    .register(registry);
+            Gauge.builder(PREFIX + "sink.executor.active", pool, ThreadPoolExecutor::getActiveCount)
+                    .register(registry);
+        }
+    }
+
+    /*----------------------------------采样 ---------------------------------------------*/
+
+    /**
+     * 注册接口的采样统计，endpoint 为 类名.方法名，重载方法以 parameters 区分
+     *
+     * @param sampler 采样器
+     */
+    public void bindSampler(LogSampler sampler) {
+        FunctionCounter.builder(PREFIX + "sampling.kept", sampler, LogSampler::getKeptCount)
+                .tag("endpoint", sampler.getMethodPath())
+                .tag("parameters", sampler.getParameterTypes())
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "sampling.sampled.out", sampler, LogSampler::getSampledOutCount)
+                .description("按采样比例丢弃的日志条数")
+                .tag("endpoint", sampler.getMethodPath())
+                .tag("parameters", sampler.getParameterTypes())
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "sampling.rate.limited", sampler, LogSampler::getRateLimitedCount)
+                .description("超出每秒最大条数丢弃的日志条数")
+                .tag("endpoint", sampler.getMethodPath())
+                .tag("parameters", sampler.getParameterTypes())
+                .register(registry);
+    }
+}
@@ -0,0 +1,262 @@
+package per.meteor.aop.log.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import per.meteor.aop.log.config.LogPipelineProperties;
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 日志处理管道：多个请求线程发布到环形缓冲区，由单个消费线程批量取出处理
+ * <p>
+ * 消费线程取不到日志时先自旋让出 CPU，仍然没有日志则调用空闲回调并休眠至多 idleInterval，
+ * 休眠期间发布日志的线程负责唤醒消费线程。
+ *
+ * @author meteor
+ * @date 2021-10-05 11:02
+ */
+public class LogPipeline {
+
+    Logger logger = LoggerFactory.getLogger(LogPipeline.class);
+
+    private static final String FAILURE = "failure";
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int SPIN_TRIES = 100;
+
+    private final LogRingBuffer ringBuffer;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final Consumer<List<LogDomain>> batchHandler;
+    private final Runnable idleHandler;
+    private final String threadName;
+    private final long idleParkNanos;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder drained = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean running;
+    /** 消费线程是否即将或正在休眠，发布线程据此决定是否唤醒 **/
+    private volatile boolean parked;
+    private volatile Thread consumer;
+
+    /**
+     * @param properties 配置
+     * @param threadName 消费线程名称
+     * @param batchHandler 批次处理，运行在消费线程中
+     * @param idleHandler 消费线程空闲时的回调，运行在消费线程中
+     */
+    public LogPipeline(LogPipelineProperties properties, String threadName,
+                       Consumer<List<LogDomain>> batchHandler, Runnable idleHandler) {
+        this.ringBuffer = new LogRingBuffer(properties.getCapacity());
+        this.overflowPolicy = properties.getOverflowPolicy();
+        this.batchSize = Math.max(1, properties.getBatchSize());
+        this.threadName = threadName;
+        this.idleParkNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, properties.getIdleInterval()));
+        this.batchHandler = batchHandler;
+        this.idleHandler = idleHandler;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        consumer = new Thread(this::consume, threadName);
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * 停止消费线程，停止前会处理完缓冲区中剩余的日志
+     *
+     * @param timeoutMillis 最长等待时间
+     * @return boolean 消费线程是否已退出，超时仍在处理时为 false，可以再次调用继续等待
+     */
+    public synchronized boolean stop(long timeoutMillis) {
+        if (consumer == null) {
+            return true;
+        }
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (consumer.isAlive()) {
+            logger.warn("日志消费线程未在 {}ms 内退出, 缓冲区剩余 {} 条", timeoutMillis, ringBuffer.size());
+            return false;
+        }
+        discardStranded();
+        return true;
+    }
+
+    /**
+     * 发布日志，缓冲区已满时按照 {@link OverflowPolicy} 处理。
+     * 未启动或已停止时计为丢弃，停止过程中消费线程仍在处理剩余日志时照常发布
+     *
+     * @param logDomain 日志信息
+     * @return boolean 是否发布成功
+     */
+    public boolean publish(LogDomain logDomain) {
+        if (!running && !isDraining()) {
+            dropped.increment();
+            return false;
+        }
+        logDomain.setPublishedNanos(System.nanoTime());
+        if (ringBuffer.offer(logDomain)) {
+            published.increment();
+            if (!running && !isDraining()) {
+                // 检查之后消费线程已经退出，写入的日志不会再被取出
+                discardStranded();
+                return false;
+            }
+            wakeConsumer();
+            return true;
+        }
+        switch (overflowPolicy) {
+            case BLOCK:
+                return publishBlocking(logDomain);
+            case DROP_OLDEST:
+                return publishEvictingOldest(logDomain);
+            case DROP_SUCCESS_KEEP_ERRORS:
+                if (FAILURE.equals(logDomain.getResponseStatus())) {
+                    return publishBlocking(logDomain);
+                }
+                dropped.increment();
+                return false;
+            case DROP_NEWEST:
+            default:
+                dropped.increment();
+                return false;
+        }
+    }
+
+    private boolean publishBlocking(LogDomain logDomain) {
+        long parkNanos = 1;
+        while (running) {
+            if (ringBuffer.offer(logDomain)) {
+                published.increment();
+                wakeConsumer();
+                return true;
+            }
+            LockSupport.parkNanos(parkNanos);
+            parkNanos = Math.min(parkNanos << 1, MAX_PARK_NANOS);
+        }
+        dropped.increment();
+        return false;
+    }
+
+    private boolean publishEvictingOldest(LogDomain logDomain) {
+        do {
+            if (ringBuffer.poll() != null) {
+                dropped.increment();
+            }
+        } while (!ringBuffer.offer(logDomain));
+        published.increment();
+        wakeConsumer();
+        return true;
+    }
+
+    private boolean isDraining() {
+        Thread thread = consumer;
+        return thread != null && thread.isAlive();
+    }
+
+    /**
+     * 消费线程退出后仍留在缓冲区中的日志计为丢弃
+     */
+    private void discardStranded() {
+        while (ringBuffer.poll() != null) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * 消费线程休眠时唤醒，未休眠时只有一次 volatile 读
+     */
+    private void wakeConsumer() {
+        if (parked) {
+            parked = false;
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private void consume() {
+        List<LogDomain> batch = new ArrayList<>(batchSize);
+        int idleCount = 0;
+        while (running || !ringBuffer.isEmpty()) {
+            int count = ringBuffer.drainTo(batch, batchSize);
+            if (count == 0) {
+                idle(idleCount++);
+                continue;
+            }
+            idleCount = 0;
+            try {
+                batchHandler.accept(batch);
+            } catch (Exception e) {
+                logger.error("日志批量处理失败, 本批次 {} 条", count, e);
+            } finally {
+                drained.add(count);
+                batch.clear();
+            }
+        }
+    }
+
+    private void idle(int idleCount) {
+        if (idleCount < SPIN_TRIES) {
+            Thread.yield();
+            return;
+        }
+        try {
+            idleHandler.run();
+        } catch (Exception e) {
+            logger.error("日志管道空闲回调失败", e);
+        }
+        // 先声明休眠再检查缓冲区：发布线程写入后读 parked，两边都是 volatile，至少有一方能看到对方
+        parked = true;
+        if (running && ringBuffer.isEmpty()) {
+            LockSupport.parkNanos(this, idleParkNanos);
+        }
+        parked = false;
+    }
+
+    /*----------------------------------统计信息 ---------------------------------------------*/
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public long getDrainedCount() {
+        return drained.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public int getQueueSize() {
+        return ringBuffer.size();
+    }
+
+    public int getCapacity() {
+        return ringBuffer.capacity();
+    }
+
+    /**
+     * 缓冲区中最早的日志已等待的时间，缓冲区为空时为 0
+     *
+     * @return long 纳秒
+     */
+    public long getOldestAgeNanos() {
+        LogDomain oldest = ringBuffer.peek();
+        return oldest == null ? 0 : Math.max(0, System.nanoTime() - oldest.getPublishedNanos());
+    }
+}
@@ -0,0 +1,150 @@
+package per.meteor.aop.log.pipeline;
+
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 有界环形缓冲区
+ * <p>
+ * 槽位在构造时一次性分配，每个槽位带有一个序号，生产者通过 CAS 抢占写入位置，发布过程无锁。
+ * 实现参考 Dmitry Vyukov 的 bounded MPMC queue，因此除了单消费者批量取出外，
+ * 生产者也可以安全地移除最早的元素（用于 {@link OverflowPolicy#DROP_OLDEST}）。
+ *
+ * @author meteor
+ * @date 2021-10-05 10:20
+ */
+public class LogRingBuffer {
+
+    /** 最大容量，再大向上取整为 2 的幂时会溢出 **/
+    public static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private final int mask;
+    private final LogDomain[] slots;
+    private final AtomicLongArray sequences;
+    /** 生产者游标 **/
+    private final AtomicLong tail = new AtomicLong();
+    /** 消费者游标 **/
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity 容量，向上取整为 2 的幂，范围 2 ~ {@link #MAXIMUM_CAPACITY}
+     */
+    public LogRingBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be greater than 1: " + capacity);
+        }
+        if (capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("capacity must not exceed " + MAXIMUM_CAPACITY + ": " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new LogDomain[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 发布日志，缓冲区已满时立即返回 false
+     *
+     * @param logDomain 日志信息
+     * @return boolean
+     */
+    public boolean offer(LogDomain logDomain) {
+        long position = tail.get();
+        for (;;) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = logDomain;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * 取出最早的日志，缓冲区为空时返回 null
+     *
+     * @return per.meteor.aop.log.domain.LogDomain
+     */
+    public LogDomain poll() {
+        long position = head.get();
+        for (;;) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    LogDomain logDomain = slots[index];
+                    slots[index] = null;
+                    sequences.set(index, position + mask + 1);
+                    return logDomain;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * 查看最早的日志但不取出，缓冲区为空或与消费者竞争失败时返回 null，只用于监控
+     *
+     * @return per.meteor.aop.log.domain.LogDomain
+     */
+    public LogDomain peek() {
+        long position = head.get();
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        LogDomain logDomain = slots[index];
+        return sequences.get(index) == position + 1 ? logDomain : null;
+    }
+
+    /**
+     * 批量取出日志
+     *
+     * @param batch 接收日志的集合
+     * @param maxElements 最多取出的条数
+     * @return int 实际取出的条数
+     */
+    public int drainTo(List<LogDomain> batch, int maxElements) {
+        int count = 0;
+        while (count < maxElements) {
+            LogDomain logDomain = poll();
+            if (logDomain == null) {
+                break;
+            }
+            batch.add(logDomain);
+            count++;
+        }
+        return count;
+    }
+
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,26 @@
+package per.meteor.aop.log.pipeline;
+
+/**
+ * 环形缓冲区已满时的处理策略
+ *
+ * @author meteor
+ * @date 2021-10-05 10:12
+ */
+public enum OverflowPolicy {
+    /**
+     * 阻塞发布线程，直到缓冲区有空位
+     */
+    BLOCK,
+    /**
+     * 丢弃当前发布的日志
+     */
+    DROP_NEWEST,
+    /**
+     * 丢弃缓冲区中最早的日志，为当前日志腾出位置
+     */
+    DROP_OLDEST,
+    /**
+     * 丢弃正常请求日志，异常日志阻塞等待
+     */
+    DROP_SUCCESS_KEEP_ERRORS
+}
@@ -0,0 +1,69 @@
+package per.meteor.aop.log.rollup;
+
+/**
+ * 耗时直方图的桶划分(单位: 微秒)
+ * <p>
+ * 0 ~ 3 各占一个桶，之后每个 2 的幂区间等分为 4 个桶，相对误差不超过 25%。
+ * 桶的划分固定，不同分钟、不同接口的直方图可以直接按下标相加合并。
+ *
+ * @author meteor
+ * @date 2021-10-20 10:20
+ */
+final class LatencyBuckets {
+
+    /** 可区分的最大耗时约 19 小时，超出记入最后一个桶 **/
+    static final long MAX_VALUE = (1L << 36) - 1;
+    static final int COUNT = index(MAX_VALUE) + 1;
+
+    private LatencyBuckets() {}
+
+    static int index(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_VALUE));
+        if (value < 4) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - 2)) & 3;
+        return ((exponent - 1) << 2) + sub;
+    }
+
+    /**
+     * 桶内的最大值
+     */
+    static long upperBound(int index) {
+        if (index < 4) {
+            return index;
+        }
+        int exponent = (index >> 2) + 1;
+        int sub = index & 3;
+        long lower = (long) (4 + sub) << (exponent - 2);
+        return lower + (1L << (exponent - 2)) - 1;
+    }
+
+    /**
+     * 按桶上界估算分位值
+     *
+     * @param counts 各桶计数
+     * @param percentile 分位(0 ~ 100)
+     * @param max 实际最大值，估算结果不超过该值
+     * @return long 没有数据时返回 0
+     */
+    static long percentile(long[] counts, double percentile, long max) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+}
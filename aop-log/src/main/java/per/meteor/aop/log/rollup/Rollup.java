@@ -0,0 +1,205 @@
+package per.meteor.aop.log.rollup;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一个时间窗口内某个维度组合的汇总，封存的分钟汇总以该格式逐行写入 jsonl 文件。
+ * 所有字段都可以直接相加(最小、最大值取最值)，任意窗口的汇总由分钟汇总合并得到
+ *
+ * @author meteor
+ * @date 2021-10-20 10:40
+ */
+public class Rollup {
+
+    /** 窗口起始时间(含) **/
+    private LocalDateTime from;
+    /** 窗口结束时间(不含) **/
+    private LocalDateTime to;
+    private String methodPath;
+    private String module;
+    private String type;
+    private long count;
+    private long errors;
+    /** 按异常类型的错误数 **/
+    private Map<String, Long> errorsByException;
+    /** 耗时(微秒)，只统计记录了耗时的请求 **/
+    private long latencySum;
+    private long latencyMin = Long.MAX_VALUE;
+    private long latencyMax;
+    /** 耗时直方图，桶划分见 {@link LatencyBuckets}，省略末尾的 0 **/
+    private long[] histogram;
+
+    public Rollup() {
+        // 反序列化
+    }
+
+    public Rollup(LocalDateTime from, LocalDateTime to, RollupKey key) {
+        this.from = from;
+        this.to = to;
+        this.methodPath = key.getMethodPath();
+        this.module = key.getModule();
+        this.type = key.getType();
+        this.errorsByException = new TreeMap<>();
+        this.histogram = new long[0];
+    }
+
+    /**
+     * 合并另一个汇总，时间窗口取两者的并集
+     *
+     * @param other 汇总
+     */
+    public void merge(Rollup other) {
+        if (other.from.isBefore(from)) {
+            from = other.from;
+        }
+        if (other.to.isAfter(to)) {
+            to = other.to;
+        }
+        count += other.count;
+        errors += other.errors;
+        if (other.errorsByException != null) {
+            other.errorsByException.forEach((name, value) -> errorsByException.merge(name, value, Long::sum));
+        }
+        latencySum += other.latencySum;
+        latencyMin = Math.min(latencyMin, other.latencyMin);
+        latencyMax = Math.max(latencyMax, other.latencyMax);
+        long[] counts = other.histogram == null ? new long[0] : other.histogram;
+        if (counts.length > histogram.length) {
+            histogram = Arrays.copyOf(histogram, counts.length);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            histogram[i] += counts[i];
+        }
+    }
+
+    /**
+     * 查询结果，耗时单位: 毫秒
+     *
+     * @return java.util.Map<java.lang.String,java.lang.Object>
+     */
+    public Map<String, Object> toMap() {
+        long latencyCount = 0;
+        for (long value : histogram) {
+            latencyCount += value;
+        }
+        Map<String, Object> map = new LinkedHashMap<>(20);
+        map.put("from", from);
+        map.put("to", to);
+        map.put("methodPath", methodPath);
+        map.put("module", module);
+        map.put("type", type);
+        map.put("count", count);
+        map.put("errors", errors);
+        map.put("errorRate", count == 0 ? 0 : (double) errors / count);
+        map.put("errorsByException", errorsByException);
+        map.put("latencyAvg", latencyCount == 0 ? 0 : latencySum / 1000.0 / latencyCount);
+        map.put("latencyMin", latencyCount == 0 ? 0 : latencyMin / 1000.0);
+        map.put("latencyMax", latencyMax / 1000.0);
+        map.put("p50", LatencyBuckets.percentile(histogram, 50, latencyMax) / 1000.0);
+        map.put("p90", LatencyBuckets.percentile(histogram, 90, latencyMax) / 1000.0);
+        map.put("p99", LatencyBuckets.percentile(histogram, 99, latencyMax) / 1000.0);
+        return map;
+    }
+
+    /*----------------------------------getter及setter ---------------------------------------------*/
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+
+    public String getMethodPath() {
+        return methodPath;
+    }
+
+    public void setMethodPath(String methodPath) {
+        this.methodPath = methodPath;
+    }
+
+    public String getModule() {
+        return module;
+    }
+
+    public void setModule(String module) {
+        this.module = module;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public void setErrors(long errors) {
+        this.errors = errors;
+    }
+
+    public Map<String, Long> getErrorsByException() {
+        return errorsByException;
+    }
+
+    public void setErrorsByException(Map<String, Long> errorsByException) {
+        this.errorsByException = errorsByException;
+    }
+
+    public long getLatencySum() {
+        return latencySum;
+    }
+
+    public void setLatencySum(long latencySum) {
+        this.latencySum = latencySum;
+    }
+
+    public long getLatencyMin() {
+        return latencyMin;
+    }
+
+    public void setLatencyMin(long latencyMin) {
+        this.latencyMin = latencyMin;
+    }
+
+    public long getLatencyMax() {
+        return latencyMax;
+    }
+
+    public void setLatencyMax(long latencyMax) {
+        this.latencyMax = latencyMax;
+    }
+
+    public long[] getHistogram() {
+        return histogram;
+    }
+
+    public void setHistogram(long[] histogram) {
+        this.histogram = histogram;
+    }
+}
@@ -0,0 +1,320 @@
+package per.meteor.aop.log.rollup;
+
+import org.HdrHistogram.WriterReaderPhaser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import per.meteor.aop.log.config.RollupProperties;
+import per.meteor.aop.log.domain.LogDomain;
+import per.meteor.aop.log.sink.LogSink;
+import per.meteor.aop.log.sink.SinkStats;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 按分钟汇总接口调用量、错误数及耗时，作为 {@link LogSink} 在日志管道的异步一侧运行
+ * <p>
+ * 以 (分钟, 接口方法路径, 模块, 操作类型) 为键累计 {@link RollupBucket}，支持多个输出线程同时写入。
+ * 分钟结束并超过 sealDelay 后定时任务将其封存：先从表中移除，再通过 {@link WriterReaderPhaser} 等待仍持有旧桶的写入方退出，
+ * 之后读取的计数不会再变化，写入 {@link RollupStore}。封存后到达的迟到日志进入同一分钟的新桶，下次封存时单独写出。
+ * <p>
+ * 查询合并文件中的分钟汇总及尚未封存的桶，窗口及分组任意指定。
+ * <p>
+ * 汇总在采样及限流之后进行。异常日志不参与采样，错误数是准确的；正常日志按 {@link LogDomain#getRepresentedCount()} 加权，
+ * 被采样或限流丢掉的正常调用计入同一接口下一条记录的日志，调用量在下一条日志到达后还原，耗时按这条日志估算。
+ * 管道溢出丢弃的日志不在统计内。
+ *
+ * @author meteor
+ * @date 2021-10-20 14:20
+ */
+@Component
+@ConditionalOnProperty(prefix = "meteor.log.rollup", name = "enabled", havingValue = "true")
+public class RollupAggregator implements LogSink {
+
+    Logger logger = LoggerFactory.getLogger(RollupAggregator.class);
+
+    /** 单次查询最多返回的窗口数 **/
+    private static final int MAX_WINDOWS = 10080;
+    private static final Comparator<String> NULLS_FIRST = Comparator.nullsFirst(Comparator.naturalOrder());
+    private static final Comparator<Rollup> ORDER = Comparator.comparing(Rollup::getFrom)
+            .thenComparing(Rollup::getMethodPath, NULLS_FIRST)
+            .thenComparing(Rollup::getModule, NULLS_FIRST)
+            .thenComparing(Rollup::getType, NULLS_FIRST);
+
+    private final RollupProperties properties;
+    private final RollupStore store;
+    private final ConcurrentMap<LocalDateTime, ConcurrentMap<RollupKey, RollupBucket>> minutes = new ConcurrentHashMap<>(8);
+    private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+    private final SinkStats stats = new SinkStats();
+    /** 封存与查询互斥，避免查询时桶已移出内存但尚未写入文件 **/
+    private final Object sealLock = new Object();
+    private final AtomicLong sealedMinutes = new AtomicLong();
+    private final AtomicLong sealedRollups = new AtomicLong();
+    private final AtomicLong lostRollups = new AtomicLong();
+    private LocalDate retainedFrom;
+
+    public RollupAggregator(RollupProperties properties) throws IOException {
+        this.properties = properties;
+        this.store = new RollupStore(properties.getDirectory());
+    }
+
+    @Override
+    public String getName() {
+        return "rollup";
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+
+    @Override
+    public void write(List<LogDomain> batch) {
+        long start = System.nanoTime();
+        long stamp = phaser.writerCriticalSectionEnter();
+        try {
+            for (LogDomain log : batch) {
+                bucket(log).record(log);
+            }
+        } finally {
+            phaser.writerCriticalSectionExit(stamp);
+        }
+        stats.recordBatch(batch.size(), System.nanoTime() - start);
+    }
+
+    /**
+     * 应用关闭时封存所有分钟，包括尚未结束的分钟
+     */
+    @Override
+    public void close() {
+        seal(LocalDateTime.MAX);
+    }
+
+    @Override
+    public SinkStats getStats() {
+        return stats;
+    }
+
+    /**
+     * 封存已结束的分钟并清理过期文件
+     */
+    @Scheduled(fixedDelayString = "${meteor.log.rollup.seal-interval:10000}",
+            initialDelayString = "${meteor.log.rollup.seal-interval:10000}")
+    public void seal() {
+        seal(LocalDateTime.now().minus(properties.getSealDelay(), ChronoUnit.MILLIS));
+        if (properties.getRetentionDays() > 0) {
+            LocalDate from = LocalDate.now().minusDays(properties.getRetentionDays());
+            if (!from.equals(retainedFrom)) {
+                store.deleteBefore(from);
+                retainedFrom = from;
+            }
+        }
+    }
+
+    /**
+     * 合并 [from, to) 内的分钟汇总
+     *
+     * @param query 查询条件
+     * @return java.util.List<java.util.Map<java.lang.String,java.lang.Object>> 按窗口起始时间、维度排序
+     * @throws IllegalArgumentException 时间范围或分组维度不正确
+     */
+    public List<Map<String, Object>> query(RollupQuery query) {
+        LocalDateTime to = query.getTo() == null ? LocalDateTime.now() : query.getTo();
+        LocalDateTime from = query.getFrom() == null ? to.minusHours(1) : query.getFrom();
+        from = from.truncatedTo(ChronoUnit.MINUTES);
+        to = to.truncatedTo(ChronoUnit.MINUTES).equals(to) ? to : to.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from 需要早于 to");
+        }
+        long span = ChronoUnit.MINUTES.between(from, to);
+        int step = query.getStep() <= 0 ? (int) Math.min(span, Integer.MAX_VALUE) : query.getStep();
+        if (span / step > MAX_WINDOWS) {
+            throw new IllegalArgumentException("窗口数超过 " + MAX_WINDOWS + ", 请增大 step 或缩小时间范围");
+        }
+        for (String dimension : query.getGroupBy()) {
+            if (!RollupQuery.METHOD_PATH.equals(dimension) && !RollupQuery.MODULE.equals(dimension)
+                    && !RollupQuery.TYPE.equals(dimension)) {
+                throw new IllegalArgumentException("不支持的分组维度: " + dimension);
+            }
+        }
+
+        Merger merger = new Merger(query, from, to, step);
+        synchronized (sealLock) {
+            store.read(from, to, merger::add);
+            for (Map.Entry<LocalDateTime, ConcurrentMap<RollupKey, RollupBucket>> minute : minutes.entrySet()) {
+                if (!minute.getKey().isBefore(from) && minute.getKey().isBefore(to)) {
+                    // 未封存的桶可能仍在写入，读取的是近似值
+                    for (RollupBucket bucket : minute.getValue().values()) {
+                        merger.add(bucket.toRollup());
+                    }
+                }
+            }
+        }
+        return merger.windows.values().stream().sorted(ORDER).map(Rollup::toMap).collect(Collectors.toList());
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>(8);
+        int buckets = 0;
+        for (Map<RollupKey, RollupBucket> minute : minutes.values()) {
+            buckets += minute.size();
+        }
+        snapshot.put("openMinutes", minutes.size());
+        snapshot.put("openBuckets", buckets);
+        snapshot.put("sealedMinutes", sealedMinutes.get());
+        snapshot.put("sealedRollups", sealedRollups.get());
+        snapshot.put("lostRollups", lostRollups.get());
+        return snapshot;
+    }
+
+    private RollupBucket bucket(LogDomain log) {
+        LocalDateTime time = log.getRequestTime() != null ? log.getRequestTime() : LocalDateTime.now();
+        LocalDateTime minute = time.truncatedTo(ChronoUnit.MINUTES);
+        ConcurrentMap<RollupKey, RollupBucket> buckets = minutes.get(minute);
+        if (buckets == null) {
+            buckets = minutes.computeIfAbsent(minute, m -> new ConcurrentHashMap<>(64));
+        }
+        // 从磁盘读回的日志没有接口键，按方法路径汇总
+        RollupKey key = new RollupKey(log.getMethodKey() != null ? log.getMethodKey() : log.getRequestMethodPath(),
+                log.getOperationModule() == null ? null : log.getOperationModule().name(),
+                log.getOperationType() == null ? null : log.getOperationType().name());
+        RollupBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new RollupBucket(minute, k));
+        }
+        return bucket;
+    }
+
+    /**
+     * 封存结束时间不晚于 sealedBefore 的分钟
+     */
+    private void seal(LocalDateTime sealedBefore) {
+        synchronized (sealLock) {
+            List<ConcurrentMap<RollupKey, RollupBucket>> sealed = new ArrayList<>();
+            Iterator<Map.Entry<LocalDateTime, ConcurrentMap<RollupKey, RollupBucket>>> iterator = minutes.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<LocalDateTime, ConcurrentMap<RollupKey, RollupBucket>> minute = iterator.next();
+                if (!minute.getKey().plusMinutes(1).isAfter(sealedBefore)) {
+                    sealed.add(minute.getValue());
+                    iterator.remove();
+                }
+            }
+            if (sealed.isEmpty()) {
+                return;
+            }
+            // 等待移除前进入的写入方退出
+            phaser.readerLock();
+            try {
+                phaser.flipPhase();
+            } finally {
+                phaser.readerUnlock();
+            }
+            List<Rollup> rollups = new ArrayList<>();
+            for (Map<RollupKey, RollupBucket> buckets : sealed) {
+                for (RollupBucket bucket : buckets.values()) {
+                    rollups.add(bucket.toRollup());
+                }
+            }
+            try {
+                store.append(rollups);
+                sealedMinutes.addAndGet(sealed.size());
+                sealedRollups.addAndGet(rollups.size());
+            } catch (IOException e) {
+                lostRollups.addAndGet(rollups.size());
+                logger.error("写入分钟汇总失败, 丢弃 {} 条", rollups.size(), e);
+            }
+        }
+    }
+
+    /**
+     * 按查询的窗口及分组合并汇总
+     */
+    private static final class Merger {
+
+        private final RollupQuery query;
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+        private final int step;
+        private final boolean byMethodPath;
+        private final boolean byModule;
+        private final boolean byType;
+        private final Map<Window, Rollup> windows = new HashMap<>(64);
+
+        Merger(RollupQuery query, LocalDateTime from, LocalDateTime to, int step) {
+            this.query = query;
+            this.from = from;
+            this.to = to;
+            this.step = step;
+            this.byMethodPath = query.getGroupBy().contains(RollupQuery.METHOD_PATH);
+            this.byModule = query.getGroupBy().contains(RollupQuery.MODULE);
+            this.byType = query.getGroupBy().contains(RollupQuery.TYPE);
+        }
+
+        void add(Rollup rollup) {
+            if (!matchesMethod(query.getMethodPath(), rollup.getMethodPath()) || !matches(query.getModule(), rollup.getModule())
+                    || !matches(query.getType(), rollup.getType())) {
+                return;
+            }
+            long offset = ChronoUnit.MINUTES.between(from, rollup.getFrom()) / step * step;
+            LocalDateTime start = from.plusMinutes(offset);
+            LocalDateTime end = start.plusMinutes(step).isAfter(to) ? to : start.plusMinutes(step);
+            RollupKey key = new RollupKey(byMethodPath ? rollup.getMethodPath() : null,
+                    byModule ? rollup.getModule() : null, byType ? rollup.getType() : null);
+            windows.computeIfAbsent(new Window(start, key), window -> new Rollup(start, end, key)).merge(rollup);
+        }
+
+        private static boolean matches(String expected, String actual) {
+            return expected == null || expected.equals(actual);
+        }
+
+        /**
+         * 汇总键带参数类型，按 类名.方法名 查询时匹配该方法的所有重载
+         */
+        private static boolean matchesMethod(String expected, String actual) {
+            return matches(expected, actual) || (actual != null && actual.length() > expected.length()
+                    && actual.startsWith(expected) && actual.charAt(expected.length()) == '(');
+        }
+    }
+
+    private static final class Window {
+
+        private final LocalDateTime start;
+        private final RollupKey key;
+
+        Window(LocalDateTime start, RollupKey key) {
+            this.start = start;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Window)) {
+                return false;
+            }
+            Window other = (Window) o;
+            return start.equals(other.start) && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(start, key);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package per.meteor.aop.log.rollup;
+
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 正在累计的分钟汇总
+ * <p>
+ * 计数使用 LongAdder / LongAccumulator，多个线程同时写入同一个桶时分散到不同的 Cell，不争用同一个变量。
+ * 直方图每个下标一个 LongAdder，未发生争用时只占用一个 long。
+ *
+ * @author meteor
+ * @date 2021-10-20 11:00
+ */
+final class RollupBucket {
+
+    private final LocalDateTime minute;
+    private final RollupKey key;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Map<String, LongAdder> errorsByException = new ConcurrentHashMap<>(4);
+    private final LongAdder latencySum = new LongAdder();
+    private final LongAccumulator latencyMin = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator latencyMax = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] histogram = new LongAdder[LatencyBuckets.COUNT];
+
+    RollupBucket(LocalDateTime minute, RollupKey key) {
+        this.minute = minute;
+        this.key = key;
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 累计一条日志，计数、耗时及直方图都按 {@link LogDomain#getRepresentedCount()} 加权，
+     * 未记录的调用按这条日志的耗时估算
+     */
+    void record(LogDomain log) {
+        long weight = Math.max(1, log.getRepresentedCount());
+        count.add(weight);
+        if (log.getExceptionName() != null || "failure".equals(log.getResponseStatus())) {
+            errors.add(weight);
+            String exception = log.getExceptionName() == null ? "unknown" : log.getExceptionName();
+            LongAdder counter = errorsByException.get(exception);
+            if (counter == null) {
+                counter = errorsByException.computeIfAbsent(exception, name -> new LongAdder());
+            }
+            counter.add(weight);
+        }
+        Long duration = log.getRequestDuration();
+        if (duration != null) {
+            latencySum.add(duration * weight);
+            latencyMin.accumulate(duration);
+            latencyMax.accumulate(duration);
+            histogram[LatencyBuckets.index(duration)].add(weight);
+        }
+    }
+
+    /**
+     * 当前累计值，封存时调用方需要保证没有线程仍在写入
+     *
+     * @return per.meteor.aop.log.rollup.Rollup
+     */
+    Rollup toRollup() {
+        Rollup rollup = new Rollup(minute, minute.plusMinutes(1), key);
+        rollup.setCount(count.sum());
+        rollup.setErrors(errors.sum());
+        errorsByException.forEach((name, counter) -> rollup.getErrorsByException().put(name, counter.sum()));
+        rollup.setLatencySum(latencySum.sum());
+        rollup.setLatencyMin(latencyMin.get());
+        rollup.setLatencyMax(latencyMax.get());
+        int length = histogram.length;
+        while (length > 0 && histogram[length - 1].sum() == 0) {
+            length--;
+        }
+        long[] counts = new long[length];
+        for (int i = 0; i < length; i++) {
+            counts[i] = histogram[i].sum();
+        }
+        rollup.setHistogram(counts);
+        return rollup;
+    }
+}
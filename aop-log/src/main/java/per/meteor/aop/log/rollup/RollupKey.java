@@ -0,0 +1,54 @@
+package per.meteor.aop.log.rollup;
+
+import java.util.Objects;
+
+/**
+ * 汇总维度：接口方法路径、模块、操作类型，汇总查询时未分组的维度为 null
+ *
+ * @author meteor
+ * @date 2021-10-20 10:30
+ */
+public final class RollupKey {
+
+    private final String methodPath;
+    private final String module;
+    private final String type;
+    private final int hash;
+
+    public RollupKey(String methodPath, String module, String type) {
+        this.methodPath = methodPath;
+        this.module = module;
+        this.type = type;
+        this.hash = Objects.hash(methodPath, module, type);
+    }
+
+    public String getMethodPath() {
+        return methodPath;
+    }
+
+    public String getModule() {
+        return module;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RollupKey)) {
+            return false;
+        }
+        RollupKey other = (RollupKey) o;
+        return hash == other.hash && Objects.equals(methodPath, other.methodPath)
+                && Objects.equals(module, other.module) && Objects.equals(type, other.type);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,88 @@
+package per.meteor.aop.log.rollup;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 汇总查询：合并 [from, to) 内的分钟汇总，按 step 分钟划分窗口，按 groupBy 中的维度分组
+ *
+ * @author meteor
+ * @date 2021-10-20 14:00
+ */
+public class RollupQuery {
+
+    public static final String METHOD_PATH = "methodPath";
+    public static final String MODULE = "module";
+    public static final String TYPE = "type";
+
+    /** 起始时间(含)，按分钟向下取整 **/
+    private LocalDateTime from;
+    /** 结束时间(不含)，按分钟向上取整 **/
+    private LocalDateTime to;
+    /** 窗口长度(分钟)，0 表示整个时间范围合并为一个窗口 **/
+    private int step;
+    /** 分组维度，不在其中的维度合并 **/
+    private Set<String> groupBy = new LinkedHashSet<>(Arrays.asList(METHOD_PATH, MODULE, TYPE));
+    /** 以下为过滤条件，为空时不过滤 **/
+    private String methodPath;
+    private String module;
+    private String type;
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public void setStep(int step) {
+        this.step = step;
+    }
+
+    public Set<String> getGroupBy() {
+        return groupBy;
+    }
+
+    public void setGroupBy(Set<String> groupBy) {
+        this.groupBy = groupBy;
+    }
+
+    public String getMethodPath() {
+        return methodPath;
+    }
+
+    public void setMethodPath(String methodPath) {
+        this.methodPath = methodPath;
+    }
+
+    public String getModule() {
+        return module;
+    }
+
+    public void setModule(String module) {
+        this.module = module;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+}
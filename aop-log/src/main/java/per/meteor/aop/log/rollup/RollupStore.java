@@ -0,0 +1,137 @@
+package per.meteor.aop.log.rollup;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import per.meteor.aop.log.common.utils.JsonUtil;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 封存的分钟汇总文件，每天一个 rollup-yyyyMMdd.jsonl，每行一个 {@link Rollup}。
+ * 同一分钟、同一维度可能有多行(迟到日志在分钟封存后单独累计)，读取方合并即可。
+ * 只追加写入，进程中断时可能留下不完整的行，读取时逐行解析并跳过。
+ *
+ * @author meteor
+ * @date 2021-10-20 11:20
+ */
+public class RollupStore {
+
+    Logger logger = LoggerFactory.getLogger(RollupStore.class);
+
+    private static final String PREFIX = "rollup-";
+    private static final String SUFFIX = ".jsonl";
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final Path directory;
+    private final ObjectWriter writer = JsonUtil.writer(false);
+    private final ObjectReader reader = JsonUtil.reader(Rollup.class);
+
+    public RollupStore(String directory) throws IOException {
+        this.directory = Paths.get(directory);
+        Files.createDirectories(this.directory);
+    }
+
+    /**
+     * 追加封存的汇总，按所属日期写入对应文件
+     *
+     * @param rollups 分钟汇总
+     * @throws IOException 写入失败
+     */
+    public void append(List<Rollup> rollups) throws IOException {
+        Map<LocalDate, StringBuilder> days = new TreeMap<>();
+        for (Rollup rollup : rollups) {
+            StringBuilder lines = days.computeIfAbsent(rollup.getFrom().toLocalDate(), day -> new StringBuilder(4096));
+            lines.append(writer.writeValueAsString(rollup)).append('\n');
+        }
+        for (Map.Entry<LocalDate, StringBuilder> day : days.entrySet()) {
+            try (BufferedWriter out = Files.newBufferedWriter(path(day.getKey()), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                out.append(day.getValue());
+            }
+        }
+    }
+
+    /**
+     * 读取 [from, to) 内的分钟汇总，只打开范围内日期的文件
+     *
+     * @param from 起始时间(含)
+     * @param to 结束时间(不含)
+     * @param consumer 处理每条汇总
+     */
+    public void read(LocalDateTime from, LocalDateTime to, Consumer<Rollup> consumer) {
+        for (LocalDate day = from.toLocalDate(); day.atStartOfDay().isBefore(to); day = day.plusDays(1)) {
+            Path path = path(day);
+            if (!Files.exists(path)) {
+                continue;
+            }
+            try (BufferedReader lines = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    Rollup rollup = parse(path, line);
+                    if (rollup != null && !rollup.getFrom().isBefore(from) && rollup.getFrom().isBefore(to)) {
+                        consumer.accept(rollup);
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("读取汇总文件失败: {}", path, e);
+            }
+        }
+    }
+
+    /**
+     * 删除早于指定日期的汇总文件
+     *
+     * @param before 保留的最早日期
+     */
+    public void deleteBefore(LocalDate before) {
+        String oldest = PREFIX + DAY_FORMAT.format(before) + SUFFIX;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                String name = path.getFileName().toString();
+                if (name.startsWith(PREFIX) && name.endsWith(SUFFIX) && name.length() == oldest.length()
+                        && name.compareTo(oldest) < 0) {
+                    Files.deleteIfExists(path);
+                    logger.info("删除过期汇总文件: {}", name);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("清理汇总文件失败: {}", directory, e);
+        }
+    }
+
+    /**
+     * 解析一行，进程中断留下的不完整行返回 null
+     */
+    private Rollup parse(Path path, String line) {
+        if (line.isEmpty()) {
+            return null;
+        }
+        try {
+            return reader.readValue(line);
+        } catch (IOException e) {
+            logger.warn("忽略无法解析的汇总记录: {}, {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private Path path(LocalDate day) {
+        return directory.resolve(PREFIX + DAY_FORMAT.format(day) + SUFFIX);
+    }
+}
@@ -0,0 +1,159 @@
+package per.meteor.aop.log.sampling;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个接口的日志采样器：先按固定比例采样，再经过每秒最大条数的令牌桶限流
+ * <p>
+ * 令牌桶使用 GCRA(通用信元速率算法) 实现，只维护一个"理论到达时间"，每次判断一次 CAS，无锁。
+ * 桶容量为一秒的令牌数，即允许短时间内突发 maxPerSecond 条。
+ * <p>
+ * 因采样或限流未记录的正常调用计入下一条记录的日志，见 {@link #representedCount()}，分钟汇总据此还原实际调用量。
+ *
+ * @author meteor
+ * @date 2021-10-12 14:20
+ */
+public class LogSampler {
+
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final String methodPath;
+    private final String methodKey;
+    private final double sampleRate;
+    private final int maxPerSecond;
+    /** 令牌发放间隔(纳秒) **/
+    private final long emissionInterval;
+    /** 理论到达时间(纳秒) **/
+    private final AtomicLong theoreticalArrival;
+
+    private final LongAdder kept = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    /** 上一条记录的日志之后未记录的正常调用数 **/
+    private final AtomicLong unrepresented = new AtomicLong();
+
+    /**
+     * @param methodPath 接口方法路径
+     * @param methodKey 区分重载方法的接口键
+     * @param sampleRate 采样比例，取值 (0, 1]，大于等于 1 时不按比例采样
+     * @param maxPerSecond 每秒最多记录的条数，小于等于 0 时不限流
+     */
+    public LogSampler(String methodPath, String methodKey, double sampleRate, int maxPerSecond) {
+        this.methodPath = methodPath;
+        this.methodKey = methodKey;
+        this.sampleRate = Math.max(0, Math.min(1, sampleRate));
+        this.maxPerSecond = Math.max(0, maxPerSecond);
+        this.emissionInterval = this.maxPerSecond > 0 ? Math.max(1, ONE_SECOND / this.maxPerSecond) : 0;
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * 判断本次调用是否记录日志
+     *
+     * @return boolean
+     */
+    public boolean tryAcquire() {
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            sampledOut.increment();
+            return false;
+        }
+        if (emissionInterval > 0 && !acquirePermit()) {
+            rateLimited.increment();
+            return false;
+        }
+        kept.increment();
+        return true;
+    }
+
+    /**
+     * 一次正常结束的调用因采样或限流没有记录日志
+     */
+    public void skipped() {
+        unrepresented.incrementAndGet();
+    }
+
+    /**
+     * 取出一条记录的正常日志所代表的调用数：本次调用加上前一条之后未记录的调用，调用后重新计数
+     *
+     * @return long 至少为 1
+     */
+    public long representedCount() {
+        return 1 + unrepresented.getAndSet(0);
+    }
+
+    private boolean acquirePermit() {
+        for (;;) {
+            long now = System.nanoTime();
+            long arrival = theoreticalArrival.get();
+            if (arrival - now > ONE_SECOND - emissionInterval) {
+                // 桶内令牌已用完
+                return false;
+            }
+            long next = Math.max(arrival, now) + emissionInterval;
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return true;
+            }
+        }
+    }
+
+    public String getMethodPath() {
+        return methodPath;
+    }
+
+    public String getMethodKey() {
+        return methodKey;
+    }
+
+    /**
+     * 接口键中的参数类型部分，如 (String,int)
+     * @return java.lang.String
+     */
+    public String getParameterTypes() {
+        return methodKey.startsWith(methodPath) ? methodKey.substring(methodPath.length()) : "";
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getMaxPerSecond() {
+        return maxPerSecond;
+    }
+
+    public long getKeptCount() {
+        return kept.sum();
+    }
+
+    public long getSampledOutCount() {
+        return sampledOut.sum();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * 采样统计，extrapolationFactor 为实际调用量与记录量之比，用于由已持久化的日志量估算实际调用量
+     *
+     * @return java.util.Map<java.lang.String,java.lang.Object>
+     */
+    public Map<String, Object> snapshot() {
+        long keptCount = kept.sum();
+        long droppedCount = sampledOut.sum() + rateLimited.sum();
+        Map<String, Object> stats = new LinkedHashMap<>(16);
+        stats.put("methodPath", methodPath);
+        stats.put("methodKey", methodKey);
+        stats.put("sampleRate", sampleRate);
+        stats.put("maxPerSecond", maxPerSecond);
+        stats.put("kept", keptCount);
+        stats.put("sampledOut", sampledOut.sum());
+        stats.put("rateLimited", rateLimited.sum());
+        stats.put("extrapolationFactor", keptCount == 0 ? 0 : (double) (keptCount + droppedCount) / keptCount);
+        return stats;
+    }
+}
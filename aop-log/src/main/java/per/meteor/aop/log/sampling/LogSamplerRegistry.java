@@ -0,0 +1,90 @@
+package per.meteor.aop.log.sampling;
+
+import org.springframework.stereotype.Component;
+import per.meteor.aop.log.aspect.MethodDescriptor;
+import per.meteor.aop.log.metrics.LogMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按接口键({@link MethodDescriptor#getMethodKey()})保存 {@link LogSampler}，未声明采样的接口不创建采样器
+ *
+ * @author meteor
+ * @date 2021-10-12 14:45
+ */
+@Component
+public class LogSamplerRegistry {
+
+    private final ConcurrentMap<String, LogSampler> samplers = new ConcurrentHashMap<>(32);
+    private final LogMetrics metrics;
+
+    public LogSamplerRegistry(LogMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 判断本次调用是否记录日志
+     *
+     * @param descriptor 切点方法元数据
+     * @return boolean
+     */
+    public boolean tryAcquire(MethodDescriptor descriptor) {
+        if (!descriptor.isSampled()) {
+            return true;
+        }
+        LogSampler sampler = samplers.get(descriptor.getMethodKey());
+        if (sampler == null) {
+            sampler = samplers.computeIfAbsent(descriptor.getMethodKey(), methodKey -> {
+                LogSampler created = new LogSampler(descriptor.getMethodPath(), methodKey,
+                        descriptor.getOperationLog().sampleRate(), descriptor.getOperationLog().maxPerSecond());
+                metrics.bindSampler(created);
+                return created;
+            });
+        }
+        return sampler.tryAcquire();
+    }
+
+    /**
+     * 正常结束的调用因采样或限流没有记录日志，计入下一条日志的代表调用数
+     *
+     * @param descriptor 切点方法元数据
+     */
+    public void skip(MethodDescriptor descriptor) {
+        LogSampler sampler = descriptor.isSampled() ? samplers.get(descriptor.getMethodKey()) : null;
+        if (sampler != null) {
+            sampler.skipped();
+        }
+    }
+
+    /**
+     * 一条记录的正常日志代表的调用数，未声明采样的接口为 1
+     *
+     * @param descriptor 切点方法元数据
+     * @return long
+     */
+    public long representedCount(MethodDescriptor descriptor) {
+        LogSampler sampler = descriptor.isSampled() ? samplers.get(descriptor.getMethodKey()) : null;
+        return sampler == null ? 1 : sampler.representedCount();
+    }
+
+    public LogSampler get(String methodKey) {
+        return samplers.get(methodKey);
+    }
+
+    /**
+     * 所有接口的采样统计
+     *
+     * @return java.util.List<java.util.Map<java.lang.String,java.lang.Object>>
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> stats = new ArrayList<>(samplers.size());
+        for (LogSampler sampler : samplers.values()) {
+            stats.add(sampler.snapshot());
+        }
+        return stats;
+    }
+}
@@ -2,11 +2,30 @@ package per.meteor.aop.log.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
+import per.meteor.aop.log.common.utils.CappedJsonSerializer;
+import per.meteor.aop.log.config.LogCaptureProperties;
+import per.meteor.aop.log.config.LogPipelineProperties;
 import per.meteor.aop.log.domain.LogDomain;
+import per.meteor.aop.log.metrics.LogMetrics;
+import per.meteor.aop.log.pipeline.LogPipeline;
+import per.meteor.aop.log.sink.LogSink;
+import per.meteor.aop.log.sink.SinkDispatcher;
+import per.meteor.aop.log.sink.SinkExecution;
+import per.meteor.aop.log.sink.SinkExecutors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
+ * 日志异步处理：请求线程只负责发布到环形缓冲区，由单独的消费线程批量分发给各个 {@link LogSink}
+ *
  * @author meteor
  * @date 2021-10-04 15:08
  */
@@ -15,13 +34,133 @@ public class LogServiceAsync {
 
     Logger logger = LoggerFactory.getLogger(LogServiceAsync.class);
 
-    @Async
+    private final LogPipelineProperties properties;
+    private final List<LogSink> sinks;
+    private final LogPipeline pipeline;
+    /** 只在消费线程中使用 **/
+    private final CappedJsonSerializer serializer;
+    private final LogMetrics metrics;
+    /** 输出执行器，在消费线程中直接写入时为 null **/
+    private final ExecutorService sinkExecutor;
+    /** 与 sinks 一一对应 **/
+    private final List<SinkDispatcher> dispatchers;
+
+    public LogServiceAsync(LogPipelineProperties properties, LogCaptureProperties captureProperties,
+                           ObjectProvider<LogSink> sinks, LogMetrics metrics) {
+        this.properties = properties;
+        this.metrics = metrics;
+        this.serializer = new CappedJsonSerializer(captureProperties.getMaxFieldBytes(),
+                captureProperties.getSizeEstimateCeiling());
+        this.sinks = sinks.orderedStream().collect(Collectors.toList());
+        this.sinkExecutor = SinkExecutors.create(properties.getSinkExecution(), sinkPoolSize(properties, this.sinks),
+                "operation-log-sink-");
+        this.dispatchers = new ArrayList<>(this.sinks.size());
+        for (LogSink sink : this.sinks) {
+            SinkDispatcher dispatcher = new SinkDispatcher(sink, sinkExecutor, properties.getSinkMaxInFlight(),
+                    metrics.sinkWriteTimer(sink), metrics.sinkPermitWaitTimer(sink), metrics.sinkBatchSize(sink));
+            metrics.bindDispatcher(dispatcher);
+            dispatchers.add(dispatcher);
+        }
+        metrics.bindExecutor(sinkExecutor);
+        this.pipeline = new LogPipeline(properties, "operation-log-consumer", this::handleBatch, this::handleIdle);
+        metrics.bindPipeline(pipeline);
+    }
+
+    @PostConstruct
+    public void start() {
+        pipeline.start();
+        logger.info("操作日志管道已启动, 输出: {}, 执行方式: {}",
+                sinks.stream().map(LogSink::getName).collect(Collectors.toList()), describeExecution());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!pipeline.stop(properties.getShutdownTimeout())) {
+            // 消费线程仍可能写入输出，此时关闭输出会丢数据或抛出异常，交给守护线程随进程退出
+            logger.warn("日志消费线程仍在运行, 跳过关闭日志输出: {}",
+                    sinks.stream().map(LogSink::getName).collect(Collectors.toList()));
+            return;
+        }
+        for (SinkDispatcher dispatcher : dispatchers) {
+            if (!dispatcher.awaitCompletion(properties.getShutdownTimeout())) {
+                logger.warn("日志输出未在 {}ms 内写完: {}", properties.getShutdownTimeout(), dispatcher.getSink().getName());
+            }
+        }
+        if (sinkExecutor != null) {
+            sinkExecutor.shutdown();
+        }
+        for (LogSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (Exception e) {
+                logger.error("关闭日志输出失败: {}", sink.getName(), e);
+            }
+        }
+    }
+
     public void saveOperationLogAsync(LogDomain logDomain) {
-        logger.info("异步任务执行日志保存操作:{}", logDomain);
+        pipeline.publish(logDomain);
     }
 
-    @Async
     public void saveExceptionLogAsync(LogDomain logDomain) {
-        logger.info("异步任务执行日志保存操作:{}", logDomain);
+        pipeline.publish(logDomain);
+    }
+
+    public LogPipeline getPipeline() {
+        return pipeline;
+    }
+
+    public List<LogSink> getSinks() {
+        return sinks;
+    }
+
+    public List<SinkDispatcher> getDispatchers() {
+        return dispatchers;
+    }
+
+    /**
+     * 批量分发日志，运行在消费线程中，单个输出失败不影响其他输出。
+     * 延迟采集的请求参数和响应数据在分发前序列化。异步执行时复制一份批次，各输出共享且只读
+     *
+     * @param batch 日志批次
+     */
+    private void handleBatch(List<LogDomain> batch) {
+        Function<Object, String> writeValue = serializer::writeValue;
+        for (LogDomain logDomain : batch) {
+            logDomain.materialize(writeValue);
+            metrics.recordFields(logDomain);
+        }
+        List<LogDomain> shared = sinkExecutor == null ? batch : new ArrayList<>(batch);
+        for (SinkDispatcher dispatcher : dispatchers) {
+            dispatcher.dispatch(shared);
+        }
+    }
+
+    private void handleIdle() {
+        for (SinkDispatcher dispatcher : dispatchers) {
+            dispatcher.idle();
+        }
+    }
+
+    private String describeExecution() {
+        if (sinkExecutor == null) {
+            return "inline";
+        }
+        return SinkExecutors.isVirtualThreadSupported() && properties.getSinkExecution() != SinkExecution.PLATFORM
+                ? "virtual" : "platform";
+    }
+
+    /**
+     * 有界线程池的线程数，未配置时取各输出并发上限之和
+     */
+    private static int sinkPoolSize(LogPipelineProperties properties, List<LogSink> sinks) {
+        if (properties.getSinkPoolSize() > 0) {
+            return properties.getSinkPoolSize();
+        }
+        int size = 0;
+        for (LogSink sink : sinks) {
+            size += sink.isConcurrent() ? Math.max(1, properties.getSinkMaxInFlight()) : 1;
+        }
+        return Math.max(1, size);
     }
 }
@@ -0,0 +1,309 @@
+package per.meteor.aop.log.sink;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+import per.meteor.aop.log.config.JdbcSinkProperties;
+import per.meteor.aop.log.domain.LogDomain;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量写入数据库
+ * <p>
+ * 日志先进入缓冲，达到 batchSize 或超过 flushInterval 后通过 PreparedStatement 的 addBatch/executeBatch
+ * 一次写入多行，每次刷新一个事务。MySQL 建议在连接串上开启 rewriteBatchedStatements=true，
+ * 驱动会把批次改写为多值 INSERT。
+ * <p>
+ * 绑定前按列宽截断字符串，避免单行超长拖垮整个批次；批次仍然失败(BatchUpdateException)时回滚并逐行重试，
+ * 只丢弃真正写不进去的行。
+ *
+ * @author meteor
+ * @date 2021-10-06 10:20
+ */
+public class JdbcLogSink implements LogSink {
+
+    Logger logger = LoggerFactory.getLogger(JdbcLogSink.class);
+
+    private static final String SCHEMA_LOCATION = "schema/operation_log.sql";
+    private static final String TABLE_PLACEHOLDER = "${table}";
+    private static final String[] COLUMNS = {
+            "log_id", "log_serial_number", "request_parameter", "request_url", "request_method", "request_time",
+            "response_status", "response_code", "response_body", "response_time", "exception_name", "exception_message",
+            "request_ip", "request_header", "request_method_path", "request_time_consuming", "user_agent",
+            "browser_type", "browser_name", "browser_version", "operating_system", "operation_user", "system_version",
+            "operation_module", "operation_type", "operation_desc", "exception_fingerprint", "exception_count",
+            "request_duration"
+    };
+
+    private final DataSource dataSource;
+    private final JdbcSinkProperties properties;
+    private final String insertSql;
+    private final SinkStats stats = new SinkStats();
+    private final Object lock = new Object();
+    private List<LogDomain> pending;
+    private volatile long lastFlushTime = System.currentTimeMillis();
+
+    public JdbcLogSink(DataSource dataSource, JdbcSinkProperties properties) {
+        this.dataSource = dataSource;
+        this.properties = properties;
+        this.insertSql = buildInsertSql(properties.getTableName());
+        this.pending = new ArrayList<>(Math.max(1, properties.getBatchSize()));
+    }
+
+    /**
+     * 执行建表脚本
+     */
+    public void initializeSchema() {
+        String script;
+        try (InputStream in = new ClassPathResource(SCHEMA_LOCATION).getInputStream()) {
+            script = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("无法读取建表脚本: " + SCHEMA_LOCATION, e);
+        }
+        script = script.replace(TABLE_PLACEHOLDER, properties.getTableName());
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            for (String sql : script.split(";")) {
+                String trimmed = sql.replaceAll("(?m)^\\s*--.*$", "").trim();
+                if (!trimmed.isEmpty()) {
+                    statement.execute(trimmed);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("建表失败: " + properties.getTableName(), e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "jdbc";
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+
+    @Override
+    public void write(List<LogDomain> batch) {
+        List<LogDomain> rows;
+        synchronized (lock) {
+            pending.addAll(batch);
+            if (pending.size() < properties.getBatchSize() && !isFlushDue()) {
+                return;
+            }
+            rows = takePending();
+        }
+        insertAll(rows);
+    }
+
+    @Override
+    public void onIdle() {
+        if (!isFlushDue()) {
+            return;
+        }
+        List<LogDomain> rows;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            rows = takePending();
+        }
+        insertAll(rows);
+    }
+
+    @Override
+    public void flush() {
+        List<LogDomain> rows;
+        synchronized (lock) {
+            rows = takePending();
+        }
+        insertAll(rows);
+    }
+
+    /**
+     * 取出缓冲中的日志，调用方需要持有锁
+     */
+    private List<LogDomain> takePending() {
+        List<LogDomain> rows = pending;
+        pending = new ArrayList<>(Math.max(1, properties.getBatchSize()));
+        lastFlushTime = System.currentTimeMillis();
+        return rows;
+    }
+
+    private void insertAll(List<LogDomain> pending) {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<LogDomain> rows = pending.subList(from, Math.min(from + batchSize, pending.size()));
+            long start = System.nanoTime();
+            try {
+                insert(rows);
+                long nanos = System.nanoTime() - start;
+                stats.recordBatch(rows.size(), nanos);
+                logger.debug("写入操作日志 {} 条, 耗时 {}us", rows.size(), nanos / 1000);
+            } catch (BatchUpdateException e) {
+                logger.warn("批量写入操作日志失败, 逐行重试 {} 条: {}", rows.size(), e.getMessage());
+                insertOneByOne(rows, start);
+            } catch (SQLException e) {
+                stats.recordFailure(rows.size());
+                logger.error("写入操作日志失败, 丢弃 {} 条", rows.size(), e);
+            }
+        }
+    }
+
+    /**
+     * 批次失败后逐行写入，每行单独提交，只丢弃写入失败的行
+     *
+     * @param rows 已回滚的批次
+     * @param start 批次开始时间(纳秒)
+     */
+    private void insertOneByOne(List<LogDomain> rows, long start) {
+        int written = 0;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(insertSql)) {
+            for (LogDomain row : rows) {
+                try {
+                    bind(statement, row);
+                    statement.executeUpdate();
+                    if (!connection.getAutoCommit()) {
+                        connection.commit();
+                    }
+                    written++;
+                } catch (SQLException e) {
+                    if (!connection.getAutoCommit()) {
+                        connection.rollback();
+                    }
+                    stats.recordFailure(1);
+                    logger.error("写入操作日志失败, 丢弃 logId={}", row.getLogId(), e);
+                }
+            }
+        } catch (SQLException e) {
+            stats.recordFailure(rows.size() - written);
+            logger.error("写入操作日志失败, 丢弃 {} 条", rows.size() - written, e);
+        }
+        if (written > 0) {
+            stats.recordBatch(written, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public SinkStats getStats() {
+        return stats;
+    }
+
+    private boolean isFlushDue() {
+        return System.currentTimeMillis() - lastFlushTime >= properties.getFlushInterval();
+    }
+
+    private void insert(List<LogDomain> rows) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+                for (LogDomain row : rows) {
+                    bind(statement, row);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * 按 schema/operation_log.sql 的列宽截断后绑定，列宽变化时需同步修改
+     */
+    private void bind(PreparedStatement statement, LogDomain log) throws SQLException {
+        int i = 1;
+        statement.setString(i++, cap(log.getLogId(), 32));
+        statement.setString(i++, cap(log.getLogSerialNumber(), 64));
+        statement.setString(i++, text(log.getRequestParameter()));
+        statement.setString(i++, cap(log.getRequestUrl(), 512));
+        statement.setString(i++, cap(log.getRequestMethod(), 16));
+        statement.setTimestamp(i++, toTimestamp(log.getRequestTime()));
+        statement.setString(i++, cap(log.getResponseStatus(), 16));
+        if (log.getResponseCode() == null) {
+            statement.setNull(i++, Types.INTEGER);
+        } else {
+            statement.setInt(i++, log.getResponseCode());
+        }
+        statement.setString(i++, text(log.getResponseBody()));
+        statement.setTimestamp(i++, toTimestamp(log.getResponseTime()));
+        statement.setString(i++, cap(log.getExceptionName(), 255));
+        statement.setString(i++, text(log.getExceptionMessage()));
+        statement.setString(i++, cap(log.getRequestIp(), 64));
+        statement.setString(i++, text(log.getRequestHeader()));
+        statement.setString(i++, cap(log.getRequestMethodPath(), 512));
+        statement.setString(i++, cap(log.getRequestTimeConsuming(), 32));
+        statement.setString(i++, cap(log.getUserAgent(), 128));
+        statement.setString(i++, cap(log.getBrowserType(), 64));
+        statement.setString(i++, cap(log.getBrowserName(), 64));
+        statement.setString(i++, cap(log.getBrowserVersion(), 64));
+        statement.setString(i++, cap(log.getOperatingSystem(), 64));
+        statement.setString(i++, cap(log.getOperationUser(), 64));
+        statement.setString(i++, cap(log.getSystemVersion(), 32));
+        statement.setString(i++, log.getOperationModule() == null ? null : log.getOperationModule().name());
+        statement.setString(i++, log.getOperationType() == null ? null : log.getOperationType().name());
+        statement.setString(i++, cap(log.getOperationDesc(), 255));
+        statement.setString(i++, cap(log.getExceptionFingerprint(), 16));
+        if (log.getExceptionCount() == null) {
+            statement.setNull(i++, Types.INTEGER);
+        } else {
+            statement.setInt(i++, log.getExceptionCount());
+        }
+        if (log.getRequestDuration() == null) {
+            statement.setNull(i, Types.BIGINT);
+        } else {
+            statement.setLong(i, log.getRequestDuration());
+        }
+    }
+
+    private String text(String value) {
+        return cap(value, properties.getMaxTextLength());
+    }
+
+    /**
+     * 截断到最多 max 个字符，不拆开代理对
+     */
+    static String cap(String value, int max) {
+        if (value == null || value.length() <= max) {
+            return value;
+        }
+        int end = max;
+        if (end > 0 && Character.isHighSurrogate(value.charAt(end - 1))) {
+            end--;
+        }
+        return value.substring(0, end);
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime time) {
+        return time == null ? null : Timestamp.valueOf(time);
+    }
+
+    private static String buildInsertSql(String tableName) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+        StringBuilder values = new StringBuilder(" VALUES (");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+                values.append(", ");
+            }
+            sql.append(COLUMNS[i]);
+            values.append('?');
+        }
+        return sql.append(')').append(values).append(')').toString();
+    }
+}
@@ -0,0 +1,73 @@
+package per.meteor.aop.log.sink;
+
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.util.List;
+
+/**
+ * 日志输出扩展点
+ * <p>
+ * 默认由日志消费线程按批次调用，实现类可以自行缓冲后再批量写入存储。
+ * 配置了 meteor.log.pipeline.sink-execution 时在执行器中调用，见 {@link SinkDispatcher}。
+ * 实现类注册为 Spring Bean 即可生效。
+ *
+ * @author meteor
+ * @date 2021-10-06 09:30
+ */
+public interface LogSink {
+
+    /**
+     * 名称，用于日志及统计
+     * @return java.lang.String
+     */
+    String getName();
+
+    /**
+     * 写入一批日志，调用结束后集合会被复用，实现类需要保留数据时应自行复制
+     *
+     * @param batch 日志批次
+     * @throws Exception 写入失败
+     */
+    void write(List<LogDomain> batch) throws Exception;
+
+    /**
+     * 是否支持多个批次同时写入，为 true 时 write、onIdle、flush 可能被多个线程同时调用，
+     * 为 false 时这些方法不会同时执行
+     *
+     * @return boolean
+     */
+    default boolean isConcurrent() {
+        return false;
+    }
+
+    /**
+     * 消费线程空闲时回调，可用于按时间间隔刷新缓冲
+     */
+    default void onIdle() {
+        // pass
+    }
+
+    /**
+     * 强制写出缓冲中的日志
+     *
+     * @throws Exception 写入失败
+     */
+    default void flush() throws Exception {
+        // pass
+    }
+
+    /**
+     * 应用关闭时调用
+     *
+     * @throws Exception 关闭失败
+     */
+    default void close() throws Exception {
+        flush();
+    }
+
+    /**
+     * 写入统计
+     * @return per.meteor.aop.log.sink.SinkStats
+     */
+    SinkStats getStats();
+}
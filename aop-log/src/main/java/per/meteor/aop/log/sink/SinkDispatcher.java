@@ -0,0 +1,211 @@
+package per.meteor.aop.log.sink;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个日志输出的批次分发
+ * <p>
+ * 没有执行器时在消费线程中直接写入；有执行器时每个批次作为一个任务提交，
+ * 同时执行的批次数由信号量限制，达到上限后消费线程阻塞等待，积压留在环形缓冲区中由溢出策略处理。
+ * 空闲回调同样占用一个许可，不支持并发的输出上限固定为 1，写入及空闲回调不会同时执行。
+ *
+ * @author meteor
+ * @date 2021-10-18 16:30
+ */
+public class SinkDispatcher {
+
+    Logger logger = LoggerFactory.getLogger(SinkDispatcher.class);
+
+    private final LogSink sink;
+    private final Executor executor;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    /** 等待并发许可的批次数 **/
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final Timer writeTimer;
+    private final Timer permitWaitTimer;
+    private final DistributionSummary batchSize;
+
+    /**
+     * @param sink 日志输出
+     * @param executor 执行器，为 null 时在调用线程中写入
+     * @param maxInFlight 同时执行的最大批次数，输出不支持并发时为 1
+     * @param writeTimer 写入耗时
+     * @param permitWaitTimer 等待并发许可的耗时
+     * @param batchSize 批次大小
+     */
+    public SinkDispatcher(LogSink sink, Executor executor, int maxInFlight, Timer writeTimer, Timer permitWaitTimer,
+                          DistributionSummary batchSize) {
+        this.sink = sink;
+        this.executor = executor;
+        this.maxInFlight = executor == null || !sink.isConcurrent() ? 1 : Math.max(1, maxInFlight);
+        this.permits = new Semaphore(this.maxInFlight);
+        this.writeTimer = writeTimer;
+        this.permitWaitTimer = permitWaitTimer;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 分发一个批次，在消费线程中调用。异步执行时批次在写入完成前不能被修改
+     *
+     * @param batch 日志批次
+     */
+    public void dispatch(List<LogDomain> batch) {
+        batchSize.record(batch.size());
+        if (executor == null) {
+            write(batch);
+            return;
+        }
+        if (!acquire()) {
+            sink.getStats().recordFailure(batch.size());
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    write(batch);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            sink.getStats().recordFailure(batch.size());
+            logger.error("日志输出任务提交失败: {}, 本批次 {} 条", sink.getName(), batch.size(), e);
+        }
+    }
+
+    /**
+     * 消费线程空闲时调用，输出正在写入且不支持并发时跳过。有执行器时空闲回调与批次一样作为任务提交，
+     * 慢速输出的刷新不会阻塞消费线程
+     */
+    public void idle() {
+        if (!permits.tryAcquire()) {
+            return;
+        }
+        if (executor == null) {
+            runIdle();
+            return;
+        }
+        try {
+            executor.execute(this::runIdle);
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            logger.error("日志输出刷新任务提交失败: {}", sink.getName(), e);
+        }
+    }
+
+    private void runIdle() {
+        try {
+            sink.onIdle();
+        } catch (Exception e) {
+            logger.error("日志输出刷新失败: {}", sink.getName(), e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 等待已提交的批次写入完成
+     *
+     * @param timeoutMillis 最长等待时间(毫秒)
+     * @return boolean 是否全部完成
+     */
+    public boolean awaitCompletion(long timeoutMillis) {
+        try {
+            if (permits.tryAcquire(maxInFlight, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                permits.release(maxInFlight);
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private boolean acquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        try {
+            permits.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+            permitWaitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void write(List<LogDomain> batch) {
+        long start = System.nanoTime();
+        try {
+            sink.write(batch);
+        } catch (Exception e) {
+            sink.getStats().recordFailure(batch.size());
+            logger.error("日志输出失败: {}, 本批次 {} 条", sink.getName(), batch.size(), e);
+        } finally {
+            writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 分发及写入统计
+     *
+     * @return java.util.Map<java.lang.String,java.lang.Object>
+     */
+    public Map<String, Object> snapshot() {
+        SinkStats stats = sink.getStats();
+        Map<String, Object> snapshot = new LinkedHashMap<>(16);
+        snapshot.put("sink", sink.getName());
+        snapshot.put("async", isAsync());
+        snapshot.put("concurrent", sink.isConcurrent());
+        snapshot.put("maxInFlight", maxInFlight);
+        snapshot.put("inFlight", getInFlight());
+        snapshot.put("waiting", getWaiting());
+        snapshot.put("batches", stats.getBatches());
+        snapshot.put("rows", stats.getRows());
+        snapshot.put("failedRows", stats.getFailedRows());
+        snapshot.put("avgBatchMillis", stats.getAvgBatchMillis());
+        snapshot.put("maxBatchMillis", stats.getMaxBatchMillis());
+        return snapshot;
+    }
+
+    public LogSink getSink() {
+        return sink;
+    }
+
+    public boolean isAsync() {
+        return executor != null;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+}
@@ -0,0 +1,26 @@
+package per.meteor.aop.log.sink;
+
+/**
+ * 日志输出的执行方式
+ *
+ * @author meteor
+ * @date 2021-10-18 16:05
+ */
+public enum SinkExecution {
+    /**
+     * 在消费线程中依次调用各个输出
+     */
+    INLINE,
+    /**
+     * 运行时支持虚拟线程(JDK 21+)时使用虚拟线程，否则使用有界线程池
+     */
+    AUTO,
+    /**
+     * 每个批次一个虚拟线程，运行时不支持时退回有界线程池
+     */
+    VIRTUAL,
+    /**
+     * 有界线程池
+     */
+    PLATFORM
+}
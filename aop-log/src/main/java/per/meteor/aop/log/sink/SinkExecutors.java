@@ -0,0 +1,93 @@
+package per.meteor.aop.log.sink;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 创建日志输出使用的线程池
+ * <p>
+ * 项目按 Java 8 编译，虚拟线程通过反射创建：Thread.ofVirtual().name(prefix, 0).factory()
+ * 及 Executors.newThreadPerTaskExecutor(factory)。
+ *
+ * @author meteor
+ * @date 2021-10-18 16:12
+ */
+public final class SinkExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(SinkExecutors.class);
+
+    private SinkExecutors() {
+    }
+
+    /**
+     * @param execution 执行方式，INLINE 时返回 null
+     * @param poolSize 有界线程池的线程数
+     * @param threadPrefix 线程名前缀
+     * @return java.util.concurrent.ExecutorService
+     */
+    public static ExecutorService create(SinkExecution execution, int poolSize, String threadPrefix) {
+        if (execution == SinkExecution.INLINE) {
+            return null;
+        }
+        if (execution != SinkExecution.PLATFORM) {
+            ExecutorService virtual = newVirtualThreadExecutor(threadPrefix);
+            if (virtual != null) {
+                return virtual;
+            }
+            if (execution == SinkExecution.VIRTUAL) {
+                logger.warn("当前运行时不支持虚拟线程, 日志输出使用 {} 个线程的线程池", poolSize);
+            }
+        }
+        return newPlatformExecutor(poolSize, threadPrefix);
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor(String threadPrefix) {
+        if (!isVirtualThreadSupported()) {
+            return null;
+        }
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, threadPrefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("创建虚拟线程执行器失败, 日志输出使用线程池", e);
+            return null;
+        }
+    }
+
+    /**
+     * 任务数受各输出的并发上限约束，队列中的任务不会超过并发上限之和
+     */
+    private static ExecutorService newPlatformExecutor(int poolSize, String threadPrefix) {
+        AtomicInteger index = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, threadPrefix + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
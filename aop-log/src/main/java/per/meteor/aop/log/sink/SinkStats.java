@@ -0,0 +1,133 @@
+package per.meteor.aop.log.sink;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 日志输出统计：批次数、写入条数、失败条数及每批次耗时
+ *
+ * @author meteor
+ * @date 2021-10-06 09:42
+ */
+public class SinkStats {
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private volatile long lastNanos;
+    private volatile int lastRows;
+
+    /**
+     * 记录一次成功写入
+     *
+     * @param rowCount 写入条数
+     * @param nanos 耗时(纳秒)
+     */
+    public void recordBatch(int rowCount, long nanos) {
+        recordBatch(rowCount, 0, nanos);
+    }
+
+    /**
+     * 记录一次成功写入
+     *
+     * @param rowCount 写入条数
+     * @param byteCount 写入字节数
+     * @param nanos 耗时(纳秒)
+     */
+    public void recordBatch(int rowCount, long byteCount, long nanos) {
+        batches.increment();
+        bytes.add(byteCount);
+        rows.add(rowCount);
+        totalNanos.add(nanos);
+        lastNanos = nanos;
+        lastRows = rowCount;
+        long max;
+        do {
+            max = maxNanos.get();
+        } while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+    }
+
+    /**
+     * 记录一次失败写入
+     *
+     * @param rowCount 丢弃条数
+     */
+    public void recordFailure(int rowCount) {
+        failedRows.add(rowCount);
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getFailedRows() {
+        return failedRows.sum();
+    }
+
+    public int getLastRows() {
+        return lastRows;
+    }
+
+    public double getLastBatchMillis() {
+        return lastNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxBatchMillis() {
+        return maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getAvgBatchMillis() {
+        long count = batches.sum();
+        return count == 0 ? 0 : totalNanos.sum() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * 按写入耗时计算的吞吐量(条/秒)
+     * @return double
+     */
+    public double getRowsPerSecond() {
+        long nanos = totalNanos.sum();
+        return nanos == 0 ? 0 : rows.sum() * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    /**
+     * 按写入耗时计算的吞吐量(MB/秒)
+     * @return double
+     */
+    public double getMegabytesPerSecond() {
+        long nanos = totalNanos.sum();
+        return nanos == 0 ? 0 : bytes.sum() / (1024.0 * 1024.0) * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "SinkStats{" +
+                "batches=" + getBatches() +
+                ", rows=" + getRows() +
+                ", bytes=" + getBytes() +
+                ", failedRows=" + getFailedRows() +
+                ", lastRows=" + lastRows +
+                ", lastBatchMillis=" + getLastBatchMillis() +
+                ", avgBatchMillis=" + getAvgBatchMillis() +
+                ", maxBatchMillis=" + getMaxBatchMillis() +
+                ", rowsPerSecond=" + getRowsPerSecond() +
+                ", megabytesPerSecond=" + getMegabytesPerSecond() +
+                '}';
+    }
+}
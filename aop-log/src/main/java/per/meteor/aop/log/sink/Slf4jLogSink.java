@@ -0,0 +1,48 @@
+package per.meteor.aop.log.sink;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.util.List;
+
+/**
+ * 输出到应用日志(logback)
+ *
+ * @author meteor
+ * @date 2021-10-06 09:50
+ */
+@Component
+@ConditionalOnProperty(prefix = "meteor.log.sink.slf4j", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class Slf4jLogSink implements LogSink {
+
+    Logger logger = LoggerFactory.getLogger(Slf4jLogSink.class);
+
+    private final SinkStats stats = new SinkStats();
+
+    @Override
+    public String getName() {
+        return "slf4j";
+    }
+
+    @Override
+    public void write(List<LogDomain> batch) {
+        long start = System.nanoTime();
+        for (LogDomain logDomain : batch) {
+            logger.info("异步任务执行日志保存操作:{}", logDomain);
+        }
+        stats.recordBatch(batch.size(), System.nanoTime() - start);
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+
+    @Override
+    public SinkStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,72 @@
+package per.meteor.aop.log.sink.partition;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 封存分区的压缩方式，读取时按文件扩展名识别，修改配置不影响已压缩的分区
+ *
+ * @author meteor
+ * @date 2021-10-19 10:30
+ */
+public enum PartitionCompression {
+    /**
+     * gzip，压缩率较高，可直接用 zcat 查看
+     */
+    GZIP(".gz") {
+        @Override
+        OutputStream wrap(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+
+        @Override
+        InputStream wrap(InputStream in) throws IOException {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+    },
+    /**
+     * LZ4 frame 格式，压缩及解压速度快，可用 lz4 命令行解压
+     */
+    LZ4(".lz4") {
+        @Override
+        OutputStream wrap(OutputStream out) throws IOException {
+            return new LZ4FrameOutputStream(out, LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB);
+        }
+
+        @Override
+        InputStream wrap(InputStream in) throws IOException {
+            return new LZ4FrameInputStream(in);
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String extension;
+
+    PartitionCompression(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    abstract OutputStream wrap(OutputStream out) throws IOException;
+
+    abstract InputStream wrap(InputStream in) throws IOException;
+
+    static PartitionCompression ofExtension(String extension) {
+        for (PartitionCompression compression : values()) {
+            if (compression.extension.equals(extension)) {
+                return compression;
+            }
+        }
+        return null;
+    }
+}
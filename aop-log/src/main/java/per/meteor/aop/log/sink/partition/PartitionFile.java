@@ -0,0 +1,41 @@
+package per.meteor.aop.log.sink.partition;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+/**
+ * 分区中的一个数据文件，文件名为 {分区键}-{序号}.log[.gz|.lz4]
+ *
+ * @author meteor
+ * @date 2021-10-19 10:40
+ */
+final class PartitionFile {
+
+    final Path path;
+    final String key;
+    final LocalDateTime start;
+    final LocalDateTime end;
+    final int index;
+    /** 未压缩时为 null **/
+    final PartitionCompression compression;
+
+    PartitionFile(Path path, String key, int index, PartitionCompression compression) {
+        this.path = path;
+        this.key = key;
+        this.start = PartitionGranularity.parseStart(key);
+        this.end = PartitionGranularity.ofKey(key).end(start);
+        this.index = index;
+        this.compression = compression;
+    }
+
+    boolean isCompressed() {
+        return compression != null;
+    }
+
+    /**
+     * 分区时间范围 [start, end) 与 [from, to] 是否相交，from、to 为 null 表示不限
+     */
+    boolean overlaps(LocalDateTime from, LocalDateTime to) {
+        return (from == null || end.isAfter(from)) && (to == null || !start.isAfter(to));
+    }
+}
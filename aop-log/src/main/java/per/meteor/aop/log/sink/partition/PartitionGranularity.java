@@ -0,0 +1,67 @@
+package per.meteor.aop.log.sink.partition;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 分区粒度，分区按请求时间(本地时间)划分，分区键为起始时间
+ *
+ * @author meteor
+ * @date 2021-10-19 10:20
+ */
+public enum PartitionGranularity {
+    /**
+     * 每小时一个分区，分区键 yyyyMMddHH
+     */
+    HOUR(ChronoUnit.HOURS, "yyyyMMddHH"),
+    /**
+     * 每天一个分区，分区键 yyyyMMdd
+     */
+    DAY(ChronoUnit.DAYS, "yyyyMMdd");
+
+    private final ChronoUnit unit;
+    private final DateTimeFormatter formatter;
+
+    PartitionGranularity(ChronoUnit unit, String pattern) {
+        this.unit = unit;
+        this.formatter = DateTimeFormatter.ofPattern(pattern);
+    }
+
+    /**
+     * 时间所在分区的起始时间
+     */
+    public LocalDateTime start(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    /**
+     * 分区结束时间(不含)
+     */
+    public LocalDateTime end(LocalDateTime start) {
+        return start.plus(1, unit);
+    }
+
+    public String key(LocalDateTime start) {
+        return formatter.format(start);
+    }
+
+    /**
+     * 按分区键长度识别粒度，修改配置后仍能读取之前写入的分区
+     *
+     * @param key 分区键
+     * @return per.meteor.aop.log.sink.partition.PartitionGranularity
+     */
+    static PartitionGranularity ofKey(String key) {
+        return key.length() == 10 ? HOUR : DAY;
+    }
+
+    static LocalDateTime parseStart(String key) {
+        if (key.length() == 10) {
+            return LocalDateTime.of(Integer.parseInt(key.substring(0, 4)), Integer.parseInt(key.substring(4, 6)),
+                    Integer.parseInt(key.substring(6, 8)), Integer.parseInt(key.substring(8, 10)), 0);
+        }
+        return LocalDateTime.of(Integer.parseInt(key.substring(0, 4)), Integer.parseInt(key.substring(4, 6)),
+                Integer.parseInt(key.substring(6, 8)), 0, 0);
+    }
+}
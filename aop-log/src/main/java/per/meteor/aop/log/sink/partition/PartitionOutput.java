@@ -0,0 +1,52 @@
+package per.meteor.aop.log.sink.partition;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+/**
+ * 正在写入的分区文件，只由日志消费线程使用
+ *
+ * @author meteor
+ * @date 2021-10-19 11:30
+ */
+final class PartitionOutput implements Closeable {
+
+    final String key;
+    final LocalDateTime start;
+    final LocalDateTime end;
+    final Path path;
+    private final DataOutputStream out;
+
+    PartitionOutput(String key, LocalDateTime start, LocalDateTime end, Path path, int bufferSize) throws IOException {
+        this.key = key;
+        this.start = start;
+        this.end = end;
+        this.path = path;
+        this.out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), bufferSize));
+    }
+
+    boolean contains(LocalDateTime time) {
+        return !time.isBefore(start) && time.isBefore(end);
+    }
+
+    void write(byte[] record, int offset, int length) throws IOException {
+        out.writeInt(length);
+        out.write(record, offset, length);
+    }
+
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
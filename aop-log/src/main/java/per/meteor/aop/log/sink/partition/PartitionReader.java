@@ -0,0 +1,116 @@
+package per.meteor.aop.log.sink.partition;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+/**
+ * 顺序读取分区文件中的记录
+ * <p>
+ * 未压缩的文件可能仍在写入或在写入过程中中断，末尾不完整的记录会被忽略。
+ *
+ * @author meteor
+ * @date 2021-10-19 11:10
+ */
+final class PartitionReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** 超过该长度视为损坏的记录 **/
+    private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+    private final DataInputStream in;
+    private final CountingInputStream counter;
+    private byte[] buffer = new byte[4096];
+    private int length;
+
+    PartitionReader(PartitionFile file) throws IOException {
+        InputStream raw = Files.newInputStream(file.path);
+        counter = new CountingInputStream(new BufferedInputStream(raw, BUFFER_SIZE));
+        InputStream source = counter;
+        try {
+            if (file.isCompressed()) {
+                source = new BufferedInputStream(file.compression.wrap(counter), BUFFER_SIZE);
+            }
+        } catch (IOException e) {
+            raw.close();
+            throw e;
+        }
+        this.in = new DataInputStream(source);
+    }
+
+    /**
+     * 读取下一条记录
+     *
+     * @return boolean 没有更多完整的记录时返回 false
+     * @throws IOException 读取失败
+     */
+    boolean next() throws IOException {
+        int size;
+        try {
+            size = in.readInt();
+            if (size <= 0 || size > MAX_RECORD_LENGTH) {
+                return false;
+            }
+            if (size > buffer.length) {
+                buffer = new byte[Math.max(size, buffer.length << 1)];
+            }
+            in.readFully(buffer, 0, size);
+        } catch (EOFException e) {
+            return false;
+        }
+        length = size;
+        return true;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * 已从磁盘读取的字节数
+     */
+    long diskBytes() {
+        return counter.count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
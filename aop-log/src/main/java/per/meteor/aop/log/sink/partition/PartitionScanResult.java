@@ -0,0 +1,81 @@
+package per.meteor.aop.log.sink.partition;
+
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.util.List;
+
+/**
+ * 分区范围扫描结果及吞吐统计
+ *
+ * @author meteor
+ * @date 2021-10-19 14:00
+ */
+public class PartitionScanResult {
+
+    /** 请求时间在范围内的条数 **/
+    private final long matched;
+    /** 读取的记录条数 **/
+    private final long records;
+    /** 记录解压后的字节数 **/
+    private final long bytes;
+    /** 从磁盘读取的字节数 **/
+    private final long diskBytes;
+    private final int partitionsScanned;
+    /** 按时间范围跳过的分区数，整天跳过的目录不计入 **/
+    private final int partitionsSkipped;
+    private final double elapsedMillis;
+    /** 按时间顺序的前若干条 **/
+    private final List<LogDomain> items;
+
+    public PartitionScanResult(long matched, long records, long bytes, long diskBytes, int partitionsScanned,
+                               int partitionsSkipped, double elapsedMillis, List<LogDomain> items) {
+        this.matched = matched;
+        this.records = records;
+        this.bytes = bytes;
+        this.diskBytes = diskBytes;
+        this.partitionsScanned = partitionsScanned;
+        this.partitionsSkipped = partitionsSkipped;
+        this.elapsedMillis = elapsedMillis;
+        this.items = items;
+    }
+
+    public long getMatched() {
+        return matched;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getDiskBytes() {
+        return diskBytes;
+    }
+
+    public int getPartitionsScanned() {
+        return partitionsScanned;
+    }
+
+    public int getPartitionsSkipped() {
+        return partitionsSkipped;
+    }
+
+    public double getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getRecordsPerSecond() {
+        return elapsedMillis <= 0 ? 0 : records * 1000.0 / elapsedMillis;
+    }
+
+    public double getMegabytesPerSecond() {
+        return elapsedMillis <= 0 ? 0 : bytes * 1000.0 / elapsedMillis / (1024 * 1024);
+    }
+
+    public List<LogDomain> getItems() {
+        return items;
+    }
+}
@@ -0,0 +1,181 @@
+package per.meteor.aop.log.sink.partition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import per.meteor.aop.log.common.codec.BinaryWriter;
+import per.meteor.aop.log.common.codec.LogDomainCodec;
+import per.meteor.aop.log.config.PartitionSinkProperties;
+import per.meteor.aop.log.domain.LogDomain;
+import per.meteor.aop.log.sink.LogSink;
+import per.meteor.aop.log.sink.SinkStats;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按请求时间写入 {@link PartitionedLogStore} 的分区文件，记录使用 {@link LogDomainCodec} 编码
+ * <p>
+ * 每个分区同一时间只有一个打开的文件，分区结束并超过 sealDelay 后关闭，之后到达的迟到日志写入该分区的新文件。
+ * 压缩及过期清理在单独的后台线程中执行，不占用日志消费线程。
+ *
+ * @author meteor
+ * @date 2021-10-19 15:00
+ */
+public class PartitionedLogSink implements LogSink {
+
+    Logger logger = LoggerFactory.getLogger(PartitionedLogSink.class);
+
+    private final PartitionedLogStore store;
+    private final PartitionSinkProperties properties;
+    private final SinkStats stats = new SinkStats();
+    private final BinaryWriter encoder = new BinaryWriter(4096);
+    private final Map<String, PartitionOutput> outputs = new HashMap<>(4);
+    private final ScheduledExecutorService maintainer;
+    /** 最近写入的分区，日志基本按时间到达，大多数情况下不需要计算分区键 **/
+    private PartitionOutput current;
+    private long lastFlushTime = System.currentTimeMillis();
+
+    public PartitionedLogSink(PartitionedLogStore store) {
+        this.store = store;
+        this.properties = store.getProperties();
+        this.maintainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "operation-log-partition-maintainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1000, properties.getCompactionInterval());
+        maintainer.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String getName() {
+        return "partition";
+    }
+
+    @Override
+    public void write(List<LogDomain> batch) throws IOException {
+        long start = System.nanoTime();
+        long bytes = 0;
+        for (LogDomain logDomain : batch) {
+            PartitionOutput output = outputFor(timeOf(logDomain));
+            encoder.reset();
+            LogDomainCodec.encode(logDomain, encoder);
+            output.write(encoder.buffer(), 0, encoder.size());
+            bytes += 4 + encoder.size();
+        }
+        closeSealed();
+        flushIfDue();
+        stats.recordBatch(batch.size(), bytes, System.nanoTime() - start);
+    }
+
+    @Override
+    public void onIdle() {
+        try {
+            closeSealed();
+            flushIfDue();
+        } catch (IOException e) {
+            logger.error("刷新日志分区失败", e);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        for (PartitionOutput output : outputs.values()) {
+            output.flush();
+        }
+        lastFlushTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public void close() throws IOException {
+        maintainer.shutdownNow();
+        try {
+            maintainer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Iterator<PartitionOutput> iterator = outputs.values().iterator();
+        while (iterator.hasNext()) {
+            close(iterator.next());
+            iterator.remove();
+        }
+        current = null;
+    }
+
+    @Override
+    public SinkStats getStats() {
+        return stats;
+    }
+
+    private void maintain() {
+        try {
+            store.maintain();
+        } catch (RuntimeException e) {
+            logger.error("日志分区维护失败", e);
+        }
+    }
+
+    private PartitionOutput outputFor(LocalDateTime time) throws IOException {
+        if (current != null && current.contains(time)) {
+            return current;
+        }
+        PartitionGranularity granularity = properties.getGranularity();
+        LocalDateTime start = granularity.start(time);
+        String key = granularity.key(start);
+        PartitionOutput output = outputs.get(key);
+        if (output == null) {
+            output = new PartitionOutput(key, start, granularity.end(start), store.newFile(start), properties.getBufferSize());
+            outputs.put(key, output);
+        }
+        current = output;
+        return output;
+    }
+
+    /**
+     * 关闭结束时间早于 now - sealDelay 的分区文件，之后由后台线程压缩
+     */
+    private void closeSealed() throws IOException {
+        LocalDateTime sealedBefore = LocalDateTime.now().minus(properties.getSealDelay(), ChronoUnit.MILLIS);
+        Iterator<PartitionOutput> iterator = outputs.values().iterator();
+        while (iterator.hasNext()) {
+            PartitionOutput output = iterator.next();
+            if (!output.end.isAfter(sealedBefore)) {
+                iterator.remove();
+                if (output == current) {
+                    current = null;
+                }
+                close(output);
+            }
+        }
+    }
+
+    private void close(PartitionOutput output) throws IOException {
+        try {
+            output.close();
+        } finally {
+            store.release(output.path);
+        }
+    }
+
+    private void flushIfDue() throws IOException {
+        long interval = properties.getFlushInterval();
+        if (interval <= 0 || System.currentTimeMillis() - lastFlushTime >= interval) {
+            flush();
+        }
+    }
+
+    private static LocalDateTime timeOf(LogDomain logDomain) {
+        if (logDomain.getRequestTime() != null) {
+            return logDomain.getRequestTime();
+        }
+        return logDomain.getResponseTime() != null ? logDomain.getResponseTime() : LocalDateTime.now();
+    }
+}
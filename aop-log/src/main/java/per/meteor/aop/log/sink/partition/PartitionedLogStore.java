@@ -0,0 +1,420 @@
+package per.meteor.aop.log.sink.partition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import per.meteor.aop.log.common.codec.LogDomainCodec;
+import per.meteor.aop.log.config.PartitionSinkProperties;
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * 按天、小时分区的本地日志存储
+ * <p>
+ * 写入见 {@link PartitionedLogSink}。分区结束并超过 sealDelay 后文件被关闭(封存)，后台线程通过 {@link #maintain()}
+ * 把封存分区的文件合并压缩为一个文件，并删除超过保留时长的分区。范围扫描按目录名及文件名跳过时间窗口之外的天和分区，
+ * 不需要打开这些文件。文件布局见 {@link Partitions}。
+ * <p>
+ * 合并压缩替换文件时持有写锁，扫描单个分区时持有读锁，保证扫描看到的分区文件集合一致。
+ *
+ * @author meteor
+ * @date 2021-10-19 13:00
+ */
+public class PartitionedLogStore {
+
+    Logger logger = LoggerFactory.getLogger(PartitionedLogStore.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final PartitionSinkProperties properties;
+    private final Path root;
+    /** 正在写入的文件，不参与压缩及删除 **/
+    private final Set<Path> openFiles = ConcurrentHashMap.newKeySet();
+    private final ReentrantReadWriteLock fileLock = new ReentrantReadWriteLock();
+
+    private final AtomicLong compactedPartitions = new AtomicLong();
+    private final AtomicLong compactedFiles = new AtomicLong();
+    private final AtomicLong compactedRawBytes = new AtomicLong();
+    private final AtomicLong compactedBytes = new AtomicLong();
+    private final AtomicLong compactionNanos = new AtomicLong();
+    private final AtomicLong expiredPartitions = new AtomicLong();
+    private volatile PartitionScanResult lastScan;
+
+    public PartitionedLogStore(PartitionSinkProperties properties) throws IOException {
+        this.properties = properties;
+        this.root = Paths.get(properties.getDirectory());
+        Files.createDirectories(root);
+    }
+
+    public PartitionSinkProperties getProperties() {
+        return properties;
+    }
+
+    /**
+     * 为分区创建新的数据文件，文件关闭后调用 {@link #release(Path)}
+     *
+     * @param start 分区起始时间
+     * @return java.nio.file.Path
+     * @throws IOException 创建目录失败
+     */
+    Path newFile(LocalDateTime start) throws IOException {
+        Path dayDirectory = Partitions.dayDirectory(root, start.toLocalDate());
+        Files.createDirectories(dayDirectory);
+        String key = properties.getGranularity().key(start);
+        fileLock.readLock().lock();
+        try {
+            Path path = Partitions.path(dayDirectory, key,
+                    Partitions.nextIndex(Partitions.partitions(dayDirectory).get(key)), null);
+            openFiles.add(path);
+            return path;
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    void release(Path path) {
+        openFiles.remove(path);
+    }
+
+    /**
+     * 删除过期分区并压缩已封存的分区，由后台线程定期调用
+     */
+    public void maintain() {
+        LocalDateTime now = LocalDateTime.now();
+        if (properties.getRetention() > 0) {
+            expire(now.minus(properties.getRetention(), ChronoUnit.MILLIS));
+        }
+        compact(now.minus(properties.getSealDelay(), ChronoUnit.MILLIS));
+    }
+
+    /**
+     * 按请求时间扫描 [from, to] 范围内的日志
+     *
+     * @param from 起始时间(含)，为 null 时不限
+     * @param to 结束时间(含)，为 null 时不限
+     * @param limit 最多返回的条数，之后完全落在范围内的分区只计数不解码
+     * @return per.meteor.aop.log.sink.partition.PartitionScanResult
+     * @throws IOException 读取失败
+     */
+    public PartitionScanResult scan(LocalDateTime from, LocalDateTime to, int limit) throws IOException {
+        long start = System.nanoTime();
+        List<LogDomain> items = new ArrayList<>(Math.min(limit, 256));
+        long matched = 0;
+        long records = 0;
+        long bytes = 0;
+        long diskBytes = 0;
+        int scanned = 0;
+        int skipped = 0;
+        for (Path dayDirectory : Partitions.days(root)) {
+            LocalDate day = Partitions.dayOf(dayDirectory);
+            if ((from != null && day.plusDays(1).atStartOfDay().compareTo(from) <= 0)
+                    || (to != null && day.atStartOfDay().isAfter(to))) {
+                continue;
+            }
+            for (Map.Entry<String, List<PartitionFile>> partition : Partitions.partitions(dayDirectory).entrySet()) {
+                PartitionFile first = partition.getValue().get(0);
+                if (!first.overlaps(from, to)) {
+                    skipped++;
+                    continue;
+                }
+                scanned++;
+                boolean covered = (from == null || !first.start.isBefore(from)) && (to == null || first.end.compareTo(to) <= 0);
+                fileLock.readLock().lock();
+                try {
+                    // 获取读锁前分区可能已被压缩替换，重新列出文件
+                    List<PartitionFile> files = Partitions.partitions(dayDirectory).get(partition.getKey());
+                    if (files == null) {
+                        continue;
+                    }
+                    for (PartitionFile file : Partitions.readable(files)) {
+                        try (PartitionReader reader = new PartitionReader(file)) {
+                            while (reader.next()) {
+                                records++;
+                                bytes += 4 + reader.length();
+                                if (covered && items.size() >= limit) {
+                                    matched++;
+                                    continue;
+                                }
+                                LogDomain log = LogDomainCodec.decode(reader.buffer(), 0, reader.length());
+                                if (covered || within(log.getRequestTime(), from, to)) {
+                                    matched++;
+                                    if (items.size() < limit) {
+                                        items.add(log);
+                                    }
+                                }
+                            }
+                            diskBytes += reader.diskBytes();
+                        }
+                    }
+                } finally {
+                    fileLock.readLock().unlock();
+                }
+            }
+        }
+        PartitionScanResult result = new PartitionScanResult(matched, records, bytes, diskBytes, scanned, skipped,
+                (System.nanoTime() - start) / 1e6, items);
+        lastScan = result;
+        return result;
+    }
+
+    /**
+     * 各分区的文件及大小
+     *
+     * @return java.util.List<java.util.Map<java.lang.String,java.lang.Object>>
+     */
+    public List<Map<String, Object>> partitions() {
+        List<Map<String, Object>> partitions = new ArrayList<>();
+        for (Path dayDirectory : Partitions.days(root)) {
+            for (Map.Entry<String, List<PartitionFile>> entry : Partitions.partitions(dayDirectory).entrySet()) {
+                long size = 0;
+                boolean compressed = true;
+                boolean open = false;
+                for (PartitionFile file : Partitions.readable(entry.getValue())) {
+                    size += sizeOf(file.path);
+                    compressed &= file.isCompressed();
+                    open |= openFiles.contains(file.path);
+                }
+                Map<String, Object> partition = new LinkedHashMap<>(8);
+                partition.put("key", entry.getKey());
+                partition.put("files", entry.getValue().size());
+                partition.put("bytes", size);
+                partition.put("compressed", compressed);
+                partition.put("open", open);
+                partitions.add(partition);
+            }
+        }
+        return partitions;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>(16);
+        snapshot.put("directory", root.toString());
+        snapshot.put("granularity", properties.getGranularity());
+        snapshot.put("compression", properties.getCompression());
+        snapshot.put("openFiles", openFiles.size());
+        snapshot.put("compactedPartitions", compactedPartitions.get());
+        snapshot.put("compactedFiles", compactedFiles.get());
+        snapshot.put("compactedRawBytes", compactedRawBytes.get());
+        snapshot.put("compactedBytes", compactedBytes.get());
+        long compressed = compactedBytes.get();
+        snapshot.put("compressionRatio", compressed == 0 ? 0 : (double) compactedRawBytes.get() / compressed);
+        long nanos = compactionNanos.get();
+        snapshot.put("compactionMegabytesPerSecond", nanos == 0 ? 0 : compactedRawBytes.get() * 1e9 / nanos / (1024 * 1024));
+        snapshot.put("expiredPartitions", expiredPartitions.get());
+        PartitionScanResult scan = lastScan;
+        if (scan != null) {
+            Map<String, Object> last = new LinkedHashMap<>(8);
+            last.put("records", scan.getRecords());
+            last.put("partitionsScanned", scan.getPartitionsScanned());
+            last.put("partitionsSkipped", scan.getPartitionsSkipped());
+            last.put("elapsedMillis", scan.getElapsedMillis());
+            last.put("recordsPerSecond", scan.getRecordsPerSecond());
+            last.put("megabytesPerSecond", scan.getMegabytesPerSecond());
+            snapshot.put("lastScan", last);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 删除结束时间不晚于 cutoff 的分区，整天过期时删除天目录
+     */
+    private void expire(LocalDateTime cutoff) {
+        for (Path dayDirectory : Partitions.days(root)) {
+            if (Partitions.dayOf(dayDirectory).atStartOfDay().isAfter(cutoff)) {
+                break;
+            }
+            for (List<PartitionFile> files : Partitions.partitions(dayDirectory).values()) {
+                PartitionFile first = files.get(0);
+                if (first.end.isAfter(cutoff) || isOpen(files)) {
+                    continue;
+                }
+                fileLock.writeLock().lock();
+                try {
+                    for (PartitionFile file : files) {
+                        Files.deleteIfExists(file.path);
+                    }
+                    expiredPartitions.incrementAndGet();
+                    logger.info("删除过期日志分区: {}", first.key);
+                } catch (IOException e) {
+                    logger.error("删除过期日志分区失败: {}", first.key, e);
+                } finally {
+                    fileLock.writeLock().unlock();
+                }
+            }
+            deleteIfEmpty(dayDirectory);
+        }
+    }
+
+    /**
+     * 合并压缩结束时间不晚于 sealedBefore 的分区
+     */
+    private void compact(LocalDateTime sealedBefore) {
+        for (Path dayDirectory : Partitions.days(root)) {
+            if (Partitions.dayOf(dayDirectory).atStartOfDay().isAfter(sealedBefore)) {
+                break;
+            }
+            deleteTemporaryFiles(dayDirectory);
+            for (List<PartitionFile> files : Partitions.partitions(dayDirectory).values()) {
+                if (files.get(0).end.isAfter(sealedBefore) || isOpen(files)) {
+                    continue;
+                }
+                try {
+                    compactPartition(dayDirectory, files);
+                } catch (IOException e) {
+                    logger.error("压缩日志分区失败: {}", files.get(0).key, e);
+                }
+            }
+        }
+    }
+
+    private void compactPartition(Path dayDirectory, List<PartitionFile> files) throws IOException {
+        List<PartitionFile> obsolete = Partitions.obsolete(files);
+        if (!obsolete.isEmpty()) {
+            // 上次压缩在删除旧文件前中断
+            delete(obsolete);
+        }
+        List<PartitionFile> inputs = Partitions.readable(files);
+        if (inputs.size() == 1 && inputs.get(0).isCompressed()) {
+            return;
+        }
+        long start = System.nanoTime();
+        PartitionFile last = inputs.get(inputs.size() - 1);
+        PartitionCompression compression = properties.getCompression();
+        Path target = Partitions.path(dayDirectory, last.key, last.index, compression);
+        Path temp = target.resolveSibling(target.getFileName() + Partitions.TEMP_SUFFIX);
+        long rawBytes = 0;
+        long records = 0;
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            // 关闭压缩流时写出尾部但不关闭文件，之后同步到磁盘
+            try (DataOutputStream out = new DataOutputStream(compression.wrap(
+                    new BufferedOutputStream(new UnclosableOutputStream(file), BUFFER_SIZE)))) {
+                for (PartitionFile input : inputs) {
+                    try (PartitionReader reader = new PartitionReader(input)) {
+                        while (reader.next()) {
+                            out.writeInt(reader.length());
+                            out.write(reader.buffer(), 0, reader.length());
+                            rawBytes += 4 + reader.length();
+                            records++;
+                        }
+                    }
+                }
+            }
+            file.getFD().sync();
+        }
+        fileLock.writeLock().lock();
+        try {
+            move(temp, target);
+            delete(inputs);
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+        long size = Files.size(target);
+        long nanos = System.nanoTime() - start;
+        compactedPartitions.incrementAndGet();
+        compactedFiles.addAndGet(inputs.size());
+        compactedRawBytes.addAndGet(rawBytes);
+        compactedBytes.addAndGet(size);
+        compactionNanos.addAndGet(nanos);
+        logger.info("压缩日志分区 {}: {} 个文件, {} 条, {} -> {} 字节, 压缩比 {}, 耗时 {}ms", last.key, inputs.size(), records,
+                rawBytes, size, String.format("%.2f", size == 0 ? 0 : (double) rawBytes / size), nanos / 1_000_000);
+    }
+
+    private boolean isOpen(List<PartitionFile> files) {
+        for (PartitionFile file : files) {
+            if (openFiles.contains(file.path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void delete(List<PartitionFile> files) throws IOException {
+        for (PartitionFile file : files) {
+            Files.deleteIfExists(file.path);
+        }
+    }
+
+    private void deleteTemporaryFiles(Path dayDirectory) {
+        try (Stream<Path> files = Files.list(dayDirectory)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                if (path.getFileName().toString().endsWith(Partitions.TEMP_SUFFIX)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("清理临时文件失败: {}", dayDirectory, e);
+        }
+    }
+
+    private void deleteIfEmpty(Path dayDirectory) {
+        try (Stream<Path> files = Files.list(dayDirectory)) {
+            if (!files.findAny().isPresent()) {
+                Files.deleteIfExists(dayDirectory);
+            }
+        } catch (IOException e) {
+            logger.warn("删除空目录失败: {}", dayDirectory, e);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static boolean within(LocalDateTime time, LocalDateTime from, LocalDateTime to) {
+        return time != null && (from == null || !time.isBefore(from)) && (to == null || !time.isAfter(to));
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * close 只刷新不关闭下层流
+     */
+    private static final class UnclosableOutputStream extends FilterOutputStream {
+
+        UnclosableOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package per.meteor.aop.log.sink.partition;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 分区目录布局及文件选择规则
+ * <p>
+ * 目录结构为 {存储目录}/{yyyyMMdd}/{分区键}-{序号}.log，写入方每次打开分区都创建新序号的文件，从不追加已有文件。
+ * 压缩时把分区内的文件合并为一个压缩文件，序号取合并前的最大序号。因此序号为 n 的压缩文件已包含
+ * 该分区所有序号不大于 n 的数据，这些文件在压缩完成后删除，删除前中断也不会被重复读取。
+ * 记录格式为 长度(int) + {@link per.meteor.aop.log.common.codec.LogDomainCodec} 编码的数据。
+ *
+ * @author meteor
+ * @date 2021-10-19 10:50
+ */
+final class Partitions {
+
+    static final String SUFFIX = ".log";
+    static final String TEMP_SUFFIX = ".tmp";
+    static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static final Pattern FILE_NAME = Pattern.compile("(\\d{8}|\\d{10})-(\\d+)\\.log(\\.[a-z0-9]+)?");
+    private static final Pattern DAY_NAME = Pattern.compile("\\d{8}");
+
+    private Partitions() {}
+
+    static Path dayDirectory(Path root, LocalDate day) {
+        return root.resolve(DAY_FORMAT.format(day));
+    }
+
+    static Path path(Path dayDirectory, String key, int index, PartitionCompression compression) {
+        String name = key + "-" + index + SUFFIX + (compression == null ? "" : compression.getExtension());
+        return dayDirectory.resolve(name);
+    }
+
+    static LocalDate dayOf(Path dayDirectory) {
+        return LocalDate.parse(dayDirectory.getFileName().toString(), DAY_FORMAT);
+    }
+
+    /**
+     * 按日期升序列出天目录
+     */
+    static List<Path> days(Path root) {
+        if (!Files.isDirectory(root)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(root)) {
+            return files.filter(path -> DAY_NAME.matcher(path.getFileName().toString()).matches() && Files.isDirectory(path))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 列出天目录下的分区，分区键升序，分区内按序号升序
+     */
+    static Map<String, List<PartitionFile>> partitions(Path dayDirectory) {
+        Map<String, List<PartitionFile>> partitions = new TreeMap<>();
+        if (!Files.isDirectory(dayDirectory)) {
+            return partitions;
+        }
+        try (Stream<Path> files = Files.list(dayDirectory)) {
+            files.forEach(path -> {
+                Matcher matcher = FILE_NAME.matcher(path.getFileName().toString());
+                if (!matcher.matches()) {
+                    return;
+                }
+                PartitionCompression compression = null;
+                if (matcher.group(3) != null) {
+                    compression = PartitionCompression.ofExtension(matcher.group(3));
+                    if (compression == null) {
+                        return;
+                    }
+                }
+                String key = matcher.group(1);
+                partitions.computeIfAbsent(key, k -> new ArrayList<>())
+                        .add(new PartitionFile(path, key, Integer.parseInt(matcher.group(2)), compression));
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (List<PartitionFile> list : partitions.values()) {
+            list.sort(Comparator.comparingInt(file -> file.index));
+        }
+        return partitions;
+    }
+
+    /**
+     * 序号最大的压缩文件，没有时返回 null
+     */
+    static PartitionFile latestCompressed(List<PartitionFile> files) {
+        PartitionFile latest = null;
+        for (PartitionFile file : files) {
+            if (file.isCompressed() && (latest == null || file.index > latest.index)) {
+                latest = file;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * 需要读取的文件：最新的压缩文件及序号更大的未压缩文件
+     */
+    static List<PartitionFile> readable(List<PartitionFile> files) {
+        PartitionFile latest = latestCompressed(files);
+        if (latest == null) {
+            return files;
+        }
+        List<PartitionFile> readable = new ArrayList<>(files.size());
+        readable.add(latest);
+        for (PartitionFile file : files) {
+            if (file.index > latest.index) {
+                readable.add(file);
+            }
+        }
+        return readable;
+    }
+
+    /**
+     * 已合并进压缩文件、等待删除的文件
+     */
+    static List<PartitionFile> obsolete(List<PartitionFile> files) {
+        PartitionFile latest = latestCompressed(files);
+        if (latest == null) {
+            return Collections.emptyList();
+        }
+        List<PartitionFile> obsolete = new ArrayList<>();
+        for (PartitionFile file : files) {
+            if (file != latest && file.index <= latest.index) {
+                obsolete.add(file);
+            }
+        }
+        return obsolete;
+    }
+
+    static int nextIndex(List<PartitionFile> files) {
+        return files == null || files.isEmpty() ? 0 : files.get(files.size() - 1).index + 1;
+    }
+}
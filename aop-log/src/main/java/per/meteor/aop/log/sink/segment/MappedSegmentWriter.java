@@ -0,0 +1,150 @@
+package per.meteor.aop.log.sink.segment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 内存映射分段文件写入
+ * <p>
+ * 每个分段文件大小固定，文件头为 魔数(int) + 版本(int)，之后依次为 长度(int) + 数据 的记录，
+ * 长度为 0 表示分段内数据结束。当前分段写满后切换到下一个分段。
+ * 非线程安全，由日志消费线程单线程调用。
+ *
+ * @author meteor
+ * @date 2021-10-07 14:10
+ */
+public class MappedSegmentWriter implements Closeable {
+
+    private final Path directory;
+    private final int segmentSize;
+
+    private long segmentIndex;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private boolean dirty;
+
+    private long bytesWritten;
+    private long recordsWritten;
+
+    /**
+     * @param directory 分段文件目录，不存在时自动创建
+     * @param segmentSize 单个分段文件大小(字节)
+     * @throws IOException 打开分段失败
+     */
+    public MappedSegmentWriter(Path directory, int segmentSize) throws IOException {
+        if (segmentSize <= Segments.HEADER_SIZE + Segments.LENGTH_SIZE) {
+            throw new IllegalArgumentException("segmentSize too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        List<Path> segments = Segments.list(directory);
+        if (segments.isEmpty()) {
+            open(0, false);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            open(Segments.indexOf(last), true);
+        }
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param record 记录内容
+     * @throws IOException 切换分段失败
+     */
+    public void append(byte[] record) throws IOException {
+        append(record, 0, record.length);
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param record 记录内容
+     * @param offset 起始位置
+     * @param length 长度
+     * @throws IOException 切换分段失败
+     */
+    public void append(byte[] record, int offset, int length) throws IOException {
+        int required = Segments.LENGTH_SIZE + length;
+        if (length <= 0 || required > segmentSize - Segments.HEADER_SIZE) {
+            throw new IllegalArgumentException("invalid record length: " + length);
+        }
+        if (buffer.remaining() < required) {
+            roll();
+        }
+        // 先写数据再写长度，崩溃时未写完的记录会因长度为 0 被读取方忽略
+        int position = buffer.position();
+        buffer.position(position + Segments.LENGTH_SIZE);
+        buffer.put(record, offset, length);
+        buffer.putInt(position, length);
+        dirty = true;
+        bytesWritten += required;
+        recordsWritten++;
+    }
+
+    /**
+     * 将当前分段的修改刷到磁盘
+     */
+    public void force() {
+        if (dirty) {
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    public long getSegmentIndex() {
+        return segmentIndex;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    private void roll() throws IOException {
+        force();
+        channel.close();
+        open(segmentIndex + 1, false);
+    }
+
+    private void open(long index, boolean existing) throws IOException {
+        Path path = Segments.path(directory, index);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // 映射区域在 GC 回收 buffer 时释放
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segmentIndex = index;
+        if (existing && buffer.getInt(0) == Segments.MAGIC) {
+            buffer.position(Segments.endOfRecords(buffer));
+        } else {
+            buffer.putInt(0, Segments.MAGIC);
+            buffer.putInt(4, Segments.VERSION);
+            buffer.position(Segments.HEADER_SIZE);
+            dirty = true;
+        }
+    }
+
+    /**
+     * 仅用于计算可写入的最大记录长度
+     *
+     * @return int
+     */
+    public int maxRecordLength() {
+        return segmentSize - Segments.HEADER_SIZE - Segments.LENGTH_SIZE;
+    }
+}
@@ -0,0 +1,89 @@
+package per.meteor.aop.log.sink.segment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import per.meteor.aop.log.common.codec.BinaryWriter;
+import per.meteor.aop.log.common.codec.LogDomainCodec;
+import per.meteor.aop.log.config.SegmentSinkProperties;
+import per.meteor.aop.log.domain.LogDomain;
+import per.meteor.aop.log.sink.LogSink;
+import per.meteor.aop.log.sink.SinkStats;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * 写入本地内存映射分段文件，不经过 logback 文本输出，记录使用 {@link LogDomainCodec} 编码
+ *
+ * @author meteor
+ * @date 2021-10-07 16:00
+ */
+public class SegmentLogSink implements LogSink {
+
+    Logger logger = LoggerFactory.getLogger(SegmentLogSink.class);
+
+    private final SegmentSinkProperties properties;
+    private final MappedSegmentWriter writer;
+    private final SinkStats stats = new SinkStats();
+    private final BinaryWriter encoder = new BinaryWriter(4096);
+    private long lastForceTime = System.currentTimeMillis();
+
+    public SegmentLogSink(SegmentSinkProperties properties) throws IOException {
+        this.properties = properties;
+        this.writer = new MappedSegmentWriter(Paths.get(properties.getDirectory()), properties.getSegmentSize());
+    }
+
+    @Override
+    public String getName() {
+        return "segment";
+    }
+
+    @Override
+    public void write(List<LogDomain> batch) throws IOException {
+        long start = System.nanoTime();
+        long bytes = writer.getBytesWritten();
+        int written = 0;
+        for (LogDomain logDomain : batch) {
+            encoder.reset();
+            LogDomainCodec.encode(logDomain, encoder);
+            if (encoder.size() > writer.maxRecordLength()) {
+                stats.recordFailure(1);
+                logger.warn("日志记录超过分段大小, 已丢弃: {} bytes", encoder.size());
+                continue;
+            }
+            writer.append(encoder.buffer(), 0, encoder.size());
+            written++;
+        }
+        forceIfDue();
+        stats.recordBatch(written, writer.getBytesWritten() - bytes, System.nanoTime() - start);
+    }
+
+    @Override
+    public void onIdle() {
+        forceIfDue();
+    }
+
+    @Override
+    public void flush() {
+        writer.force();
+        lastForceTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    @Override
+    public SinkStats getStats() {
+        return stats;
+    }
+
+    private void forceIfDue() {
+        long interval = properties.getForceInterval();
+        if (interval > 0 && System.currentTimeMillis() - lastForceTime >= interval) {
+            flush();
+        }
+    }
+}
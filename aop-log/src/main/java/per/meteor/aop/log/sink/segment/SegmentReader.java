@@ -0,0 +1,97 @@
+package per.meteor.aop.log.sink.segment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 按顺序读取目录下所有分段中的记录
+ * <p>
+ * 以只读方式映射分段文件，遇到长度为 0 或越界的长度时认为该分段结束，继续读取下一个分段。
+ *
+ * @author meteor
+ * @date 2021-10-07 15:20
+ */
+public class SegmentReader implements Iterator<byte[]>, Closeable {
+
+    private final Iterator<Path> segments;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private byte[] next;
+
+    public SegmentReader(Path directory) {
+        this(Segments.list(directory));
+    }
+
+    private SegmentReader(List<Path> segments) {
+        this.segments = segments.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public byte[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        byte[] record = next;
+        next = null;
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        buffer = null;
+    }
+
+    private byte[] advance() {
+        try {
+            for (;;) {
+                if (buffer != null && buffer.remaining() >= Segments.LENGTH_SIZE) {
+                    int length = buffer.getInt(buffer.position());
+                    if (length > 0 && length <= buffer.remaining() - Segments.LENGTH_SIZE) {
+                        buffer.position(buffer.position() + Segments.LENGTH_SIZE);
+                        byte[] record = new byte[length];
+                        buffer.get(record);
+                        return record;
+                    }
+                }
+                if (!segments.hasNext()) {
+                    close();
+                    return null;
+                }
+                openSegment(segments.next());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void openSegment(Path segment) throws IOException {
+        close();
+        channel = FileChannel.open(segment, StandardOpenOption.READ);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (buffer.limit() < Segments.HEADER_SIZE || buffer.getInt(0) != Segments.MAGIC) {
+            buffer.position(buffer.limit());
+        } else {
+            buffer.position(Segments.HEADER_SIZE);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package per.meteor.aop.log.sink.segment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 分段文件格式常量及工具方法
+ *
+ * @author meteor
+ * @date 2021-10-07 14:02
+ */
+final class Segments {
+
+    /** 文件头魔数 "MLOG" **/
+    static final int MAGIC = 0x4D4C4F47;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int LENGTH_SIZE = 4;
+
+    private static final String SUFFIX = ".seg";
+    private static final String NAME_FORMAT = "%020d" + SUFFIX;
+
+    private Segments() {}
+
+    static Path path(Path directory, long index) {
+        return directory.resolve(String.format(NAME_FORMAT, index));
+    }
+
+    static long indexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * 按序号升序列出目录下的分段文件
+     *
+     * @param directory 目录
+     * @return java.util.List<java.nio.file.Path>
+     */
+    static List<Path> list(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().matches("\\d{20}\\" + SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 从文件头之后扫描记录，返回最后一条有效记录之后的位置
+     *
+     * @param buffer 分段内容
+     * @return int
+     */
+    static int endOfRecords(ByteBuffer buffer) {
+        int position = HEADER_SIZE;
+        int limit = buffer.limit();
+        while (limit - position >= LENGTH_SIZE) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > limit - position - LENGTH_SIZE) {
+                break;
+            }
+            position += LENGTH_SIZE + length;
+        }
+        return position;
+    }
+}
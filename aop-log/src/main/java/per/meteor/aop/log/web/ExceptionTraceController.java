@@ -0,0 +1,37 @@
+package per.meteor.aop.log.web;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import per.meteor.aop.log.exception.ExceptionTrace;
+import per.meteor.aop.log.exception.ExceptionTraceStore;
+
+import javax.annotation.Resource;
+import java.util.Map;
+
+/**
+ * 异常堆栈查询，日志中只记录异常指纹，完整堆栈通过指纹查询
+ *
+ * @author meteor
+ * @date 2021-10-14 11:10
+ */
+@RestController
+@RequestMapping("/log/exceptions")
+public class ExceptionTraceController {
+
+    @Resource
+    private ExceptionTraceStore traceStore;
+
+    @GetMapping("/{fingerprint}")
+    public ResponseEntity<ExceptionTrace> get(@PathVariable String fingerprint) {
+        ExceptionTrace trace = traceStore.get(fingerprint);
+        return trace == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(trace);
+    }
+
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        return traceStore.stats();
+    }
+}
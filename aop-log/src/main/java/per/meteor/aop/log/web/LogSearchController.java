@@ -0,0 +1,108 @@
+package per.meteor.aop.log.web;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import per.meteor.aop.log.common.constant.DatePattern;
+import per.meteor.aop.log.index.IndexedField;
+import per.meteor.aop.log.index.LogCondition;
+import per.meteor.aop.log.index.LogQuery;
+import per.meteor.aop.log.index.LogSearchResult;
+import per.meteor.aop.log.index.RecentLogIndex;
+
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 最近日志查询，数据来自内存索引 {@link RecentLogIndex}
+ *
+ * @author meteor
+ * @date 2021-10-18 14:10
+ */
+@RestController
+@RequestMapping("/log/search")
+@ConditionalOnProperty(prefix = "meteor.log.sink.index", name = "enabled", havingValue = "true")
+public class LogSearchController {
+
+    @Resource
+    private RecentLogIndex recentLogIndex;
+
+    /**
+     * 按字段查询，同一字段的多个取值之间为 OR，不同字段之间 match=all 时为 AND，match=any 时为 OR
+     * <pre>
+     *     GET /log/search?operationUser=alice&amp;requestUrl=/orders&amp;responseStatus=failure&amp;within=600000
+     * </pre>
+     *
+     * @return per.meteor.aop.log.index.LogSearchResult
+     */
+    @GetMapping
+    public LogSearchResult search(@RequestParam(required = false) List<String> requestUrl,
+                                  @RequestParam(required = false) List<String> operationUser,
+                                  @RequestParam(required = false) List<String> operationModule,
+                                  @RequestParam(required = false) List<String> operationType,
+                                  @RequestParam(required = false) List<String> responseStatus,
+                                  @RequestParam(required = false) List<String> requestIp,
+                                  @RequestParam(defaultValue = "all") String match,
+                                  @RequestParam(required = false) @DateTimeFormat(pattern = DatePattern.NORM_DATETIME_PATTERN) LocalDateTime from,
+                                  @RequestParam(required = false) @DateTimeFormat(pattern = DatePattern.NORM_DATETIME_PATTERN) LocalDateTime to,
+                                  @RequestParam(defaultValue = "0") long within,
+                                  @RequestParam(defaultValue = "0") int page,
+                                  @RequestParam(defaultValue = "20") int size) {
+        List<LogCondition> conditions = new ArrayList<>(6);
+        addTerm(conditions, IndexedField.REQUEST_URL, requestUrl);
+        addTerm(conditions, IndexedField.OPERATION_USER, operationUser);
+        addTerm(conditions, IndexedField.OPERATION_MODULE, operationModule);
+        addTerm(conditions, IndexedField.OPERATION_TYPE, operationType);
+        addTerm(conditions, IndexedField.RESPONSE_STATUS, responseStatus);
+        addTerm(conditions, IndexedField.REQUEST_IP, requestIp);
+
+        LogQuery query = new LogQuery();
+        if (!conditions.isEmpty()) {
+            if ("all".equalsIgnoreCase(match)) {
+                query.setWhere(LogCondition.and(conditions));
+            } else if ("any".equalsIgnoreCase(match)) {
+                query.setWhere(LogCondition.or(conditions));
+            } else {
+                throw new IllegalArgumentException("match 只支持 all 或 any: " + match);
+            }
+        }
+        query.setFrom(from);
+        query.setTo(to);
+        query.setWithin(within);
+        query.setPage(page);
+        query.setSize(size);
+        return recentLogIndex.search(query);
+    }
+
+    /**
+     * 按嵌套条件查询，条件格式见 {@link LogCondition}
+     *
+     * @param query 查询条件
+     * @return per.meteor.aop.log.index.LogSearchResult
+     */
+    @PostMapping
+    public LogSearchResult search(@RequestBody LogQuery query) {
+        return recentLogIndex.search(query);
+    }
+
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        return recentLogIndex.snapshot();
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Collections.singletonMap("message", e.getMessage()));
+    }
+
+    private static void addTerm(List<LogCondition> conditions, IndexedField field, List<String> values) {
+        if (values != null && !values.isEmpty()) {
+            conditions.add(LogCondition.term(field.getFieldName(), values.toArray(new String[0])));
+        }
+    }
+}
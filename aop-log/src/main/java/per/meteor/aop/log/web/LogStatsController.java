@@ -0,0 +1,64 @@
+package per.meteor.aop.log.web;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import per.meteor.aop.log.latency.LatencyRecorder;
+import per.meteor.aop.log.sampling.LogSamplerRegistry;
+import per.meteor.aop.log.service.LogServiceAsync;
+import per.meteor.aop.log.sink.SinkDispatcher;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 日志采集统计
+ *
+ * @author meteor
+ * @date 2021-10-12 15:10
+ */
+@RestController
+@RequestMapping("/log/stats")
+public class LogStatsController {
+
+    @Resource
+    private LogSamplerRegistry samplerRegistry;
+
+    @Resource
+    private LatencyRecorder latencyRecorder;
+
+    @Resource
+    private LogServiceAsync logServiceAsync;
+
+    /**
+     * 各接口的采样统计
+     *
+     * @return java.util.List<java.util.Map<java.lang.String,java.lang.Object>>
+     */
+    @GetMapping("/sampling")
+    public List<Map<String, Object>> sampling() {
+        return samplerRegistry.snapshot();
+    }
+
+    /**
+     * 各接口最近一个完整统计周期的耗时分位值(毫秒)
+     *
+     * @return java.util.List<java.util.Map<java.lang.String,java.lang.Object>>
+     */
+    @GetMapping("/latency")
+    public List<Map<String, Object>> latency() {
+        return latencyRecorder.snapshot();
+    }
+
+    /**
+     * 各输出正在写入、等待写入的批次数及写入统计
+     *
+     * @return java.util.List<java.util.Map<java.lang.String,java.lang.Object>>
+     */
+    @GetMapping("/sinks")
+    public List<Map<String, Object>> sinks() {
+        return logServiceAsync.getDispatchers().stream().map(SinkDispatcher::snapshot).collect(Collectors.toList());
+    }
+}
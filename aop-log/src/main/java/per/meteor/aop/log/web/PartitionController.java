@@ -0,0 +1,60 @@
+package per.meteor.aop.log.web;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import per.meteor.aop.log.common.constant.DatePattern;
+import per.meteor.aop.log.sink.partition.PartitionScanResult;
+import per.meteor.aop.log.sink.partition.PartitionedLogStore;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按时间分区的本地日志存储查询
+ *
+ * @author meteor
+ * @date 2021-10-19 16:00
+ */
+@RestController
+@RequestMapping("/log/partitions")
+@ConditionalOnProperty(prefix = "meteor.log.sink.partition", name = "enabled", havingValue = "true")
+public class PartitionController {
+
+    @Resource
+    private PartitionedLogStore partitionedLogStore;
+
+    @GetMapping
+    public List<Map<String, Object>> partitions() {
+        return partitionedLogStore.partitions();
+    }
+
+    /**
+     * 压缩比、压缩速度及最近一次扫描的吞吐
+     *
+     * @return java.util.Map<java.lang.String,java.lang.Object>
+     */
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        return partitionedLogStore.snapshot();
+    }
+
+    /**
+     * 按请求时间范围扫描，范围之外的分区不会被读取
+     *
+     * @return per.meteor.aop.log.sink.partition.PartitionScanResult
+     * @throws IOException 读取失败
+     */
+    @GetMapping("/scan")
+    public PartitionScanResult scan(@RequestParam(required = false) @DateTimeFormat(pattern = DatePattern.NORM_DATETIME_PATTERN) LocalDateTime from,
+                                    @RequestParam(required = false) @DateTimeFormat(pattern = DatePattern.NORM_DATETIME_PATTERN) LocalDateTime to,
+                                    @RequestParam(defaultValue = "20") int limit) throws IOException {
+        return partitionedLogStore.scan(from, to, Math.max(0, Math.min(limit, 1000)));
+    }
+}
@@ -0,0 +1,70 @@
+package per.meteor.aop.log.web;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import per.meteor.aop.log.common.constant.DatePattern;
+import per.meteor.aop.log.rollup.RollupAggregator;
+import per.meteor.aop.log.rollup.RollupQuery;
+
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分钟汇总查询
+ *
+ * @author meteor
+ * @date 2021-10-20 16:00
+ */
+@RestController
+@RequestMapping("/log/rollups")
+@ConditionalOnProperty(prefix = "meteor.log.rollup", name = "enabled", havingValue = "true")
+public class RollupController {
+
+    @Resource
+    private RollupAggregator rollupAggregator;
+
+    /**
+     * 合并任意时间范围内的分钟汇总，默认最近一小时、按接口方法路径、模块、操作类型分组
+     * <pre>
+     *     GET /log/rollups?from=2021-10-20 09:00:00&amp;to=2021-10-20 10:00:00&amp;step=5&amp;groupBy=methodPath
+     * </pre>
+     *
+     * @return java.util.List<java.util.Map<java.lang.String,java.lang.Object>>
+     */
+    @GetMapping
+    public List<Map<String, Object>> query(@RequestParam(required = false) @DateTimeFormat(pattern = DatePattern.NORM_DATETIME_PATTERN) LocalDateTime from,
+                                           @RequestParam(required = false) @DateTimeFormat(pattern = DatePattern.NORM_DATETIME_PATTERN) LocalDateTime to,
+                                           @RequestParam(defaultValue = "0") int step,
+                                           @RequestParam(required = false) List<String> groupBy,
+                                           @RequestParam(required = false) String methodPath,
+                                           @RequestParam(required = false) String module,
+                                           @RequestParam(required = false) String type) {
+        RollupQuery query = new RollupQuery();
+        query.setFrom(from);
+        query.setTo(to);
+        query.setStep(step);
+        if (groupBy != null) {
+            query.setGroupBy(new LinkedHashSet<>(groupBy));
+        }
+        query.setMethodPath(methodPath);
+        query.setModule(module);
+        query.setType(type);
+        return rollupAggregator.query(query);
+    }
+
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        return rollupAggregator.snapshot();
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Collections.singletonMap("message", e.getMessage()));
+    }
+}
@@ -0,0 +1,32 @@
+-- 操作日志表, 兼容 MySQL 与 H2, ${table} 在执行前替换为配置的表名
+CREATE TABLE IF NOT EXISTS ${table} (
+    log_id                 VARCHAR(32),
+    log_serial_number      VARCHAR(64),
+    request_parameter      TEXT,
+    request_url            VARCHAR(512),
+    request_method         VARCHAR(16),
+    request_time           TIMESTAMP NULL,
+    response_status        VARCHAR(16),
+    response_code          INT,
+    response_body          TEXT,
+    response_time          TIMESTAMP NULL,
+    exception_name         VARCHAR(255),
+    exception_message      TEXT,
+    request_ip             VARCHAR(64),
+    request_header         TEXT,
+    request_method_path    VARCHAR(512),
+    request_time_consuming VARCHAR(32),
+    user_agent             VARCHAR(128),
+    browser_type           VARCHAR(64),
+    browser_name           VARCHAR(64),
+    browser_version        VARCHAR(64),
+    operating_system       VARCHAR(64),
+    operation_user         VARCHAR(64),
+    system_version         VARCHAR(32),
+    operation_module       VARCHAR(32),
+    operation_type         VARCHAR(32),
+    operation_desc         VARCHAR(255),
+    exception_fingerprint  VARCHAR(16),
+    exception_count        INT,
+    request_duration       BIGINT
+);
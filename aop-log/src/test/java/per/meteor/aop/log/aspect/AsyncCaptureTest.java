@@ -0,0 +1,163 @@
+package per.meteor.aop.log.aspect;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import per.meteor.aop.log.domain.LogDomain;
+import per.meteor.aop.log.sink.LogSink;
+import per.meteor.aop.log.sink.SinkStats;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 异步 MVC 返回值在结果产生时记录一条日志，包含实际结果及耗时
+ *
+ * @author meteor
+ * @date 2021-10-24 17:30
+ */
+@SpringBootTest(properties = "meteor.log.sink.slf4j.enabled=false")
+@AutoConfigureMockMvc
+class AsyncCaptureTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RecordingSink sink;
+
+    @BeforeEach
+    void clearSink() {
+        sink.logs.clear();
+    }
+
+    @Test
+    void completableFutureSuccess() throws Exception {
+        MvcResult result = mockMvc.perform(get("/test09").param("name", "future-ok").param("delay", "200"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andExpect(content().string("future-ok"));
+
+        LogDomain log = singleLog(200);
+        assertThat(log.getResponseStatus()).isEqualTo("success");
+        assertThat(log.getResponseBody()).contains("future-ok");
+        assertThat(log.getRequestUrl()).isEqualTo("/test09");
+    }
+
+    @Test
+    void completableFutureFailure() throws Exception {
+        MvcResult result = mockMvc.perform(get("/test09").param("name", "future-fail").param("delay", "200")
+                        .param("fail", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5000);
+
+        LogDomain log = singleLog(200);
+        assertThat(log.getResponseStatus()).isEqualTo("failure");
+        // CompletionException 取其 cause
+        assertThat(log.getExceptionName()).isEqualTo(IllegalStateException.class.getName());
+        assertThat(log.getExceptionMessage()).contains("future-fail");
+    }
+
+    @Test
+    void deferredResult() throws Exception {
+        MvcResult result = mockMvc.perform(get("/test10").param("name", "deferred").param("delay", "200"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        LogDomain log = singleLog(200);
+        assertThat(log.getResponseStatus()).isEqualTo("success");
+        assertThat(log.getResponseBody()).contains("\"name\":\"deferred\"").contains("\"delay\":200");
+    }
+
+    @Test
+    void webAsyncTaskTimeoutLogsFallbackValue() throws Exception {
+        // 任务不响应中断，运行 1500ms，超时由测试在约 200ms 时触发
+        MvcResult result = mockMvc.perform(get("/test12").param("name", "slow").param("delay", "1500")
+                        .param("timeout", "60000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        TimeUnit.MILLISECONDS.sleep(200);
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+        // MockMvc 只从任务的 postProcess 取结果，超时回调的结果需要直接以原请求再次分派
+        mockMvc.perform(servletContext -> {
+            MockHttpServletRequest request = (MockHttpServletRequest) result.getRequest();
+            request.setDispatcherType(DispatcherType.ASYNC);
+            request.setAsyncStarted(false);
+            return request;
+        }).andExpect(status().isOk()).andExpect(content().string("超时默认值: slow"));
+
+        LogDomain log = sink.logs.poll(5, TimeUnit.SECONDS);
+        assertThat(log).isNotNull();
+        assertThat(log.getResponseStatus()).isEqualTo("success");
+        assertThat(log.getResponseBody()).contains("超时默认值: slow");
+        assertThat(log.getRequestDuration()).isBetween(TimeUnit.MILLISECONDS.toMicros(200), TimeUnit.MILLISECONDS.toMicros(1500));
+        // 任务在超时之后仍会结束，不能再记录一条
+        assertThat(sink.logs.poll(2000, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    /**
+     * 取出唯一的一条日志，耗时不小于异步任务的延迟
+     */
+    private LogDomain singleLog(long delayMillis) throws InterruptedException {
+        LogDomain log = sink.logs.poll(5, TimeUnit.SECONDS);
+        assertThat(log).isNotNull();
+        assertThat(log.getRequestDuration()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toMicros(delayMillis));
+        assertThat(sink.logs.poll(300, TimeUnit.MILLISECONDS)).isNull();
+        return log;
+    }
+
+    static class RecordingSink implements LogSink {
+
+        final BlockingQueue<LogDomain> logs = new LinkedBlockingQueue<>();
+        private final SinkStats stats = new SinkStats();
+
+        @Override
+        public String getName() {
+            return "recording";
+        }
+
+        @Override
+        public void write(List<LogDomain> batch) {
+            logs.addAll(batch);
+        }
+
+        @Override
+        public SinkStats getStats() {
+            return stats;
+        }
+    }
+
+    @TestConfiguration
+    static class RecordingConfig {
+
+        @Bean
+        RecordingSink recordingSink() {
+            return new RecordingSink();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package per.meteor.aop.log.aspect;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import per.meteor.aop.log.common.annotations.OperationLog;
+import per.meteor.aop.log.common.enums.CaptureMode;
+import per.meteor.aop.log.domain.LogDomain;
+import per.meteor.aop.log.sink.LogSink;
+import per.meteor.aop.log.sink.SinkStats;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 延迟采集时请求参数及响应结果只在日志消费线程中序列化，大响应时请求线程的耗时低于立即采集
+ *
+ * @author meteor
+ * @date 2021-10-23 17:05
+ */
+@SpringBootTest(properties = {
+        "meteor.log.capture.mode=deferred",
+        "meteor.log.sink.slf4j.enabled=false"
+})
+class DeferredCaptureTest {
+
+    private static final int EXPORT_ROWS = 2000;
+
+    @Autowired
+    private ProbeService probeService;
+
+    @Autowired
+    private RecordingSink sink;
+
+    @BeforeEach
+    void bindRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/probe");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        sink.logs.clear();
+    }
+
+    @AfterEach
+    void resetRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void deferredModeSerializesOnConsumerThread() throws InterruptedException {
+        Probe argument = new Probe("argument");
+        Probe result = probeService.deferred(argument);
+
+        // 请求线程返回时还没有任何序列化
+        assertThat(argument.serializedBy).isEmpty();
+        assertThat(result.serializedBy).isEmpty();
+
+        LogDomain log = sink.logs.poll(5, TimeUnit.SECONDS);
+        assertThat(log).isNotNull();
+        assertThat(log.getRequestParameter()).contains("argument");
+        assertThat(log.getResponseBody()).contains("result-argument");
+        assertThat(argument.serializedBy).containsExactly("operation-log-consumer");
+        assertThat(result.serializedBy).containsExactly("operation-log-consumer");
+    }
+
+    @Test
+    void eagerModeSerializesOnRequestThread() throws InterruptedException {
+        Probe argument = new Probe("argument");
+        Probe result = probeService.eager(argument);
+
+        String requestThread = Thread.currentThread().getName();
+        assertThat(argument.serializedBy).containsExactly(requestThread);
+        assertThat(result.serializedBy).containsExactly(requestThread);
+
+        LogDomain log = sink.logs.poll(5, TimeUnit.SECONDS);
+        assertThat(log).isNotNull();
+        assertThat(log.getResponseBody()).contains("result-argument");
+        assertThat(argument.serializedBy).containsExactly(requestThread);
+    }
+
+    @Test
+    void deferredModeSpendsLessRequestThreadTimeOnLargeResponses() throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isCurrentThreadCpuTimeSupported());
+        threads.setThreadCpuTimeEnabled(true);
+        for (int i = 0; i < 20; i++) {
+            probeService.eagerExport(EXPORT_ROWS);
+            probeService.deferredExport(EXPORT_ROWS);
+        }
+
+        // 按请求线程 CPU 时间比较，不受消费线程抢占影响；减去不经过切面构造同样结果的耗时
+        long eager = 0;
+        long deferred = 0;
+        long unadvised = 0;
+        for (int i = 0; i < 50; i++) {
+            long start = threads.getCurrentThreadCpuTime();
+            probeService.eagerExport(EXPORT_ROWS);
+            long eagerEnd = threads.getCurrentThreadCpuTime();
+            probeService.deferredExport(EXPORT_ROWS);
+            long deferredEnd = threads.getCurrentThreadCpuTime();
+            ProbeService.export(EXPORT_ROWS);
+            eager += eagerEnd - start;
+            deferred += deferredEnd - eagerEnd;
+            unadvised += threads.getCurrentThreadCpuTime() - deferredEnd;
+        }
+
+        assertThat(deferred - unadvised).isLessThan((eager - unadvised) / 2);
+        // 延迟采集的响应仍然完整写入日志
+        LogDomain log = sink.logs.poll(5, TimeUnit.SECONDS);
+        assertThat(log).isNotNull();
+        assertThat(log.getResponseBody()).startsWith("[{\"id\":0,");
+    }
+
+    /**
+     * 记录序列化时所在线程的参数及结果类型
+     */
+    static class Probe {
+
+        final Set<String> serializedBy = ConcurrentHashMap.newKeySet();
+        private final String value;
+
+        Probe(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            serializedBy.add(Thread.currentThread().getName());
+            return value;
+        }
+    }
+
+    static class ProbeService {
+
+        @OperationLog
+        public Probe deferred(Probe probe) {
+            return new Probe("result-" + probe.value);
+        }
+
+        @OperationLog(captureMode = CaptureMode.EAGER)
+        public Probe eager(Probe probe) {
+            return new Probe("result-" + probe.value);
+        }
+
+        @OperationLog
+        public List<Map<String, Object>> deferredExport(int rows) {
+            return export(rows);
+        }
+
+        @OperationLog(captureMode = CaptureMode.EAGER)
+        public List<Map<String, Object>> eagerExport(int rows) {
+            return export(rows);
+        }
+
+        private static List<Map<String, Object>> export(int rows) {
+            List<Map<String, Object>> list = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                Map<String, Object> row = new LinkedHashMap<>(4);
+                row.put("id", i);
+                row.put("name", "导出数据-" + i);
+                list.add(row);
+            }
+            return list;
+        }
+    }
+
+    static class RecordingSink implements LogSink {
+
+        final BlockingQueue<LogDomain> logs = new LinkedBlockingQueue<>();
+        private final SinkStats stats = new SinkStats();
+
+        @Override
+        public String getName() {
+            return "recording";
+        }
+
+        @Override
+        public void write(List<LogDomain> batch) {
+            logs.addAll(batch);
+        }
+
+        @Override
+        public SinkStats getStats() {
+            return stats;
+        }
+    }
+
+    @TestConfiguration
+    static class ProbeConfig {
+
+        @Bean
+        ProbeService probeService() {
+            return new ProbeService();
+        }
+
+        @Bean
+        RecordingSink recordingSink() {
+            return new RecordingSink();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package per.meteor.aop.log.aspect;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import per.meteor.aop.log.latency.LatencyRecorder;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 切面对正常返回及抛出异常的调用都记录耗时分布
+ *
+ * @author meteor
+ * @date 2021-10-25 17:20
+ */
+@SpringBootTest(properties = "meteor.log.sink.slf4j.enabled=false")
+@AutoConfigureMockMvc
+class LatencyCaptureTest {
+
+    private static final String CONTROLLER = "per.meteor.aop.log.controller.TestController";
+    private static final int CALLS = 10;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LatencyRecorder latencyRecorder;
+
+    @Test
+    void recordsSuccessfulAndFailedCalls() throws Exception {
+        // 丢弃同一上下文中其他测试留下的记录
+        latencyRecorder.roll();
+        for (int i = 0; i < CALLS; i++) {
+            mockMvc.perform(get("/test03").param("name", "ok-" + i).param("sleep", "5"))
+                    .andExpect(status().isOk());
+            int call = i;
+            assertThatThrownBy(() -> mockMvc.perform(get("/test05").param("name", "fail-" + call)))
+                    .hasRootCauseInstanceOf(IllegalStateException.class);
+        }
+        latencyRecorder.roll();
+
+        Map<String, Object> success = latencyRecorder.get(CONTROLLER + ".test03(String,long,boolean)")
+                .getLastInterval().toMap();
+        Map<String, Object> failure = latencyRecorder.get(CONTROLLER + ".test05(String)")
+                .getLastInterval().toMap();
+
+        assertThat(success).containsEntry("count", (long) CALLS);
+        assertThat((double) success.get("p50")).isGreaterThanOrEqualTo(5);
+        assertThat(failure).containsEntry("count", (long) CALLS);
+        assertThat((double) failure.get("max")).isPositive();
+    }
+}
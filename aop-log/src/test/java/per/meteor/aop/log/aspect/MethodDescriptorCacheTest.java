@@ -0,0 +1,86 @@
+package per.meteor.aop.log.aspect;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.Test;
+import per.meteor.aop.log.common.annotations.OperationLog;
+
+import java.lang.reflect.Method;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 方法元数据缓存按方法及目标类型区分
+ *
+ * @author meteor
+ * @date 2021-10-23 17:40
+ */
+class MethodDescriptorCacheTest {
+
+    private final MethodDescriptorCache cache = new MethodDescriptorCache(SimpleLogAspect.EXCEPTION_LOG_POINTCUT);
+
+    @Test
+    void inheritedMethodIsCachedPerTargetClass() throws Exception {
+        Method method = BaseService.class.getMethod("save", String.class);
+
+        MethodDescriptor first = cache.get(joinPoint(method, new FirstService()));
+        MethodDescriptor second = cache.get(joinPoint(method, new SecondService()));
+
+        assertThat(first.getMethodPath()).isEqualTo(FirstService.class.getName() + ".save");
+        assertThat(second.getMethodPath()).isEqualTo(SecondService.class.getName() + ".save");
+        assertThat(cache.size()).isEqualTo(2);
+
+        // 交替调用时返回已缓存的条目，不会互相覆盖
+        assertThat(cache.get(joinPoint(method, new FirstService()))).isSameAs(first);
+        assertThat(cache.get(joinPoint(method, new SecondService()))).isSameAs(second);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void overloadedMethodsHaveDistinctKeys() throws Exception {
+        Method single = BaseService.class.getMethod("save", String.class);
+        Method batch = BaseService.class.getMethod("save", String[].class, int.class);
+
+        MethodDescriptor first = cache.get(joinPoint(single, new FirstService()));
+        MethodDescriptor second = cache.get(joinPoint(batch, new FirstService()));
+
+        // 写入日志的方法路径保持 类名.方法名；采样器、耗时直方图及分钟汇总以带参数类型的键区分重载方法
+        assertThat(first.getMethodPath()).isEqualTo(FirstService.class.getName() + ".save");
+        assertThat(second.getMethodPath()).isEqualTo(FirstService.class.getName() + ".save");
+        assertThat(first.getMethodKey()).isEqualTo(FirstService.class.getName() + ".save(String)");
+        assertThat(second.getMethodKey()).isEqualTo(FirstService.class.getName() + ".save(String[],int)");
+        assertThat(first.isSampled()).isFalse();
+        assertThat(second.isSampled()).isTrue();
+    }
+
+    private static JoinPoint joinPoint(Method method, Object target) {
+        MethodSignature signature = mock(MethodSignature.class);
+        when(signature.getMethod()).thenReturn(method);
+        when(signature.getParameterNames()).thenReturn(new String[]{"name"});
+        JoinPoint joinPoint = mock(JoinPoint.class);
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(joinPoint.getTarget()).thenReturn(target);
+        return joinPoint;
+    }
+
+    public static class BaseService {
+
+        @OperationLog
+        public String save(String name) {
+            return name;
+        }
+
+        @OperationLog(sampleRate = 0.1)
+        public String save(String[] names, int limit) {
+            return names[0];
+        }
+    }
+
+    public static class FirstService extends BaseService {
+    }
+
+    public static class SecondService extends BaseService {
+    }
+}
@@ -0,0 +1,152 @@
+package per.meteor.aop.log.aspect;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import per.meteor.aop.log.domain.LogDomain;
+import per.meteor.aop.log.sink.LogSink;
+import per.meteor.aop.log.sink.SinkStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * 声明了采样的接口抛出异常时不经过采样，同步及异步返回值都记录每一条异常日志
+ *
+ * @author meteor
+ * @date 2021-10-25 11:30
+ */
+@SpringBootTest(properties = "meteor.log.sink.slf4j.enabled=false")
+@AutoConfigureMockMvc
+class SamplingCaptureTest {
+
+    private static final int CALLS = 40;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RecordingSink sink;
+
+    @BeforeEach
+    void clearSink() {
+        sink.logs.clear();
+    }
+
+    @Test
+    void syncErrorsBypassSampling() throws Exception {
+        // /test03 采样比例 0.5
+        for (int i = 0; i < CALLS; i++) {
+            mockMvc.perform(get("/test03").param("name", "ok-" + i));
+            int call = i;
+            assertThatThrownBy(() -> mockMvc.perform(get("/test03").param("name", "fail-" + call).param("fail", "true")))
+                    .hasRootCauseInstanceOf(IllegalStateException.class);
+        }
+
+        List<LogDomain> logs = drain();
+
+        assertThat(failures(logs)).hasSize(CALLS);
+        // 40 次正常调用全部保留的概率为 2^-40
+        assertThat(logs.size() - CALLS).isLessThan(CALLS);
+        // 正常日志代表的调用数之和不超过实际调用量，差值为最后一条记录之后被丢掉的调用
+        assertThat(represented(logs)).isBetween((long) logs.size() - CALLS, (long) CALLS);
+    }
+
+    @Test
+    void asyncErrorsBypassSampling() throws Exception {
+        // /test13 采样比例 0.01，在调用时决定，结果产生时才知道是否出错
+        for (int i = 0; i < CALLS; i++) {
+            MvcResult ok = mockMvc.perform(get("/test13").param("name", "ok-" + i))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            ok.getAsyncResult(5000);
+            MvcResult failed = mockMvc.perform(get("/test13").param("name", "fail-" + i).param("fail", "true"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            failed.getAsyncResult(5000);
+        }
+
+        List<LogDomain> logs = drain();
+
+        assertThat(failures(logs)).hasSize(CALLS)
+                .allSatisfy(log -> assertThat(log.getExceptionName()).isEqualTo(IllegalStateException.class.getName()));
+        assertThat(logs.size() - CALLS).isLessThan(CALLS / 2);
+    }
+
+    /**
+     * 取出管道中的全部日志，300ms 内没有新日志视为结束
+     */
+    private List<LogDomain> drain() throws InterruptedException {
+        List<LogDomain> logs = new ArrayList<>();
+        LogDomain log = sink.logs.poll(5, TimeUnit.SECONDS);
+        while (log != null) {
+            logs.add(log);
+            log = sink.logs.poll(300, TimeUnit.MILLISECONDS);
+        }
+        return logs;
+    }
+
+    private static List<LogDomain> failures(List<LogDomain> logs) {
+        List<LogDomain> failures = new ArrayList<>();
+        for (LogDomain log : logs) {
+            if ("failure".equals(log.getResponseStatus())) {
+                failures.add(log);
+            }
+        }
+        return failures;
+    }
+
+    private static long represented(List<LogDomain> logs) {
+        long represented = 0;
+        for (LogDomain log : logs) {
+            if (!"failure".equals(log.getResponseStatus())) {
+                represented += log.getRepresentedCount();
+            }
+        }
+        return represented;
+    }
+
+    static class RecordingSink implements LogSink {
+
+        final BlockingQueue<LogDomain> logs = new LinkedBlockingQueue<>();
+        private final SinkStats stats = new SinkStats();
+
+        @Override
+        public String getName() {
+            return "recording";
+        }
+
+        @Override
+        public void write(List<LogDomain> batch) {
+            logs.addAll(batch);
+        }
+
+        @Override
+        public SinkStats getStats() {
+            return stats;
+        }
+    }
+
+    @TestConfiguration
+    static class RecordingConfig {
+
+        @Bean
+        RecordingSink recordingSink() {
+            return new RecordingSink();
+        }
+    }
+}
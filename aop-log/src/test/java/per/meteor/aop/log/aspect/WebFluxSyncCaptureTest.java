@@ -0,0 +1,162 @@
+package per.meteor.aop.log.aspect;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.client.RestTemplate;
+import per.meteor.aop.log.common.annotations.OperationLog;
+import per.meteor.aop.log.domain.LogDomain;
+import per.meteor.aop.log.sink.LogSink;
+import per.meteor.aop.log.sink.SinkStats;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * WebFlux 中返回普通对象及 Mono 的控制器方法都能采集到请求信息
+ *
+ * @author meteor
+ * @date 2021-10-23 19:20
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.main.web-application-type=reactive",
+        "meteor.log.sink.slf4j.enabled=false"
+})
+class WebFluxSyncCaptureTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private RecordingSink sink;
+
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @BeforeEach
+    void clearSink() {
+        sink.logs.clear();
+    }
+
+    @Test
+    void syncHandlerWithoutBodyCapturesRequest() throws InterruptedException {
+        ResponseEntity<String> response = restTemplate.getForEntity(url("/probe/sync/7?name=meteor"), String.class);
+        assertThat(response.getBody()).isEqualTo("meteor-7");
+
+        LogDomain log = sink.logs.poll(5, TimeUnit.SECONDS);
+        assertThat(log).isNotNull();
+        assertThat(log.getRequestUrl()).isEqualTo("/probe/sync/7");
+        assertThat(log.getRequestMethod()).isEqualTo("GET");
+        assertThat(log.getRequestParameter()).contains("\"name\":\"meteor\"").contains("\"id\":\"7\"");
+        assertThat(log.getRequestHeader()).isNotEmpty();
+        assertThat(log.getRequestIp()).isNotNull();
+    }
+
+    @Test
+    void syncHandlerWithBodyCapturesRequest() throws InterruptedException {
+        Map<String, Object> body = Collections.singletonMap("name", "meteor");
+        restTemplate.postForEntity(url("/probe/body"), body, Map.class);
+
+        LogDomain log = sink.logs.poll(5, TimeUnit.SECONDS);
+        assertThat(log).isNotNull();
+        assertThat(log.getRequestUrl()).isEqualTo("/probe/body");
+        assertThat(log.getRequestMethod()).isEqualTo("POST");
+        assertThat(log.getRequestParameter()).contains("meteor");
+        assertThat(log.getRequestHeader()).contains("application/json");
+    }
+
+    @Test
+    void monoHandlerStillReadsRequestFromContext() throws InterruptedException {
+        ResponseEntity<String> response = restTemplate.getForEntity(url("/probe/mono?name=meteor"), String.class);
+        assertThat(response.getBody()).isEqualTo("meteor");
+
+        LogDomain log = sink.logs.poll(5, TimeUnit.SECONDS);
+        assertThat(log).isNotNull();
+        assertThat(log.getRequestUrl()).isEqualTo("/probe/mono");
+        assertThat(log.getResponseBody()).isEqualTo("meteor");
+    }
+
+    @Test
+    void exchangeIsNotVisibleOutsideRequest() {
+        assertThat(LogExchangeFilter.currentExchange()).isNull();
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+
+    @RestController
+    static class ProbeController {
+
+        @OperationLog
+        @GetMapping("/probe/sync/{id}")
+        public String sync(@PathVariable String id, @RequestParam String name) {
+            return name + "-" + id;
+        }
+
+        @OperationLog
+        @PostMapping("/probe/body")
+        public Map<String, Object> body(@RequestBody Map<String, Object> body) {
+            return body;
+        }
+
+        @OperationLog
+        @GetMapping("/probe/mono")
+        public Mono<String> mono(@RequestParam String name) {
+            return Mono.just(name).delayElement(Duration.ofMillis(10));
+        }
+    }
+
+    static class RecordingSink implements LogSink {
+
+        final BlockingQueue<LogDomain> logs = new LinkedBlockingQueue<>();
+        private final SinkStats stats = new SinkStats();
+
+        @Override
+        public String getName() {
+            return "recording";
+        }
+
+        @Override
+        public void write(List<LogDomain> batch) {
+            logs.addAll(batch);
+        }
+
+        @Override
+        public SinkStats getStats() {
+            return stats;
+        }
+    }
+
+    @TestConfiguration
+    static class ProbeConfig {
+
+        @Bean
+        ProbeController probeController() {
+            return new ProbeController();
+        }
+
+        @Bean
+        RecordingSink recordingSink() {
+            return new RecordingSink();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package per.meteor.aop.log.common.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * CLOCK 淘汰顺序、访问标记的第二次机会、删除后重新写入及命中统计
+ *
+ * @author meteor
+ * @date 2021-10-25 16:40
+ */
+class BoundedCacheTest {
+
+    @Test
+    void evictsInInsertionOrderWithoutAccess() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(3);
+        cache.putIfAbsent("a", 1);
+        cache.putIfAbsent("b", 2);
+        cache.putIfAbsent("c", 3);
+
+        cache.putIfAbsent("d", 4);
+        cache.putIfAbsent("e", 5);
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.getEvictionCount()).isEqualTo(2);
+        assertThat(cache.getIfPresent("a")).isNull();
+        assertThat(cache.getIfPresent("b")).isNull();
+        assertThat(cache.getIfPresent("c")).isEqualTo(3);
+        assertThat(cache.getIfPresent("d")).isEqualTo(4);
+        assertThat(cache.getIfPresent("e")).isEqualTo(5);
+    }
+
+    @Test
+    void referencedEntryGetsSecondChance() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(3);
+        cache.putIfAbsent("a", 1);
+        cache.putIfAbsent("b", 2);
+        cache.putIfAbsent("c", 3);
+        assertThat(cache.getIfPresent("a")).isEqualTo(1);
+
+        // a 被访问过，清除标记后放回队尾，淘汰 b
+        cache.putIfAbsent("d", 4);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+
+        // 新条目先入队，a 排在 d 之后：依次淘汰 c、d，再写入一条才轮到 a
+        cache.putIfAbsent("e", 5);
+        cache.putIfAbsent("f", 6);
+        assertThat(cache.getEvictionCount()).isEqualTo(3);
+        cache.putIfAbsent("g", 7);
+
+        assertThat(cache.getIfPresent("b")).isNull();
+        assertThat(cache.getIfPresent("c")).isNull();
+        assertThat(cache.getIfPresent("d")).isNull();
+        assertThat(cache.getIfPresent("a")).isNull();
+        assertThat(cache.getIfPresent("e")).isEqualTo(5);
+        assertThat(cache.getIfPresent("f")).isEqualTo(6);
+        assertThat(cache.getIfPresent("g")).isEqualTo(7);
+    }
+
+    @Test
+    void removedKeyReinsertedIsNotEvictedThroughStaleNode() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(2);
+        cache.putIfAbsent("a", 1);
+        cache.putIfAbsent("b", 2);
+        assertThat(cache.remove("a")).isEqualTo(1);
+        assertThat(cache.remove("a")).isNull();
+        cache.putIfAbsent("a", 10);
+        assertThat(cache.size()).isEqualTo(2);
+
+        // 重新写入的 a 排在 b 之后，应先淘汰 b
+        cache.putIfAbsent("c", 3);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+        assertThat(cache.getIfPresent("b")).isNull();
+        assertThat(cache.getIfPresent("a")).isEqualTo(10);
+        assertThat(cache.getIfPresent("c")).isEqualTo(3);
+    }
+
+    @Test
+    void repeatedRemoveAndReinsertKeepsSizeBounded() {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(4);
+        for (int i = 0; i < 10_000; i++) {
+            cache.putIfAbsent(i % 8, i);
+            if (i % 3 == 0) {
+                cache.remove(i % 8);
+            }
+        }
+        assertThat(cache.size()).isBetween(0, 4);
+        int live = 0;
+        for (int i = 0; i < 8; i++) {
+            live += cache.getIfPresent(i) == null ? 0 : 1;
+        }
+        assertThat(live).isEqualTo(cache.size());
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(8);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.getHitRate()).isZero();
+        assertThat(cache.get("a", key -> loads.incrementAndGet())).isEqualTo(1);
+        assertThat(cache.get("a", key -> loads.incrementAndGet())).isEqualTo(1);
+        assertThat(cache.get("a", key -> loads.incrementAndGet())).isEqualTo(1);
+        assertThat(cache.getIfPresent("b")).isNull();
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        assertThat(cache.getMissCount()).isEqualTo(2);
+        assertThat(cache.getHitRate()).isEqualTo(0.5);
+        // 已存在时返回已有值，不计入统计
+        assertThat(cache.putIfAbsent("a", 99)).isEqualTo(1);
+        assertThat(cache.getHitCount() + cache.getMissCount()).isEqualTo(4);
+    }
+
+    @Test
+    void rejectsNonPositiveSize() {
+        assertThatThrownBy(() -> new BoundedCache<>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
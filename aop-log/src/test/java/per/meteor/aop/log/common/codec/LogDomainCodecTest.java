@@ -0,0 +1,273 @@
+package per.meteor.aop.log.common.codec;
+
+import org.junit.jupiter.api.Test;
+import per.meteor.aop.log.common.enums.ModuleType;
+import per.meteor.aop.log.common.enums.OperationType;
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * LogDomain 二进制编解码往返、边界值及旧版本兼容
+ *
+ * @author meteor
+ * @date 2021-10-23 16:20
+ */
+class LogDomainCodecTest {
+
+    private static final LocalDateTime REQUEST_TIME = LocalDateTime.of(2021, 10, 8, 10, 30, 15, 123_000_000);
+    private static final LocalDateTime RESPONSE_TIME = LocalDateTime.of(2021, 10, 8, 10, 30, 16, 456_000_000);
+
+    @Test
+    void roundTripsEveryField() {
+        LogDomain log = fullLog();
+        byte[] bytes = LogDomainCodec.encode(log);
+
+        // 新增字段时 fullLog 需要同步补齐，位图应覆盖全部 29 个字段
+        BinaryReader header = new BinaryReader(bytes);
+        assertThat(header.readByte()).isEqualTo(LogDomainCodec.VERSION);
+        assertThat(header.readVarLong()).isEqualTo((1L << 29) - 1);
+
+        LogDomain decoded = LogDomainCodec.decode(bytes);
+        assertThat(decoded).usingRecursiveComparison().isEqualTo(log);
+    }
+
+    @Test
+    void roundTripsEmptyLog() {
+        byte[] bytes = LogDomainCodec.encode(new LogDomain());
+
+        // 版本 + 值为 0 的位图
+        assertThat(bytes).containsExactly(LogDomainCodec.VERSION, 0);
+        assertThat(LogDomainCodec.decode(bytes)).usingRecursiveComparison().isEqualTo(new LogDomain());
+    }
+
+    @Test
+    void absentFieldsStayNullAndEmptyStringsSurvive() {
+        LogDomain log = new LogDomain();
+        log.setLogId("");
+        log.setRequestDuration(0L);
+        log.setOperationType(OperationType.OTHER);
+
+        LogDomain decoded = LogDomainCodec.decode(LogDomainCodec.encode(log));
+
+        assertThat(decoded.getLogId()).isEmpty();
+        assertThat(decoded.getRequestDuration()).isZero();
+        assertThat(decoded.getOperationType()).isEqualTo(OperationType.OTHER);
+        assertThat(decoded.getResponseCode()).isNull();
+        assertThat(decoded.getRequestTime()).isNull();
+        assertThat(decoded.getOperationModule()).isNull();
+        assertThat(decoded).usingRecursiveComparison().isEqualTo(log);
+    }
+
+    @Test
+    void roundTripsExtremeNumbers() {
+        int[] ints = {0, 1, -1, 63, -64, 64, -65, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        long[] longs = {0, 1, -1, Integer.MAX_VALUE + 1L, Integer.MIN_VALUE - 1L, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (int value : ints) {
+            LogDomain log = new LogDomain();
+            log.setResponseCode(value);
+            log.setExceptionCount(value);
+            LogDomain decoded = LogDomainCodec.decode(LogDomainCodec.encode(log));
+            assertThat(decoded.getResponseCode()).isEqualTo(value);
+            assertThat(decoded.getExceptionCount()).isEqualTo(value);
+        }
+        for (long value : longs) {
+            LogDomain log = new LogDomain();
+            log.setRequestDuration(value);
+            assertThat(LogDomainCodec.decode(LogDomainCodec.encode(log)).getRequestDuration()).isEqualTo(value);
+        }
+    }
+
+    @Test
+    void roundTripsExtremeTimes() {
+        LocalDateTime[] times = {
+                LocalDateTime.of(1970, 1, 1, 0, 0),
+                LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_000_000),
+                LocalDateTime.of(1, 1, 1, 0, 0),
+                LocalDateTime.of(9999, 12, 31, 23, 59, 59, 999_000_000)
+        };
+        for (LocalDateTime time : times) {
+            LogDomain log = new LogDomain();
+            log.setRequestTime(time);
+            log.setResponseTime(time);
+            LogDomain decoded = LogDomainCodec.decode(LogDomainCodec.encode(log));
+            assertThat(decoded.getRequestTime()).isEqualTo(time);
+            assertThat(decoded.getResponseTime()).isEqualTo(time);
+        }
+    }
+
+    @Test
+    void timesAreEncodedAsWallTimeIndependentOfSystemZone() {
+        TimeZone original = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Shanghai"));
+            LogDomain log = new LogDomain();
+            log.setRequestTime(REQUEST_TIME);
+            byte[] bytes = LogDomainCodec.encode(log);
+
+            BinaryReader reader = new BinaryReader(bytes);
+            reader.readByte();
+            reader.readVarLong();
+            // 2021-10-08T10:30:15.123 按 UTC 换算，不减去东八区的 8 小时
+            assertThat(reader.readZigZagLong()).isEqualTo(1633689015123L);
+
+            // 其他时区的机器读取得到相同的本地时间
+            TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+            assertThat(LogDomainCodec.decode(bytes).getRequestTime()).isEqualTo(REQUEST_TIME);
+        } finally {
+            TimeZone.setDefault(original);
+        }
+    }
+
+    @Test
+    void loneSurrogatesEncodeAsQuestionMark() {
+        // 不成对代理字符各占 1 字节，UTF-8 长度与 char 数相同，不能走 ASCII 快速路径
+        String[] values = {"a\uD800b", "\uDC00", "ab\uD83D", "\uD800😀\uDFFF", "张\uD800"};
+        String[] expected = {"a?b", "?", "ab?", "?😀?", "张?"};
+        for (int i = 0; i < values.length; i++) {
+            LogDomain log = new LogDomain();
+            log.setLogId(values[i]);
+            assertThat(LogDomainCodec.decode(LogDomainCodec.encode(log)).getLogId()).isEqualTo(expected[i]);
+        }
+    }
+
+    @Test
+    void varIntsUseExpectedWidths() {
+        BinaryWriter writer = new BinaryWriter(1);
+        writer.writeVarInt(127);
+        writer.writeVarInt(128);
+        writer.writeVarInt(-1);
+        writer.writeVarLong(-1L);
+        writer.writeZigZagInt(-1);
+        writer.writeZigZagLong(Long.MIN_VALUE);
+        // 1 + 2 + 5 + 10 + 1 + 10
+        assertThat(writer.size()).isEqualTo(29);
+
+        BinaryReader reader = new BinaryReader(writer.toByteArray());
+        assertThat(reader.readVarInt()).isEqualTo(127);
+        assertThat(reader.readVarInt()).isEqualTo(128);
+        assertThat(reader.readVarInt()).isEqualTo(-1);
+        assertThat(reader.readVarLong()).isEqualTo(-1L);
+        assertThat(reader.readZigZagInt()).isEqualTo(-1);
+        assertThat(reader.readZigZagLong()).isEqualTo(Long.MIN_VALUE);
+        assertThat(reader.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void decodesVersionOnePayload() {
+        // 版本 1 没有 exceptionFingerprint、exceptionCount、requestDuration
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeByte(1);
+        writer.writeVarLong(1L | 1L << 3 | 1L << 7 | 1L << 24);
+        writer.writeString("id-1");
+        writer.writeString("/test01");
+        writer.writeZigZagInt(200);
+        writer.writeVarInt(OperationType.SELECT.ordinal());
+
+        LogDomain decoded = LogDomainCodec.decode(writer.toByteArray());
+
+        assertThat(decoded.getLogId()).isEqualTo("id-1");
+        assertThat(decoded.getRequestUrl()).isEqualTo("/test01");
+        assertThat(decoded.getResponseCode()).isEqualTo(200);
+        assertThat(decoded.getOperationType()).isEqualTo(OperationType.SELECT);
+        assertThat(decoded.getExceptionFingerprint()).isNull();
+        assertThat(decoded.getExceptionCount()).isNull();
+        assertThat(decoded.getRequestDuration()).isNull();
+    }
+
+    @Test
+    void decodesVersionTwoPayload() {
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeByte(2);
+        writer.writeVarLong(1L | 1L << 26 | 1L << 27);
+        writer.writeString("id-2");
+        writer.writeString("a1b2c3d4e5f60718");
+        writer.writeZigZagInt(3);
+
+        LogDomain decoded = LogDomainCodec.decode(writer.toByteArray());
+
+        assertThat(decoded.getLogId()).isEqualTo("id-2");
+        assertThat(decoded.getExceptionFingerprint()).isEqualTo("a1b2c3d4e5f60718");
+        assertThat(decoded.getExceptionCount()).isEqualTo(3);
+        assertThat(decoded.getRequestDuration()).isNull();
+    }
+
+    @Test
+    void unknownEnumOrdinalDecodesAsNull() {
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeByte(LogDomainCodec.VERSION);
+        writer.writeVarLong(1L << 23 | 1L << 24);
+        writer.writeVarInt(ModuleType.values().length);
+        writer.writeVarInt(OperationType.values().length + 10);
+
+        LogDomain decoded = LogDomainCodec.decode(writer.toByteArray());
+
+        assertThat(decoded.getOperationModule()).isNull();
+        assertThat(decoded.getOperationType()).isNull();
+    }
+
+    @Test
+    void rejectsUnsupportedVersionAndTruncatedPayload() {
+        assertThatThrownBy(() -> LogDomainCodec.decode(new byte[]{0, 0})).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> LogDomainCodec.decode(new byte[]{LogDomainCodec.VERSION + 1, 0}))
+                .isInstanceOf(IllegalStateException.class);
+
+        byte[] bytes = LogDomainCodec.encode(fullLog());
+        assertThatThrownBy(() -> LogDomainCodec.decode(Arrays.copyOf(bytes, bytes.length - 1)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void decodesFromOffsetWithReusedWriter() {
+        BinaryWriter writer = new BinaryWriter();
+        LogDomain first = fullLog();
+        LogDomain second = new LogDomain();
+        second.setLogId("second");
+        LogDomainCodec.encode(first, writer);
+        int offset = writer.size();
+        LogDomainCodec.encode(second, writer);
+
+        LogDomain decoded = LogDomainCodec.decode(writer.buffer(), offset, writer.size() - offset);
+
+        assertThat(decoded).usingRecursiveComparison().isEqualTo(second);
+    }
+
+    private static LogDomain fullLog() {
+        LogDomain log = new LogDomain();
+        log.setLogId("1452378123456789012");
+        log.setLogSerialNumber("serial-001");
+        log.setRequestParameter("{\"name\":\"张三\",\"emoji\":\"😀\"}");
+        log.setRequestUrl("/test01");
+        log.setRequestMethod("POST");
+        log.setRequestTime(REQUEST_TIME);
+        log.setResponseStatus("failure");
+        log.setResponseCode(500);
+        log.setResponseBody("{\"code\":500}");
+        log.setResponseTime(RESPONSE_TIME);
+        log.setExceptionName("java.lang.IllegalStateException");
+        log.setExceptionMessage("boom\n\tat per.meteor.Test.run(Test.java:1)");
+        log.setRequestIp("127.0.0.1");
+        log.setRequestHeader("{\"host\":\"localhost\"}");
+        log.setRequestMethodPath("per.meteor.aop.log.controller.TestController.test01");
+        log.setRequestTimeConsuming("1333ms");
+        log.setUserAgent("Mozilla/5.0");
+        log.setBrowserType("WEB_BROWSER");
+        log.setBrowserName("Chrome");
+        log.setBrowserVersion("94.0");
+        log.setOperatingSystem("Windows 10");
+        log.setOperationUser("meteor");
+        log.setSystemVersion("1.0.0");
+        log.setOperationModule(ModuleType.OTHER);
+        log.setOperationType(OperationType.DELETE);
+        log.setOperationDesc("删除");
+        log.setExceptionFingerprint("0123456789abcdef");
+        log.setExceptionCount(42);
+        log.setRequestDuration(1333L);
+        return log;
+    }
+}
@@ -0,0 +1,156 @@
+package per.meteor.aop.log.common.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * ID 生成器的唯一性及单调性
+ *
+ * @author meteor
+ * @date 2021-10-23 14:00
+ */
+class SnowflakeIdGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 100_000;
+    private static final long START = SnowflakeIdGenerator.EPOCH + 1_000_000L;
+
+    @Test
+    void concurrentIdsAreUniqueAndMonotonicPerThread() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        long[] ids = generateConcurrently(generator);
+
+        assertUnique(ids);
+        for (long id : ids) {
+            assertThat(SnowflakeIdGenerator.nodeOf(id)).isEqualTo(7);
+        }
+    }
+
+    @Test
+    void concurrentIdsStayUniqueWhileClockStepsBack() throws Exception {
+        // 每 1000 次读取时钟回拨 5ms，模拟 NTP 校时
+        AtomicLong reads = new AtomicLong();
+        LongSupplier clock = () -> {
+            long read = reads.incrementAndGet();
+            return START + read / 100 - (read / 1000) * 5;
+        };
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, ZoneId.systemDefault(), clock);
+        long[] ids = generateConcurrently(generator);
+
+        assertUnique(ids);
+    }
+
+    @Test
+    void clockStepBackKeepsIdsIncreasing() {
+        AtomicLong now = new AtomicLong(START);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3, ZoneId.systemDefault(), now::get);
+
+        long beforeStepBack = generator.nextId();
+        now.set(START - 10_000);
+        long afterStepBack = generator.nextId();
+        long next = generator.nextId();
+
+        assertThat(afterStepBack).isGreaterThan(beforeStepBack);
+        assertThat(next).isGreaterThan(afterStepBack);
+        // 回拨期间继续沿用上一个时间戳
+        assertThat(SnowflakeIdGenerator.timestampOf(afterStepBack)).isEqualTo(START);
+
+        // 系统时钟追上后恢复使用真实时间
+        now.set(START + 5);
+        long recovered = generator.nextId();
+        assertThat(recovered).isGreaterThan(next);
+        assertThat(SnowflakeIdGenerator.timestampOf(recovered)).isEqualTo(START + 5);
+    }
+
+    @Test
+    void sequenceOverflowBorrowsNextMillisecond() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0, ZoneId.systemDefault(), () -> START);
+
+        long previous = generator.nextId();
+        for (int i = 1; i < 4096 * 3; i++) {
+            long id = generator.nextId();
+            assertThat(id).isGreaterThan(previous);
+            previous = id;
+        }
+        // 每毫秒 4096 个序号，用尽后时间戳向前借用
+        assertThat(SnowflakeIdGenerator.timestampOf(previous)).isEqualTo(START + 2);
+    }
+
+    @Test
+    void stringFormPreservesOrder() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID);
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        assertThat(SnowflakeIdGenerator.toString(first)).hasSize(19);
+        assertThat(SnowflakeIdGenerator.toString(first)).isLessThan(SnowflakeIdGenerator.toString(second));
+        assertThat(Long.parseLong(SnowflakeIdGenerator.toString(first))).isEqualTo(first);
+    }
+
+    @Test
+    void rejectsNodeIdOutOfRange() {
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * 多个线程同时生成 ID，校验每个线程内严格递增
+     *
+     * @return long[] 所有线程生成的 ID
+     */
+    private static long[] generateConcurrently(SnowflakeIdGenerator generator) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>(THREADS);
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    long[] ids = new long[IDS_PER_THREAD];
+                    start.await();
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+            long[] all = new long[THREADS * IDS_PER_THREAD];
+            for (int t = 0; t < THREADS; t++) {
+                long[] ids = futures.get(t).get();
+                for (int i = 1; i < ids.length; i++) {
+                    if (ids[i] <= ids[i - 1]) {
+                        fail("线程 %d 第 %d 个 ID 未递增: %d <= %d", t, i, ids[i], ids[i - 1]);
+                    }
+                }
+                System.arraycopy(ids, 0, all, t * IDS_PER_THREAD, IDS_PER_THREAD);
+            }
+            return all;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void assertUnique(long[] ids) {
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] == sorted[i - 1]) {
+                fail("重复的 ID: %d", sorted[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package per.meteor.aop.log.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 限制输出大小的 JSON 序列化：截断标记、UTF-8 边界及统计上限
+ *
+ * @author meteor
+ * @date 2021-10-24 19:10
+ */
+class CappedJsonSerializerTest {
+
+    private static final String MARKER = "...[truncated, original size ";
+
+    @Test
+    void valuesWithinLimitAreUnchanged() {
+        CappedJsonSerializer serializer = new CappedJsonSerializer(64, 1024);
+
+        assertThat(serializer.writeValue(null)).isEmpty();
+        assertThat(serializer.writeValue(123456789L)).isEqualTo("123456789");
+        assertThat(serializer.writeValue("张三")).isEqualTo("张三");
+        assertThat(serializer.writeValue(Collections.singletonMap("name", "张三"))).isEqualTo("{\"name\":\"张三\"}");
+        // 恰好等于上限
+        assertThat(new CappedJsonSerializer(12, 1024).writeValue("aaaaaaaaa张")).isEqualTo("aaaaaaaaa张");
+    }
+
+    @Test
+    void multibyteCharacterStraddlingLimitIsDropped() {
+        // 9 个 ASCII + 3 字节的 "张"，共 12 字节
+        String value = "aaaaaaaaa张";
+
+        assertThat(new CappedJsonSerializer(10, 1024).writeValue(value)).isEqualTo("aaaaaaaaa" + MARKER + "12 bytes]");
+        assertThat(new CappedJsonSerializer(11, 1024).writeValue(value)).isEqualTo("aaaaaaaaa" + MARKER + "12 bytes]");
+
+        // 4 字节的 emoji 在每个位置被截断时都回退到字符起始位置
+        String emoji = "ab😀cd";
+        for (int maxBytes = 3; maxBytes <= 5; maxBytes++) {
+            assertThat(new CappedJsonSerializer(maxBytes, 1024).writeValue(emoji)).isEqualTo("ab" + MARKER + "8 bytes]");
+        }
+        assertThat(new CappedJsonSerializer(6, 1024).writeValue(emoji)).isEqualTo("ab😀" + MARKER + "8 bytes]");
+    }
+
+    @Test
+    void characterEndingExactlyAtLimitIsKept() {
+        assertThat(new CappedJsonSerializer(5, 1024).writeValue("aa张b")).isEqualTo("aa张" + MARKER + "6 bytes]");
+        // 全部为多字节字符
+        assertThat(new CappedJsonSerializer(7, 1024).writeValue("张三李四")).isEqualTo("张三" + MARKER + "12 bytes]");
+    }
+
+    @Test
+    void truncatedObjectKeepsValidUtf8Prefix() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("name", "张三李四王五赵六");
+        value.put("remark", "备注");
+        String json = JsonUtil.toJsonString(value);
+        int size = json.getBytes(StandardCharsets.UTF_8).length;
+
+        for (int maxBytes = 8; maxBytes < size; maxBytes++) {
+            String result = new CappedJsonSerializer(maxBytes, 1024).writeValue(value);
+            String prefix = result.substring(0, result.indexOf(MARKER));
+
+            assertThat(json).startsWith(prefix);
+            assertThat(prefix.getBytes(StandardCharsets.UTF_8).length).isBetween(maxBytes - 3, maxBytes);
+            assertThat(prefix).doesNotContain("�");
+            assertThat(result).endsWith(MARKER + size + " bytes]");
+        }
+    }
+
+    @Test
+    void sizeCeilingAbortsSerialization() throws IOException {
+        CappedJsonSerializer serializer = new CappedJsonSerializer(100, 64 * 1024);
+        AtomicInteger written = new AtomicInteger();
+
+        String result = serializer.write(generator -> {
+            generator.writeStartArray();
+            for (int i = 0; i < 1_000_000; i++) {
+                generator.writeString("item-" + i);
+                written.incrementAndGet();
+            }
+            generator.writeEndArray();
+        });
+
+        // 达到上限后中止，不会遍历全部元素，原始大小以 ">=" 标记为下限
+        assertThat(written.get()).isLessThan(100_000);
+        assertThat(result).startsWith("[\"item-0\",\"item-1\"").contains(MARKER + ">= ");
+        long reported = Long.parseLong(result.substring(result.indexOf(">= ") + 3, result.lastIndexOf(" bytes]")));
+        assertThat(reported).isGreaterThanOrEqualTo(64 * 1024);
+    }
+
+    @Test
+    void bufferIsReusedAfterTruncation() {
+        CappedJsonSerializer serializer = new CappedJsonSerializer(16, 1024);
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            large.append("数据");
+        }
+        assertThat(serializer.writeValue(Collections.singletonList(large.toString()))).contains(MARKER);
+
+        assertThat(serializer.writeValue(Collections.singletonList("ok"))).isEqualTo("[\"ok\"]");
+
+        serializer.limit(0, 0);
+        assertThat(serializer.writeValue(large.toString())).isEqualTo(large.toString());
+    }
+}
@@ -0,0 +1,170 @@
+package per.meteor.aop.log.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JsonUtil 对象转换：空值、失败时的默认值、数值类型及复制语义
+ * <p>
+ * 转换经过 TokenBuffer，数值保留源对象中的类型，与经过 JSON 字符串时按字面量推断类型不同。
+ *
+ * @author meteor
+ * @date 2021-10-25 17:40
+ */
+class JsonUtilConvertTest {
+
+    @Test
+    void nullInputReturnsNullOrDefault() {
+        assertThat(JsonUtil.toMap((Object) null)).isNull();
+        assertThat(JsonUtil.toMap((Object) null, LinkedHashMap::new)).isEmpty();
+        assertThat(JsonUtil.toList((Object) null)).isNull();
+        assertThat(JsonUtil.toList((Object) null, ArrayList::new)).isEmpty();
+        assertThat(JsonUtil.toJavaObject((Object) null, Item.class)).isNull();
+        assertThat(JsonUtil.toJavaObjectList((Object) null, Item.class)).isNull();
+        assertThat(JsonUtil.jsonCopy(null, Item.class)).isNull();
+    }
+
+    @Test
+    void failureFallsBackToSupplier() {
+        Map<String, Object> fallback = Collections.singletonMap("fallback", true);
+        List<Object> fallbackList = Collections.singletonList("fallback");
+
+        assertThat(JsonUtil.toMap(new Broken(), () -> fallback)).isSameAs(fallback);
+        assertThat(JsonUtil.toMap(new Broken())).isNull();
+        assertThat(JsonUtil.toList(new Broken[]{new Broken()}, () -> fallbackList)).isSameAs(fallbackList);
+        assertThat(JsonUtil.toJavaObject(new Broken(), Item.class)).isNull();
+        assertThat(JsonUtil.toJavaObjectList(new Broken[]{new Broken()}, Item.class)).isNull();
+        // 结构不匹配同样按失败处理
+        assertThat(JsonUtil.toMap(Arrays.asList(1, 2), () -> fallback)).isSameAs(fallback);
+        assertThat(JsonUtil.toList(new Item("a", 1), () -> fallbackList)).isSameAs(fallbackList);
+    }
+
+    @Test
+    void toMapKeepsSourceNumberTypes() {
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("int", 1);
+        source.put("long", 2L);
+        source.put("maxLong", Long.MAX_VALUE);
+        source.put("bigInteger", new BigInteger("123456789012345678901234567890"));
+        source.put("double", 1.5);
+        source.put("bigDecimal", new BigDecimal("12.30"));
+        source.put("nested", Collections.singletonMap("amount", new BigDecimal("0.10")));
+
+        Map<String, Object> map = JsonUtil.toMap(source);
+
+        assertThat(map).isNotSameAs(source).isInstanceOf(LinkedHashMap.class);
+        assertThat(map.get("int")).isEqualTo(1);
+        assertThat(map.get("long")).isEqualTo(2L);
+        assertThat(map.get("maxLong")).isEqualTo(Long.MAX_VALUE);
+        assertThat(map.get("bigInteger")).isEqualTo(new BigInteger("123456789012345678901234567890"));
+        assertThat(map.get("double")).isEqualTo(1.5);
+        // 经过 JSON 字符串时为 Double 12.3，这里保留 BigDecimal 及其精度
+        assertThat(map.get("bigDecimal")).isEqualTo(new BigDecimal("12.30"));
+        assertThat(((Map<?, ?>) map.get("nested")).get("amount")).isEqualTo(new BigDecimal("0.10"));
+    }
+
+    @Test
+    void toMapFromStringInfersNumberTypesFromLiterals() {
+        Map<String, Object> map = JsonUtil.toMap("{\"long\":2,\"bigDecimal\":12.30}");
+
+        assertThat(map.get("long")).isEqualTo(2);
+        assertThat(map.get("bigDecimal")).isEqualTo(12.3);
+    }
+
+    @Test
+    void toListKeepsSourceNumberTypes() {
+        Object[] source = {1, 2L, 1.5, new BigDecimal("9.90"), "text", null};
+
+        List<Object> list = JsonUtil.toList(source);
+
+        assertThat(list).containsExactly(1, 2L, 1.5, new BigDecimal("9.90"), "text", null);
+        assertThat(list.get(1)).isInstanceOf(Long.class);
+        assertThat(list.get(3)).isInstanceOf(BigDecimal.class);
+    }
+
+    @Test
+    void toListWrapsListInput() {
+        List<Integer> source = Arrays.asList(1, 2);
+
+        assertThat(JsonUtil.toList(source)).containsExactly(source);
+    }
+
+    @Test
+    void typedConversionCopies() {
+        Item item = new Item("a", 3);
+
+        Item copy = JsonUtil.jsonCopy(item, Item.class);
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("name", "b");
+        source.put("count", 4L);
+        List<Item> items = JsonUtil.toJavaObjectList(Arrays.asList(item, source), Item.class);
+
+        assertThat(copy).isNotSameAs(item).isEqualTo(item);
+        assertThat(items).containsExactly(item, new Item("b", 4));
+        assertThat(JsonUtil.toJavaObject(source, Item.class)).isEqualTo(new Item("b", 4));
+    }
+
+    public static class Item {
+
+        private String name;
+        private int count;
+
+        public Item() {
+        }
+
+        Item(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Item)) {
+                return false;
+            }
+            Item item = (Item) o;
+            return count == item.count && name.equals(item.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + count;
+        }
+    }
+
+    /**
+     * 序列化时抛出异常
+     */
+    public static class Broken {
+
+        public String getValue() {
+            throw new IllegalStateException("broken getter");
+        }
+    }
+}
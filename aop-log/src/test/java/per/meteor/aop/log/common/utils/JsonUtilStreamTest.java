@@ -0,0 +1,153 @@
+package per.meteor.aop.log.common.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * JsonUtil 流式读取 JSON 数组：空数组、分块边界、格式错误及输入流关闭
+ *
+ * @author meteor
+ * @date 2021-10-24 14:10
+ */
+class JsonUtilStreamTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void emptyArrayYieldsNothing() throws IOException {
+        try (Stream<Integer> stream = JsonUtil.stream(input("[]"), Integer.class)) {
+            assertThat(stream).isEmpty();
+        }
+        try (Stream<List<Integer>> chunks = JsonUtil.streamChunks(input("[ ]"), Integer.class, 3)) {
+            assertThat(chunks).isEmpty();
+        }
+        try (Stream<Integer> stream = JsonUtil.stream(ByteBuffer.wrap(bytes("[]")), Integer.class)) {
+            assertThat(stream).isEmpty();
+        }
+    }
+
+    @Test
+    void chunksSplitAtChunkSize() throws IOException {
+        assertThat(chunkSizes(10, 3)).containsExactly(3, 3, 3, 1);
+        assertThat(chunkSizes(9, 3)).containsExactly(3, 3, 3);
+        assertThat(chunkSizes(2, 3)).containsExactly(2);
+        assertThat(chunkSizes(1, 1)).containsExactly(1);
+
+        try (Stream<List<Integer>> chunks = JsonUtil.streamChunks(input(array(7)), Integer.class, 3)) {
+            assertThat(chunks.flatMap(List::stream)).containsExactly(0, 1, 2, 3, 4, 5, 6);
+        }
+    }
+
+    @Test
+    void readsFromPathAndDirectBuffer() throws IOException {
+        Path file = directory.resolve("values.json");
+        Files.write(file, bytes(array(5)));
+        try (Stream<Integer> stream = JsonUtil.stream(file, Integer.class)) {
+            assertThat(stream).containsExactly(0, 1, 2, 3, 4);
+        }
+
+        byte[] content = bytes(array(4));
+        ByteBuffer direct = ByteBuffer.allocateDirect(content.length);
+        direct.put(content).flip();
+        try (Stream<List<Integer>> chunks = JsonUtil.streamChunks(direct, Integer.class, 2)) {
+            assertThat(chunks).containsExactly(Arrays.asList(0, 1), Arrays.asList(2, 3));
+        }
+        // 不修改 position
+        assertThat(direct.position()).isZero();
+    }
+
+    @Test
+    void malformedHeaderClosesInput() {
+        TrackingInputStream in = new TrackingInputStream("]1, 2]");
+        assertThatThrownBy(() -> JsonUtil.stream(in, Integer.class)).isInstanceOf(IOException.class);
+        assertThat(in.closed).isTrue();
+
+        TrackingInputStream chunked = new TrackingInputStream("}");
+        assertThatThrownBy(() -> JsonUtil.streamChunks(chunked, Integer.class, 2)).isInstanceOf(IOException.class);
+        assertThat(chunked.closed).isTrue();
+    }
+
+    @Test
+    void malformedElementFailsWhileStreaming() throws IOException {
+        TrackingInputStream in = new TrackingInputStream("[1, 2, \"x\", 4]");
+        try (Stream<Integer> stream = JsonUtil.stream(in, Integer.class)) {
+            assertThatThrownBy(() -> stream.collect(Collectors.toList())).isInstanceOf(RuntimeException.class);
+        }
+        assertThat(in.closed).isTrue();
+    }
+
+    @Test
+    void closingStreamClosesInput() throws IOException {
+        // 超过解析器的读缓冲，读到末尾时 Jackson 会自行关闭输入流
+        TrackingInputStream in = new TrackingInputStream(array(100_000));
+        Stream<Integer> stream = JsonUtil.stream(in, Integer.class);
+        // 只读取一部分
+        assertThat(stream.limit(3).collect(Collectors.toList())).containsExactly(0, 1, 2);
+        assertThat(in.closed).isFalse();
+        stream.close();
+        assertThat(in.closed).isTrue();
+
+        TrackingInputStream chunked = new TrackingInputStream(array(100_000));
+        try (Stream<List<Integer>> chunks = JsonUtil.streamChunks(chunked, Integer.class, 4)) {
+            assertThat(chunks.findFirst()).contains(Arrays.asList(0, 1, 2, 3));
+        }
+        assertThat(chunked.closed).isTrue();
+    }
+
+    @Test
+    void rejectsNonPositiveChunkSizeAndClosesInput() {
+        TrackingInputStream in = new TrackingInputStream(array(3));
+        assertThatThrownBy(() -> JsonUtil.streamChunks(in, Integer.class, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(in.closed).isTrue();
+    }
+
+    private static List<Integer> chunkSizes(int count, int chunkSize) throws IOException {
+        try (Stream<List<Integer>> chunks = JsonUtil.streamChunks(input(array(count)), Integer.class, chunkSize)) {
+            return chunks.map(List::size).collect(Collectors.toList());
+        }
+    }
+
+    private static String array(int count) {
+        return IntStream.range(0, count).mapToObj(String::valueOf).collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private static InputStream input(String json) {
+        return new ByteArrayInputStream(bytes(json));
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class TrackingInputStream extends ByteArrayInputStream {
+
+        private boolean closed;
+
+        TrackingInputStream(String json) {
+            super(bytes(json));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
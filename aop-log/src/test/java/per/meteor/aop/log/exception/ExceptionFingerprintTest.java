@@ -0,0 +1,82 @@
+package per.meteor.aop.log.exception;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 异常指纹不受消息、行号及动态生成类名影响
+ *
+ * @author meteor
+ * @date 2021-10-25 16:00
+ */
+class ExceptionFingerprintTest {
+
+    @Test
+    void sameThrowSiteWithDifferentMessageAndLineGivesSameFingerprint() {
+        Throwable first = exception(new IllegalStateException("下游服务不可用: a"),
+                frame("com.example.OrderService", "save", 42),
+                frame("com.example.OrderController", "create", 17));
+        Throwable second = exception(new IllegalStateException("下游服务不可用: b"),
+                frame("com.example.OrderService", "save", 45),
+                frame("com.example.OrderController", "create", 20));
+
+        assertThat(ExceptionFingerprint.of(first, 8))
+                .hasSize(16)
+                .isEqualTo(ExceptionFingerprint.of(second, 8));
+    }
+
+    @Test
+    void differentTypeOrFrameGivesDifferentFingerprint() {
+        Throwable base = exception(new IllegalStateException(),
+                frame("com.example.OrderService", "save", 42));
+        Throwable otherType = exception(new IllegalArgumentException(),
+                frame("com.example.OrderService", "save", 42));
+        Throwable otherMethod = exception(new IllegalStateException(),
+                frame("com.example.OrderService", "update", 42));
+
+        String fingerprint = ExceptionFingerprint.of(base, 8);
+        assertThat(ExceptionFingerprint.of(otherType, 8)).isNotEqualTo(fingerprint);
+        assertThat(ExceptionFingerprint.of(otherMethod, 8)).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    void generatedClassNamesAreNormalized() {
+        Throwable first = exception(new IllegalStateException(),
+                frame("com.example.OrderService$$EnhancerBySpringCGLIB$$1a2b3c4d", "save", 1),
+                frame("com.example.OrderService$$Lambda$12/0x0000000800c1b440", "apply", -1),
+                frame("sun.reflect.GeneratedMethodAccessor12", "invoke", -1),
+                frame("jdk.internal.reflect.GeneratedConstructorAccessor3", "newInstance", -1));
+        Throwable second = exception(new IllegalStateException(),
+                frame("com.example.OrderService$$EnhancerBySpringCGLIB$$9f8e7d6c", "save", 1),
+                frame("com.example.OrderService$$Lambda$345/0x0000000800d2c000", "apply", -1),
+                frame("sun.reflect.GeneratedMethodAccessor87", "invoke", -1),
+                frame("jdk.internal.reflect.GeneratedConstructorAccessor41", "newInstance", -1));
+
+        assertThat(ExceptionFingerprint.of(first, 8)).isEqualTo(ExceptionFingerprint.of(second, 8));
+    }
+
+    @Test
+    void onlyTopFramesTakePart() {
+        Throwable first = exception(new IllegalStateException(),
+                frame("com.example.OrderService", "save", 1),
+                frame("com.example.OrderController", "create", 1),
+                frame("org.apache.catalina.core.ApplicationFilterChain", "doFilter", 1));
+        Throwable second = exception(new IllegalStateException(),
+                frame("com.example.OrderService", "save", 1),
+                frame("com.example.OrderController", "create", 1),
+                frame("io.undertow.servlet.handlers.FilterHandler", "handleRequest", 1));
+
+        assertThat(ExceptionFingerprint.of(first, 2)).isEqualTo(ExceptionFingerprint.of(second, 2));
+        assertThat(ExceptionFingerprint.of(first, 3)).isNotEqualTo(ExceptionFingerprint.of(second, 3));
+    }
+
+    static Throwable exception(Throwable e, StackTraceElement... frames) {
+        e.setStackTrace(frames);
+        return e;
+    }
+
+    static StackTraceElement frame(String className, String methodName, int line) {
+        return new StackTraceElement(className, methodName, null, line);
+    }
+}
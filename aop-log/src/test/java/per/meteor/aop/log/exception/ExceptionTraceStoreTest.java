@@ -0,0 +1,136 @@
+package per.meteor.aop.log.exception;
+
+import org.junit.jupiter.api.Test;
+import per.meteor.aop.log.config.ExceptionTraceProperties;
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static per.meteor.aop.log.exception.ExceptionFingerprintTest.exception;
+import static per.meteor.aop.log.exception.ExceptionFingerprintTest.frame;
+
+/**
+ * 堆栈去重存储：首次出现记录完整堆栈，窗口计数重置，被淘汰后重新记录
+ *
+ * @author meteor
+ * @date 2021-10-25 16:20
+ */
+class ExceptionTraceStoreTest {
+
+    private final AtomicInteger rendered = new AtomicInteger();
+    private final Function<Throwable, String> renderer = e -> {
+        rendered.incrementAndGet();
+        return "TRACE " + e.getClass().getName() + ":" + e.getMessage();
+    };
+
+    @Test
+    void onlyFirstOccurrenceCarriesFullTrace() {
+        ExceptionTraceStore store = new ExceptionTraceStore(new ExceptionTraceProperties());
+
+        LogDomain first = record(store, siteA("第一次"));
+        LogDomain second = record(store, siteA("第二次"));
+
+        assertThat(first.getExceptionMessage()).isEqualTo("TRACE java.lang.IllegalStateException:第一次");
+        assertThat(first.getExceptionCount()).isEqualTo(1);
+        assertThat(second.getExceptionMessage()).isEqualTo("java.lang.IllegalStateException:第二次");
+        assertThat(second.getExceptionCount()).isEqualTo(2);
+        assertThat(second.getExceptionFingerprint()).isEqualTo(first.getExceptionFingerprint());
+        assertThat(rendered).hasValue(1);
+
+        ExceptionTrace trace = store.get(first.getExceptionFingerprint());
+        assertThat(trace.getStackTrace()).isEqualTo(first.getExceptionMessage());
+        assertThat(trace.getTotalCount()).isEqualTo(2);
+    }
+
+    @Test
+    void repeatedMessageIsCapped() {
+        ExceptionTraceProperties properties = new ExceptionTraceProperties();
+        properties.setMessageLength(16);
+        ExceptionTraceStore store = new ExceptionTraceStore(properties);
+        char[] message = new char[10_000];
+        Arrays.fill(message, 'x');
+
+        record(store, siteA("short"));
+        LogDomain log = record(store, siteA(new String(message)));
+
+        assertThat(log.getExceptionMessage())
+                .isEqualTo("java.lang.IllegalStateException:" + "xxxxxxxxxxxxxxxx...");
+    }
+
+    @Test
+    void exceptionCountResetsPerWindow() throws InterruptedException {
+        ExceptionTraceProperties properties = new ExceptionTraceProperties();
+        properties.setWindow(500);
+        ExceptionTraceStore store = new ExceptionTraceStore(properties);
+        // 预热类加载，避免首次记录的耗时超过窗口
+        record(store, site("com.example.UserService", "warm up"));
+
+        assertThat(record(store, siteA("1")).getExceptionCount()).isEqualTo(1);
+        assertThat(record(store, siteA("2")).getExceptionCount()).isEqualTo(2);
+        assertThat(record(store, siteA("3")).getExceptionCount()).isEqualTo(3);
+
+        TimeUnit.MILLISECONDS.sleep(600);
+        LogDomain log = record(store, siteA("4"));
+
+        assertThat(log.getExceptionCount()).isEqualTo(1);
+        // 新窗口不重新记录完整堆栈，累计次数不重置
+        assertThat(log.getExceptionMessage()).doesNotStartWith("TRACE");
+        assertThat(store.get(log.getExceptionFingerprint()).getTotalCount()).isEqualTo(4);
+    }
+
+    @Test
+    void evictedFingerprintReemitsTrace() {
+        ExceptionTraceProperties properties = new ExceptionTraceProperties();
+        properties.setStoreSize(2);
+        ExceptionTraceStore store = new ExceptionTraceStore(properties);
+
+        String a = record(store, siteA("a")).getExceptionFingerprint();
+        record(store, site("com.example.UserService", "b"));
+        // 第三个指纹写入时 a 没有被再次访问，按 CLOCK 顺序被淘汰
+        record(store, site("com.example.PayService", "c"));
+        assertThat(store.get(a)).isNull();
+        assertThat(store.stats()).containsEntry("evictions", 1L).containsEntry("size", 2);
+
+        LogDomain again = record(store, siteA("a again"));
+
+        assertThat(again.getExceptionFingerprint()).isEqualTo(a);
+        assertThat(again.getExceptionMessage()).startsWith("TRACE");
+        assertThat(again.getExceptionCount()).isEqualTo(1);
+        assertThat(rendered).hasValue(4);
+    }
+
+    @Test
+    void deduplicateDisabledKeepsFullTraceEveryTime() {
+        ExceptionTraceProperties properties = new ExceptionTraceProperties();
+        properties.setDeduplicate(false);
+        ExceptionTraceStore store = new ExceptionTraceStore(properties);
+
+        record(store, siteA("1"));
+        LogDomain log = record(store, siteA("2"));
+
+        assertThat(log.getExceptionMessage()).isEqualTo("TRACE java.lang.IllegalStateException:2");
+        assertThat(log.getExceptionFingerprint()).isNull();
+        assertThat(rendered).hasValue(2);
+    }
+
+    private LogDomain record(ExceptionTraceStore store, Throwable e) {
+        LogDomain log = new LogDomain();
+        store.record(log, e, renderer);
+        assertThat(log.getExceptionName()).isEqualTo(e.getClass().getName());
+        return log;
+    }
+
+    private static Throwable siteA(String message) {
+        return site("com.example.OrderService", message);
+    }
+
+    private static Throwable site(String className, String message) {
+        return exception(new IllegalStateException(message),
+                frame(className, "save", 42),
+                frame("com.example.OrderController", "create", 17));
+    }
+}
@@ -0,0 +1,238 @@
+package per.meteor.aop.log.index;
+
+import org.junit.jupiter.api.Test;
+import per.meteor.aop.log.config.IndexSinkProperties;
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 最近日志索引的条件查询、分页、按块跳过及淘汰
+ *
+ * @author meteor
+ * @date 2021-10-24 16:00
+ */
+class RecentLogIndexTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.now().withNano(0);
+
+    @Test
+    void andOrConditionsMatchBruteForce() {
+        RecentLogIndex index = new RecentLogIndex(properties(8192));
+        index.write(logs(0, 3000));
+
+        LogCondition user1 = LogCondition.term("operationUser", "u1");
+        LogCondition failure = LogCondition.term("responseStatus", "failure");
+        LogCondition users01 = LogCondition.term("operationUser", "u0", "u1");
+
+        assertThat(ids(index, user1)).isEqualTo(expected(3000, i -> i % 3 == 1));
+        assertThat(ids(index, LogCondition.and(Arrays.asList(user1, failure))))
+                .isEqualTo(expected(3000, i -> i % 3 == 1 && i % 5 == 0));
+        assertThat(ids(index, LogCondition.or(Arrays.asList(user1, failure))))
+                .isEqualTo(expected(3000, i -> i % 3 == 1 || i % 5 == 0));
+        assertThat(ids(index, LogCondition.and(Arrays.asList(users01,
+                LogCondition.or(Arrays.asList(failure, LogCondition.term("requestUrl", "/url7")))))))
+                .isEqualTo(expected(3000, i -> i % 3 != 2 && (i % 5 == 0 || i % 10 == 7)));
+        // 不存在的取值
+        assertThat(ids(index, LogCondition.and(Arrays.asList(user1, LogCondition.term("requestIp", "10.0.0.1")))))
+                .isEmpty();
+    }
+
+    @Test
+    void rejectsUnknownFieldAndEmptyCondition() {
+        RecentLogIndex index = new RecentLogIndex(properties(1024));
+        index.write(logs(0, 10));
+
+        assertThatThrownBy(() -> index.search(query(LogCondition.term("logId", "1"), 0, 10)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> index.search(query(new LogCondition(), 0, 10)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void pagesKeepTotalAndOrder() {
+        IndexSinkProperties properties = properties(4096);
+        properties.setMaxPageSize(50);
+        RecentLogIndex index = new RecentLogIndex(properties);
+        index.write(logs(0, 2500));
+        LogCondition failure = LogCondition.term("responseStatus", "failure");
+
+        for (LogCondition where : Arrays.asList(null, failure)) {
+            List<String> all = new ArrayList<>();
+            long total = -1;
+            for (int page = 0; ; page++) {
+                LogSearchResult result = index.search(query(where, page, 37));
+                if (total >= 0) {
+                    assertThat(result.getTotal()).isEqualTo(total);
+                }
+                total = result.getTotal();
+                if (result.getItems().isEmpty()) {
+                    break;
+                }
+                result.getItems().forEach(log -> all.add(log.getLogId()));
+            }
+            assertThat(all).isEqualTo(where == null ? expected(2500, i -> true) : expected(2500, i -> i % 5 == 0));
+            assertThat(total).isEqualTo(all.size());
+        }
+
+        // 超过 maxPageSize 时按上限返回
+        LogSearchResult capped = index.search(query(null, 0, 1000));
+        assertThat(capped.getSize()).isEqualTo(50);
+        assertThat(capped.getItems()).hasSize(50);
+    }
+
+    @Test
+    void timeRangeSkipsBlocksOutsideRange() {
+        RecentLogIndex index = new RecentLogIndex(properties(8192));
+        // 每条间隔 1 秒，共 5 块
+        index.write(logs(0, 5 * RecentLogIndex.BLOCK_SIZE));
+
+        LogQuery query = query(null, 0, 500);
+        query.setFrom(BASE.plusSeconds(2100));
+        query.setTo(BASE.plusSeconds(2199));
+        LogSearchResult result = index.search(query);
+
+        assertThat(result.getTotal()).isEqualTo(100);
+        assertThat(ids(result)).isEqualTo(IntStream.rangeClosed(2100, 2199).map(i -> 4299 - i)
+                .mapToObj(String::valueOf).collect(Collectors.toList()));
+        // 只逐条检查与时间范围重叠的第 3 块
+        assertThat(result.getScanned()).isEqualTo(RecentLogIndex.BLOCK_SIZE);
+    }
+
+    @Test
+    void evictsOldestBeyondCapacity() {
+        RecentLogIndex index = new RecentLogIndex(properties(1024));
+        index.write(logs(0, 1500));
+
+        LogSearchResult result = index.search(query(null, 0, 500));
+        assertThat(result.getTotal()).isEqualTo(1024);
+        assertThat(index.snapshot().get("evictions")).isEqualTo(476L);
+        // 倒排表中已淘汰的序号被跳过
+        assertThat(ids(index, LogCondition.term("operationUser", "u0")))
+                .isEqualTo(expected(1500, i -> i >= 476 && i % 3 == 0));
+    }
+
+    @Test
+    void evictsBeyondRetention() {
+        IndexSinkProperties properties = properties(4096);
+        properties.setRetention(60_000);
+        RecentLogIndex index = new RecentLogIndex(properties);
+        List<LogDomain> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            LogDomain log = log(i);
+            log.setRequestTime(LocalDateTime.now().minusMinutes(i < 40 ? 10 : 0));
+            batch.add(log);
+        }
+        index.write(batch);
+
+        assertThat(index.search(query(null, 0, 500)).getTotal()).isEqualTo(60);
+        assertThat(ids(index, LogCondition.term("operationUser", "u0"))).isEqualTo(expected(100, i -> i >= 40 && i % 3 == 0));
+    }
+
+    @Test
+    void evictsBeyondMaxBytes() {
+        IndexSinkProperties properties = properties(4096);
+        // 每条约 512 + 2 * 字符数，上限约 10 条
+        properties.setMaxBytes(10 * 560);
+        RecentLogIndex index = new RecentLogIndex(properties);
+        index.write(logs(0, 100));
+
+        LogSearchResult result = index.search(query(null, 0, 500));
+        assertThat(result.getTotal()).isBetween(9L, 10L);
+        assertThat((long) index.snapshot().get("estimatedBytes")).isLessThanOrEqualTo(10 * 560);
+        assertThat(result.getItems().get(0).getLogId()).isEqualTo("99");
+    }
+
+    @Test
+    void trimsPostingsOfEvictedValues() {
+        RecentLogIndex index = new RecentLogIndex(properties(1024));
+        List<LogDomain> old = logs(0, 1024);
+        old.forEach(log -> log.setOperationUser("old"));
+        index.write(old);
+        assertThat(terms(index).get("operationUser")).isEqualTo(1);
+
+        List<LogDomain> recent = logs(1024, 2048);
+        recent.forEach(log -> log.setOperationUser("new"));
+        index.write(recent);
+
+        // 淘汰量超过容量的 1/4 后清理，只剩下 new
+        assertThat(terms(index).get("operationUser")).isEqualTo(1);
+        assertThat(ids(index, LogCondition.term("operationUser", "old"))).isEmpty();
+        assertThat(ids(index, LogCondition.term("operationUser", "new"))).hasSize(1024);
+        assertThat(ids(index, LogCondition.term("requestUrl", "/url3"))).isEqualTo(expected(2048, i -> i >= 1024 && i % 10 == 3));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Integer> terms(RecentLogIndex index) {
+        return (Map<String, Integer>) index.snapshot().get("terms");
+    }
+
+    private static List<String> ids(RecentLogIndex index, LogCondition where) {
+        List<String> ids = new ArrayList<>();
+        for (int page = 0; ; page++) {
+            LogSearchResult result = index.search(query(where, page, 500));
+            if (result.getItems().isEmpty()) {
+                assertThat(result.getTotal()).isEqualTo(ids.size());
+                return ids;
+            }
+            ids.addAll(ids(result));
+        }
+    }
+
+    private static List<String> ids(LogSearchResult result) {
+        return result.getItems().stream().map(LogDomain::getLogId).collect(Collectors.toList());
+    }
+
+    /**
+     * 满足条件的日志编号，从新到旧
+     */
+    private static List<String> expected(int count, IntPredicate predicate) {
+        return IntStream.range(0, count).map(i -> count - 1 - i).filter(predicate)
+                .mapToObj(String::valueOf).collect(Collectors.toList());
+    }
+
+    private static LogQuery query(LogCondition where, int page, int size) {
+        LogQuery query = new LogQuery();
+        query.setWhere(where);
+        query.setPage(page);
+        query.setSize(size);
+        return query;
+    }
+
+    private static List<LogDomain> logs(int from, int to) {
+        List<LogDomain> logs = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            logs.add(log(i));
+        }
+        return logs;
+    }
+
+    private static LogDomain log(int i) {
+        LogDomain log = new LogDomain();
+        log.setLogId(String.valueOf(i));
+        log.setRequestTime(BASE.plusSeconds(i));
+        log.setRequestUrl("/url" + i % 10);
+        log.setOperationUser("u" + i % 3);
+        log.setResponseStatus(i % 5 == 0 ? "failure" : "success");
+        return log;
+    }
+
+    private static IndexSinkProperties properties(int capacity) {
+        IndexSinkProperties properties = new IndexSinkProperties();
+        properties.setEnabled(true);
+        properties.setCapacity(capacity);
+        properties.setRetention(0);
+        properties.setMaxBytes(0);
+        return properties;
+    }
+}
@@ -0,0 +1,91 @@
+package per.meteor.aop.log.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 倒排表交集(倍增查找)及并集
+ *
+ * @author meteor
+ * @date 2021-10-24 15:30
+ */
+class SeqListTest {
+
+    @Test
+    void intersectMatchesBruteForce() {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            // 长短差距悬殊时倍增步长会越过多个元素
+            SeqList a = randomList(random, random.nextInt(20), 1 + random.nextInt(2000));
+            SeqList b = randomList(random, random.nextInt(3000), 1 + random.nextInt(2000));
+
+            assertThat(toArray(SeqList.intersect(a, b))).containsExactly(bruteForce(a, b, true));
+            assertThat(toArray(SeqList.intersect(b, a))).containsExactly(bruteForce(a, b, true));
+        }
+    }
+
+    @Test
+    void unionMatchesBruteForce() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            SeqList a = randomList(random, random.nextInt(100), 500);
+            SeqList b = randomList(random, random.nextInt(100), 500);
+
+            assertThat(toArray(SeqList.union(a, b))).containsExactly(bruteForce(a, b, false));
+        }
+    }
+
+    @Test
+    void respectsViewBoundaries() {
+        long[] seqs = {1, 3, 5, 7, 9, 11, 13};
+        // 只看 [5, 11)，两端之外的相同序号不能出现在结果中
+        SeqList view = new SeqList(seqs, 2, 5);
+        SeqList all = new SeqList(new long[]{1, 5, 9, 13}, 0, 4);
+
+        assertThat(toArray(SeqList.intersect(view, all))).containsExactly(5, 9);
+        assertThat(toArray(SeqList.union(view, new SeqList(new long[]{1, 6}, 0, 2)))).containsExactly(1, 5, 6, 7, 9);
+    }
+
+    @Test
+    void emptyOperands() {
+        SeqList list = new SeqList(new long[]{1, 2, 3}, 0, 3);
+
+        assertThat(SeqList.intersect(SeqList.EMPTY, list).size()).isZero();
+        assertThat(SeqList.intersect(list, SeqList.EMPTY).size()).isZero();
+        assertThat(SeqList.union(SeqList.EMPTY, list)).isSameAs(list);
+        assertThat(SeqList.union(list, SeqList.EMPTY)).isSameAs(list);
+    }
+
+    private static SeqList randomList(Random random, int size, int range) {
+        long[] seqs = random.longs(size, 0, range).sorted().distinct().toArray();
+        // 前后各留一段不属于视图的数据
+        long[] padded = new long[seqs.length + 2];
+        padded[0] = -1;
+        System.arraycopy(seqs, 0, padded, 1, seqs.length);
+        padded[padded.length - 1] = Long.MAX_VALUE;
+        return new SeqList(padded, 1, padded.length - 1);
+    }
+
+    private static long[] bruteForce(SeqList a, SeqList b, boolean intersect) {
+        TreeSet<Long> left = new TreeSet<>();
+        LongStream.of(toArray(a)).forEach(left::add);
+        TreeSet<Long> right = new TreeSet<>();
+        LongStream.of(toArray(b)).forEach(right::add);
+        if (intersect) {
+            left.retainAll(right);
+        } else {
+            left.addAll(right);
+        }
+        return left.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long[] toArray(SeqList list) {
+        return Arrays.copyOfRange(list.seqs, list.from, list.to);
+    }
+}
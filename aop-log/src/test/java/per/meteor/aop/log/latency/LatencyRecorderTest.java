@@ -0,0 +1,86 @@
+package per.meteor.aop.log.latency;
+
+import org.junit.jupiter.api.Test;
+import per.meteor.aop.log.config.LatencyProperties;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * 统计周期交换及超出范围的耗时截断
+ *
+ * @author meteor
+ * @date 2021-10-25 17:00
+ */
+class LatencyRecorderTest {
+
+    private static final String METHOD_KEY = "per.meteor.aop.log.controller.TestController.test03(String,long,boolean)";
+
+    @Test
+    void rollPublishesPreviousIntervalAndStartsEmpty() {
+        LatencyRecorder recorder = new LatencyRecorder(new LatencyProperties());
+        for (int i = 1; i <= 100; i++) {
+            recorder.record(METHOD_KEY, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        // 未交换前查询的是上一个(空)周期
+        assertThat(snapshot(recorder)).containsEntry("count", 0L);
+
+        recorder.roll();
+        Map<String, Object> first = snapshot(recorder);
+        assertThat(first).containsEntry("methodPath", METHOD_KEY).containsEntry("count", 100L);
+        assertThat((double) first.get("p50")).isCloseTo(50, within(0.1));
+        assertThat((double) first.get("p99")).isCloseTo(99, within(0.1));
+        assertThat((double) first.get("max")).isCloseTo(100, within(0.1));
+
+        recorder.record(METHOD_KEY, TimeUnit.MILLISECONDS.toNanos(5));
+        recorder.record(METHOD_KEY, TimeUnit.MILLISECONDS.toNanos(7));
+        // 新周期的记录在下次交换前不可见
+        assertThat(snapshot(recorder)).isEqualTo(first);
+
+        recorder.roll();
+        Map<String, Object> second = snapshot(recorder);
+        assertThat(second).containsEntry("count", 2L);
+        assertThat((double) second.get("max")).isCloseTo(7, within(0.01));
+        assertThat((long) second.get("intervalStart")).isGreaterThanOrEqualTo((long) first.get("intervalEnd"));
+
+        recorder.roll();
+        assertThat(snapshot(recorder)).containsEntry("count", 0L).containsEntry("p99", 0.0);
+    }
+
+    @Test
+    void valuesOutsideTrackableRangeAreClamped() {
+        LatencyProperties properties = new LatencyProperties();
+        properties.setHighestTrackable(1000);
+        LatencyRecorder recorder = new LatencyRecorder(properties);
+
+        recorder.record(METHOD_KEY, TimeUnit.HOURS.toNanos(2));
+        recorder.record(METHOD_KEY, Long.MAX_VALUE);
+        recorder.record(METHOD_KEY, 0);
+        recorder.record(METHOD_KEY, -5);
+        recorder.roll();
+
+        Map<String, Object> snapshot = snapshot(recorder);
+        assertThat(snapshot).containsEntry("count", 4L);
+        // 超出上限按上限记录，不足 1 微秒按 1 微秒记录
+        assertThat((double) snapshot.get("max")).isCloseTo(1000, within(1.0));
+        assertThat((double) snapshot.get("p50")).isCloseTo(0.001, within(0.001));
+    }
+
+    @Test
+    void overloadsAreRecordedSeparately() {
+        LatencyRecorder recorder = new LatencyRecorder(new LatencyProperties());
+        recorder.record(METHOD_KEY, 1000);
+        recorder.record("per.meteor.aop.log.controller.TestController.test03(String)", 1000);
+        recorder.roll();
+
+        assertThat(recorder.snapshot()).hasSize(2);
+        assertThat(recorder.get(METHOD_KEY).getLastInterval().toMap()).containsEntry("count", 1L);
+    }
+
+    private static Map<String, Object> snapshot(LatencyRecorder recorder) {
+        return recorder.get(METHOD_KEY).getLastInterval().toMap();
+    }
+}
@@ -0,0 +1,156 @@
+package per.meteor.aop.log.pipeline;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import per.meteor.aop.log.config.LogPipelineProperties;
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 日志管道的空闲休眠、唤醒及停止
+ *
+ * @author meteor
+ * @date 2021-10-23 18:10
+ */
+class LogPipelineTest {
+
+    private LogPipeline pipeline;
+
+    @AfterEach
+    void stopPipeline() {
+        if (pipeline != null) {
+            pipeline.stop(1000);
+        }
+    }
+
+    @Test
+    void publishWakesParkedConsumer() throws InterruptedException {
+        BlockingQueue<LogDomain> handled = new LinkedBlockingQueue<>();
+        CountDownLatch parked = new CountDownLatch(1);
+        // 空闲间隔足够长，只有发布时的唤醒才能让日志及时被处理
+        pipeline = new LogPipeline(properties(60_000), "test-consumer", handled::addAll, parked::countDown);
+        pipeline.start();
+        assertThat(parked.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(50);
+
+        LogDomain log = new LogDomain();
+        long start = System.nanoTime();
+        assertThat(pipeline.publish(log)).isTrue();
+
+        assertThat(handled.poll(1, TimeUnit.SECONDS)).isSameAs(log);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+    }
+
+    @Test
+    void idleCallbackRunsAtIdleInterval() throws InterruptedException {
+        AtomicInteger idleCalls = new AtomicInteger();
+        pipeline = new LogPipeline(properties(100), "test-consumer", batch -> { }, idleCalls::incrementAndGet);
+        pipeline.start();
+
+        Thread.sleep(500);
+
+        // 约每 100ms 一次，不再是每毫秒一次
+        assertThat(idleCalls.get()).isBetween(1, 10);
+    }
+
+    @Test
+    void stopDrainsRemainingLogs() {
+        AtomicInteger handled = new AtomicInteger();
+        pipeline = new LogPipeline(properties(60_000), "test-consumer", batch -> handled.addAndGet(batch.size()), () -> { });
+        pipeline.start();
+        for (int i = 0; i < 1000; i++) {
+            pipeline.publish(new LogDomain());
+        }
+
+        assertThat(pipeline.stop(5000)).isTrue();
+        assertThat(handled.get()).isEqualTo(1000);
+        assertThat(pipeline.getDrainedCount()).isEqualTo(1000);
+    }
+
+    @Test
+    void stopReportsConsumerStillRunning() throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Consumer<List<LogDomain>> blocking = batch -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        pipeline = new LogPipeline(properties(100), "test-consumer", blocking, () -> { });
+        pipeline.start();
+        pipeline.publish(new LogDomain());
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(pipeline.stop(50)).isFalse();
+
+        // 再次调用继续等待
+        release.countDown();
+        assertThat(pipeline.stop(5000)).isTrue();
+    }
+
+    @Test
+    void publishAfterStopIsRejectedAndCountedAsDropped() {
+        AtomicInteger handled = new AtomicInteger();
+        pipeline = new LogPipeline(properties(100), "test-consumer", batch -> handled.addAndGet(batch.size()), () -> { });
+        assertThat(pipeline.publish(new LogDomain())).isFalse();
+        pipeline.start();
+        pipeline.publish(new LogDomain());
+        assertThat(pipeline.stop(5000)).isTrue();
+
+        assertThat(pipeline.publish(new LogDomain())).isFalse();
+
+        assertThat(handled.get()).isEqualTo(1);
+        assertThat(pipeline.getPublishedCount()).isEqualTo(1);
+        assertThat(pipeline.getDroppedCount()).isEqualTo(2);
+        assertThat(pipeline.getQueueSize()).isZero();
+    }
+
+    @Test
+    void publishWhileDrainingIsHandled() throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger handled = new AtomicInteger();
+        Consumer<List<LogDomain>> blocking = batch -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.addAndGet(batch.size());
+        };
+        pipeline = new LogPipeline(properties(100), "test-consumer", blocking, () -> { });
+        pipeline.start();
+        pipeline.publish(new LogDomain());
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(pipeline.stop(50)).isFalse();
+
+        // 已停止但消费线程仍在处理，发布的日志会在退出前被取出
+        assertThat(pipeline.publish(new LogDomain())).isTrue();
+        release.countDown();
+
+        assertThat(pipeline.stop(5000)).isTrue();
+        assertThat(handled.get()).isEqualTo(2);
+        assertThat(pipeline.getDroppedCount()).isZero();
+    }
+
+    private static LogPipelineProperties properties(long idleInterval) {
+        LogPipelineProperties properties = new LogPipelineProperties();
+        properties.setCapacity(1024);
+        properties.setBatchSize(64);
+        properties.setIdleInterval(idleInterval);
+        return properties;
+    }
+}
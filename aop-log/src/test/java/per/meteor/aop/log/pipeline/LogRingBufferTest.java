@@ -0,0 +1,36 @@
+package per.meteor.aop.log.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 环形缓冲区容量取整及范围校验
+ *
+ * @author meteor
+ * @date 2021-10-25 18:00
+ */
+class LogRingBufferTest {
+
+    @Test
+    void capacityIsRoundedUpToPowerOfTwo() {
+        assertThat(new LogRingBuffer(2).capacity()).isEqualTo(2);
+        assertThat(new LogRingBuffer(3).capacity()).isEqualTo(4);
+        assertThat(new LogRingBuffer(8192).capacity()).isEqualTo(8192);
+        assertThat(new LogRingBuffer(8193).capacity()).isEqualTo(16384);
+    }
+
+    @Test
+    void capacityOutOfRangeIsRejected() {
+        assertThatThrownBy(() -> new LogRingBuffer(1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("greater than 1");
+        // 超过 2^30 时向上取整会溢出为负数
+        assertThatThrownBy(() -> new LogRingBuffer(LogRingBuffer.MAXIMUM_CAPACITY + 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("must not exceed " + LogRingBuffer.MAXIMUM_CAPACITY);
+        assertThatThrownBy(() -> new LogRingBuffer(Integer.MAX_VALUE))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
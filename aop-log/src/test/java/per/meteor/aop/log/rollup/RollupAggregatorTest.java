@@ -0,0 +1,242 @@
+package per.meteor.aop.log.rollup;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import per.meteor.aop.log.config.RollupProperties;
+import per.meteor.aop.log.domain.LogDomain;
+import per.meteor.aop.log.sampling.LogSampler;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * 分钟汇总的加权计数、封存交接、迟到日志及窗口合并
+ *
+ * @author meteor
+ * @date 2021-10-24 10:20
+ */
+class RollupAggregatorTest {
+
+    private static final LocalDateTime MINUTE = LocalDateTime.of(2021, 10, 20, 10, 0);
+    private static final String METHOD_PATH = "per.meteor.aop.log.controller.TestController.test01";
+    private static final String METHOD_KEY = METHOD_PATH + "(String)";
+
+    @TempDir
+    Path directory;
+
+    private RollupAggregator aggregator;
+
+    @AfterEach
+    void close() {
+        if (aggregator != null) {
+            aggregator.close();
+        }
+    }
+
+    @Test
+    void sampledLogsAreWeightedByRepresentedCount() throws IOException {
+        aggregator = new RollupAggregator(properties());
+        // 采样比例 0.25：每条记录的正常日志代表 4 次调用，异常日志不参与采样
+        LogSampler sampler = new LogSampler(METHOD_PATH, METHOD_KEY, 0.25, 0);
+        List<LogDomain> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            if (i % 4 != 3) {
+                sampler.skipped();
+                continue;
+            }
+            LogDomain log = log(MINUTE.plusSeconds(i % 60), 1000, null);
+            log.setRepresentedCount(sampler.representedCount());
+            batch.add(log);
+        }
+        batch.add(log(MINUTE.plusSeconds(30), 5000, "java.lang.IllegalStateException"));
+        aggregator.write(batch);
+
+        Map<String, Object> rollup = single(aggregator.query(query(MINUTE, MINUTE.plusMinutes(1), 0)));
+
+        assertThat(rollup.get("count")).isEqualTo(101L);
+        assertThat(rollup.get("errors")).isEqualTo(1L);
+        assertThat((double) rollup.get("latencyAvg")).isCloseTo((100 * 1000 + 5000) / 101.0 / 1000.0, within(0.001));
+        assertThat(rollup.get("latencyMax")).isEqualTo(5.0);
+    }
+
+    @Test
+    void overloadsAreRolledUpByMethodKey() throws IOException {
+        aggregator = new RollupAggregator(properties());
+        LogDomain overload = log(MINUTE, 1000, null);
+        overload.setMethodKey(METHOD_PATH + "(String,int)");
+        // 从分区文件读回的日志没有接口键
+        LogDomain decoded = log(MINUTE, 1000, null);
+        decoded.setMethodKey(null);
+        LogDomain other = log(MINUTE, 1000, null);
+        other.setRequestMethodPath(METHOD_PATH + "2");
+        other.setMethodKey(METHOD_PATH + "2(String)");
+        aggregator.write(Arrays.asList(log(MINUTE, 1000, null), overload, decoded, other));
+
+        RollupQuery query = query(MINUTE, MINUTE.plusMinutes(1), 0);
+        query.setMethodPath(METHOD_PATH);
+
+        // 按 类名.方法名 查询匹配该方法的所有重载，不匹配同前缀的其他方法
+        assertThat(aggregator.query(query)).extracting(rollup -> rollup.get("methodPath"))
+                .containsExactly(METHOD_PATH, METHOD_KEY, METHOD_PATH + "(String,int)");
+    }
+
+    @Test
+    void sealWhileWritersAreActiveLosesNothing() throws Exception {
+        aggregator = new RollupAggregator(properties());
+        LocalDateTime minute = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).minusMinutes(10);
+        int writers = 4;
+        int batches = 2000;
+        CountDownLatch started = new CountDownLatch(writers);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            futures.add(executor.submit(() -> {
+                started.countDown();
+                for (int i = 0; i < batches; i++) {
+                    List<LogDomain> batch = new ArrayList<>(5);
+                    for (int j = 0; j < 5; j++) {
+                        batch.add(log(minute.plusSeconds(j * 10), 100 + j, j == 0 ? "java.io.IOException" : null));
+                    }
+                    aggregator.write(batch);
+                }
+            }));
+        }
+        started.await();
+        // 写入过程中反复封存，已移出的桶由 WriterReaderPhaser 等待写入方退出后再读取，之后的写入进入迟到的新桶
+        while (futures.stream().anyMatch(future -> !future.isDone())) {
+            aggregator.seal();
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        aggregator.seal();
+
+        assertThat(aggregator.snapshot().get("openBuckets")).isEqualTo(0);
+        assertThat((long) aggregator.snapshot().get("sealedRollups")).isPositive();
+        Map<String, Object> rollup = single(aggregator.query(query(minute, minute.plusMinutes(1), 0)));
+        long total = (long) writers * batches * 5;
+        assertThat(rollup.get("count")).isEqualTo(total);
+        assertThat(rollup.get("errors")).isEqualTo(total / 5);
+        assertThat((double) rollup.get("latencyAvg")).isCloseTo(0.102, within(0.0001));
+    }
+
+    @Test
+    void lateLogsForSealedMinuteAreMergedWithPersistedRollup() throws IOException {
+        aggregator = new RollupAggregator(properties());
+        LocalDateTime minute = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).minusMinutes(5);
+        aggregator.write(Arrays.asList(log(minute, 1000, null), log(minute.plusSeconds(5), 3000, null)));
+        aggregator.seal();
+        assertThat(aggregator.snapshot().get("openMinutes")).isEqualTo(0);
+
+        // 封存后迟到的日志进入同一分钟的新桶，查询时与已写入文件的汇总合并
+        aggregator.write(Collections.singletonList(log(minute.plusSeconds(59), 5000, "java.lang.IllegalStateException")));
+        assertThat(aggregator.snapshot().get("openMinutes")).isEqualTo(1);
+        Map<String, Object> merged = single(aggregator.query(query(minute, minute.plusMinutes(1), 0)));
+        assertThat(merged.get("count")).isEqualTo(3L);
+        assertThat(merged.get("errors")).isEqualTo(1L);
+        assertThat(merged.get("latencyMin")).isEqualTo(1.0);
+        assertThat(merged.get("latencyMax")).isEqualTo(5.0);
+
+        // 再次封存后迟到的桶单独写出，结果不变
+        aggregator.seal();
+        assertThat(single(aggregator.query(query(minute, minute.plusMinutes(1), 0))).get("count")).isEqualTo(3L);
+        assertThat(aggregator.snapshot().get("sealedRollups")).isEqualTo(2L);
+    }
+
+    @Test
+    void mergesPersistedAndLiveMinutesIntoUnevenWindows() throws IOException {
+        aggregator = new RollupAggregator(properties());
+        // 前 4 分钟已封存，后 3 分钟仍在内存中
+        LocalDateTime from = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).minusMinutes(20);
+        List<LogDomain> sealed = new ArrayList<>();
+        for (int m = 0; m < 4; m++) {
+            for (int i = 0; i <= m; i++) {
+                sealed.add(log(from.plusMinutes(m).plusSeconds(i), 1000, null));
+            }
+        }
+        aggregator.write(sealed);
+        aggregator.seal();
+        List<LogDomain> live = new ArrayList<>();
+        for (int m = 4; m < 7; m++) {
+            for (int i = 0; i <= m; i++) {
+                live.add(log(from.plusMinutes(m).plusSeconds(i), 1000, null));
+            }
+        }
+        // 不封存：直接写入 + 查询，from 之前及 to 之后的分钟不应计入
+        live.add(log(from.minusMinutes(1), 1000, null));
+        live.add(log(from.plusMinutes(7), 1000, null));
+        aggregator.write(live);
+
+        // 7 分钟按 3 分钟一个窗口：[0,3) [3,6) [6,7)，最后一个窗口截断到 to
+        List<Map<String, Object>> windows = aggregator.query(query(from, from.plusMinutes(7), 3));
+
+        assertThat(windows).hasSize(3);
+        assertThat(windows).extracting(window -> window.get("from"))
+                .containsExactly(from, from.plusMinutes(3), from.plusMinutes(6));
+        assertThat(windows).extracting(window -> window.get("to"))
+                .containsExactly(from.plusMinutes(3), from.plusMinutes(6), from.plusMinutes(7));
+        // 第 m 分钟 m + 1 条
+        assertThat(windows).extracting(window -> window.get("count")).containsExactly(1L + 2 + 3, 4L + 5 + 6, 7L);
+    }
+
+    @Test
+    void queryEndIsRoundedUpToWholeMinute() throws IOException {
+        aggregator = new RollupAggregator(properties());
+        LocalDateTime minute = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).minusMinutes(3);
+        aggregator.write(Arrays.asList(log(minute.plusSeconds(1), 1000, null), log(minute.plusMinutes(1), 1000, null)));
+
+        // to 落在分钟中间时包含该分钟
+        List<Map<String, Object>> windows = aggregator.query(query(minute.plusSeconds(30), minute.plusSeconds(61), 1));
+
+        assertThat(windows).extracting(window -> window.get("count")).containsExactly(1L, 1L);
+    }
+
+    static RollupQuery query(LocalDateTime from, LocalDateTime to, int step) {
+        RollupQuery query = new RollupQuery();
+        query.setFrom(from);
+        query.setTo(to);
+        query.setStep(step);
+        query.setGroupBy(Collections.singleton(RollupQuery.METHOD_PATH));
+        return query;
+    }
+
+    static LogDomain log(LocalDateTime requestTime, long durationMicros, String exceptionName) {
+        LogDomain log = new LogDomain();
+        log.setRequestTime(requestTime);
+        log.setRequestMethodPath(METHOD_PATH);
+        log.setMethodKey(METHOD_KEY);
+        log.setRequestDuration(durationMicros);
+        log.setExceptionName(exceptionName);
+        log.setResponseStatus(exceptionName == null ? "success" : "failure");
+        return log;
+    }
+
+    private static Map<String, Object> single(List<Map<String, Object>> rollups) {
+        assertThat(rollups).hasSize(1);
+        return rollups.get(0);
+    }
+
+    private RollupProperties properties() {
+        RollupProperties properties = new RollupProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        properties.setRetentionDays(0);
+        return properties;
+    }
+}
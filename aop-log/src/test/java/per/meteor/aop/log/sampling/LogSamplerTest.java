@@ -0,0 +1,154 @@
+package per.meteor.aop.log.sampling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.Test;
+import per.meteor.aop.log.aspect.MethodDescriptor;
+import per.meteor.aop.log.aspect.MethodDescriptorCache;
+import per.meteor.aop.log.common.annotations.OperationLog;
+import per.meteor.aop.log.metrics.LogMetrics;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 采样比例、GCRA 令牌桶突发及代表调用数
+ *
+ * @author meteor
+ * @date 2021-10-25 11:00
+ */
+class LogSamplerTest {
+
+    private static final String METHOD_PATH = "per.meteor.aop.log.controller.TestController.test03";
+    private static final String METHOD_KEY = METHOD_PATH + "(String,long,boolean)";
+
+    @Test
+    void keepsConfiguredFraction() {
+        LogSampler sampler = new LogSampler(METHOD_PATH, METHOD_KEY, 0.25, 0);
+        int calls = 200_000;
+        int kept = 0;
+        for (int i = 0; i < calls; i++) {
+            if (sampler.tryAcquire()) {
+                kept++;
+            }
+        }
+
+        // 二项分布标准差约 0.001，容差取 5 倍
+        assertThat((double) kept / calls).isCloseTo(0.25, within(0.005));
+        assertThat(sampler.getKeptCount()).isEqualTo(kept);
+        assertThat(sampler.getSampledOutCount()).isEqualTo(calls - kept);
+        assertThat(sampler.getRateLimitedCount()).isZero();
+        assertThat((double) sampler.snapshot().get("extrapolationFactor")).isCloseTo(4.0, within(0.1));
+    }
+
+    @Test
+    void fullRateKeepsEverything() {
+        LogSampler sampler = new LogSampler(METHOD_PATH, METHOD_KEY, 1, 0);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(sampler.tryAcquire()).isTrue();
+        }
+        assertThat(sampler.getSampledOutCount()).isZero();
+    }
+
+    @Test
+    void allowsBurstOfMaxPerSecondThenRejects() throws InterruptedException {
+        // 发放间隔 10ms，突发的 100 次调用远小于 10ms，期间不会补充令牌
+        LogSampler sampler = new LogSampler(METHOD_PATH, METHOD_KEY, 1, 100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(sampler.tryAcquire()).as("call %d", i).isTrue();
+        }
+        for (int i = 0; i < 50; i++) {
+            assertThat(sampler.tryAcquire()).isFalse();
+        }
+        assertThat(sampler.getKeptCount()).isEqualTo(100);
+        assertThat(sampler.getRateLimitedCount()).isEqualTo(50);
+
+        // 按发放间隔补充，不会一次补满
+        TimeUnit.MILLISECONDS.sleep(55);
+        int refilled = 0;
+        while (sampler.tryAcquire()) {
+            refilled++;
+        }
+        assertThat(refilled).isBetween(5, 30);
+    }
+
+    @Test
+    void representedCountAccumulatesSkippedCallsAndResets() {
+        LogSampler sampler = new LogSampler(METHOD_PATH, METHOD_KEY, 0.5, 0);
+        assertThat(sampler.representedCount()).isEqualTo(1);
+
+        sampler.skipped();
+        sampler.skipped();
+        sampler.skipped();
+        assertThat(sampler.representedCount()).isEqualTo(4);
+        assertThat(sampler.representedCount()).isEqualTo(1);
+
+        sampler.skipped();
+        assertThat(sampler.representedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void registryKeepsOneSamplerPerOverloadAndSkipsUnsampledMethods() throws Exception {
+        LogSamplerRegistry registry = new LogSamplerRegistry(new LogMetrics(new SimpleMeterRegistry()));
+        MethodDescriptorCache cache = new MethodDescriptorCache("execution(* per.meteor.aop.log.controller..*.*(..))");
+        MethodDescriptor plain = cache.get(joinPoint(SampledService.class.getMethod("plain")));
+        MethodDescriptor single = cache.get(joinPoint(SampledService.class.getMethod("save", String.class)));
+        MethodDescriptor batch = cache.get(joinPoint(SampledService.class.getMethod("save", String.class, int.class)));
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(registry.tryAcquire(plain)).isTrue();
+            registry.skip(plain);
+        }
+        assertThat(registry.representedCount(plain)).isEqualTo(1);
+        assertThat(registry.get(plain.getMethodKey())).isNull();
+
+        // 两个重载方法的采样比例不同，各自计数
+        int singleKept = 0;
+        int batchKept = 0;
+        for (int i = 0; i < 1000; i++) {
+            singleKept += registry.tryAcquire(single) ? 1 : 0;
+            batchKept += registry.tryAcquire(batch) ? 1 : 0;
+        }
+        assertThat(singleKept).isEqualTo(1000);
+        assertThat(batchKept).isLessThan(1000);
+        assertThat(registry.get(batch.getMethodKey()).getKeptCount()).isEqualTo(batchKept);
+        assertThat(registry.snapshot()).hasSize(2);
+
+        registry.skip(batch);
+        registry.skip(batch);
+        assertThat(registry.representedCount(batch)).isEqualTo(3);
+        assertThat(registry.representedCount(single)).isEqualTo(1);
+    }
+
+    private static JoinPoint joinPoint(Method method) {
+        MethodSignature signature = mock(MethodSignature.class);
+        when(signature.getMethod()).thenReturn(method);
+        JoinPoint joinPoint = mock(JoinPoint.class);
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(joinPoint.getTarget()).thenReturn(new SampledService());
+        return joinPoint;
+    }
+
+    public static class SampledService {
+
+        public void plain() {
+            // pass
+        }
+
+        @OperationLog(maxPerSecond = 100_000)
+        public String save(String name) {
+            return name;
+        }
+
+        @OperationLog(sampleRate = 0.5)
+        public String save(String name, int limit) {
+            return name;
+        }
+    }
+}
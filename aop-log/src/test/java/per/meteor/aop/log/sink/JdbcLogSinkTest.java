@@ -0,0 +1,144 @@
+package per.meteor.aop.log.sink;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import per.meteor.aop.log.common.enums.ModuleType;
+import per.meteor.aop.log.common.enums.OperationType;
+import per.meteor.aop.log.config.JdbcSinkProperties;
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 数据库输出：建表、批量写入及部分失败
+ *
+ * @author meteor
+ * @date 2021-10-23 15:10
+ */
+class JdbcLogSinkTest {
+
+    private JdbcDataSource dataSource;
+    private JdbcSinkProperties properties;
+    private JdbcLogSink sink;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        properties = new JdbcSinkProperties();
+        properties.setTableName("audit_log");
+        properties.setBatchSize(10);
+        properties.setMaxTextLength(100);
+        sink = new JdbcLogSink(dataSource, properties);
+        sink.initializeSchema();
+    }
+
+    @Test
+    void initializeSchemaCreatesConfiguredTable() throws SQLException {
+        assertThat(count("audit_log")).isZero();
+        // 重复执行不报错
+        sink.initializeSchema();
+        assertThat(query("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'OPERATION_LOG'")).isZero();
+    }
+
+    @Test
+    void flushWritesBatchesOfConfiguredSize() throws SQLException {
+        List<LogDomain> logs = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            logs.add(log("id-" + i));
+        }
+        sink.write(logs);
+        sink.flush();
+
+        assertThat(count("audit_log")).isEqualTo(25);
+        assertThat(sink.getStats().getRows()).isEqualTo(25);
+        assertThat(sink.getStats().getBatches()).isEqualTo(3);
+        assertThat(sink.getStats().getFailedRows()).isZero();
+        assertThat(query("SELECT COUNT(*) FROM audit_log WHERE log_id = 'id-7' AND operation_type = 'SELECT'"
+                + " AND response_code = 200 AND request_duration = 12")).isEqualTo(1);
+    }
+
+    @Test
+    void oversizedColumnsAreTruncatedInsteadOfFailingBatch() throws SQLException {
+        LogDomain oversized = log("long");
+        oversized.setRequestUrl(repeat('u', 2000));
+        oversized.setExceptionMessage(repeat('e', 5000));
+        sink.write(Arrays.asList(log("a"), oversized, log("b")));
+        sink.flush();
+
+        assertThat(count("audit_log")).isEqualTo(3);
+        assertThat(query("SELECT LENGTH(request_url) FROM audit_log WHERE log_id = 'long'")).isEqualTo(512);
+        assertThat(query("SELECT LENGTH(exception_message) FROM audit_log WHERE log_id = 'long'")).isEqualTo(100);
+    }
+
+    @Test
+    void failedBatchRetriesRowsOneByOne() throws SQLException {
+        execute("CREATE UNIQUE INDEX audit_log_id ON audit_log (log_id)");
+        sink.write(Arrays.asList(log("a"), log("b"), log("a"), log("c")));
+        sink.flush();
+
+        assertThat(count("audit_log")).isEqualTo(3);
+        assertThat(sink.getStats().getRows()).isEqualTo(3);
+        assertThat(sink.getStats().getFailedRows()).isEqualTo(1);
+    }
+
+    @Test
+    void capKeepsSurrogatePairsIntact() {
+        assertThat(JdbcLogSink.cap(null, 3)).isNull();
+        assertThat(JdbcLogSink.cap("abc", 3)).isEqualTo("abc");
+        assertThat(JdbcLogSink.cap("abcd", 3)).isEqualTo("abc");
+        assertThat(JdbcLogSink.cap("ab😀", 3)).isEqualTo("ab");
+    }
+
+    private static LogDomain log(String id) {
+        LogDomain log = new LogDomain();
+        log.setLogId(id);
+        log.setLogSerialNumber("serial-" + id);
+        log.setRequestUrl("/test01");
+        log.setRequestMethod("GET");
+        log.setRequestTime(LocalDateTime.now());
+        log.setResponseStatus("success");
+        log.setResponseCode(200);
+        log.setResponseTime(LocalDateTime.now());
+        log.setRequestDuration(12L);
+        log.setOperationModule(ModuleType.values()[0]);
+        log.setOperationType(OperationType.SELECT);
+        return log;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private long count(String table) throws SQLException {
+        return query("SELECT COUNT(*) FROM " + table);
+    }
+
+    private long query(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package per.meteor.aop.log.sink.partition;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import per.meteor.aop.log.common.codec.LogDomainCodec;
+import per.meteor.aop.log.config.PartitionSinkProperties;
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 分区存储的压缩往返、中断恢复、过期删除、范围扫描及迟到写入
+ *
+ * @author meteor
+ * @date 2021-10-25 10:00
+ */
+class PartitionedLogStoreTest {
+
+    private static final LocalDateTime HOUR_10 = LocalDateTime.of(2021, 10, 8, 10, 0);
+
+    @TempDir
+    Path root;
+
+    private PartitionedLogSink sink;
+
+    @AfterEach
+    void closeSink() throws IOException {
+        if (sink != null) {
+            sink.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PartitionCompression.class)
+    void compactedPartitionRoundTrips(PartitionCompression compression) throws IOException {
+        PartitionedLogStore store = store(compression, 0);
+        write(store, 0, 500);
+        write(store, 500, 1000);
+        Path day = root.resolve("20211008");
+        assertThat(names(day)).containsExactly("2021100810-0.log", "2021100810-1.log");
+
+        store.maintain();
+
+        // 合并为一个文件，序号取合并前的最大序号
+        assertThat(names(day)).containsExactly("2021100810-1.log" + compression.getExtension());
+        PartitionScanResult result = store.scan(null, null, 2000);
+        assertThat(ids(result)).isEqualTo(expected(0, 1000));
+        assertThat(result.getRecords()).isEqualTo(1000);
+        assertThat(result.getDiskBytes()).isLessThan(result.getBytes());
+        assertThat(store.snapshot()).containsEntry("compactedPartitions", 1L).containsEntry("compactedFiles", 2L);
+
+        // 已压缩为单个文件的分区不再重复压缩
+        store.maintain();
+        assertThat(store.snapshot()).containsEntry("compactedPartitions", 1L);
+    }
+
+    @Test
+    void interruptedCompactionIsResumedWithoutDuplicates() throws IOException {
+        PartitionedLogStore store = store(PartitionCompression.GZIP, 0);
+        write(store, 0, 100);
+        write(store, 100, 200);
+        Path day = root.resolve("20211008");
+        Path backup = Files.createDirectory(root.resolve("backup"));
+        for (String name : names(day)) {
+            Files.copy(day.resolve(name), backup.resolve(name));
+        }
+        store.maintain();
+
+        // 模拟在 delete(inputs) 前中断：压缩文件已就位，旧文件仍在，另有一个未完成的临时文件
+        for (String name : names(backup)) {
+            Files.copy(backup.resolve(name), day.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.write(day.resolve("2021100810-1.log.gz" + Partitions.TEMP_SUFFIX), new byte[]{1, 2, 3});
+        assertThat(names(day)).contains("2021100810-0.log", "2021100810-1.log", "2021100810-1.log.gz");
+
+        assertThat(ids(store.scan(null, null, 1000))).isEqualTo(expected(0, 200));
+
+        store.maintain();
+
+        assertThat(names(day)).containsExactly("2021100810-1.log.gz");
+        assertThat(ids(store.scan(null, null, 1000))).isEqualTo(expected(0, 200));
+    }
+
+    @Test
+    void openFilesAreNotCompacted() throws IOException {
+        PartitionedLogStore store = store(PartitionCompression.LZ4, 0);
+        write(store, 0, 10);
+        Path open = store.newFile(HOUR_10);
+        try (PartitionOutput output = new PartitionOutput("2021100810", HOUR_10, HOUR_10.plusHours(1), open, 1024)) {
+            byte[] record = LogDomainCodec.encode(log(10, HOUR_10.plusMinutes(30)));
+            output.write(record, 0, record.length);
+        }
+        Path day = root.resolve("20211008");
+
+        store.maintain();
+
+        assertThat(names(day)).containsExactly("2021100810-0.log", "2021100810-1.log");
+        assertThat(store.partitions()).singleElement().satisfies(partition ->
+                assertThat(partition).containsEntry("open", true).containsEntry("compressed", false));
+
+        store.release(open);
+        store.maintain();
+
+        assertThat(names(day)).containsExactly("2021100810-1.log.lz4");
+        assertThat(ids(store.scan(null, null, 100))).isEqualTo(expected(0, 11));
+    }
+
+    @Test
+    void retentionDeletesWholeDays() throws IOException {
+        PartitionedLogStore store = store(PartitionCompression.GZIP, 3L * 24 * 60 * 60 * 1000);
+        LocalDate today = LocalDate.now();
+        for (int daysAgo : new int[]{10, 5, 1}) {
+            LogDomain log = log(daysAgo, today.minusDays(daysAgo).atTime(10, 0));
+            sink(store).write(listOf(log));
+        }
+        assertThat(Partitions.days(root)).hasSize(3);
+
+        store.maintain();
+
+        // 过期的天目录整体删除，未过期的分区被压缩
+        assertThat(Partitions.days(root)).containsExactly(Partitions.dayDirectory(root, today.minusDays(1)));
+        assertThat(ids(store.scan(null, null, 10))).containsExactly("1");
+        assertThat(store.snapshot()).containsEntry("expiredPartitions", 2L);
+    }
+
+    @Test
+    void scanSkipsPartitionsOutsideRangeWithoutOpeningThem() throws IOException {
+        PartitionedLogStore store = store(PartitionCompression.GZIP, 0);
+        List<LogDomain> logs = new ArrayList<>();
+        for (int hour = 0; hour < 3; hour++) {
+            for (int minute = 0; minute < 60; minute += 10) {
+                logs.add(log(hour * 100 + minute, HOUR_10.plusHours(hour).plusMinutes(minute)));
+            }
+        }
+        sink(store).write(logs);
+        // 范围之外的分区及整天跳过的目录放入损坏的压缩文件，被打开时会抛出异常
+        corrupt(root.resolve("20211008").resolve("2021100810-5.log.gz"));
+        corrupt(root.resolve("20211008").resolve("2021100812-5.log.gz"));
+        corrupt(root.resolve("20211009").resolve("2021100910-0.log.gz"));
+
+        PartitionScanResult result = store.scan(HOUR_10.plusHours(1).plusMinutes(15), HOUR_10.plusHours(1).plusMinutes(40), 100);
+
+        assertThat(ids(result)).containsExactly("120", "130", "140");
+        assertThat(result.getPartitionsScanned()).isEqualTo(1);
+        assertThat(result.getPartitionsSkipped()).isEqualTo(2);
+        assertThat(result.getRecords()).isEqualTo(6);
+        assertThat(result.getMatched()).isEqualTo(3);
+
+        // 完全覆盖分区时超出 limit 的记录只计数
+        PartitionScanResult covered = store.scan(HOUR_10.plusHours(1), HOUR_10.plusHours(2).minusNanos(1), 2);
+        assertThat(ids(covered)).containsExactly("100", "110");
+        assertThat(covered.getMatched()).isEqualTo(6);
+    }
+
+    @Test
+    void lateWriteIntoCompactedPartitionIsMergedNextTime() throws IOException {
+        PartitionedLogStore store = store(PartitionCompression.LZ4, 0);
+        write(store, 0, 50);
+        store.maintain();
+        Path day = root.resolve("20211008");
+        assertThat(names(day)).containsExactly("2021100810-0.log.lz4");
+
+        write(store, 50, 60);
+
+        assertThat(names(day)).containsExactly("2021100810-0.log.lz4", "2021100810-1.log");
+        assertThat(ids(store.scan(null, null, 100))).isEqualTo(expected(0, 60));
+
+        store.maintain();
+
+        assertThat(names(day)).containsExactly("2021100810-1.log.lz4");
+        assertThat(ids(store.scan(null, null, 100))).isEqualTo(expected(0, 60));
+    }
+
+    private PartitionedLogStore store(PartitionCompression compression, long retention) throws IOException {
+        PartitionSinkProperties properties = new PartitionSinkProperties();
+        properties.setDirectory(root.toString());
+        properties.setGranularity(PartitionGranularity.HOUR);
+        properties.setCompression(compression);
+        properties.setRetention(retention);
+        // 写入的都是已结束的分区，每批写完立即关闭；后台维护线程不运行，由测试调用 maintain
+        properties.setSealDelay(0);
+        properties.setCompactionInterval(60L * 60 * 1000);
+        return new PartitionedLogStore(properties);
+    }
+
+    private PartitionedLogSink sink(PartitionedLogStore store) {
+        if (sink == null) {
+            sink = new PartitionedLogSink(store);
+        }
+        return sink;
+    }
+
+    /**
+     * 写入 HOUR_10 分区的一批日志，写完后分区文件被关闭
+     */
+    private void write(PartitionedLogStore store, int from, int to) throws IOException {
+        List<LogDomain> batch = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            batch.add(log(i, HOUR_10.plusSeconds(i)));
+        }
+        sink(store).write(batch);
+    }
+
+    private static LogDomain log(int id, LocalDateTime requestTime) {
+        LogDomain log = new LogDomain();
+        log.setLogId(String.valueOf(id));
+        log.setRequestTime(requestTime);
+        log.setRequestUrl("/test01");
+        log.setResponseStatus("success");
+        return log;
+    }
+
+    private static List<LogDomain> listOf(LogDomain log) {
+        List<LogDomain> list = new ArrayList<>(1);
+        list.add(log);
+        return list;
+    }
+
+    private static void corrupt(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, "not compressed".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> names(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> ids(PartitionScanResult result) {
+        return result.getItems().stream().map(LogDomain::getLogId).collect(Collectors.toList());
+    }
+
+    private static List<String> expected(int from, int to) {
+        List<String> ids = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            ids.add(String.valueOf(i));
+        }
+        return ids;
+    }
+}
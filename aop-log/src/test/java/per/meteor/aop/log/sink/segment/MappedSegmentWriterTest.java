@@ -0,0 +1,198 @@
+package per.meteor.aop.log.sink.segment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import per.meteor.aop.log.common.codec.LogDomainCodec;
+import per.meteor.aop.log.config.SegmentSinkProperties;
+import per.meteor.aop.log.domain.LogDomain;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 分段文件的切换、重启后续写及跨分段读取
+ *
+ * @author meteor
+ * @date 2021-10-25 14:00
+ */
+class MappedSegmentWriterTest {
+
+    /** 文件头 8 字节，可容纳两条 20 字节的记录(各 24 字节)，剩余 8 字节 **/
+    private static final int SEGMENT_SIZE = 64;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rollsToNextSegmentWhenRecordDoesNotFit() throws IOException {
+        try (MappedSegmentWriter writer = new MappedSegmentWriter(directory, SEGMENT_SIZE)) {
+            writer.append(record(0, 20));
+            writer.append(record(1, 20));
+            assertThat(writer.getSegmentIndex()).isZero();
+
+            writer.append(record(2, 20));
+            assertThat(writer.getSegmentIndex()).isEqualTo(1);
+            // 恰好写满剩余空间时不切换
+            writer.append(record(3, SEGMENT_SIZE - Segments.HEADER_SIZE - 24 - Segments.LENGTH_SIZE));
+            assertThat(writer.getSegmentIndex()).isEqualTo(1);
+            writer.append(record(4, 1));
+            assertThat(writer.getSegmentIndex()).isEqualTo(2);
+
+            assertThat(writer.getRecordsWritten()).isEqualTo(5);
+        }
+
+        assertThat(Segments.list(directory)).containsExactly(Segments.path(directory, 0),
+                Segments.path(directory, 1), Segments.path(directory, 2));
+        assertThat(readAll()).containsExactly("0", "1", "2", "3", "4");
+    }
+
+    @Test
+    void rejectsRecordsThatCannotFitAnySegment() throws IOException {
+        try (MappedSegmentWriter writer = new MappedSegmentWriter(directory, SEGMENT_SIZE)) {
+            assertThat(writer.maxRecordLength()).isEqualTo(SEGMENT_SIZE - Segments.HEADER_SIZE - Segments.LENGTH_SIZE);
+            writer.append(record(0, writer.maxRecordLength()));
+
+            assertThatThrownBy(() -> writer.append(new byte[writer.maxRecordLength() + 1]))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> writer.append(new byte[0])).isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThat(readAll()).containsExactly("0");
+    }
+
+    @Test
+    void resumesAfterLastRecordOnRestart() throws IOException {
+        try (MappedSegmentWriter writer = new MappedSegmentWriter(directory, 1024)) {
+            writer.append(record(0, 10));
+            writer.append(record(1, 10));
+        }
+        try (MappedSegmentWriter writer = new MappedSegmentWriter(directory, 1024)) {
+            assertThat(writer.getSegmentIndex()).isZero();
+            writer.append(record(2, 10));
+        }
+
+        assertThat(Segments.list(directory)).hasSize(1);
+        assertThat(readAll()).containsExactly("0", "1", "2");
+    }
+
+    @Test
+    void resumesInLastSegmentAndOverwritesUnfinishedRecord() throws IOException {
+        try (MappedSegmentWriter writer = new MappedSegmentWriter(directory, SEGMENT_SIZE)) {
+            writer.append(record(0, 20));
+            writer.append(record(1, 20));
+            writer.append(record(2, 10));
+        }
+        // 模拟写入数据后、写入长度前崩溃：最后一条记录的长度仍为 0
+        Path last = Segments.path(directory, 1);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Segments.LENGTH_SIZE), Segments.HEADER_SIZE);
+        }
+        assertThat(readAll()).containsExactly("0", "1");
+
+        try (MappedSegmentWriter writer = new MappedSegmentWriter(directory, SEGMENT_SIZE)) {
+            assertThat(writer.getSegmentIndex()).isEqualTo(1);
+            writer.append(record(3, 20));
+            writer.append(record(4, 20));
+            assertThat(writer.getSegmentIndex()).isEqualTo(1);
+        }
+
+        assertThat(Segments.list(directory)).hasSize(2);
+        assertThat(readAll()).containsExactly("0", "1", "3", "4");
+    }
+
+    @Test
+    void readerStopsAtZeroLengthTailOfEachSegment() throws IOException {
+        try (MappedSegmentWriter writer = new MappedSegmentWriter(directory, 1024)) {
+            writer.append(record(0, 100));
+        }
+        // 序号更大的分段只写了一条，之后全为 0；非分段文件及文件头损坏的分段被跳过
+        Path next = Segments.path(directory, 1);
+        try (MappedSegmentWriter writer = new MappedSegmentWriter(directory, 1024)) {
+            for (int i = 1; writer.getSegmentIndex() == 0; i++) {
+                writer.append(record(i, 100));
+            }
+        }
+        Files.write(directory.resolve("notes.txt"), "not a segment".getBytes(StandardCharsets.UTF_8));
+        Files.write(Segments.path(directory, 2), new byte[64]);
+
+        List<String> records = readAll();
+
+        assertThat(Files.size(next)).isEqualTo(1024);
+        // 第一个分段可容纳 9 条 104 字节的记录，第 10 条写入下一个分段
+        assertThat(records).hasSize(10);
+        assertThat(records.get(0)).isEqualTo("0");
+        assertThat(records.get(9)).isEqualTo("9");
+    }
+
+    @Test
+    void sinkWritesDecodableRecordsAndDropsOversizedOnes() throws IOException {
+        SegmentSinkProperties properties = new SegmentSinkProperties();
+        properties.setDirectory(directory.toString());
+        properties.setSegmentSize(4096);
+        properties.setForceInterval(0);
+        List<LogDomain> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            LogDomain log = new LogDomain();
+            log.setLogId(String.valueOf(i));
+            log.setRequestUrl("/test01/" + String.format("%080d", i));
+            batch.add(log);
+        }
+        LogDomain oversized = new LogDomain();
+        oversized.setLogId("oversized");
+        char[] body = new char[8192];
+        Arrays.fill(body, 'x');
+        oversized.setResponseBody(new String(body));
+        batch.add(50, oversized);
+
+        SegmentLogSink sink = new SegmentLogSink(properties);
+        try {
+            sink.write(batch);
+        } finally {
+            sink.close();
+        }
+
+        List<String> ids = new ArrayList<>();
+        try (SegmentReader reader = new SegmentReader(directory)) {
+            while (reader.hasNext()) {
+                ids.add(LogDomainCodec.decode(reader.next()).getLogId());
+            }
+        }
+        assertThat(ids).hasSize(100).doesNotContain("oversized");
+        assertThat(ids.get(99)).isEqualTo("99");
+        assertThat(Segments.list(directory).size()).isGreaterThan(1);
+        assertThat(sink.getStats().getFailedRows()).isEqualTo(1);
+        assertThat(sink.getStats().getRows()).isEqualTo(100);
+        assertThat(sink.getStats().getBytes()).isPositive();
+    }
+
+    /**
+     * 以序号开头、空格补齐到指定长度的记录
+     */
+    private static byte[] record(int id, int length) {
+        byte[] record = new byte[length];
+        Arrays.fill(record, (byte) ' ');
+        byte[] prefix = String.valueOf(id).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(prefix, 0, record, 0, prefix.length);
+        return record;
+    }
+
+    private List<String> readAll() throws IOException {
+        List<String> records = new ArrayList<>();
+        try (SegmentReader reader = new SegmentReader(directory)) {
+            while (reader.hasNext()) {
+                records.add(new String(reader.next(), StandardCharsets.US_ASCII).trim());
+            }
+        }
+        return records;
+    }
+}